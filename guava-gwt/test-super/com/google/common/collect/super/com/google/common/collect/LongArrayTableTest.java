@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import static java.util.Arrays.asList;
+
+import com.google.common.annotations.GwtCompatible;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link LongArrayTable}.
+ */
+@GwtCompatible(emulated = true)
+public class LongArrayTableTest extends TestCase {
+
+  private LongArrayTable<String, Integer> table;
+
+  @Override protected void setUp() {
+    table = LongArrayTable.create(asList("foo", "bar"), asList(1, 2, 3));
+  }
+
+  public void testGetPutAdd() {
+    assertEquals(0, table.get("bar", 3));
+    assertEquals(0, table.put("foo", 2, 5));
+    assertEquals(7, table.add("foo", 2, 2));
+    assertEquals(7, table.at(0, 1));
+    assertEquals(7, table.set(0, 1, 8));
+    assertEquals(8, table.get("foo", 2));
+    try {
+      table.get("cat", 1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      table.at(0, 3);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+  }
+
+  public void testAggregates() {
+    table.put("foo", 1, Long.MAX_VALUE);
+    table.put("foo", 2, Long.MAX_VALUE);
+    table.put("foo", 3, -1);
+    table.put("bar", 1, Long.MIN_VALUE);
+    assertEquals(-1, table.rowMin("foo"));
+    assertEquals(Long.MAX_VALUE, table.rowMax("foo"));
+    assertEquals(Long.MIN_VALUE, table.rowMin("bar"));
+    assertEquals(0, table.rowMax("bar"));
+    assertEquals(Long.MIN_VALUE, table.rowSum("bar"));
+    assertEquals(Long.MAX_VALUE + Long.MIN_VALUE, table.columnSum(1));
+    assertEquals(Long.MIN_VALUE, table.columnMin(1));
+    assertEquals(Long.MAX_VALUE, table.columnMax(1));
+    assertEquals(-1, table.columnSum(3));
+    assertEquals(-1, table.columnMin(3));
+    assertEquals(0, table.columnMax(3));
+  }
+
+  public void testCopy() {
+    table.put("foo", 1, 1);
+    LongArrayTable<String, Integer> copy = LongArrayTable.create(table);
+    copy.put("foo", 1, 2);
+    assertEquals(1, table.get("foo", 1));
+    assertEquals(2, copy.get("foo", 1));
+  }
+
+  public void testFill() {
+    table.fill(3);
+    assertEquals(9, table.rowSum("bar"));
+    assertEquals(6, table.columnSum(2));
+  }
+
+  public void testAsTable() {
+    table.put("bar", 2, 4);
+    Table<String, Integer, Long> view = table.asTable();
+    assertEquals((Long) 4L, view.get("bar", 2));
+    assertEquals((Long) 0L, view.put("foo", 3, 5L));
+    assertEquals(5, table.get("foo", 3));
+    assertEquals((Long) 5L, view.row("foo").put(3, 6L));
+    assertEquals(6, table.get("foo", 3));
+    assertEquals(ImmutableMap.of("foo", 0L, "bar", 4L), view.column(2));
+    assertEquals(6, view.cellSet().size());
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import com.google.common.annotations.GwtCompatible;
+import com.google.common.primitives.Longs;
+import com.google.common.testing.EqualsTester;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Unit tests for {@link LongMultiset}.
+ */
+@GwtCompatible(emulated = true)
+public class LongMultisetTest extends TestCase {
+
+  public void testAddAndCount() {
+    LongMultiset multiset = LongMultiset.create();
+    assertTrue(multiset.isEmpty());
+    assertEquals(0, multiset.add(3));
+    assertEquals(1, multiset.add(3, 4));
+    assertEquals(0, multiset.add(-7, 2));
+    assertEquals(0, multiset.add(0, 0));
+    assertEquals(5, multiset.count(3));
+    assertEquals(2, multiset.count(-7));
+    assertEquals(0, multiset.count(0));
+    assertFalse(multiset.contains(0));
+    assertEquals(7, multiset.size());
+    assertEquals(2, multiset.distinctElements());
+  }
+
+  public void testRemoveAndSetCount() {
+    LongMultiset multiset = LongMultiset.create();
+    multiset.add(1, 5);
+    multiset.add(2, 1);
+    assertEquals(5, multiset.remove(1, 2));
+    assertEquals(3, multiset.count(1));
+    assertEquals(3, multiset.remove(1, 10));
+    assertFalse(multiset.contains(1));
+    assertEquals(0, multiset.remove(1, 1));
+    assertEquals(1, multiset.setCount(2, 4));
+    assertEquals(0, multiset.setCount(5, 6));
+    assertEquals(4, multiset.setCount(2, 0));
+    assertEquals(6, multiset.size());
+    assertEquals(1, multiset.distinctElements());
+  }
+
+  public void testNegativeArguments() {
+    LongMultiset multiset = LongMultiset.create();
+    try {
+      multiset.add(1, -1);
+      fail();
+    } catch (IllegalArgumentException expected) {}
+    try {
+      multiset.remove(1, -1);
+      fail();
+    } catch (IllegalArgumentException expected) {}
+    try {
+      multiset.setCount(1, -1);
+      fail();
+    } catch (IllegalArgumentException expected) {}
+    try {
+      LongMultiset.create(-1);
+      fail();
+    } catch (IllegalArgumentException expected) {}
+  }
+
+  public void testCountOverflow() {
+    LongMultiset multiset = LongMultiset.create();
+    multiset.add(1, Integer.MAX_VALUE);
+    try {
+      multiset.add(1);
+      fail();
+    } catch (IllegalArgumentException expected) {}
+    multiset.add(2, Integer.MAX_VALUE);
+    assertEquals(Integer.MAX_VALUE, multiset.size());
+  }
+
+  public void testAgainstHashMultiset() {
+    Random random = new Random(0);
+    LongMultiset multiset = LongMultiset.create();
+    Multiset<Long> expected = HashMultiset.create();
+    for (int i = 0; i < 100000; i++) {
+      long element = random.nextInt(1000) * 0x100000001L;
+      switch (random.nextInt(3)) {
+        case 0:
+          assertEquals(expected.add(element, 3), multiset.add(element, 3));
+          break;
+        case 1:
+          assertEquals(expected.remove(element, 2), multiset.remove(element, 2));
+          break;
+        default:
+          assertEquals(expected.setCount(element, i % 3), multiset.setCount(element, i % 3));
+      }
+    }
+    assertEquals(expected.size(), multiset.size());
+    assertEquals(expected.elementSet().size(), multiset.distinctElements());
+    assertEquals(expected, multiset.asMultiset());
+    assertEquals(expected.hashCode(), multiset.hashCode());
+    long[] elements = multiset.toElementArray();
+    Arrays.sort(elements);
+    assertEquals(Longs.asList(elements), Ordering.natural().sortedCopy(expected.elementSet()));
+  }
+
+  public void testIteratorRemove() {
+    LongMultiset multiset = LongMultiset.create();
+    for (int i = 0; i < 100; i++) {
+      multiset.add((long) i << 32, i % 3 + 1);
+    }
+    Iterator<Multiset.Entry<Long>> iterator = multiset.asMultiset().entrySet().iterator();
+    int iterated = 0;
+    while (iterator.hasNext()) {
+      if ((iterator.next().getElement() >>> 32) % 2 == 0) {
+        iterator.remove();
+      }
+      iterated++;
+    }
+    assertEquals(100, iterated);
+    assertEquals(50, multiset.distinctElements());
+    for (int i = 0; i < 100; i++) {
+      assertEquals((i % 2 == 0) ? 0 : i % 3 + 1, multiset.count((long) i << 32));
+    }
+  }
+
+  public void testClear() {
+    LongMultiset multiset = LongMultiset.create(1000);
+    multiset.add(1);
+    multiset.clear();
+    assertTrue(multiset.isEmpty());
+    assertEquals(0, multiset.size());
+    assertEquals(0, multiset.count(1));
+  }
+
+  public void testEquals() {
+    LongMultiset a = LongMultiset.create();
+    a.add(1, 2);
+    LongMultiset b = LongMultiset.create(100);
+    b.add(1);
+    b.add(1);
+    LongMultiset c = LongMultiset.create();
+    c.add(1);
+    new EqualsTester()
+        .addEqualityGroup(a, b)
+        .addEqualityGroup(c)
+        .addEqualityGroup(LongMultiset.create())
+        .testEquals();
+    assertEquals("[1 x 2]", a.toString());
+  }
+}
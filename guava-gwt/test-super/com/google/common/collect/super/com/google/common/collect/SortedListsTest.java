@@ -102,6 +102,26 @@ public class SortedListsTest extends TestCase {
     }
   }
 
+  public void testGallop() {
+    List<Integer> list = ImmutableList.of(1, 3, 5, 5, 7, 9, 11, 13, 15, 17, 19);
+    for (int fromIndex = 0; fromIndex <= list.size(); fromIndex++) {
+      for (int key = 0; key <= 21; key++) {
+        int notLess = fromIndex;
+        while (notLess < list.size() && list.get(notLess) < key) {
+          notLess++;
+        }
+        int greater = fromIndex;
+        while (greater < list.size() && list.get(greater) <= key) {
+          greater++;
+        }
+        assertEquals(notLess,
+            SortedLists.gallop(list, fromIndex, key, Ordering.natural(), true));
+        assertEquals(greater,
+            SortedLists.gallop(list, fromIndex, key, Ordering.natural(), false));
+      }
+    }
+  }
+
   public void testWithDups() {
     for (KeyPresentBehavior presentBehavior : KeyPresentBehavior.values()) {
       for (KeyAbsentBehavior absentBehavior : KeyAbsentBehavior.values()) {
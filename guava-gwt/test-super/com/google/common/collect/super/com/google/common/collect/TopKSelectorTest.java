@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.annotations.GwtCompatible;
+
+import junit.framework.TestCase;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for {@link TopKSelector}.
+ */
+@GwtCompatible(emulated = true)
+public class TopKSelectorTest extends TestCase {
+
+  public void testNegativeK() {
+    try {
+      TopKSelector.<String>least(-1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      TopKSelector.<String>greatest(-1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testZeroK() {
+    TopKSelector<Integer> selector = TopKSelector.least(0);
+    selector.offerAll(ImmutableList.of(3, 1, 2));
+    assertThat(selector.topK()).isEmpty();
+  }
+
+  public void testNoElementsOffered() {
+    TopKSelector<Integer> selector = TopKSelector.least(10);
+    assertThat(selector.topK()).isEmpty();
+  }
+
+  public void testFewerThanK() {
+    TopKSelector<Integer> selector = TopKSelector.least(10);
+    selector.offerAll(ImmutableList.of(5, 3, 9, 3));
+    assertThat(selector.topK()).containsExactly(3, 3, 5, 9).inOrder();
+  }
+
+  public void testGreatest() {
+    TopKSelector<Integer> selector = TopKSelector.greatest(3);
+    selector.offerAll(ImmutableList.of(5, 3, 9, 1, 7, 8).iterator());
+    assertThat(selector.topK()).containsExactly(9, 8, 7).inOrder();
+  }
+
+  public void testNulls() {
+    TopKSelector<Integer> selector = TopKSelector.least(2, Ordering.natural().nullsFirst());
+    selector.offerAll(Lists.newArrayList(5, null, 3, null, 1));
+    assertThat(selector.topK()).containsExactly(null, null).inOrder();
+  }
+
+  public void testTopK_isUnmodifiableSnapshot() {
+    TopKSelector<Integer> selector = TopKSelector.least(2);
+    selector.offerAll(ImmutableList.of(4, 3));
+    List<Integer> snapshot = selector.topK();
+    selector.offer(1);
+    assertThat(snapshot).containsExactly(3, 4).inOrder();
+    assertThat(selector.topK()).containsExactly(1, 3).inOrder();
+    try {
+      snapshot.set(0, 0);
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+  }
+
+  public void testIncremental_random() {
+    Random random = new Random(0);
+    for (int k : new int[] {1, 2, 10, 100}) {
+      TopKSelector<Integer> selector = TopKSelector.least(k);
+      List<Integer> offered = Lists.newArrayList();
+      for (int round = 0; round < 50; round++) {
+        int batch = random.nextInt(5 * k);
+        for (int i = 0; i < batch; i++) {
+          int elem = random.nextInt(1000);
+          selector.offer(elem);
+          offered.add(elem);
+        }
+        assertEquals(leastOf(offered, k), selector.topK());
+      }
+    }
+  }
+
+  public void testCombine_random() {
+    Random random = new Random(1);
+    for (int k : new int[] {1, 7, 64}) {
+      TopKSelector<Integer> combined = TopKSelector.greatest(k);
+      List<Integer> offered = Lists.newArrayList();
+      for (int part = 0; part < 8; part++) {
+        TopKSelector<Integer> selector = TopKSelector.greatest(k);
+        int size = random.nextInt(10 * k);
+        for (int i = 0; i < size; i++) {
+          int elem = random.nextInt();
+          selector.offer(elem);
+          offered.add(elem);
+        }
+        if (part % 2 == 0) {
+          selector.topK();
+        }
+        combined.combine(selector);
+      }
+      Collections.sort(offered, Collections.reverseOrder());
+      assertEquals(offered.subList(0, Math.min(k, offered.size())), combined.topK());
+    }
+  }
+
+  public void testCombine_self() {
+    TopKSelector<Integer> selector = TopKSelector.least(3);
+    selector.offerAll(ImmutableList.of(2, 1));
+    try {
+      selector.combine(selector);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    assertThat(selector.topK()).containsExactly(1, 2).inOrder();
+  }
+
+  private static List<Integer> leastOf(List<Integer> elements, int k) {
+    List<Integer> sorted = Ordering.natural().sortedCopy(elements);
+    return sorted.subList(0, Math.min(k, sorted.size()));
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.collect;
+public class DoubleArrayTableTest_gwt extends com.google.gwt.junit.client.GWTTestCase {
+@Override public String getModuleName() {
+  return "com.google.common.collect.testModule";
+}
+public void testAggregates() throws Exception {
+  com.google.common.collect.DoubleArrayTableTest testCase = new com.google.common.collect.DoubleArrayTableTest();
+  testCase.setUp();
+  testCase.testAggregates();
+}
+
+public void testAggregates_nan() throws Exception {
+  com.google.common.collect.DoubleArrayTableTest testCase = new com.google.common.collect.DoubleArrayTableTest();
+  testCase.setUp();
+  testCase.testAggregates_nan();
+}
+
+public void testAsTable() throws Exception {
+  com.google.common.collect.DoubleArrayTableTest testCase = new com.google.common.collect.DoubleArrayTableTest();
+  testCase.setUp();
+  testCase.testAsTable();
+}
+
+public void testAsTable_unsupported() throws Exception {
+  com.google.common.collect.DoubleArrayTableTest testCase = new com.google.common.collect.DoubleArrayTableTest();
+  testCase.setUp();
+  testCase.testAsTable_unsupported();
+}
+
+public void testAsTable_writeThrough() throws Exception {
+  com.google.common.collect.DoubleArrayTableTest testCase = new com.google.common.collect.DoubleArrayTableTest();
+  testCase.setUp();
+  testCase.testAsTable_writeThrough();
+}
+
+public void testAtSet() throws Exception {
+  com.google.common.collect.DoubleArrayTableTest testCase = new com.google.common.collect.DoubleArrayTableTest();
+  testCase.setUp();
+  testCase.testAtSet();
+}
+
+public void testCopy() throws Exception {
+  com.google.common.collect.DoubleArrayTableTest testCase = new com.google.common.collect.DoubleArrayTableTest();
+  testCase.setUp();
+  testCase.testCopy();
+}
+
+public void testCreate() throws Exception {
+  com.google.common.collect.DoubleArrayTableTest testCase = new com.google.common.collect.DoubleArrayTableTest();
+  testCase.setUp();
+  testCase.testCreate();
+}
+
+public void testFill() throws Exception {
+  com.google.common.collect.DoubleArrayTableTest testCase = new com.google.common.collect.DoubleArrayTableTest();
+  testCase.setUp();
+  testCase.testFill();
+}
+
+public void testGetPutAdd() throws Exception {
+  com.google.common.collect.DoubleArrayTableTest testCase = new com.google.common.collect.DoubleArrayTableTest();
+  testCase.setUp();
+  testCase.testGetPutAdd();
+}
+
+public void testGetPut_badKeys() throws Exception {
+  com.google.common.collect.DoubleArrayTableTest testCase = new com.google.common.collect.DoubleArrayTableTest();
+  testCase.setUp();
+  testCase.testGetPut_badKeys();
+}
+}
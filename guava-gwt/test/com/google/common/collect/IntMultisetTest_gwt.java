@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.collect;
+public class IntMultisetTest_gwt extends com.google.gwt.junit.client.GWTTestCase {
+@Override public String getModuleName() {
+  return "com.google.common.collect.testModule";
+}
+public void testAddAndCount() throws Exception {
+  com.google.common.collect.IntMultisetTest testCase = new com.google.common.collect.IntMultisetTest();
+  testCase.testAddAndCount();
+}
+
+public void testAgainstHashMultiset() throws Exception {
+  com.google.common.collect.IntMultisetTest testCase = new com.google.common.collect.IntMultisetTest();
+  testCase.testAgainstHashMultiset();
+}
+
+public void testClear() throws Exception {
+  com.google.common.collect.IntMultisetTest testCase = new com.google.common.collect.IntMultisetTest();
+  testCase.testClear();
+}
+
+public void testCountOverflow() throws Exception {
+  com.google.common.collect.IntMultisetTest testCase = new com.google.common.collect.IntMultisetTest();
+  testCase.testCountOverflow();
+}
+
+public void testEquals() throws Exception {
+  com.google.common.collect.IntMultisetTest testCase = new com.google.common.collect.IntMultisetTest();
+  testCase.testEquals();
+}
+
+public void testIteratorRemove() throws Exception {
+  com.google.common.collect.IntMultisetTest testCase = new com.google.common.collect.IntMultisetTest();
+  testCase.testIteratorRemove();
+}
+
+public void testNegativeArguments() throws Exception {
+  com.google.common.collect.IntMultisetTest testCase = new com.google.common.collect.IntMultisetTest();
+  testCase.testNegativeArguments();
+}
+
+public void testRemoveAndSetCount() throws Exception {
+  com.google.common.collect.IntMultisetTest testCase = new com.google.common.collect.IntMultisetTest();
+  testCase.testRemoveAndSetCount();
+}
+}
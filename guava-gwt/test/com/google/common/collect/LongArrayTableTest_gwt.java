@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.collect;
+public class LongArrayTableTest_gwt extends com.google.gwt.junit.client.GWTTestCase {
+@Override public String getModuleName() {
+  return "com.google.common.collect.testModule";
+}
+public void testAggregates() throws Exception {
+  com.google.common.collect.LongArrayTableTest testCase = new com.google.common.collect.LongArrayTableTest();
+  testCase.setUp();
+  testCase.testAggregates();
+}
+
+public void testAsTable() throws Exception {
+  com.google.common.collect.LongArrayTableTest testCase = new com.google.common.collect.LongArrayTableTest();
+  testCase.setUp();
+  testCase.testAsTable();
+}
+
+public void testCopy() throws Exception {
+  com.google.common.collect.LongArrayTableTest testCase = new com.google.common.collect.LongArrayTableTest();
+  testCase.setUp();
+  testCase.testCopy();
+}
+
+public void testFill() throws Exception {
+  com.google.common.collect.LongArrayTableTest testCase = new com.google.common.collect.LongArrayTableTest();
+  testCase.setUp();
+  testCase.testFill();
+}
+
+public void testGetPutAdd() throws Exception {
+  com.google.common.collect.LongArrayTableTest testCase = new com.google.common.collect.LongArrayTableTest();
+  testCase.setUp();
+  testCase.testGetPutAdd();
+}
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.collect;
+public class LongListMultimapTest_gwt extends com.google.gwt.junit.client.GWTTestCase {
+@Override public String getModuleName() {
+  return "com.google.common.collect.testModule";
+}
+public void testAgainstArrayListMultimap() throws Exception {
+  com.google.common.collect.LongListMultimapTest testCase = new com.google.common.collect.LongListMultimapTest();
+  testCase.testAgainstArrayListMultimap();
+}
+
+public void testClear() throws Exception {
+  com.google.common.collect.LongListMultimapTest testCase = new com.google.common.collect.LongListMultimapTest();
+  testCase.testClear();
+}
+
+public void testEquals() throws Exception {
+  com.google.common.collect.LongListMultimapTest testCase = new com.google.common.collect.LongListMultimapTest();
+  testCase.testEquals();
+}
+
+public void testGet_snapshot() throws Exception {
+  com.google.common.collect.LongListMultimapTest testCase = new com.google.common.collect.LongListMultimapTest();
+  testCase.testGet_snapshot();
+}
+
+public void testPutAndGet() throws Exception {
+  com.google.common.collect.LongListMultimapTest testCase = new com.google.common.collect.LongListMultimapTest();
+  testCase.testPutAndGet();
+}
+
+public void testRemove() throws Exception {
+  com.google.common.collect.LongListMultimapTest testCase = new com.google.common.collect.LongListMultimapTest();
+  testCase.testRemove();
+}
+}
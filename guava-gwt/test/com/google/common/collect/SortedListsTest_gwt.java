@@ -18,6 +18,11 @@ public class SortedListsTest_gwt extends com.google.gwt.junit.client.GWTTestCase
 @Override public String getModuleName() {
   return "com.google.common.collect.testModule";
 }
+public void testGallop() throws Exception {
+  com.google.common.collect.SortedListsTest testCase = new com.google.common.collect.SortedListsTest();
+  testCase.testGallop();
+}
+
 public void testWithDups() throws Exception {
   com.google.common.collect.SortedListsTest testCase = new com.google.common.collect.SortedListsTest();
   testCase.testWithDups();
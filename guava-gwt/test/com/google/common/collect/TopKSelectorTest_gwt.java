@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.common.collect;
+public class TopKSelectorTest_gwt extends com.google.gwt.junit.client.GWTTestCase {
+@Override public String getModuleName() {
+  return "com.google.common.collect.testModule";
+}
+public void testCombine_random() throws Exception {
+  com.google.common.collect.TopKSelectorTest testCase = new com.google.common.collect.TopKSelectorTest();
+  testCase.testCombine_random();
+}
+
+public void testCombine_self() throws Exception {
+  com.google.common.collect.TopKSelectorTest testCase = new com.google.common.collect.TopKSelectorTest();
+  testCase.testCombine_self();
+}
+
+public void testFewerThanK() throws Exception {
+  com.google.common.collect.TopKSelectorTest testCase = new com.google.common.collect.TopKSelectorTest();
+  testCase.testFewerThanK();
+}
+
+public void testGreatest() throws Exception {
+  com.google.common.collect.TopKSelectorTest testCase = new com.google.common.collect.TopKSelectorTest();
+  testCase.testGreatest();
+}
+
+public void testIncremental_random() throws Exception {
+  com.google.common.collect.TopKSelectorTest testCase = new com.google.common.collect.TopKSelectorTest();
+  testCase.testIncremental_random();
+}
+
+public void testNegativeK() throws Exception {
+  com.google.common.collect.TopKSelectorTest testCase = new com.google.common.collect.TopKSelectorTest();
+  testCase.testNegativeK();
+}
+
+public void testNoElementsOffered() throws Exception {
+  com.google.common.collect.TopKSelectorTest testCase = new com.google.common.collect.TopKSelectorTest();
+  testCase.testNoElementsOffered();
+}
+
+public void testNulls() throws Exception {
+  com.google.common.collect.TopKSelectorTest testCase = new com.google.common.collect.TopKSelectorTest();
+  testCase.testNulls();
+}
+
+public void testTopK_isUnmodifiableSnapshot() throws Exception {
+  com.google.common.collect.TopKSelectorTest testCase = new com.google.common.collect.TopKSelectorTest();
+  testCase.testTopK_isUnmodifiableSnapshot();
+}
+
+public void testZeroK() throws Exception {
+  com.google.common.collect.TopKSelectorTest testCase = new com.google.common.collect.TopKSelectorTest();
+  testCase.testZeroK();
+}
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.base.Stopwatch;
+import com.google.common.io.Files;
+import com.google.common.primitives.Ints;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * Replays key-access traces through caches built with a range of {@link CacheBuilder}
+ * configurations, and reports the hit rate, eviction count and throughput of each, so that
+ * {@code maximumSize} and {@code concurrencyLevel} may be chosen from data rather than by guessing.
+ *
+ * <p>Usage: {@code CacheSimulator [trace [maximumSizes [concurrencyLevels]]]}, where the trace is
+ * {@code zipf}, {@code scan} or the path of a file holding one key per line, as read by {@link
+ * CacheTraces#read}, and the sizes and levels are comma-separated lists. Each configuration is run
+ * both with and without {@linkplain CacheBuilder#admitByFrequency admission by frequency}.
+ *
+ * <p>The replay is single-threaded, so the concurrency level affects the hit rate only in that
+ * each segment evicts independently; see {@code LoadingCacheSingleThreadBenchmark} and the other
+ * benchmarks for its effect on contention.
+ */
+public class CacheSimulator {
+  static final int TRACE_LENGTH = 1000000;
+  static final int DISTINCT_KEYS = 100000;
+  static final double EXPONENT = 0.9;
+
+  /** The outcome of replaying a trace through one cache configuration. */
+  static final class Result {
+    final double hitRate;
+    final long evictionCount;
+    final double requestsPerSecond;
+
+    Result(double hitRate, long evictionCount, double requestsPerSecond) {
+      this.hitRate = hitRate;
+      this.evictionCount = evictionCount;
+      this.requestsPerSecond = requestsPerSecond;
+    }
+  }
+
+  /**
+   * Replays {@code trace} through a loading cache built by {@code builder}, whose loader returns the
+   * requested key. The builder is made to record stats.
+   */
+  static Result simulate(CacheBuilder<Object, Object> builder, long[] trace) {
+    checkNotNull(trace);
+    LoadingCache<Long, Long> cache = builder.recordStats().build(
+        new CacheLoader<Long, Long>() {
+          @Override public Long load(Long key) {
+            return key;
+          }
+        });
+
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    for (long key : trace) {
+      cache.getUnchecked(key);
+    }
+    long nanos = Math.max(1, stopwatch.elapsed(NANOSECONDS));
+
+    CacheStats stats = cache.stats();
+    return new Result(stats.hitRate(), stats.evictionCount(), trace.length * 1e9 / nanos);
+  }
+
+  static long[] trace(String name) throws IOException {
+    checkNotNull(name);
+    if (name.equals("zipf")) {
+      return CacheTraces.zipf(TRACE_LENGTH, DISTINCT_KEYS, EXPONENT, 1);
+    } else if (name.equals("scan")) {
+      return CacheTraces.scanMixed(TRACE_LENGTH, DISTINCT_KEYS, EXPONENT, 20000, 50000, 1);
+    } else {
+      return CacheTraces.read(Files.asCharSource(new File(name), Charsets.UTF_8));
+    }
+  }
+
+  static void run(long[] trace, List<Integer> maximumSizes, List<Integer> concurrencyLevels,
+      PrintStream out) {
+    checkNotNull(trace);
+    checkNotNull(maximumSizes);
+    checkNotNull(concurrencyLevels);
+    checkNotNull(out);
+    checkArgument(!maximumSizes.isEmpty());
+    checkArgument(!concurrencyLevels.isEmpty());
+
+    // warm up the cache code so that the first configuration is not penalized
+    simulate(CacheBuilder.newBuilder().maximumSize(maximumSizes.get(0)), trace);
+
+    out.printf("%-10s %12s %12s %9s %10s %12s%n",
+        "policy", "maximumSize", "concurrency", "hit rate", "evictions", "requests/s");
+    for (int maximumSize : maximumSizes) {
+      for (int concurrencyLevel : concurrencyLevels) {
+        for (boolean admitByFrequency : new boolean[] {false, true}) {
+          CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+              .maximumSize(maximumSize)
+              .concurrencyLevel(concurrencyLevel);
+          if (admitByFrequency) {
+            builder.admitByFrequency();
+          }
+          Result result = simulate(builder, trace);
+          out.printf("%-10s %12d %12d %8.2f%% %10d %12.0f%n",
+              admitByFrequency ? "frequency" : "lru", maximumSize, concurrencyLevel,
+              100 * result.hitRate, result.evictionCount, result.requestsPerSecond);
+        }
+      }
+    }
+  }
+
+  private static List<Integer> parseList(String list) {
+    List<String> parts = Splitter.on(',').trimResults().omitEmptyStrings().splitToList(list);
+    int[] values = new int[parts.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = Integer.parseInt(parts.get(i));
+    }
+    return Ints.asList(values);
+  }
+
+  public static void main(String[] args) throws IOException {
+    String traceName = (args.length > 0) ? args[0] : "zipf";
+    List<Integer> maximumSizes = parseList((args.length > 1) ? args[1] : "1000,10000");
+    List<Integer> concurrencyLevels = parseList((args.length > 2) ? args[2] : "1,4,16");
+
+    long[] trace = trace(traceName);
+    System.out.printf("trace: %s (%d requests, %d distinct keys)%n",
+        traceName, trace.length, CacheTraces.distinctKeys(trace));
+    run(trace, maximumSizes, concurrencyLevels, System.out);
+  }
+}
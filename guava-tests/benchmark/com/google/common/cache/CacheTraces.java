@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.io.CharSink;
+import com.google.common.io.CharSource;
+import com.google.common.io.LineProcessor;
+import com.google.common.primitives.Longs;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Key-access traces for replaying through caches by {@link CacheSimulator}. A trace is an array of
+ * keys in the order in which they are requested.
+ */
+final class CacheTraces {
+  private CacheTraces() {}
+
+  private static final HashFunction KEY_HASH = Hashing.murmur3_128();
+
+  /**
+   * Returns {@code length} keys drawn from {@code distinctKeys} keys whose popularity follows a Zipf
+   * distribution: the key of rank {@code k} is requested in proportion to {@code 1 / k^exponent}.
+   * Higher exponents concentrate the requests on fewer keys.
+   */
+  static long[] zipf(int length, int distinctKeys, double exponent, long seed) {
+    checkArgument(distinctKeys > 0);
+    double[] cumulative = new double[distinctKeys];
+    double sum = 0;
+    for (int k = 0; k < distinctKeys; k++) {
+      sum += 1.0 / Math.pow(k + 1, exponent);
+      cumulative[k] = sum;
+    }
+
+    Random random = new Random(seed);
+    long[] trace = new long[length];
+    for (int i = 0; i < length; i++) {
+      int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+      trace[i] = (index >= 0) ? index : Math.min(-index - 1, distinctKeys - 1);
+    }
+    return trace;
+  }
+
+  /**
+   * Returns a Zipf trace as by {@link #zipf}, interrupted every {@code scanInterval} requests by a
+   * scan of {@code scanLength} keys which are requested only once, as by a batch job or a crawler.
+   * Such scans flush a cache which retains the most recently used keys.
+   */
+  static long[] scanMixed(int length, int distinctKeys, double exponent, int scanLength,
+      int scanInterval, long seed) {
+    checkArgument(scanLength >= 0);
+    checkArgument(scanInterval > 0);
+    long[] trace = zipf(length, distinctKeys, exponent, seed);
+    long scanKey = distinctKeys;
+    for (int start = scanInterval; start < length; start += scanInterval + scanLength) {
+      for (int i = start; i < Math.min(start + scanLength, length); i++) {
+        trace[i] = scanKey++;
+      }
+    }
+    return trace;
+  }
+
+  /**
+   * Reads a trace with one key per line. Lines which are decimal integers are used as keys
+   * directly, and other lines are hashed to a key; blank lines and lines starting with {@code #}
+   * are ignored.
+   */
+  static long[] read(CharSource source) throws IOException {
+    return source.readLines(new LineProcessor<long[]>() {
+      long[] trace = new long[1024];
+      int length;
+
+      @Override
+      public boolean processLine(String line) {
+        String key = CharMatcher.WHITESPACE.trimFrom(line);
+        if (key.isEmpty() || key.startsWith("#")) {
+          return true;
+        }
+        if (length == trace.length) {
+          trace = Arrays.copyOf(trace, 2 * length);
+        }
+        Long number = Longs.tryParse(key);
+        trace[length++] = (number != null)
+            ? number
+            : KEY_HASH.hashUnencodedChars(key).asLong();
+        return true;
+      }
+
+      @Override
+      public long[] getResult() {
+        return Arrays.copyOf(trace, length);
+      }
+    });
+  }
+
+  /** Writes {@code trace} to {@code sink} in the format read by {@link #read}. */
+  static void write(long[] trace, CharSink sink) throws IOException {
+    Writer out = sink.openBufferedStream();
+    try {
+      for (long key : trace) {
+        out.write(Long.toString(key));
+        out.write('\n');
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  /** Returns the number of distinct keys in {@code trace}. */
+  static int distinctKeys(long[] trace) {
+    long[] sorted = trace.clone();
+    Arrays.sort(sorted);
+    int distinct = 0;
+    for (int i = 0; i < sorted.length; i++) {
+      if (i == 0 || sorted[i] != sorted[i - 1]) {
+        distinct++;
+      }
+    }
+    return distinct;
+  }
+}
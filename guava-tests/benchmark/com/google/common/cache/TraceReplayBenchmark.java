@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.cache;
+
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+
+/**
+ * Benchmark for replaying the traces of {@link CacheTraces} through a {@link LoadingCache}. See
+ * {@link CacheSimulator} for the hit rate and evictions of each configuration, and for replaying
+ * traces recorded to files.
+ */
+public class TraceReplayBenchmark {
+  enum Trace {
+    ZIPF {
+      @Override long[] create() {
+        return CacheTraces.zipf(LENGTH, DISTINCT_KEYS, 0.9, 1);
+      }
+    },
+    SCAN {
+      @Override long[] create() {
+        return CacheTraces.scanMixed(LENGTH, DISTINCT_KEYS, 0.9, 2000, 5000, 1);
+      }
+    };
+
+    static final int LENGTH = 100000;
+    static final int DISTINCT_KEYS = 10000;
+
+    abstract long[] create();
+  }
+
+  @Param Trace trace;
+  @Param({"500", "2000"}) int maximumSize;
+  @Param({"1", "4", "16"}) int concurrencyLevel;
+  @Param({"false", "true"}) boolean admitByFrequency;
+
+  long[] keys;
+  LoadingCache<Long, Long> cache;
+  int position;
+
+  @BeforeExperiment void setUp() {
+    keys = trace.create();
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+        .maximumSize(maximumSize)
+        .concurrencyLevel(concurrencyLevel);
+    if (admitByFrequency) {
+      builder.admitByFrequency();
+    }
+    cache = builder.build(
+        new CacheLoader<Long, Long>() {
+          @Override public Long load(Long key) {
+            return key;
+          }
+        });
+  }
+
+  @Benchmark long replay(int reps) {
+    long dummy = 0;
+    for (int i = 0; i < reps; i++) {
+      dummy += cache.getUnchecked(keys[position]);
+      if (++position == keys.length) {
+        position = 0;
+      }
+    }
+    return dummy;
+  }
+}
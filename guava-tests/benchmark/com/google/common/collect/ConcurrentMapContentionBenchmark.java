@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.caliper.AfterExperiment;
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Multi-threaded benchmark for the concurrent maps built by {@link CacheBuilder} and {@link
+ * MapMaker}, and for {@link ConcurrentHashMultiset}, under a mix of reads, writes and misses whose
+ * keys may be skewed towards a few popular ones. Each thread performs {@code reps} operations, so
+ * the time per rep reported by Caliper is the time per operation of a single thread.
+ *
+ * <p>Running {@link #main} instead scales the number of threads from one up to the number of
+ * available processors, for each implementation and concurrency level, and prints the total
+ * throughput of each run, which is what is needed to choose a {@code concurrencyLevel}.
+ */
+public class ConcurrentMapContentionBenchmark {
+  @Param({"1", "2", "4", "8"}) int threads;
+  @Param({"1", "4", "16"}) int concurrencyLevel;
+  @Param Impl impl;
+
+  /** The number of keys which are present. */
+  @Param("10000") int size;
+
+  /** The percentage of operations which are reads; the others are writes of present keys. */
+  @Param({"75", "95"}) int readPercent;
+
+  /** The percentage of reads which request an absent key. */
+  @Param("10") int missPercent;
+
+  /** The Zipf exponent of the key popularity, where zero means that keys are uniformly popular. */
+  @Param({"0", "0.99"}) double skew;
+
+  private Target target;
+  private Workload workload;
+  private ExecutorService threadPool;
+
+  @BeforeExperiment void setUp() {
+    target = impl.create(concurrencyLevel, size);
+    workload = new Workload(size, readPercent, missPercent, skew);
+    workload.populate(target);
+    threadPool =
+        Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setDaemon(true).build());
+  }
+
+  @AfterExperiment void tearDown() {
+    threadPool.shutdown();
+  }
+
+  @Benchmark long run(final int reps) throws InterruptedException, ExecutionException {
+    List<Future<Long>> futures = Lists.newArrayListWithCapacity(threads);
+    for (int i = 0; i < threads; i++) {
+      final int thread = i;
+      futures.add(threadPool.submit(new Callable<Long>() {
+        @Override public Long call() {
+          return workload.run(target, thread, reps);
+        }
+      }));
+    }
+    long total = 0;
+    for (Future<Long> future : futures) {
+      total += future.get();
+    }
+    return total;
+  }
+
+  /** The operations of the benchmark, as implemented by one of the structures under test. */
+  abstract static class Target {
+    /** Returns whether {@code key} was found. */
+    abstract boolean read(Integer key);
+
+    abstract void write(Integer key);
+  }
+
+  static final class MapTarget extends Target {
+    final ConcurrentMap<Integer, Integer> map;
+
+    MapTarget(ConcurrentMap<Integer, Integer> map) {
+      this.map = map;
+    }
+
+    @Override boolean read(Integer key) {
+      return map.get(key) != null;
+    }
+
+    @Override void write(Integer key) {
+      map.put(key, key);
+    }
+  }
+
+  enum Impl {
+    LOCAL_CACHE {
+      @Override Target create(int concurrencyLevel, int size) {
+        return new MapTarget(CacheBuilder.newBuilder()
+            .concurrencyLevel(concurrencyLevel)
+            .<Integer, Integer>build()
+            .asMap());
+      }
+    },
+    LOCAL_CACHE_BOUNDED {
+      @Override Target create(int concurrencyLevel, int size) {
+        return new MapTarget(CacheBuilder.newBuilder()
+            .concurrencyLevel(concurrencyLevel)
+            .maximumSize(size)
+            .<Integer, Integer>build()
+            .asMap());
+      }
+    },
+    MAP_MAKER_INTERNAL_MAP {
+      @Override Target create(int concurrencyLevel, int size) {
+        return new MapTarget(new MapMakerInternalMap<Integer, Integer>(
+            new MapMaker().concurrencyLevel(concurrencyLevel)));
+      }
+    },
+    CONCURRENT_HASH_MAP {
+      @Override Target create(int concurrencyLevel, int size) {
+        return new MapTarget(
+            new ConcurrentHashMap<Integer, Integer>(16, 0.75f, concurrencyLevel));
+      }
+    },
+    CONCURRENT_HASH_MULTISET {
+      @Override Target create(int concurrencyLevel, int size) {
+        final ConcurrentHashMultiset<Integer> multiset = ConcurrentHashMultiset.create(
+            new MapMaker().concurrencyLevel(concurrencyLevel));
+        return new Target() {
+          @Override boolean read(Integer key) {
+            return multiset.count(key) != 0;
+          }
+
+          @Override void write(Integer key) {
+            multiset.add(key);
+          }
+        };
+      }
+    };
+
+    abstract Target create(int concurrencyLevel, int size);
+  }
+
+  /**
+   * A sequence of operations which the threads replay, each starting at its own offset. The keys
+   * are boxed in advance, so that the operations themselves do not allocate.
+   */
+  static final class Workload {
+    static final int LENGTH = 1 << 16;
+
+    final int size;
+    final boolean[] reads = new boolean[LENGTH];
+    final Integer[] keys = new Integer[LENGTH];
+
+    Workload(int size, int readPercent, int missPercent, double skew) {
+      checkArgument(size > 0);
+      checkArgument(readPercent >= 0 && readPercent <= 100);
+      checkArgument(missPercent >= 0 && missPercent <= 100);
+      checkArgument(skew >= 0);
+      this.size = size;
+
+      // the cumulative popularity of the present keys, ranked from the most popular
+      double[] cumulative = new double[size];
+      double sum = 0;
+      for (int k = 0; k < size; k++) {
+        sum += Math.pow(k + 1, -skew);
+        cumulative[k] = sum;
+      }
+
+      Random random = new Random(1);
+      for (int i = 0; i < LENGTH; i++) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+        int key = (index >= 0) ? index : Math.min(-index - 1, size - 1);
+        reads[i] = random.nextInt(100) < readPercent;
+        if (reads[i] && random.nextInt(100) < missPercent) {
+          // absent keys are never written
+          key += size;
+        }
+        keys[i] = key;
+      }
+    }
+
+    void populate(Target target) {
+      for (int key = 0; key < size; key++) {
+        target.write(key);
+      }
+    }
+
+    long run(Target target, int thread, long operations) {
+      long found = 0;
+      int i = (thread * 7919) & (LENGTH - 1);
+      for (long n = 0; n < operations; n++) {
+        Integer key = keys[i];
+        if (reads[i]) {
+          if (target.read(key)) {
+            found++;
+          }
+        } else {
+          target.write(key);
+        }
+        i = (i + 1) & (LENGTH - 1);
+      }
+      return found;
+    }
+  }
+
+  static final long RUN_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+  /**
+   * Runs {@code threads} threads over {@code target} for about {@link #RUN_NANOS}, and returns the
+   * number of operations which they performed in total per second.
+   */
+  static double throughput(final Target target, final Workload workload, int threads)
+      throws InterruptedException, ExecutionException {
+    ExecutorService threadPool =
+        Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setDaemon(true).build());
+    try {
+      final CountDownLatch start = new CountDownLatch(1);
+      final long[] deadline = new long[1];
+      List<Future<Long>> futures = Lists.newArrayListWithCapacity(threads);
+      for (int i = 0; i < threads; i++) {
+        final int thread = i;
+        futures.add(threadPool.submit(new Callable<Long>() {
+          @Override public Long call() throws InterruptedException {
+            start.await();
+            long operations = 0;
+            while (System.nanoTime() - deadline[0] < 0) {
+              workload.run(target, thread, 1024);
+              operations += 1024;
+            }
+            return operations;
+          }
+        }));
+      }
+      long startNanos = System.nanoTime();
+      deadline[0] = startNanos + RUN_NANOS;
+      start.countDown();
+      long operations = 0;
+      for (Future<Long> future : futures) {
+        operations += future.get();
+      }
+      return operations * 1e9 / (System.nanoTime() - startNanos);
+    } finally {
+      threadPool.shutdown();
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    int readPercent = (args.length > 0) ? Integer.parseInt(args[0]) : 95;
+    int missPercent = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+    double skew = (args.length > 2) ? Double.parseDouble(args[2]) : 0.99;
+    int size = 10000;
+    int cores = Runtime.getRuntime().availableProcessors();
+    Workload workload = new Workload(size, readPercent, missPercent, skew);
+
+    System.out.printf("reads: %d%%, misses: %d%% of reads, skew: %s, cores: %d%n",
+        readPercent, missPercent, skew, cores);
+    System.out.printf("%-24s %12s %8s %14s%n", "impl", "concurrency", "threads", "ops/s");
+    for (Impl impl : Impl.values()) {
+      for (int concurrencyLevel : new int[] {1, 4, 16, 64}) {
+        for (int threads = 1; ; threads = Math.min(2 * threads, cores)) {
+          Target target = impl.create(concurrencyLevel, size);
+          workload.populate(target);
+          System.out.printf("%-24s %12d %8d %14.0f%n",
+              impl, concurrencyLevel, threads, throughput(target, workload, threads));
+          if (threads == cores) {
+            break;
+          }
+        }
+      }
+    }
+  }
+}
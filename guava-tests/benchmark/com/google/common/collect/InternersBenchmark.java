@@ -24,6 +24,15 @@ import com.google.caliper.Benchmark;
  * @author Dimitris Andreou
  */
 public class InternersBenchmark {
+  private static final int MAXIMUM_SIZE = 1 << 20;
+  private static final StringBuilder[] TOKENS = new StringBuilder[1 << 12];
+
+  static {
+    for (int i = 0; i < TOKENS.length; i++) {
+      TOKENS[i] = new StringBuilder("token").append(i);
+    }
+  }
+
   @Benchmark int weakInterner(int reps) {
     Interner<String> interner = Interners.newWeakInterner();
     for (int i = 0; i < reps; i++) {
@@ -40,6 +49,41 @@ public class InternersBenchmark {
     return reps;
   }
   
+  @Benchmark int stringInterner(int reps) {
+    StringInterner interner = Interners.newStringInterner(MAXIMUM_SIZE);
+    for (int i = 0; i < reps; i++) {
+      interner.intern(Double.toHexString(Math.random()));
+    }
+    return reps;
+  }
+
+  @Benchmark int stringInternerFromCharSequence(int reps) {
+    StringInterner interner = Interners.newStringInterner(MAXIMUM_SIZE);
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < reps; i++) {
+      builder.setLength(0);
+      interner.intern(builder.append(Math.random()));
+    }
+    return reps;
+  }
+
+  /** Interns a small vocabulary of repeated tokens, as when parsing text. */
+  @Benchmark int weakInternerRepeated(int reps) {
+    Interner<String> interner = Interners.newWeakInterner();
+    for (int i = 0; i < reps; i++) {
+      interner.intern(TOKENS[i & (TOKENS.length - 1)].toString());
+    }
+    return reps;
+  }
+
+  @Benchmark int stringInternerRepeated(int reps) {
+    StringInterner interner = Interners.newStringInterner(MAXIMUM_SIZE);
+    for (int i = 0; i < reps; i++) {
+      interner.intern(TOKENS[i & (TOKENS.length - 1)]);
+    }
+    return reps;
+  }
+
   @SuppressWarnings("ReturnValueIgnored")
   @Benchmark int stringIntern(int reps) {
     for (int i = 0; i < reps; i++) {
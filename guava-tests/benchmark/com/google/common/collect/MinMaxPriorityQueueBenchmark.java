@@ -16,6 +16,7 @@
 
 package com.google.common.collect;
 
+import com.google.caliper.AfterExperiment;
 import com.google.caliper.BeforeExperiment;
 import com.google.caliper.Benchmark;
 import com.google.caliper.Param;
@@ -26,16 +27,25 @@ import com.google.common.collect.Ordering;
 
 import java.math.BigInteger;
 import java.util.Comparator;
+import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
- * Benchmarks to compare performance of MinMaxPriorityQueue and PriorityQueue.
- * 
+ * Benchmarks to compare performance of MinMaxPriorityQueue and PriorityQueue,
+ * and, polled by several threads at once, of ConcurrentMinMaxPriorityQueue and
+ * the others wrapped in a lock.
+ *
  * @author Sverre Sundsdal
  */
 public class MinMaxPriorityQueueBenchmark {
+  private static final int THREADS = 4;
+
   @Param private ComparatorType comparator;
 
   // TODO(kevinb): add 1000000 back when we have the ability to throw
@@ -48,12 +58,21 @@ public class MinMaxPriorityQueueBenchmark {
 
   private final Random random = new Random();
 
+  // created by the first run of concurrentPollAndAdd, so that the other benchmarks run alone
+  private ExecutorService executor;
+
   @BeforeExperiment void setUp() {
     queue = heap.create(comparator.get());
     for (int i = 0; i < size; i++) {
       queue.add(random.nextInt());
     }
   }
+
+  @AfterExperiment void tearDown() {
+    if (executor != null) {
+      executor.shutdown();
+    }
+  }
   
   @Benchmark void pollAndAdd(int reps) {
     for (int i = 0; i < reps; i++) {
@@ -62,6 +81,44 @@ public class MinMaxPriorityQueueBenchmark {
     }
   }
 
+  /**
+   * Like {@link #pollAndAdd}, but with the reps shared among several threads.
+   * Queues other than ConcurrentMinMaxPriorityQueue are wrapped in a lock.
+   */
+  @Benchmark int concurrentPollAndAdd(final int reps) throws Exception {
+    final Queue<Integer> shared = (queue instanceof ConcurrentMinMaxPriorityQueue)
+        ? queue
+        : Queues.synchronizedQueue(queue);
+    if (executor == null) {
+      executor = Executors.newFixedThreadPool(THREADS);
+    }
+    List<Future<Integer>> futures = Lists.newArrayList();
+    for (int t = 0; t < THREADS; t++) {
+      final int seed = random.nextInt();
+      futures.add(executor.submit(new Callable<Integer>() {
+        @Override public Integer call() {
+          Random threadRandom = new Random(seed);
+          int dummy = 0;
+          for (int i = 0; i < reps / THREADS; i++) {
+            Integer polled = shared.poll();
+            if (polled == null) {
+              // a relaxed poll may find no element while other threads are between poll and add
+              continue;
+            }
+            dummy += polled;
+            shared.add(polled ^ threadRandom.nextInt());
+          }
+          return dummy;
+        }
+      }));
+    }
+    int dummy = 0;
+    for (Future<Integer> future : futures) {
+      dummy += future.get();
+    }
+    return dummy;
+  }
+
   @Benchmark void populate(int reps) {
     for (int i = 0; i < reps; i++) {
       queue.clear();
@@ -110,6 +167,13 @@ public class MinMaxPriorityQueueBenchmark {
       @Override public Queue<Integer> create(Comparator<Integer> comparator) {
         return new InvertedMinMaxPriorityQueue<Integer>(comparator);
       }
+    },
+    CONCURRENT_MIN_MAX {
+      @Override public Queue<Integer> create(Comparator<Integer> comparator) {
+        return ConcurrentMinMaxPriorityQueue.orderedBy(comparator)
+            .concurrencyLevel(2 * THREADS)
+            .create();
+      }
     };
 
     public abstract Queue<Integer> create(Comparator<Integer> comparator);
@@ -16,6 +16,7 @@ package com.google.common.collect;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+import com.google.caliper.AfterExperiment;
 import com.google.caliper.BeforeExperiment;
 import com.google.caliper.Benchmark;
 import com.google.caliper.Param;
@@ -27,11 +28,13 @@ import java.util.List;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Provides supporting data for performance notes in the documentation of {@link
  * Ordering#sortedCopy} and {@link Ordering#immutableSortedCopy}, as well as for
- * automated code suggestions.
+ * automated code suggestions. Also compares them to their parallel variants.
  *
  */
 public class SortedCopyBenchmark {
@@ -64,6 +67,7 @@ public class SortedCopyBenchmark {
   }
 
   private ImmutableList<Integer> input;
+  private ExecutorService executor;
 
   @BeforeExperiment
   void setUp() {
@@ -77,6 +81,12 @@ public class SortedCopyBenchmark {
     List<Integer> list = new ArrayList<Integer>(set);
     inputOrder.arrange(list);
     input = ImmutableList.copyOf(list);
+    executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+  }
+
+  @AfterExperiment
+  void tearDown() {
+    executor.shutdown();
   }
 
   @Benchmark
@@ -114,6 +124,21 @@ public class SortedCopyBenchmark {
     return dummy;
   }
 
+  @Benchmark
+  int parallelOrdering(int reps) {
+    int dummy = 0;
+    if (mutable) {
+      for (int i = 0; i < reps; i++) {
+        dummy += ORDERING.parallelSortedCopy(input, executor).get(0);
+      }
+    } else {
+      for (int i = 0; i < reps; i++) {
+        dummy += ORDERING.parallelImmutableSortedCopy(input, executor).get(0);
+      }
+    }
+    return dummy;
+  }
+
   @Benchmark
   int sortedSet(int reps) {
     int dummy = 0;
@@ -129,5 +154,14 @@ public class SortedCopyBenchmark {
     return dummy;
   }
 
+  @Benchmark
+  int parallelSortedSet(int reps) {
+    int dummy = 0;
+    for (int i = 0; i < reps; i++) {
+      dummy += ImmutableSortedSet.parallelCopyOf(ORDERING, input, executor).first();
+    }
+    return dummy;
+  }
+
   private static final Ordering<Integer> ORDERING = Ordering.natural();
 }
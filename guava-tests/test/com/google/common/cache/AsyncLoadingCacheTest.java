@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.cache.TestingCacheLoaders.constantLoader;
+import static com.google.common.cache.TestingCacheLoaders.exceptionLoader;
+import static com.google.common.cache.TestingCacheLoaders.identityLoader;
+import static java.util.Arrays.asList;
+
+import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
+import com.google.common.cache.TestingCacheLoaders.CountingLoader;
+import com.google.common.cache.TestingCacheLoaders.IdentityLoader;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Tests for {@link AsyncLoadingCache}.
+ */
+public class AsyncLoadingCacheTest extends TestCase {
+  final List<Runnable> tasks = Lists.newArrayList();
+  final Executor executor = new Executor() {
+    @Override
+    public void execute(Runnable task) {
+      tasks.add(task);
+    }
+  };
+
+  void runTasks() {
+    while (!tasks.isEmpty()) {
+      tasks.remove(0).run();
+    }
+  }
+
+  public void testGet_loadsOnExecutor() throws Exception {
+    IdentityLoader<Integer> loader = identityLoader();
+    AsyncLoadingCache<Integer, Integer> cache = CacheBuilder.newBuilder()
+        .recordStats()
+        .executor(executor)
+        .buildAsync(loader);
+
+    ListenableFuture<Integer> future = cache.get(1);
+    assertFalse(future.isDone());
+    assertTrue(cache.synchronous().asMap().isEmpty());
+
+    runTasks();
+    assertEquals(1, (int) future.get());
+    assertEquals(ImmutableMap.of(1, 1), cache.synchronous().asMap());
+
+    // a hit is done immediately
+    future = cache.get(1);
+    assertTrue(future.isDone());
+    assertEquals(1, (int) future.get());
+
+    CacheStats stats = cache.synchronous().stats();
+    assertEquals(1, stats.missCount());
+    assertEquals(1, stats.loadSuccessCount());
+    assertEquals(1, stats.hitCount());
+  }
+
+  public void testGet_withoutExecutor() throws Exception {
+    IdentityLoader<Integer> loader = identityLoader();
+    AsyncLoadingCache<Integer, Integer> cache = CacheBuilder.newBuilder().buildAsync(loader);
+
+    ListenableFuture<Integer> future = cache.get(1);
+    assertTrue(future.isDone());
+    assertEquals(1, (int) future.get());
+    assertEquals(ImmutableMap.of(1, 1), cache.synchronous().asMap());
+  }
+
+  public void testGet_sharesPendingLoad() throws Exception {
+    CountingLoader loader = new CountingLoader();
+    AsyncLoadingCache<Object, Object> cache = CacheBuilder.newBuilder()
+        .executor(executor)
+        .buildAsync(loader);
+
+    Object key = new Object();
+    ListenableFuture<Object> first = cache.get(key);
+    ListenableFuture<Object> second = cache.get(key);
+    assertFalse(first.isDone());
+    assertFalse(second.isDone());
+
+    runTasks();
+    assertEquals(1, loader.getCount());
+    assertSame(first.get(), second.get());
+    assertSame(first.get(), cache.get(key).get());
+  }
+
+  public void testGet_exception() throws Exception {
+    RuntimeException e = new RuntimeException();
+    AsyncLoadingCache<Object, Object> cache = CacheBuilder.newBuilder()
+        .recordStats()
+        .executor(executor)
+        .buildAsync(exceptionLoader(e));
+
+    ListenableFuture<Object> future = cache.get(1);
+    runTasks();
+    try {
+      future.get();
+      fail();
+    } catch (ExecutionException expected) {
+      assertSame(e, expected.getCause());
+    }
+    assertTrue(cache.synchronous().asMap().isEmpty());
+    assertNull(cache.getIfPresent(1));
+    assertEquals(1, cache.synchronous().stats().loadExceptionCount());
+  }
+
+  public void testGet_null() throws Exception {
+    AsyncLoadingCache<Object, Object> cache = CacheBuilder.newBuilder()
+        .executor(executor)
+        .buildAsync(constantLoader(null));
+
+    ListenableFuture<Object> future = cache.get(1);
+    runTasks();
+    try {
+      future.get();
+      fail();
+    } catch (ExecutionException expected) {
+      assertTrue(expected.getCause() instanceof InvalidCacheLoadException);
+    }
+    assertTrue(cache.synchronous().asMap().isEmpty());
+  }
+
+  public void testGetIfPresent() throws Exception {
+    IdentityLoader<Integer> loader = identityLoader();
+    AsyncLoadingCache<Integer, Integer> cache = CacheBuilder.newBuilder()
+        .executor(executor)
+        .buildAsync(loader);
+
+    assertNull(cache.getIfPresent(1));
+
+    ListenableFuture<Integer> future = cache.get(1);
+    ListenableFuture<Integer> pending = cache.getIfPresent(1);
+    assertNotNull(pending);
+    assertFalse(pending.isDone());
+
+    runTasks();
+    assertEquals(1, (int) pending.get());
+    assertEquals(1, (int) future.get());
+    assertEquals(1, (int) cache.getIfPresent(1).get());
+  }
+
+  public void testGetAll() throws Exception {
+    IdentityLoader<Integer> loader = identityLoader();
+    AsyncLoadingCache<Integer, Integer> cache = CacheBuilder.newBuilder()
+        .executor(executor)
+        .buildAsync(loader);
+
+    cache.synchronous().put(2, 2);
+    ListenableFuture<ImmutableMap<Integer, Integer>> future = cache.getAll(asList(3, 2, 1, 3));
+    assertFalse(future.isDone());
+
+    runTasks();
+    assertEquals(ImmutableMap.of(3, 3, 2, 2, 1, 1), future.get());
+    assertEquals(asList(3, 2, 1), future.get().keySet().asList());
+  }
+
+  public void testSynchronous() throws Exception {
+    IdentityLoader<Integer> loader = identityLoader();
+    AsyncLoadingCache<Integer, Integer> cache = CacheBuilder.newBuilder()
+        .executor(executor)
+        .buildAsync(loader);
+
+    LoadingCache<Integer, Integer> synchronous = cache.synchronous();
+    assertSame(synchronous, cache.synchronous());
+    assertEquals(1, (int) synchronous.get(1));
+    assertEquals(1, (int) cache.get(1).get());
+
+    synchronous.invalidate(1);
+    assertNull(cache.getIfPresent(1));
+  }
+}
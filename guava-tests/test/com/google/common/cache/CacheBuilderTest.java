@@ -34,6 +34,7 @@ import com.google.common.cache.TestingRemovalListeners.QueuingRemovalListener;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.testing.NullPointerTester;
+import com.google.common.util.concurrent.MoreExecutors;
 
 import junit.framework.TestCase;
 
@@ -41,6 +42,7 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -232,6 +234,79 @@ public class CacheBuilderTest extends TestCase {
     } catch (IllegalStateException expected) {}
   }
 
+  @GwtIncompatible("offHeapValues")
+  public void testOffHeapValues_withoutMaximumWeight() {
+    CacheBuilder<Object, byte[]> builder = CacheBuilder.newBuilder()
+        .offHeapValues(OffHeapStoreTest.BYTES);
+    try {
+      builder.build();
+      fail();
+    } catch (IllegalStateException expected) {}
+    // no weigher is needed
+    builder.maximumWeight(1024).build();
+  }
+
+  @GwtIncompatible("offHeapValues")
+  public void testOffHeapValues_incompatible() {
+    try {
+      CacheBuilder.newBuilder().weigher(constantWeigher(42)).offHeapValues(OffHeapStoreTest.BYTES);
+      fail();
+    } catch (IllegalStateException expected) {}
+    try {
+      CacheBuilder.newBuilder().maximumSize(1).offHeapValues(OffHeapStoreTest.BYTES);
+      fail();
+    } catch (IllegalStateException expected) {}
+    try {
+      CacheBuilder.newBuilder().softValues().offHeapValues(OffHeapStoreTest.BYTES);
+      fail();
+    } catch (IllegalStateException expected) {}
+    CacheBuilder<Object, byte[]> builder = CacheBuilder.newBuilder()
+        .offHeapValues(OffHeapStoreTest.BYTES);
+    try {
+      builder.offHeapValues(OffHeapStoreTest.BYTES);
+      fail();
+    } catch (IllegalStateException expected) {}
+    try {
+      builder.weakValues();
+      fail();
+    } catch (IllegalStateException expected) {}
+    try {
+      builder.maximumSize(1);
+      fail();
+    } catch (IllegalStateException expected) {}
+  }
+
+  @GwtIncompatible("admitByFrequency")
+  public void testAdmitByFrequency_withoutMaximum() {
+    CacheBuilder<Object, Object> builder = new CacheBuilder<Object, Object>()
+        .admitByFrequency();
+    try {
+      builder.build(identityLoader());
+      fail();
+    } catch (IllegalStateException expected) {}
+  }
+
+  @GwtIncompatible("admitByFrequency")
+  public void testAdmitByFrequency_setTwice() {
+    CacheBuilder<Object, Object> builder = new CacheBuilder<Object, Object>()
+        .maximumSize(16)
+        .admitByFrequency();
+    try {
+      builder.admitByFrequency();
+      fail();
+    } catch (IllegalStateException expected) {}
+  }
+
+  @GwtIncompatible("recordDiagnostics")
+  public void testRecordDiagnostics_setTwice() {
+    CacheBuilder<Object, Object> builder = new CacheBuilder<Object, Object>()
+        .recordDiagnostics();
+    try {
+      builder.recordDiagnostics();
+      fail();
+    } catch (IllegalStateException expected) {}
+  }
+
   @GwtIncompatible("weakKeys")
   public void testKeyStrengthSetTwice() {
     CacheBuilder<Object, Object> builder1 = new CacheBuilder<Object, Object>().weakKeys();
@@ -322,6 +397,48 @@ public class CacheBuilderTest extends TestCase {
     // well, it didn't blow up.
   }
 
+  @GwtIncompatible("expireAfter")
+  public void testExpireAfter_setTwice() {
+    Expiry<Object, Object> expiry = new Expiry<Object, Object>() {
+      @Override
+      public long expireAfterCreate(Object key, Object value, long currentTime) {
+        return 1;
+      }
+    };
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().expireAfter(expiry);
+    try {
+      builder.expireAfter(expiry);
+      fail();
+    } catch (IllegalStateException expected) {}
+  }
+
+  @GwtIncompatible("expireAfter")
+  public void testExpireAfter_withFixedExpiration() {
+    Expiry<Object, Object> expiry = new Expiry<Object, Object>() {
+      @Override
+      public long expireAfterCreate(Object key, Object value, long currentTime) {
+        return 1;
+      }
+    };
+    try {
+      CacheBuilder.newBuilder().expireAfterWrite(1, SECONDS).expireAfter(expiry);
+      fail();
+    } catch (IllegalStateException expected) {}
+    try {
+      CacheBuilder.newBuilder().expireAfterAccess(1, SECONDS).expireAfter(expiry);
+      fail();
+    } catch (IllegalStateException expected) {}
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().expireAfter(expiry);
+    try {
+      builder.expireAfterWrite(1, SECONDS);
+      fail();
+    } catch (IllegalStateException expected) {}
+    try {
+      builder.expireAfterAccess(1, SECONDS);
+      fail();
+    } catch (IllegalStateException expected) {}
+  }
+
   @GwtIncompatible("refreshAfterWrite")
   public void testRefresh_zero() {
     CacheBuilder<Object, Object> builder = new CacheBuilder<Object, Object>();
@@ -353,6 +470,58 @@ public class CacheBuilderTest extends TestCase {
     } catch (IllegalStateException expected) {}
   }
 
+  @GwtIncompatible("buildAsync")
+  public void testBuildAsync_nullLoader() {
+    try {
+      CacheBuilder.newBuilder().buildAsync(null);
+      fail();
+    } catch (NullPointerException expected) {}
+  }
+
+  @GwtIncompatible("batchLoads")
+  public void testBatchLoads_setTwice() {
+    CacheBuilder<Object, Object> builder =
+        new CacheBuilder<Object, Object>().batchLoads(10, 1, SECONDS);
+    try {
+      builder.batchLoads(10, 1, SECONDS);
+      fail();
+    } catch (IllegalStateException expected) {}
+  }
+
+  @GwtIncompatible("batchLoads")
+  public void testBatchLoads_invalid() {
+    CacheBuilder<Object, Object> builder = new CacheBuilder<Object, Object>();
+    try {
+      builder.batchLoads(0, 1, SECONDS);
+      fail();
+    } catch (IllegalArgumentException expected) {}
+    try {
+      builder.batchLoads(10, -1, SECONDS);
+      fail();
+    } catch (IllegalArgumentException expected) {}
+  }
+
+  @GwtIncompatible("batchLoads")
+  public void testBatchLoads_nonLoadingCache() {
+    CacheBuilder<Object, Object> builder =
+        new CacheBuilder<Object, Object>().batchLoads(10, 1, SECONDS);
+    try {
+      builder.build();
+      fail();
+    } catch (IllegalStateException expected) {}
+  }
+
+  @GwtIncompatible("executor")
+  public void testExecutor_setTwice() {
+    Executor executor = MoreExecutors.directExecutor();
+    CacheBuilder<Object, Object> builder = new CacheBuilder<Object, Object>().executor(executor);
+    try {
+      // even to the same instance is not allowed
+      builder.executor(executor);
+      fail();
+    } catch (IllegalStateException expected) {}
+  }
+
   public void testRemovalListener_setTwice() {
     RemovalListener<Object, Object> testListener = nullRemovalListener();
     CacheBuilder<Object, Object> builder =
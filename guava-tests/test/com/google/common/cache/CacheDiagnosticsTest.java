@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.cache.CacheDiagnostics.SegmentDiagnostics;
+import com.google.common.collect.ImmutableMultiset;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Unit tests for {@link CacheDiagnostics}.
+ */
+public class CacheDiagnosticsTest extends TestCase {
+
+  public void testSegments() {
+    Cache<Integer, String> cache = CacheBuilder.newBuilder()
+        .concurrencyLevel(4)
+        .maximumWeight(1000)
+        .weigher(new Weigher<Integer, String>() {
+          @Override public int weigh(Integer key, String value) {
+            return value.length();
+          }
+        })
+        .build();
+    for (int i = 0; i < 100; i++) {
+      cache.put(i, Integer.toString(i));
+    }
+    cache.invalidate(0);
+
+    CacheDiagnostics<Integer> diagnostics = CacheDiagnostics.snapshot(cache);
+    assertEquals(4, diagnostics.segments().size());
+    int count = 0;
+    long totalWeight = 0;
+    int modCount = 0;
+    for (SegmentDiagnostics<Integer> segment : diagnostics.segments()) {
+      count += segment.count();
+      totalWeight += segment.totalWeight();
+      modCount += segment.modCount();
+      assertEquals(0, segment.lockAcquisitions());
+      assertEquals(0, segment.lockHoldNanos());
+      assertTrue(segment.hotKeys().isEmpty());
+    }
+    assertEquals(99, count);
+    assertEquals(9 + 90 * 2, totalWeight);
+    assertEquals(101, modCount);
+    assertTrue(diagnostics.hotKeys().isEmpty());
+  }
+
+  public void testHotKeys() {
+    Cache<Integer, Integer> cache = CacheBuilder.newBuilder()
+        .concurrencyLevel(1)
+        .maximumSize(1000)
+        .recordDiagnostics()
+        .build();
+    for (int i = 0; i < 100; i++) {
+      cache.put(i, i);
+    }
+    for (int i = 0; i < 50; i++) {
+      cache.getIfPresent(7);
+      cache.getIfPresent(7);
+      cache.getIfPresent(3);
+      cache.getIfPresent(i);
+    }
+    cache.cleanUp();
+
+    ImmutableMultiset<Integer> hotKeys = CacheDiagnostics.snapshot(cache).hotKeys();
+    assertThat(hotKeys.entrySet().size()).isAtMost(SegmentMonitor.HOT_KEYS);
+    assertEquals(Integer.valueOf(7), hotKeys.iterator().next());
+    assertThat(hotKeys.count(7)).isGreaterThan(hotKeys.count(3));
+    assertThat(hotKeys.count(3)).isGreaterThan(hotKeys.count(40));
+  }
+
+  public void testHotKeys_unsampled() {
+    Cache<Integer, Integer> cache = CacheBuilder.newBuilder()
+        .maximumSize(1000)
+        .weakKeys()
+        .recordDiagnostics()
+        .build();
+    cache.put(1, 1);
+    for (int i = 0; i < 10; i++) {
+      cache.getIfPresent(1);
+    }
+    cache.cleanUp();
+    assertTrue(CacheDiagnostics.snapshot(cache).hotKeys().isEmpty());
+  }
+
+  public void testLockTimes() {
+    Cache<Integer, Integer> cache = CacheBuilder.newBuilder()
+        .concurrencyLevel(1)
+        .recordDiagnostics()
+        .build();
+    for (int i = 0; i < 10; i++) {
+      cache.put(i, i);
+    }
+
+    SegmentDiagnostics<Integer> segment =
+        CacheDiagnostics.snapshot(cache).segments().get(0);
+    assertEquals(10, segment.count());
+    // the snapshot holds the lock while it is taken, so its own acquisition is counted
+    assertEquals(11, segment.lockAcquisitions());
+    assertEquals(0, segment.contendedAcquisitions());
+    assertEquals(0, segment.lockWaitNanos());
+    assertThat(segment.lockHoldNanos()).isAtLeast(0L);
+
+    segment = CacheDiagnostics.snapshot(cache).segments().get(0);
+    assertEquals(12, segment.lockAcquisitions());
+  }
+
+  public void testLockTimes_contended() throws InterruptedException {
+    final Cache<Integer, Integer> cache = CacheBuilder.newBuilder()
+        .concurrencyLevel(1)
+        .recordDiagnostics()
+        .build();
+    LocalCache.Segment<Integer, Integer> segment =
+        ((LocalCache.LocalManualCache<Integer, Integer>) cache).localCache.segments[0];
+    segment.lock();
+    Thread writer = new Thread() {
+      @Override public void run() {
+        cache.put(1, 1);
+      }
+    };
+    try {
+      writer.start();
+      while (!segment.hasQueuedThreads()) {
+        Thread.sleep(1);
+      }
+      Thread.sleep(10);
+    } finally {
+      segment.unlock();
+    }
+    writer.join();
+
+    SegmentDiagnostics<Integer> diagnostics =
+        CacheDiagnostics.snapshot(cache).segments().get(0);
+    assertEquals(1, diagnostics.contendedAcquisitions());
+    assertThat(diagnostics.lockWaitNanos()).isGreaterThan(0L);
+    assertThat(diagnostics.lockHoldNanos()).isGreaterThan(0L);
+  }
+
+  public void testSnapshot_notBuiltByCacheBuilder() {
+    Cache<Object, Object> cache = new AbstractCache<Object, Object>() {
+      final ConcurrentMap<Object, Object> map = new ConcurrentHashMap<Object, Object>();
+
+      @Override public Object getIfPresent(Object key) {
+        return map.get(key);
+      }
+    };
+    try {
+      CacheDiagnostics.snapshot(cache);
+      fail();
+    } catch (IllegalArgumentException expected) {}
+  }
+}
@@ -22,15 +22,22 @@ import static com.google.common.cache.TestingWeighers.intValueWeigher;
 import static com.google.common.truth.Truth.assertThat;
 import static java.util.Arrays.asList;
 
+import com.google.common.base.Suppliers;
+import com.google.common.cache.AbstractCache.StatsCounter;
 import com.google.common.cache.CacheTesting.Receiver;
 import com.google.common.cache.LocalCache.ReferenceEntry;
 import com.google.common.cache.TestingCacheLoaders.IdentityLoader;
 import com.google.common.cache.TestingRemovalListeners.CountingRemovalListener;
+import com.google.common.collect.Lists;
 
 import junit.framework.TestCase;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Tests relating to cache eviction: what does and doesn't count toward maximumSize, what happens
@@ -411,6 +418,220 @@ public class CacheEvictionTest extends TestCase {
     assertThat(keySet).containsExactly(5, 6, 7, 8, 9, 10, 11, 12);
   }
 
+  public void testEviction_executor() {
+    final List<Runnable> tasks = Lists.newArrayList();
+    Executor executor = new Executor() {
+      @Override
+      public void execute(Runnable task) {
+        tasks.add(task);
+      }
+    };
+    CountingRemovalListener<Integer, Integer> removalListener = countingRemovalListener();
+    IdentityLoader<Integer> loader = identityLoader();
+    LoadingCache<Integer, Integer> cache = CacheBuilder.newBuilder()
+        .concurrencyLevel(1)
+        .maximumSize(MAX_SIZE)
+        .executor(executor)
+        .removalListener(removalListener)
+        .build(loader);
+
+    // writes past the maximum leave eviction to the executor, up to the size of the write buffer
+    int overflow = LocalCache.WRITE_BUFFER_SIZE - 1;
+    for (int i = 0; i < MAX_SIZE + overflow; i++) {
+      cache.getUnchecked(i);
+    }
+    assertEquals(MAX_SIZE + overflow, cache.size());
+    assertEquals(0, removalListener.getCount());
+    assertEquals(1, tasks.size());
+
+    // the write which fills the buffer evicts, but notifications are still left to the executor
+    cache.getUnchecked(MAX_SIZE + overflow);
+    assertEquals(MAX_SIZE, cache.size());
+    assertEquals(0, removalListener.getCount());
+    assertEquals(1, tasks.size());
+
+    tasks.remove(0).run();
+    assertEquals(overflow + 1, removalListener.getCount());
+    CacheTesting.checkValidState(cache);
+
+    for (int i = 0; i < 10; i++) {
+      cache.getUnchecked(-1 - i);
+    }
+    assertEquals(MAX_SIZE + 10, cache.size());
+    assertEquals(1, tasks.size());
+    tasks.remove(0).run();
+    assertEquals(MAX_SIZE, cache.size());
+    assertEquals(overflow + 11, removalListener.getCount());
+    CacheTesting.checkValidState(cache);
+  }
+
+  public void testEviction_executorRejects() {
+    Executor executor = new Executor() {
+      @Override
+      public void execute(Runnable task) {
+        throw new RejectedExecutionException();
+      }
+    };
+    CountingRemovalListener<Integer, Integer> removalListener = countingRemovalListener();
+    IdentityLoader<Integer> loader = identityLoader();
+    LoadingCache<Integer, Integer> cache = CacheBuilder.newBuilder()
+        .concurrencyLevel(1)
+        .maximumSize(MAX_SIZE)
+        .executor(executor)
+        .removalListener(removalListener)
+        .build(loader);
+
+    // maintenance falls back to the calling thread
+    for (int i = 0; i < 2 * MAX_SIZE; i++) {
+      cache.getUnchecked(i);
+      assertEquals(Math.min(i + 1, MAX_SIZE), cache.size());
+    }
+    assertEquals(MAX_SIZE, removalListener.getCount());
+    CacheTesting.checkValidState(cache);
+  }
+
+  public void testEviction_offHeap() {
+    CountingRemovalListener<Integer, byte[]> removalListener = countingRemovalListener();
+    LoadingCache<Integer, byte[]> cache = CacheBuilder.newBuilder()
+        .concurrencyLevel(1)
+        .offHeapValues(OffHeapStoreTest.BYTES)
+        .maximumWeight(128 * MAX_SIZE)
+        .removalListener(removalListener)
+        .build(new CacheLoader<Integer, byte[]>() {
+          @Override
+          public byte[] load(Integer key) {
+            throw new UnsupportedOperationException();
+          }
+        });
+
+    // each value takes a block of 128 bytes
+    for (int i = 0; i < 10 * MAX_SIZE; i++) {
+      byte[] value = new byte[100];
+      Arrays.fill(value, (byte) i);
+      cache.put(i, value);
+      assertTrue(Arrays.equals(value, cache.getIfPresent(i)));
+      assertEquals(Math.min(i + 1, MAX_SIZE), cache.size());
+    }
+    assertEquals(9 * MAX_SIZE, removalListener.getCount());
+    assertEquals(100, removalListener.getLastEvictedValue().length);
+    CacheTesting.checkValidState(cache);
+
+    // evicted values returned their blocks, which were reused
+    OffHeapStore<byte[]> store = CacheTesting.toLocalCache(cache).segments[0].offHeapStore;
+    assertEquals(16384, store.slabSize);
+    assertEquals(1, store.slabs.size());
+  }
+
+  public void testEviction_admitByFrequency_scanResistant() {
+    IdentityLoader<Integer> loader = identityLoader();
+    LoadingCache<Integer, Integer> cache = CacheBuilder.newBuilder()
+        .concurrencyLevel(1)
+        .maximumSize(MAX_SIZE)
+        .admitByFrequency()
+        .recordStats()
+        .build(loader);
+
+    // make half of the cache hot
+    for (int round = 0; round < 5; round++) {
+      for (int i = 0; i < MAX_SIZE / 2; i++) {
+        cache.getUnchecked(i);
+      }
+    }
+
+    // a scan of keys which are each only accessed once doesn't displace the hot keys
+    for (int i = 1000; i < 1000 + 10 * MAX_SIZE; i++) {
+      cache.getUnchecked(i);
+    }
+    CacheTesting.drainRecencyQueues(cache);
+
+    for (int i = 0; i < MAX_SIZE / 2; i++) {
+      assertTrue(cache.asMap().containsKey(i));
+    }
+    assertEquals(MAX_SIZE, cache.size());
+    assertTrue(cache.stats().admissionRejectionCount() > 0);
+    assertEquals(10 * MAX_SIZE - MAX_SIZE / 2, cache.stats().evictionCount());
+    CacheTesting.checkValidState(cache);
+  }
+
+  public void testEviction_admitByFrequency_admitsPopular() {
+    CountingRemovalListener<Integer, Integer> removalListener = countingRemovalListener();
+    IdentityLoader<Integer> loader = identityLoader();
+    LoadingCache<Integer, Integer> cache = CacheBuilder.newBuilder()
+        .concurrencyLevel(1)
+        .maximumSize(MAX_SIZE)
+        .admitByFrequency()
+        .removalListener(removalListener)
+        .recordStats()
+        .build(loader);
+    CacheTesting.warmUp(cache, 0, MAX_SIZE);
+    assertEquals(0, cache.stats().admissionRejectionCount());
+
+    // the newest entry is retained in the admission window, and can become popular there
+    for (int i = 0; i < 5; i++) {
+      cache.getUnchecked(MAX_SIZE);
+    }
+    assertEquals(1, cache.stats().admissionRejectionCount());
+
+    // once it leaves the window it is admitted in place of the least recently used entry
+    cache.getUnchecked(MAX_SIZE + 1);
+    CacheTesting.drainRecencyQueues(cache);
+    assertTrue(cache.asMap().containsKey(MAX_SIZE));
+    assertTrue(cache.asMap().containsKey(MAX_SIZE + 1));
+    assertFalse(cache.asMap().containsKey(0));
+    assertEquals(1, cache.stats().admissionRejectionCount());
+    assertEquals(MAX_SIZE, cache.size());
+
+    CacheTesting.processPendingNotifications(cache);
+    assertEquals(2, removalListener.getCount());
+    CacheTesting.checkValidState(cache);
+  }
+
+  public void testEviction_admitByFrequency_sketchGrowsWithSegment() {
+    LoadingCache<Integer, Integer> cache = CacheBuilder.newBuilder()
+        .concurrencyLevel(1)
+        .initialCapacity(16)
+        .maximumSize(Integer.MAX_VALUE / 2)
+        .admitByFrequency()
+        .build(identityLoader());
+    FrequencySketch sketch = CacheTesting.toLocalCache(cache).segments[0].frequencySketch;
+    assertEquals(16, sketch.table.length);
+
+    CacheTesting.warmUp(cache, 0, 10 * MAX_SIZE);
+    assertTrue(sketch.table.length >= 10 * MAX_SIZE);
+    assertTrue(sketch.table.length <= 4 * 10 * MAX_SIZE);
+    CacheTesting.checkValidState(cache);
+  }
+
+  public void testEviction_admitByFrequency_customStatsCounter() {
+    final AtomicInteger evictions = new AtomicInteger();
+    final StatsCounter statsCounter = new StatsCounter() {
+      @Override public void recordHits(int count) {}
+      @Override public void recordMisses(int count) {}
+      @Override public void recordLoadSuccess(long loadTime) {}
+      @Override public void recordLoadException(long loadTime) {}
+
+      @Override public void recordEviction() {
+        evictions.incrementAndGet();
+      }
+
+      @Override public CacheStats snapshot() {
+        return new CacheStats(0, 0, 0, 0, 0, evictions.get());
+      }
+    };
+    LoadingCache<Integer, Integer> cache = CacheBuilder.newBuilder()
+        .concurrencyLevel(1)
+        .maximumSize(MAX_SIZE)
+        .admitByFrequency()
+        .recordStats(Suppliers.ofInstance(statsCounter))
+        .build(TestingCacheLoaders.<Integer>identityLoader());
+    for (int i = 0; i < 10 * MAX_SIZE; i++) {
+      cache.getUnchecked(i);
+    }
+    assertEquals(9 * MAX_SIZE, evictions.get());
+    assertEquals(0, cache.stats().admissionRejectionCount());
+    CacheTesting.checkValidState(cache);
+  }
+
   private void getAll(LoadingCache<Integer, Integer> cache, List<Integer> keys) {
     for (int i : keys) {
       cache.getUnchecked(i);
@@ -18,7 +18,11 @@ import static com.google.common.cache.TestingCacheLoaders.identityLoader;
 import static com.google.common.cache.TestingRemovalListeners.countingRemovalListener;
 import static com.google.common.truth.Truth.assertThat;
 import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.HOURS;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 import com.google.common.cache.TestingCacheLoaders.IdentityLoader;
 import com.google.common.cache.TestingRemovalListeners.CountingRemovalListener;
@@ -28,6 +32,7 @@ import com.google.common.util.concurrent.Callables;
 
 import junit.framework.TestCase;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
@@ -70,6 +75,18 @@ public class CacheExpirationTest extends TestCase {
     checkExpiration(cache, loader, ticker, removalListener);
   }
 
+  public void testExpiration_expireAfter() {
+    FakeTicker ticker = new FakeTicker();
+    CountingRemovalListener<String, Integer> removalListener = countingRemovalListener();
+    WatchedCreatorLoader loader = new WatchedCreatorLoader();
+    LoadingCache<String, Integer> cache = CacheBuilder.newBuilder()
+        .expireAfter(fixedExpiry(EXPIRING_TIME))
+        .removalListener(removalListener)
+        .ticker(ticker)
+        .build(loader);
+    checkExpiration(cache, loader, ticker, removalListener);
+  }
+
   private void checkExpiration(LoadingCache<String, Integer> cache, WatchedCreatorLoader loader,
       FakeTicker ticker, CountingRemovalListener<String, Integer> removalListener) {
 
@@ -119,6 +136,18 @@ public class CacheExpirationTest extends TestCase {
     runExpirationTest(cache, loader, ticker, removalListener);
   }
 
+  public void testExpiringGet_expireAfter() {
+    FakeTicker ticker = new FakeTicker();
+    CountingRemovalListener<String, Integer> removalListener = countingRemovalListener();
+    WatchedCreatorLoader loader = new WatchedCreatorLoader();
+    LoadingCache<String, Integer> cache = CacheBuilder.newBuilder()
+        .expireAfter(fixedExpiry(EXPIRING_TIME))
+        .removalListener(removalListener)
+        .ticker(ticker)
+        .build(loader);
+    runExpirationTest(cache, loader, ticker, removalListener);
+  }
+
   private void runExpirationTest(LoadingCache<String, Integer> cache, WatchedCreatorLoader loader,
       FakeTicker ticker, CountingRemovalListener<String, Integer> removalListener) {
 
@@ -246,6 +275,225 @@ public class CacheExpirationTest extends TestCase {
     runRemovalScheduler(cache, removalListener, loader, ticker, KEY_PREFIX, EXPIRING_TIME);
   }
 
+  public void testRemovalScheduler_expireAfter() {
+    FakeTicker ticker = new FakeTicker();
+    CountingRemovalListener<String, Integer> removalListener = countingRemovalListener();
+    WatchedCreatorLoader loader = new WatchedCreatorLoader();
+    LoadingCache<String, Integer> cache = CacheBuilder.newBuilder()
+        .expireAfter(fixedExpiry(EXPIRING_TIME))
+        .removalListener(removalListener)
+        .ticker(ticker)
+        .build(loader);
+    runRemovalScheduler(cache, removalListener, loader, ticker, KEY_PREFIX, EXPIRING_TIME);
+  }
+
+  public void testExpireAfter_variable() {
+    FakeTicker ticker = new FakeTicker();
+    CountingRemovalListener<Long, Long> removalListener = countingRemovalListener();
+    // each value is the number of minutes for which its entry lives
+    Cache<Long, Long> cache = CacheBuilder.newBuilder()
+        .concurrencyLevel(1)
+        .expireAfter(new Expiry<Long, Long>() {
+          @Override
+          public long expireAfterCreate(Long key, Long value, long currentTime) {
+            return MINUTES.toNanos(value);
+          }
+        })
+        .removalListener(removalListener)
+        .ticker(ticker)
+        .build();
+    List<Long> durations = asList(1L, 5L, 30L, 90L, 600L, 1440L, 3000L, 10000L, 50000L);
+    for (long duration : durations) {
+      cache.put(duration, duration);
+    }
+
+    long elapsed = 0;
+    for (int i = 0; i < durations.size(); i++) {
+      long duration = durations.get(i);
+      ticker.advance(duration - 1 - elapsed, MINUTES);
+      elapsed = duration - 1;
+      cache.cleanUp();
+      assertEquals(durations.size() - i, cache.size());
+      assertEquals(duration, (long) cache.getIfPresent(duration));
+
+      ticker.advance(2, MINUTES);
+      elapsed += 2;
+      assertNull(cache.getIfPresent(duration));
+      cache.cleanUp();
+      // the entry is removed, not just hidden, once its bucket of the timer wheel has elapsed
+      assertEquals(durations.size() - i - 1, cache.size());
+      assertEquals(i + 1, removalListener.getCount());
+      assertEquals(duration, (long) removalListener.getLastEvictedKey());
+    }
+    CacheTesting.checkValidState(cache);
+  }
+
+  public void testExpireAfter_update() {
+    FakeTicker ticker = new FakeTicker();
+    Cache<String, Integer> cache = CacheBuilder.newBuilder()
+        .expireAfter(new Expiry<String, Integer>() {
+          @Override
+          public long expireAfterCreate(String key, Integer value, long currentTime) {
+            return SECONDS.toNanos(10);
+          }
+
+          @Override
+          public long expireAfterUpdate(String key, Integer value, long currentTime,
+              long currentDuration) {
+            return currentDuration + SECONDS.toNanos(value);
+          }
+        })
+        .ticker(ticker)
+        .build();
+    cache.put("a", 1);
+    ticker.advance(5, SECONDS);
+    // 5 seconds remain, and the update adds 100
+    cache.put("a", 100);
+    ticker.advance(100, SECONDS);
+    assertEquals(100, (int) cache.getIfPresent("a"));
+    ticker.advance(5, SECONDS);
+    assertNull(cache.getIfPresent("a"));
+  }
+
+  public void testExpireAfter_updateOffHeap() {
+    FakeTicker ticker = new FakeTicker();
+    Cache<String, byte[]> cache = CacheBuilder.newBuilder()
+        .offHeapValues(OffHeapStoreTest.BYTES)
+        .maximumWeight(4096)
+        .expireAfter(new Expiry<String, byte[]>() {
+          @Override
+          public long expireAfterCreate(String key, byte[] value, long currentTime) {
+            return SECONDS.toNanos(10);
+          }
+
+          @Override
+          public long expireAfterUpdate(String key, byte[] value, long currentTime,
+              long currentDuration) {
+            return currentDuration + SECONDS.toNanos(value.length);
+          }
+        })
+        .ticker(ticker)
+        .build();
+    cache.put("a", new byte[1]);
+    ticker.advance(5, SECONDS);
+    // the replaced value's block is released before the update, which still adds 100 seconds
+    cache.put("a", new byte[100]);
+    ticker.advance(100, SECONDS);
+    assertEquals(100, cache.getIfPresent("a").length);
+    ticker.advance(5, SECONDS);
+    assertNull(cache.getIfPresent("a"));
+  }
+
+  public void testExpireAfter_read() {
+    FakeTicker ticker = new FakeTicker();
+    CountingRemovalListener<String, Integer> removalListener = countingRemovalListener();
+    Cache<String, Integer> cache = CacheBuilder.newBuilder()
+        .expireAfter(new Expiry<String, Integer>() {
+          @Override
+          public long expireAfterCreate(String key, Integer value, long currentTime) {
+            return MINUTES.toNanos(1);
+          }
+
+          @Override
+          public long expireAfterRead(String key, Integer value, long currentTime,
+              long currentDuration) {
+            return HOURS.toNanos(1);
+          }
+        })
+        .removalListener(removalListener)
+        .ticker(ticker)
+        .build();
+    cache.put("a", 1);
+    ticker.advance(30, SECONDS);
+    assertEquals(1, (int) cache.getIfPresent("a"));
+
+    // the entry was filed to expire after a minute, but the read extended it
+    ticker.advance(30, MINUTES);
+    cache.cleanUp();
+    assertEquals(1, cache.size());
+    assertEquals(1, (int) cache.getIfPresent("a"));
+
+    ticker.advance(2, HOURS);
+    assertNull(cache.getIfPresent("a"));
+    cache.cleanUp();
+    assertEquals(0, cache.size());
+    assertEquals(1, removalListener.getCount());
+  }
+
+  public void testExpireAfter_readOffHeap() {
+    final AtomicInteger deserialized = new AtomicInteger();
+    ValueSerializer<byte[]> countingBytes = new ValueSerializer<byte[]>() {
+      @Override
+      public int serializedSize(byte[] value) {
+        return value.length;
+      }
+
+      @Override
+      public void serialize(byte[] value, ByteBuffer target) {
+        target.put(value);
+      }
+
+      @Override
+      public byte[] deserialize(ByteBuffer source) {
+        deserialized.incrementAndGet();
+        byte[] value = new byte[source.remaining()];
+        source.get(value);
+        return value;
+      }
+    };
+    FakeTicker ticker = new FakeTicker();
+    Cache<String, byte[]> cache = CacheBuilder.newBuilder()
+        .offHeapValues(countingBytes)
+        .maximumWeight(4096)
+        .expireAfter(new Expiry<String, byte[]>() {
+          @Override
+          public long expireAfterCreate(String key, byte[] value, long currentTime) {
+            return MINUTES.toNanos(1);
+          }
+
+          @Override
+          public long expireAfterRead(String key, byte[] value, long currentTime,
+              long currentDuration) {
+            return MINUTES.toNanos(value.length);
+          }
+        })
+        .ticker(ticker)
+        .build();
+    cache.put("a", new byte[10]);
+    // the value read by the lookup is the one given to expireAfterRead
+    assertEquals(10, cache.getIfPresent("a").length);
+    assertEquals(1, deserialized.get());
+
+    ticker.advance(5, MINUTES);
+    assertEquals(10, cache.getIfPresent("a").length);
+    ticker.advance(10, MINUTES);
+    assertNull(cache.getIfPresent("a"));
+  }
+
+  public void testExpireAfter_immediate() {
+    FakeTicker ticker = new FakeTicker();
+    CountingRemovalListener<String, Integer> removalListener = countingRemovalListener();
+    Cache<String, Integer> cache = CacheBuilder.newBuilder()
+        .expireAfter(new Expiry<String, Integer>() {
+          @Override
+          public long expireAfterCreate(String key, Integer value, long currentTime) {
+            return (value < 0) ? Long.MIN_VALUE : Long.MAX_VALUE;
+          }
+        })
+        .removalListener(removalListener)
+        .ticker(ticker)
+        .build();
+    cache.put("a", -1);
+    cache.put("b", 1);
+    assertNull(cache.getIfPresent("a"));
+    cache.cleanUp();
+    assertEquals(1, cache.size());
+    assertEquals(1, removalListener.getCount());
+
+    ticker.advance(1000, DAYS);
+    assertEquals(1, (int) cache.getIfPresent("b"));
+  }
+
   public void testExpirationOrder_access() {
     // test lru within a single segment
     FakeTicker ticker = new FakeTicker();
@@ -446,6 +694,15 @@ public class CacheExpirationTest extends TestCase {
     }
   }
 
+  private static <K, V> Expiry<K, V> fixedExpiry(final long durationMillis) {
+    return new Expiry<K, V>() {
+      @Override
+      public long expireAfterCreate(K key, V value, long currentTime) {
+        return MILLISECONDS.toNanos(durationMillis);
+      }
+    };
+  }
+
   private static class WatchedCreatorLoader extends CacheLoader<String, Integer> {
     boolean wasCalled = false; // must be set in load()
     String keyPrefix = KEY_PREFIX;
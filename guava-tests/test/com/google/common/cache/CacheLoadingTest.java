@@ -31,6 +31,7 @@ import com.google.common.cache.TestingCacheLoaders.IdentityLoader;
 import com.google.common.cache.TestingRemovalListeners.CountingRemovalListener;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.testing.FakeTicker;
@@ -45,8 +46,10 @@ import junit.framework.TestCase;
 
 import java.io.IOException;
 import java.lang.ref.WeakReference;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
@@ -800,6 +803,217 @@ public class CacheLoadingTest extends TestCase {
     assertEquals(3, stats.hitCount());
   }
 
+  public void testBatchLoads_concurrentMisses() throws InterruptedException {
+    final int count = 4;
+    final List<Set<Integer>> batches =
+        Collections.synchronizedList(Lists.<Set<Integer>>newArrayList());
+    CacheLoader<Integer, Integer> loader = new CacheLoader<Integer, Integer>() {
+      @Override
+      public Integer load(Integer key) {
+        throw new AssertionError();
+      }
+
+      @Override
+      public Map<Integer, Integer> loadAll(Iterable<? extends Integer> keys) {
+        batches.add(ImmutableSet.copyOf(keys));
+        Map<Integer, Integer> result = Maps.newHashMap();
+        for (Integer key : keys) {
+          result.put(key, -key);
+        }
+        return result;
+      }
+    };
+    final LoadingCache<Integer, Integer> cache = CacheBuilder.newBuilder()
+        .recordStats()
+        .batchLoads(count, 1, TimeUnit.MINUTES)
+        .build(loader);
+
+    // the batch is loaded as soon as it is full, rather than when its window elapses
+    final AtomicReferenceArray<Integer> results = new AtomicReferenceArray<Integer>(count);
+    List<Thread> threads = Lists.newArrayList();
+    for (int i = 0; i < count; i++) {
+      final int key = i;
+      Thread thread = new Thread() {
+        @Override
+        public void run() {
+          results.set(key, cache.getUnchecked(key));
+        }
+      };
+      thread.start();
+      threads.add(thread);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(ImmutableList.of(ImmutableSet.of(0, 1, 2, 3)), batches);
+    for (int i = 0; i < count; i++) {
+      assertEquals(-i, (int) results.get(i));
+    }
+    CacheStats stats = cache.stats();
+    assertEquals(count, stats.missCount());
+    assertEquals(count, stats.loadSuccessCount());
+    assertEquals(0, stats.loadExceptionCount());
+  }
+
+  public void testBatchLoads_window() {
+    IdentityLoader<Integer> backingLoader = identityLoader();
+    LoadingCache<Integer, Integer> cache = CacheBuilder.newBuilder()
+        .batchLoads(10, 1, MILLISECONDS)
+        .build(bulkLoader(backingLoader));
+
+    // a lone miss is loaded once the window elapses
+    assertEquals(1, (int) cache.getUnchecked(1));
+    assertEquals(2, (int) cache.getUnchecked(2));
+    assertEquals(ImmutableMap.of(1, 1, 2, 2), cache.asMap());
+  }
+
+  public void testBatchLoads_missingValue() {
+    CacheLoader<Integer, Integer> loader = new CacheLoader<Integer, Integer>() {
+      @Override
+      public Integer load(Integer key) {
+        throw new AssertionError();
+      }
+
+      @Override
+      public Map<Integer, Integer> loadAll(Iterable<? extends Integer> keys) {
+        return ImmutableMap.of(-1, -1);
+      }
+    };
+    LoadingCache<Integer, Integer> cache = CacheBuilder.newBuilder()
+        .recordStats()
+        .batchLoads(10, 0, MILLISECONDS)
+        .build(loader);
+
+    try {
+      cache.getUnchecked(1);
+      fail();
+    } catch (InvalidCacheLoadException expected) {}
+    assertEquals(1, cache.stats().loadExceptionCount());
+
+    // extra values are still cached
+    assertEquals(ImmutableMap.of(-1, -1), cache.asMap());
+  }
+
+  public void testBatchLoads_exception() {
+    RuntimeException e = new RuntimeException();
+    LoadingCache<Object, Object> cache = CacheBuilder.newBuilder()
+        .recordStats()
+        .batchLoads(10, 0, MILLISECONDS)
+        .build(bulkLoader(exceptionLoader(e)));
+
+    try {
+      cache.getUnchecked(new Object());
+      fail();
+    } catch (UncheckedExecutionException expected) {
+      assertSame(e, expected.getCause());
+    }
+    assertEquals(1, cache.stats().loadExceptionCount());
+    assertTrue(cache.asMap().isEmpty());
+  }
+
+  public void testBatchLoads_loadAllUnsupported() {
+    CountingLoader loader = new CountingLoader();
+    LoadingCache<Object, Object> cache = CacheBuilder.newBuilder()
+        .batchLoads(10, 0, MILLISECONDS)
+        .build(loader);
+
+    assertNotNull(cache.getUnchecked(new Object()));
+    assertEquals(1, loader.getCount());
+    assertNotNull(cache.getUnchecked(new Object()));
+    assertEquals(2, loader.getCount());
+  }
+
+  public void testBatchLoads_refresh() {
+    final Object one = new Object();
+    final Object two = new Object();
+    FakeTicker ticker = new FakeTicker();
+    final AtomicInteger loadAllCount = new AtomicInteger();
+    CacheLoader<Object, Object> loader = new CacheLoader<Object, Object>() {
+      @Override
+      public Object load(Object key) {
+        throw new AssertionError();
+      }
+
+      @Override
+      public ListenableFuture<Object> reload(Object key, Object oldValue) {
+        throw new AssertionError();
+      }
+
+      @Override
+      public Map<Object, Object> loadAll(Iterable<? extends Object> keys) {
+        Object value = (loadAllCount.getAndIncrement() == 0) ? one : two;
+        Map<Object, Object> result = Maps.newHashMap();
+        for (Object key : keys) {
+          result.put(key, value);
+        }
+        return result;
+      }
+    };
+    LoadingCache<Object, Object> cache = CacheBuilder.newBuilder()
+        .ticker(ticker)
+        .refreshAfterWrite(1, MILLISECONDS)
+        .batchLoads(1, 0, MILLISECONDS)
+        .build(loader);
+
+    Object key = new Object();
+    assertSame(one, cache.getUnchecked(key));
+    ticker.advance(2, MILLISECONDS);
+    assertSame(two, cache.getUnchecked(key));
+    assertEquals(2, loadAllCount.get());
+  }
+
+  public void testBatchLoads_weakKeys_equalKeys() throws InterruptedException {
+    final List<List<String>> batches =
+        Collections.synchronizedList(Lists.<List<String>>newArrayList());
+    CacheLoader<String, String> loader = new CacheLoader<String, String>() {
+      @Override
+      public String load(String key) {
+        throw new AssertionError();
+      }
+
+      @Override
+      public Map<String, String> loadAll(Iterable<? extends String> keys) {
+        batches.add(ImmutableList.copyOf(keys));
+        Map<String, String> result = Maps.newHashMap();
+        for (String key : keys) {
+          result.put(key, key.toUpperCase());
+        }
+        return result;
+      }
+    };
+    // weakKeys compares keys by identity, so equal keys are loaded separately
+    final LoadingCache<String, String> cache = CacheBuilder.newBuilder()
+        .weakKeys()
+        .batchLoads(10, 100, MILLISECONDS)
+        .build(loader);
+
+    final String[] keys = {new String("a"), new String("a")};
+    final AtomicReferenceArray<String> results = new AtomicReferenceArray<String>(keys.length);
+    List<Thread> threads = Lists.newArrayList();
+    for (int i = 0; i < keys.length; i++) {
+      final int index = i;
+      Thread thread = new Thread() {
+        @Override
+        public void run() {
+          results.set(index, cache.getUnchecked(keys[index]));
+        }
+      };
+      thread.start();
+      threads.add(thread);
+    }
+    for (Thread thread : threads) {
+      thread.join(10000);
+      assertFalse(thread.isAlive());
+    }
+
+    assertEquals("A", results.get(0));
+    assertEquals("A", results.get(1));
+    for (List<String> batch : batches) {
+      assertEquals(ImmutableList.of("a"), batch);
+    }
+  }
+
   public void testBulkLoadNull() throws ExecutionException {
     LoadingCache<Object, Object> cache = CacheBuilder.newBuilder()
         .recordStats()
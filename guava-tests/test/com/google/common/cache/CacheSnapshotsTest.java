@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteSink;
+import com.google.common.io.ByteSource;
+import com.google.common.testing.FakeTicker;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Unit tests for {@link CacheSnapshots}.
+ */
+public class CacheSnapshotsTest extends TestCase {
+
+  static final ValueSerializer<Integer> INTEGERS = new ValueSerializer<Integer>() {
+    @Override
+    public int serializedSize(Integer value) {
+      return 4;
+    }
+
+    @Override
+    public void serialize(Integer value, ByteBuffer target) {
+      target.putInt(value);
+    }
+
+    @Override
+    public Integer deserialize(ByteBuffer source) {
+      return source.getInt();
+    }
+  };
+
+  static final ValueSerializer<String> STRINGS = new ValueSerializer<String>() {
+    @Override
+    public int serializedSize(String value) {
+      return value.getBytes(Charsets.UTF_8).length;
+    }
+
+    @Override
+    public void serialize(String value, ByteBuffer target) {
+      target.put(value.getBytes(Charsets.UTF_8));
+    }
+
+    @Override
+    public String deserialize(ByteBuffer source) {
+      return new String(source.array(), Charsets.UTF_8);
+    }
+  };
+
+  private static final long SAVED_MILLIS = 1000000L;
+
+  private final FakeTicker ticker = new FakeTicker();
+  private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+  private final ByteSink sink = new ByteSink() {
+    @Override
+    public OutputStream openStream() {
+      return bytes;
+    }
+  };
+
+  private ByteSource source() {
+    return ByteSource.wrap(bytes.toByteArray());
+  }
+
+  private long save(Cache<Integer, String> cache) throws IOException {
+    return CacheSnapshots.save(cache, sink, INTEGERS, STRINGS, SAVED_MILLIS);
+  }
+
+  private long restore(Cache<Integer, String> cache, long downtimeMillis) throws IOException {
+    return CacheSnapshots.restore(cache, source(), INTEGERS, STRINGS,
+        SAVED_MILLIS + downtimeMillis);
+  }
+
+  public void testRoundTrip() throws IOException {
+    Cache<Integer, String> cache = CacheBuilder.newBuilder().build();
+    cache.put(1, "one");
+    cache.put(2, "two");
+    cache.put(3, "\u00fcber");
+    assertEquals(3, save(cache));
+
+    Cache<Integer, String> restored = CacheBuilder.newBuilder().recordStats().build();
+    assertEquals(3, restore(restored, 0));
+    assertEquals(ImmutableMap.of(1, "one", 2, "two", 3, "\u00fcber"), restored.asMap());
+    assertEquals(0, restored.stats().loadCount());
+  }
+
+  public void testRestore_keepsPresentValues() throws IOException {
+    Cache<Integer, String> cache = CacheBuilder.newBuilder().build();
+    cache.put(1, "one");
+    cache.put(2, "two");
+    save(cache);
+
+    Cache<Integer, String> restored = CacheBuilder.newBuilder().build();
+    restored.put(1, "uno");
+    assertEquals(1, restore(restored, 0));
+    assertEquals(ImmutableMap.of(1, "uno", 2, "two"), restored.asMap());
+  }
+
+  public void testRestore_remainingTimeToLive() throws IOException {
+    Cache<Integer, String> cache = CacheBuilder.newBuilder()
+        .expireAfterWrite(10, MINUTES)
+        .ticker(ticker)
+        .build();
+    cache.put(1, "one");
+    ticker.advance(3, MINUTES);
+    cache.put(2, "two");
+    save(cache);
+
+    // one minute passes before the snapshot is restored into a new process
+    FakeTicker restartedTicker = new FakeTicker();
+    restartedTicker.advance(5, MINUTES);
+    Cache<Integer, String> restored = CacheBuilder.newBuilder()
+        .expireAfterWrite(10, MINUTES)
+        .ticker(restartedTicker)
+        .build();
+    assertEquals(2, restore(restored, MINUTES.toMillis(1)));
+
+    restartedTicker.advance(MINUTES.toNanos(6) - 1, NANOSECONDS);
+    assertEquals("one", restored.getIfPresent(1));
+    restartedTicker.advance(1, NANOSECONDS);
+    assertNull(restored.getIfPresent(1));
+    assertEquals("two", restored.getIfPresent(2));
+    restartedTicker.advance(3, MINUTES);
+    assertNull(restored.getIfPresent(2));
+  }
+
+  public void testRestore_writeOrder() throws IOException {
+    Cache<Integer, String> cache = CacheBuilder.newBuilder()
+        .concurrencyLevel(1)
+        .expireAfterWrite(10, MINUTES)
+        .maximumSize(100)
+        .ticker(ticker)
+        .build();
+    cache.put(1, "one");
+    ticker.advance(5, MINUTES);
+    cache.put(2, "two");
+    // saved after 2, though written before it
+    cache.getIfPresent(1);
+    save(cache);
+
+    Cache<Integer, String> restored = CacheBuilder.newBuilder()
+        .concurrencyLevel(1)
+        .expireAfterWrite(10, MINUTES)
+        .maximumSize(100)
+        .ticker(ticker)
+        .build();
+    restored.put(3, "three");
+    assertEquals(2, restore(restored, 0));
+    ticker.advance(5, MINUTES);
+    restored.cleanUp();
+    assertEquals(2, restored.size());
+    assertThat(restored.asMap().keySet()).containsExactly(2, 3);
+  }
+
+  public void testRestore_expiredWhileSaved() throws IOException {
+    Cache<Integer, String> cache = CacheBuilder.newBuilder()
+        .expireAfterAccess(10, MINUTES)
+        .ticker(ticker)
+        .build();
+    cache.put(1, "one");
+    ticker.advance(8, MINUTES);
+    cache.put(2, "two");
+    save(cache);
+
+    Cache<Integer, String> restored = CacheBuilder.newBuilder()
+        .expireAfterAccess(10, MINUTES)
+        .ticker(ticker)
+        .build();
+    assertEquals(1, restore(restored, MINUTES.toMillis(3)));
+    assertEquals(ImmutableMap.of(2, "two"), restored.asMap());
+  }
+
+  public void testRestore_variableExpiration() throws IOException {
+    Expiry<Integer, String> expiry = new Expiry<Integer, String>() {
+      @Override
+      public long expireAfterCreate(Integer key, String value, long currentTime) {
+        return MINUTES.toNanos(key);
+      }
+    };
+    Cache<Integer, String> cache = CacheBuilder.newBuilder()
+        .expireAfter(expiry)
+        .ticker(ticker)
+        .build();
+    cache.put(2, "two");
+    cache.put(20, "twenty");
+    ticker.advance(1, MINUTES);
+    save(cache);
+
+    Cache<Integer, String> restored = CacheBuilder.newBuilder()
+        .expireAfter(expiry)
+        .ticker(ticker)
+        .build();
+    assertEquals(1, restore(restored, MINUTES.toMillis(2)));
+    ticker.advance(MINUTES.toNanos(17) - 1, NANOSECONDS);
+    assertEquals("twenty", restored.getIfPresent(20));
+    ticker.advance(1, NANOSECONDS);
+    assertNull(restored.getIfPresent(20));
+  }
+
+  public void testRestore_recency() throws IOException {
+    Cache<Integer, String> cache = CacheBuilder.newBuilder()
+        .concurrencyLevel(1)
+        .maximumSize(3)
+        .build();
+    cache.put(1, "one");
+    cache.put(2, "two");
+    cache.put(3, "three");
+    cache.getIfPresent(1);
+    save(cache);
+
+    Cache<Integer, String> restored = CacheBuilder.newBuilder()
+        .concurrencyLevel(1)
+        .maximumSize(3)
+        .build();
+    restore(restored, 0);
+    restored.put(4, "four");
+    assertThat(restored.asMap().keySet()).containsExactly(1, 3, 4);
+  }
+
+  public void testRestore_forwardingCache() throws IOException {
+    final Cache<Integer, String> delegate = CacheBuilder.newBuilder().build();
+    Cache<Integer, String> cache = new ForwardingCache<Integer, String>() {
+      @Override
+      protected Cache<Integer, String> delegate() {
+        return delegate;
+      }
+    };
+    cache.put(1, "one");
+    assertEquals(1, save(cache));
+
+    Cache<Integer, String> restored = CacheBuilder.newBuilder().build();
+    assertEquals(1, restore(restored, 0));
+    assertEquals(ImmutableMap.of(1, "one"), restored.asMap());
+  }
+
+  public void testRestore_notSnapshot() throws IOException {
+    Cache<Integer, String> cache = CacheBuilder.newBuilder().build();
+    try {
+      CacheSnapshots.restore(cache, ByteSource.wrap(new byte[16]), INTEGERS, STRINGS);
+      fail();
+    } catch (IOException expected) {}
+  }
+
+  public void testRestore_truncated() throws IOException {
+    Cache<Integer, String> cache = CacheBuilder.newBuilder().build();
+    cache.put(1, "one");
+    cache.put(2, "two");
+    save(cache);
+
+    byte[] snapshot = bytes.toByteArray();
+    Cache<Integer, String> restored = CacheBuilder.newBuilder().build();
+    try {
+      CacheSnapshots.restore(restored,
+          ByteSource.wrap(Arrays.copyOf(snapshot, snapshot.length - 3)), INTEGERS, STRINGS);
+      fail();
+    } catch (IOException expected) {}
+  }
+
+  public void testRestore_malformedLength() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    DataOutputStream data = new DataOutputStream(out);
+    data.writeInt(CacheSnapshots.MAGIC);
+    data.writeByte(CacheSnapshots.VERSION);
+    data.writeLong(SAVED_MILLIS);
+    data.writeByte(CacheSnapshots.ENTRY);
+    CacheSnapshots.writeVarLong(data, Integer.MAX_VALUE);
+    data.write(new byte[CacheSnapshots.MAX_TRUSTED_LENGTH * 2]);
+    data.flush();
+
+    Cache<Integer, String> cache = CacheBuilder.newBuilder().build();
+    try {
+      CacheSnapshots.restore(cache, ByteSource.wrap(out.toByteArray()), INTEGERS, STRINGS);
+      fail();
+    } catch (IOException expected) {}
+  }
+
+  public void testVarLong() throws IOException {
+    long[] values = { 0, 1, 127, 128, 300, Integer.MAX_VALUE, Long.MAX_VALUE };
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    DataOutputStream data = new DataOutputStream(out);
+    for (long value : values) {
+      CacheSnapshots.writeVarLong(data, value);
+    }
+    DataInputStream in = new DataInputStream(ByteSource.wrap(out.toByteArray()).openStream());
+    for (long value : values) {
+      assertEquals(value, CacheSnapshots.readVarLong(in));
+    }
+    assertEquals(-1, in.read());
+  }
+}
@@ -39,6 +39,7 @@ public class CacheStatsTest extends TestCase {
     assertEquals(0, stats.totalLoadTime());
     assertEquals(0.0, stats.averageLoadPenalty());
     assertEquals(0, stats.evictionCount());
+    assertEquals(0, stats.admissionRejectionCount());
   }
 
   public void testSingle() {
@@ -57,6 +58,16 @@ public class CacheStatsTest extends TestCase {
     assertEquals(27, stats.evictionCount());
   }
 
+  public void testAdmissionRejections() {
+    CacheStats stats = new CacheStats(11, 13, 17, 19, 23, 27, 7);
+    assertEquals(27, stats.evictionCount());
+    assertEquals(7, stats.admissionRejectionCount());
+    assertEquals(new CacheStats(11, 13, 17, 19, 23, 27, 0), stats.minus(stats).plus(
+        new CacheStats(11, 13, 17, 19, 23, 27)));
+    assertEquals(14, stats.plus(stats).admissionRejectionCount());
+    assertFalse(stats.equals(new CacheStats(11, 13, 17, 19, 23, 27)));
+  }
+
   public void testMinus() {
     CacheStats one = new CacheStats(11, 13, 17, 19, 23, 27);
     CacheStats two = new CacheStats(53, 47, 43, 41, 37, 31);
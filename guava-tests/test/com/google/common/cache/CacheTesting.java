@@ -203,7 +203,12 @@ class CacheTesting {
       for (Entry<?, ?> entry : table.entrySet()) {
         assertNotNull(entry.getKey());
         assertNotNull(entry.getValue());
-        assertSame(entry.getValue(), cchm.get(entry.getKey()));
+        if (cchm.storesValuesOffHeap()) {
+          // each read deserializes a new copy
+          assertNotNull(cchm.get(entry.getKey()));
+        } else {
+          assertSame(entry.getValue(), cchm.get(entry.getKey()));
+        }
       }
     }
     checkEviction(cchm);
@@ -223,7 +228,19 @@ class CacheTesting {
 
   static void checkExpiration(LocalCache<?, ?> cchm) {
     for (Segment<?, ?> segment : cchm.segments) {
-      if (cchm.usesWriteQueue()) {
+      if (cchm.expiresVariably()) {
+        // the timer wheel is ordered by bucket, so only check that it holds each entry
+        Set<ReferenceEntry<?, ?>> entries = Sets.newIdentityHashSet();
+        for (ReferenceEntry<?, ?> current : segment.writeQueue) {
+          assertTrue(entries.add(current));
+          assertSame(current, current.getPreviousInWriteQueue().getNextInWriteQueue());
+          Object key = current.getKey();
+          if (key != null) {
+            assertSame(current, segment.getEntry(key, current.getHash()));
+          }
+        }
+        assertEquals(segment.count, entries.size());
+      } else if (cchm.usesWriteQueue()) {
         Set<ReferenceEntry<?, ?>> entries = Sets.newIdentityHashSet();
 
         ReferenceEntry<?, ?> prev = null;
@@ -247,22 +264,15 @@ class CacheTesting {
 
       if (cchm.usesAccessQueue()) {
         Set<ReferenceEntry<?, ?>> entries = Sets.newIdentityHashSet();
-
-        ReferenceEntry<?, ?> prev = null;
-        for (ReferenceEntry<?, ?> current : segment.accessQueue) {
-          assertTrue(entries.add(current));
-          if (prev != null) {
-            assertSame(prev, current.getPreviousInAccessQueue());
-            assertSame(prev.getNextInAccessQueue(), current);
-            // read accesses may be slightly misordered
-            assertTrue(prev.getAccessTime() <= current.getAccessTime()
-                || prev.getAccessTime() - current.getAccessTime() < 1000);
-          }
-          Object key = current.getKey();
-          if (key != null) {
-            assertSame(current, segment.getEntry(key, current.getHash()));
+        checkAccessQueue(segment, segment.accessQueue, entries);
+        if (cchm.admitsByFrequency()) {
+          assertEquals(segment.windowEntries.size(),
+              checkAccessQueue(segment, segment.windowQueue, entries));
+          for (ReferenceEntry<?, ?> current : segment.windowQueue) {
+            assertTrue(segment.windowEntries.contains(current));
           }
-          prev = current;
+        } else {
+          assertTrue(segment.windowQueue.isEmpty());
         }
         assertEquals(segment.count, entries.size());
       } else {
@@ -271,6 +281,33 @@ class CacheTesting {
     }
   }
 
+  /**
+   * Verifies the links and ordering of an access-ordered queue, adding each of its entries to
+   * {@code entries}. Returns the number of entries in the queue.
+   */
+  private static int checkAccessQueue(Segment<?, ?> segment,
+      Iterable<? extends ReferenceEntry<?, ?>> queue, Set<ReferenceEntry<?, ?>> entries) {
+    int size = 0;
+    ReferenceEntry<?, ?> prev = null;
+    for (ReferenceEntry<?, ?> current : queue) {
+      assertTrue(entries.add(current));
+      if (prev != null) {
+        assertSame(prev, current.getPreviousInAccessQueue());
+        assertSame(prev.getNextInAccessQueue(), current);
+        // read accesses may be slightly misordered
+        assertTrue(prev.getAccessTime() <= current.getAccessTime()
+            || prev.getAccessTime() - current.getAccessTime() < 1000);
+      }
+      Object key = current.getKey();
+      if (key != null) {
+        assertSame(current, segment.getEntry(key, current.getHash()));
+      }
+      prev = current;
+      size++;
+    }
+    return size;
+  }
+
   /**
    * Peeks into the cache's internals to verify that its eviction queue is consistent. Verifies
    * that the prev/next links are correct, and that all items in each segment are also in that
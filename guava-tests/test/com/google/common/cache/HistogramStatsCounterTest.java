@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Unit tests for {@link HistogramStatsCounter} and {@link LatencyHistogram}.
+ */
+public class HistogramStatsCounterTest extends TestCase {
+  private final HistogramStatsCounter counter = new HistogramStatsCounter();
+
+  public void testBucket() {
+    for (int nanos = 0; nanos < 16; nanos++) {
+      assertEquals(nanos, LatencyHistogram.bucket(nanos));
+      assertEquals(nanos, LatencyHistogram.upperBound(nanos));
+    }
+    assertEquals(0, LatencyHistogram.bucket(-1));
+    assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+    assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(HOURS.toNanos(10)));
+  }
+
+  public void testBucket_bounds() {
+    long previousUpperBound = -1;
+    for (int bucket = 0; bucket < LatencyHistogram.BUCKETS - 1; bucket++) {
+      long upperBound = LatencyHistogram.upperBound(bucket);
+      // buckets are contiguous, and their bounds are within an eighth of each other
+      assertEquals(bucket, LatencyHistogram.bucket(previousUpperBound + 1));
+      assertEquals(bucket, LatencyHistogram.bucket(upperBound));
+      assertThat(upperBound - previousUpperBound - 1).isAtMost((previousUpperBound + 1) / 8);
+      previousUpperBound = upperBound;
+    }
+  }
+
+  public void testEmpty() {
+    LatencyHistogram histogram = counter.loadLatency();
+    assertEquals(0, histogram.count());
+    assertEquals(0, histogram.max());
+    assertEquals(0, histogram.percentile(99));
+    assertTrue(histogram.bucketCounts().isEmpty());
+    assertEquals(LatencyHistogram.EMPTY, histogram);
+  }
+
+  public void testPercentile() {
+    for (int i = 1; i <= 1000; i++) {
+      counter.recordLoadSuccess(MILLISECONDS.toNanos(i));
+    }
+    LatencyHistogram histogram = counter.loadSuccessLatency();
+    assertEquals(1000, histogram.count());
+    assertEquals(MILLISECONDS.toNanos(1000), histogram.max());
+    assertWithinAnEighth(MILLISECONDS.toNanos(500), histogram.percentile(50));
+    assertWithinAnEighth(MILLISECONDS.toNanos(990), histogram.percentile(99));
+    assertEquals(histogram.max(), histogram.percentile(100));
+    assertWithinAnEighth(MILLISECONDS.toNanos(1), histogram.percentile(0));
+  }
+
+  public void testPercentile_outOfRange() {
+    try {
+      counter.loadLatency().percentile(100.1);
+      fail();
+    } catch (IllegalArgumentException expected) {}
+    try {
+      counter.loadLatency().percentile(-1);
+      fail();
+    } catch (IllegalArgumentException expected) {}
+  }
+
+  public void testBucketCounts() {
+    counter.recordLoadSuccess(5);
+    counter.recordLoadSuccess(5);
+    counter.recordLoadSuccess(100);
+    assertEquals(ImmutableSortedMap.of(5L, 2L, 103L, 1L),
+        counter.loadSuccessLatency().bucketCounts());
+  }
+
+  public void testLoadLatency() {
+    counter.recordLoadSuccess(10);
+    counter.recordLoadException(HOURS.toNanos(2));
+    assertEquals(1, counter.loadSuccessLatency().count());
+    assertEquals(1, counter.loadExceptionLatency().count());
+    LatencyHistogram histogram = counter.loadLatency();
+    assertEquals(2, histogram.count());
+    assertEquals(HOURS.toNanos(2), histogram.max());
+    assertEquals(HOURS.toNanos(2), histogram.percentile(100));
+
+    CacheStats stats = counter.snapshot();
+    assertEquals(1, stats.loadSuccessCount());
+    assertEquals(1, stats.loadExceptionCount());
+    assertEquals(10 + HOURS.toNanos(2), stats.totalLoadTime());
+  }
+
+  public void testConcurrentRecording() throws InterruptedException {
+    final int threads = 4;
+    final int loads = 10000;
+    final CountDownLatch done = new CountDownLatch(threads);
+    for (int i = 0; i < threads; i++) {
+      new Thread() {
+        @Override public void run() {
+          for (int j = 0; j < loads; j++) {
+            counter.recordLoadSuccess(j);
+          }
+          done.countDown();
+        }
+      }.start();
+    }
+    done.await();
+    assertEquals(threads * loads, counter.loadSuccessLatency().count());
+    assertEquals(loads - 1, counter.loadSuccessLatency().max());
+  }
+
+  public void testRecordStats_sharedCounter() {
+    LoadingCache<Integer, Integer> cache = CacheBuilder.newBuilder()
+        .concurrencyLevel(4)
+        .recordStats(Suppliers.ofInstance(counter))
+        .build(new CacheLoader<Integer, Integer>() {
+          @Override public Integer load(Integer key) {
+            if (key < 0) {
+              throw new IllegalArgumentException();
+            }
+            return key;
+          }
+        });
+    for (int i = 0; i < 10; i++) {
+      cache.getUnchecked(i);
+      cache.getUnchecked(i);
+    }
+    try {
+      cache.getUnchecked(-1);
+      fail();
+    } catch (UncheckedExecutionException expected) {}
+
+    CacheStats stats = cache.stats();
+    assertEquals(10, stats.hitCount());
+    assertEquals(11, stats.missCount());
+    assertEquals(10, stats.loadSuccessCount());
+    assertEquals(1, stats.loadExceptionCount());
+    assertEquals(10, counter.loadSuccessLatency().count());
+    assertEquals(1, counter.loadExceptionLatency().count());
+  }
+
+  private static void assertWithinAnEighth(long expected, long actual) {
+    assertThat(actual).isAtLeast(expected);
+    assertThat(actual).isAtMost(expected + expected / 8);
+  }
+}
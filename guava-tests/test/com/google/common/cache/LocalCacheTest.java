@@ -19,6 +19,7 @@ package com.google.common.cache;
 import static com.google.common.cache.CacheBuilder.NULL_TICKER;
 import static com.google.common.cache.LocalCache.DISCARDING_QUEUE;
 import static com.google.common.cache.LocalCache.DRAIN_THRESHOLD;
+import static com.google.common.cache.LocalCache.READ_BUFFER_SIZE;
 import static com.google.common.cache.LocalCache.nullEntry;
 import static com.google.common.cache.LocalCache.unset;
 import static com.google.common.cache.TestingCacheLoaders.identityLoader;
@@ -37,6 +38,7 @@ import com.google.common.cache.LocalCache.EntryFactory;
 import com.google.common.cache.LocalCache.LoadingValueReference;
 import com.google.common.cache.LocalCache.LocalLoadingCache;
 import com.google.common.cache.LocalCache.LocalManualCache;
+import com.google.common.cache.LocalCache.ReadBuffer;
 import com.google.common.cache.LocalCache.ReferenceEntry;
 import com.google.common.cache.LocalCache.Segment;
 import com.google.common.cache.LocalCache.Strength;
@@ -386,6 +388,24 @@ public class LocalCacheTest extends TestCase {
     assertEquals(unit.toNanos(duration), map.expireAfterAccessNanos);
   }
 
+  public void testSetExpireAfter() {
+    Expiry<Object, Object> expiry = new Expiry<Object, Object>() {
+      @Override
+      public long expireAfterCreate(Object key, Object value, long currentTime) {
+        return 42;
+      }
+    };
+    LocalCache<Object, Object> map = makeLocalCache(createCacheBuilder().expireAfter(expiry));
+    assertSame(expiry, map.expiry);
+    assertTrue(map.expires());
+    assertTrue(map.usesWriteQueue());
+    assertTrue(map.usesAccessEntries());
+    assertTrue(map.recordsTime());
+    for (Segment<Object, Object> segment : map.segments) {
+      assertTrue(segment.writeQueue instanceof TimerWheel);
+    }
+  }
+
   public void testSetRefresh() {
     long duration = 42;
     TimeUnit unit = TimeUnit.SECONDS;
@@ -1867,6 +1887,38 @@ public class LocalCacheTest extends TestCase {
 
   // Segment eviction tests
 
+  public void testReadBuffer() {
+    ReadBuffer<Object> buffer = new ReadBuffer<Object>();
+    assertTrue(buffer.isEmpty());
+    assertNull(buffer.peek());
+    assertNull(buffer.poll());
+
+    List<Object> elements = Lists.newArrayList();
+    for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+      Object element = new Object();
+      assertTrue(buffer.offer(element));
+      elements.add(element);
+    }
+    assertEquals(READ_BUFFER_SIZE, buffer.size());
+    assertEquals(elements, ImmutableList.copyOf(buffer));
+
+    // a full stripe drops elements rather than growing
+    assertFalse(buffer.offer(new Object()));
+    assertEquals(READ_BUFFER_SIZE, buffer.size());
+
+    assertSame(elements.get(0), buffer.peek());
+    for (Object element : elements) {
+      assertSame(element, buffer.poll());
+    }
+    assertTrue(buffer.isEmpty());
+    assertNull(buffer.poll());
+
+    // slots are reused once drained
+    Object element = new Object();
+    assertTrue(buffer.offer(element));
+    assertSame(element, buffer.poll());
+  }
+
   public void testDrainRecencyQueueOnWrite() {
     for (CacheBuilder<Object, Object> builder : allEvictingMakers()) {
       LocalCache<Object, Object> map = makeLocalCache(builder.concurrencyLevel(1));
@@ -1964,12 +2016,14 @@ public class LocalCacheTest extends TestCase {
       while (i.hasNext()) {
         ReferenceEntry<Object, Object> entry = i.next();
         if (random.nextBoolean()) {
-          segment.recordRead(entry, map.ticker.read());
+          segment.recordRead(entry, entry.getValueReference().get(), map.ticker.read());
           reads.add(entry);
           i.remove();
+          assertTrue(segment.recencyQueue.size() <= READ_BUFFER_SIZE);
         }
       }
-      checkAndDrainRecencyQueue(map, segment, reads);
+      int undrainedIndex = reads.size() - segment.recencyQueue.size();
+      checkAndDrainRecencyQueue(map, segment, reads.subList(undrainedIndex, reads.size()));
       readOrder.addAll(reads);
 
       checkEvictionQueues(map, segment, readOrder, writeOrder);
@@ -2140,14 +2194,14 @@ public class LocalCacheTest extends TestCase {
     assertSame(entry, segment.writeQueue.peek());
     assertEquals(1, segment.writeQueue.size());
 
-    segment.recordRead(entry, ticker.read());
+    segment.recordRead(entry, value, ticker.read());
     segment.expireEntries(ticker.read());
     assertSame(value, map.get(key));
     assertSame(entry, segment.writeQueue.peek());
     assertEquals(1, segment.writeQueue.size());
 
     ticker.advance(1);
-    segment.recordRead(entry, ticker.read());
+    segment.recordRead(entry, value, ticker.read());
     segment.expireEntries(ticker.read());
     assertSame(value, map.get(key));
     assertSame(entry, segment.writeQueue.peek());
@@ -2179,21 +2233,21 @@ public class LocalCacheTest extends TestCase {
     assertSame(entry, segment.accessQueue.peek());
     assertEquals(1, segment.accessQueue.size());
 
-    segment.recordRead(entry, ticker.read());
+    segment.recordRead(entry, value, ticker.read());
     segment.expireEntries(ticker.read());
     assertTrue(map.containsKey(key));
     assertSame(entry, segment.accessQueue.peek());
     assertEquals(1, segment.accessQueue.size());
 
     ticker.advance(1);
-    segment.recordRead(entry, ticker.read());
+    segment.recordRead(entry, value, ticker.read());
     segment.expireEntries(ticker.read());
     assertTrue(map.containsKey(key));
     assertSame(entry, segment.accessQueue.peek());
     assertEquals(1, segment.accessQueue.size());
 
     ticker.advance(1);
-    segment.recordRead(entry, ticker.read());
+    segment.recordRead(entry, value, ticker.read());
     segment.expireEntries(ticker.read());
     assertTrue(map.containsKey(key));
     assertSame(entry, segment.accessQueue.peek());
@@ -2454,6 +2508,7 @@ public class LocalCacheTest extends TestCase {
         .expireAfterAccess(123, NANOSECONDS)
         .maximumWeight(789)
         .weigher(weigher)
+        .admitByFrequency()
         .concurrencyLevel(12)
         .removalListener(listener)
         .ticker(ticker)
@@ -2475,6 +2530,7 @@ public class LocalCacheTest extends TestCase {
     assertEquals(localCacheOne.valueEquivalence, localCacheTwo.valueEquivalence);
     assertEquals(localCacheOne.maxWeight, localCacheTwo.maxWeight);
     assertEquals(localCacheOne.weigher, localCacheTwo.weigher);
+    assertEquals(localCacheOne.admitByFrequency, localCacheTwo.admitByFrequency);
     assertEquals(localCacheOne.expireAfterAccessNanos, localCacheTwo.expireAfterAccessNanos);
     assertEquals(localCacheOne.expireAfterWriteNanos, localCacheTwo.expireAfterWriteNanos);
     assertEquals(localCacheOne.removalListener, localCacheTwo.removalListener);
@@ -2490,6 +2546,7 @@ public class LocalCacheTest extends TestCase {
     assertEquals(localCacheTwo.valueEquivalence, localCacheThree.valueEquivalence);
     assertEquals(localCacheTwo.maxWeight, localCacheThree.maxWeight);
     assertEquals(localCacheTwo.weigher, localCacheThree.weigher);
+    assertEquals(localCacheTwo.admitByFrequency, localCacheThree.admitByFrequency);
     assertEquals(localCacheTwo.expireAfterAccessNanos, localCacheThree.expireAfterAccessNanos);
     assertEquals(localCacheTwo.expireAfterWriteNanos, localCacheThree.expireAfterWriteNanos);
     assertEquals(localCacheTwo.removalListener, localCacheThree.removalListener);
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.cache;
+
+import com.google.common.cache.OffHeapStore.OffHeapValueReference;
+
+import junit.framework.TestCase;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Unit tests for {@link OffHeapStore}.
+ */
+public class OffHeapStoreTest extends TestCase {
+
+  static final ValueSerializer<byte[]> BYTES = new ValueSerializer<byte[]>() {
+    @Override
+    public int serializedSize(byte[] value) {
+      return value.length;
+    }
+
+    @Override
+    public void serialize(byte[] value, ByteBuffer target) {
+      target.put(value);
+    }
+
+    @Override
+    public byte[] deserialize(ByteBuffer source) {
+      return source.array();
+    }
+  };
+
+  private final OffHeapStore<byte[]> store = new OffHeapStore<byte[]>(BYTES, 4096);
+
+  private static byte[] bytes(int length, int seed) {
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = (byte) (seed + i);
+    }
+    return bytes;
+  }
+
+  public void testSlabSize() {
+    assertEquals(4096, store.slabSize);
+    assertEquals(OffHeapStore.MIN_BLOCK_SIZE, new OffHeapStore<byte[]>(BYTES, 0).slabSize);
+    assertEquals(OffHeapStore.MAX_SLAB_SIZE,
+        new OffHeapStore<byte[]>(BYTES, Long.MAX_VALUE).slabSize);
+  }
+
+  public void testStore() {
+    byte[] value = bytes(100, 7);
+    OffHeapValueReference<Object, byte[]> reference = store.store(value);
+    assertEquals(128, reference.getWeight());
+    assertTrue(Arrays.equals(value, reference.get()));
+    assertNotSame(reference.get(), reference.get());
+    assertEquals(1, store.slabs.size());
+  }
+
+  public void testStore_empty() {
+    OffHeapValueReference<Object, byte[]> reference = store.store(new byte[0]);
+    assertEquals(OffHeapStore.MIN_BLOCK_SIZE, reference.getWeight());
+    assertEquals(0, reference.get().length);
+  }
+
+  public void testStore_larger() {
+    byte[] value = bytes(10000, 3);
+    OffHeapValueReference<Object, byte[]> reference = store.store(value);
+    assertEquals(10000, reference.getWeight());
+    assertTrue(Arrays.equals(value, reference.get()));
+    assertTrue(store.slabs.isEmpty());
+
+    // its buffer is not reused
+    store.release(reference);
+    store.reclaim();
+    store.reclaim();
+    assertEquals(0, store.freeBytes());
+  }
+
+  public void testStore_shortWrite() {
+    OffHeapStore<byte[]> store = new OffHeapStore<byte[]>(new ValueSerializer<byte[]>() {
+      @Override
+      public int serializedSize(byte[] value) {
+        return value.length + 1;
+      }
+
+      @Override
+      public void serialize(byte[] value, ByteBuffer target) {
+        target.put(value);
+      }
+
+      @Override
+      public byte[] deserialize(ByteBuffer source) {
+        return source.array();
+      }
+    }, 4096);
+    try {
+      store.store(bytes(10, 0));
+      fail();
+    } catch (IllegalStateException expected) {}
+    // the block was freed
+    assertEquals(4096, store.freeBytes());
+  }
+
+  public void testRelease() {
+    OffHeapValueReference<Object, byte[]> reference = store.store(bytes(100, 1));
+    store.release(reference);
+    assertNull(reference.get());
+    assertTrue(reference.isActive());
+    assertEquals(4096 - 128, store.freeBytes());
+  }
+
+  public void testRelease_reused() {
+    OffHeapValueReference<Object, byte[]> first = store.store(bytes(100, 1));
+    store.release(first);
+    // the block awaits the readers of its epoch before it is reused
+    OffHeapValueReference<Object, byte[]> second = store.store(bytes(100, 2));
+    assertFalse(first.offset == second.offset);
+    OffHeapValueReference<Object, byte[]> third = store.store(bytes(100, 3));
+    assertEquals(first.offset, third.offset);
+    assertTrue(Arrays.equals(bytes(100, 3), third.get()));
+    assertNull(first.get());
+  }
+
+  public void testRelease_otherStore() {
+    OffHeapStore<byte[]> other = new OffHeapStore<byte[]>(BYTES, 4096);
+    OffHeapValueReference<Object, byte[]> reference = other.store(bytes(100, 1));
+    store.release(reference);
+    assertTrue(Arrays.equals(bytes(100, 1), reference.get()));
+  }
+
+  public void testReclaim_awaitsReaders() {
+    OffHeapValueReference<Object, byte[]> reference = store.store(bytes(100, 1));
+    store.release(reference);
+    store.reclaim();
+    assertEquals(1, store.epoch);
+
+    // a reader which registered before the release holds the block
+    store.readers.incrementAndGet(0);
+    store.reclaim();
+    assertEquals(1, store.awaiting.size());
+    store.readers.decrementAndGet(0);
+    store.reclaim();
+    assertTrue(store.awaiting.isEmpty());
+  }
+
+  public void testAllocate_split() {
+    OffHeapValueReference<Object, byte[]> large = store.store(bytes(1024, 1));
+    // fill the rest of the slab
+    for (int i = 0; i < 3; i++) {
+      store.store(bytes(1024, 1));
+    }
+    assertEquals(0, store.freeBytes());
+    store.release(large);
+    store.reclaim();
+    store.reclaim();
+    assertEquals(1024, store.freeBytes());
+
+    OffHeapValueReference<Object, byte[]> small = store.store(bytes(64, 5));
+    assertEquals(large.offset, small.offset);
+    assertEquals(1024 - 64, store.freeBytes());
+    assertEquals(1, store.slabs.size());
+  }
+
+  public void testAllocate_newSlab() {
+    store.store(bytes(2000, 1));
+    // the remainder of the first slab is freed as a block when a new slab is needed
+    store.store(bytes(3000, 2));
+    assertEquals(2, store.slabs.size());
+    assertEquals(2048, store.freeBytes());
+    assertEquals(0, store.store(bytes(2000, 3)).slabIndex);
+  }
+}
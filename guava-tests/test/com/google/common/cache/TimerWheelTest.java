@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.cache.LocalCache.ReferenceEntry;
+import com.google.common.cache.LocalCacheTest.DummyEntry;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+/**
+ * Unit tests for {@link TimerWheel}.
+ */
+public class TimerWheelTest extends TestCase {
+  private final TimerWheel<Integer, Integer> timerWheel = new TimerWheel<Integer, Integer>(0);
+
+  private static DummyEntry<Integer, Integer> entry(int key, long expirationTime) {
+    DummyEntry<Integer, Integer> entry = DummyEntry.create(key, key, null);
+    entry.setAccessTime(expirationTime);
+    return entry;
+  }
+
+  private List<ReferenceEntry<Integer, Integer>> expired() {
+    List<ReferenceEntry<Integer, Integer>> expired = Lists.newArrayList();
+    ReferenceEntry<Integer, Integer> e;
+    while ((e = timerWheel.poll()) != null) {
+      expired.add(e);
+    }
+    return expired;
+  }
+
+  public void testOffer_expired() {
+    DummyEntry<Integer, Integer> entry = entry(1, 0);
+    timerWheel.add(entry);
+    assertSame(entry, timerWheel.peek());
+    assertEquals(1, timerWheel.size());
+  }
+
+  public void testAdvance_levels() {
+    long[] durations = {
+        SECONDS.toNanos(10), MINUTES.toNanos(10), HOURS.toNanos(10), DAYS.toNanos(3),
+        DAYS.toNanos(30) };
+    List<ReferenceEntry<Integer, Integer>> entries = Lists.newArrayList();
+    for (int i = 0; i < durations.length; i++) {
+      entries.add(entry(i, durations[i]));
+      timerWheel.add(entries.get(i));
+    }
+    assertNull(timerWheel.peek());
+    assertEquals(durations.length, timerWheel.size());
+
+    for (int i = 0; i < durations.length; i++) {
+      timerWheel.advance(durations[i] - 1);
+      assertThat(expired()).isEmpty();
+      timerWheel.advance(durations[i] + SECONDS.toNanos(2));
+      assertEquals(ImmutableList.of(entries.get(i)), expired());
+      assertEquals(durations.length - i - 1, timerWheel.size());
+    }
+    assertTrue(timerWheel.isEmpty());
+  }
+
+  public void testAdvance_cascade() {
+    DummyEntry<Integer, Integer> entry = entry(1, HOURS.toNanos(1) + SECONDS.toNanos(30));
+    timerWheel.add(entry);
+
+    // advance past the hour in small steps, so that the entry cascades through each level
+    for (long time = 0; time < HOURS.toNanos(1); time += SECONDS.toNanos(17)) {
+      timerWheel.advance(time);
+      assertNull(timerWheel.peek());
+      assertTrue(timerWheel.contains(entry));
+    }
+    timerWheel.advance(HOURS.toNanos(1) + SECONDS.toNanos(32));
+    assertSame(entry, timerWheel.peek());
+  }
+
+  public void testAdvance_extended() {
+    DummyEntry<Integer, Integer> entry = entry(1, SECONDS.toNanos(10));
+    timerWheel.add(entry);
+    entry.setAccessTime(MINUTES.toNanos(10));
+
+    // the entry is refiled when its original bucket elapses
+    timerWheel.advance(SECONDS.toNanos(20));
+    assertNull(timerWheel.peek());
+    timerWheel.advance(MINUTES.toNanos(11));
+    assertSame(entry, timerWheel.peek());
+  }
+
+  public void testRemove() {
+    DummyEntry<Integer, Integer> first = entry(1, SECONDS.toNanos(10));
+    DummyEntry<Integer, Integer> second = entry(2, SECONDS.toNanos(10));
+    timerWheel.add(first);
+    timerWheel.add(second);
+    assertTrue(timerWheel.remove(first));
+    assertFalse(timerWheel.contains(first));
+    assertTrue(timerWheel.contains(second));
+
+    timerWheel.advance(SECONDS.toNanos(20));
+    assertEquals(ImmutableList.of(second), expired());
+  }
+
+  public void testClear() {
+    DummyEntry<Integer, Integer> first = entry(1, 0);
+    DummyEntry<Integer, Integer> second = entry(2, DAYS.toNanos(30));
+    timerWheel.add(first);
+    timerWheel.add(second);
+    assertEquals(2, timerWheel.size());
+
+    timerWheel.clear();
+    assertTrue(timerWheel.isEmpty());
+    assertFalse(timerWheel.contains(first));
+    assertFalse(timerWheel.contains(second));
+  }
+}
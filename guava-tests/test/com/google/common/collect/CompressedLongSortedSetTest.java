@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.collect.testing.features.CollectionFeature.ALLOWS_NULL_QUERIES;
+import static com.google.common.collect.testing.features.CollectionFeature.KNOWN_ORDER;
+import static com.google.common.collect.testing.features.CollectionFeature.SERIALIZABLE;
+import static com.google.common.testing.SerializableTester.reserializeAndAssert;
+
+import com.google.common.collect.testing.NavigableSetTestSuiteBuilder;
+import com.google.common.collect.testing.SampleElements;
+import com.google.common.collect.testing.TestSortedSetGenerator;
+import com.google.common.collect.testing.features.CollectionSize;
+import com.google.common.primitives.Longs;
+import com.google.common.testing.EqualsTester;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Tests for {@link CompressedLongSortedSet}.
+ */
+public class CompressedLongSortedSetTest extends TestCase {
+  public static Test suite() {
+    TestSuite suite = new TestSuite();
+    suite.addTestSuite(CompressedLongSortedSetTest.class);
+
+    suite.addTest(NavigableSetTestSuiteBuilder.using(new CompressedLongSortedSetGenerator())
+        .named("CompressedLongSortedSet")
+        .withFeatures(CollectionSize.ANY, KNOWN_ORDER, ALLOWS_NULL_QUERIES, SERIALIZABLE)
+        .createTestSuite());
+
+    suite.addTest(NavigableSetTestSuiteBuilder.using(new CompressedLongSortedSetGenerator() {
+          @Override SortedSet<Long> create(long[] elements) {
+            long[] withExtremes = Arrays.copyOf(elements, elements.length + 2);
+            withExtremes[elements.length] = Long.MIN_VALUE;
+            withExtremes[elements.length + 1] = Long.MAX_VALUE;
+            return CompressedLongSortedSet.copyOf(withExtremes)
+                .subSet(Long.MIN_VALUE, false, Long.MAX_VALUE, false);
+          }
+        })
+        .named("CompressedLongSortedSet.subSet")
+        .withFeatures(CollectionSize.ANY, KNOWN_ORDER, ALLOWS_NULL_QUERIES, SERIALIZABLE)
+        .createTestSuite());
+
+    return suite;
+  }
+
+  private static class CompressedLongSortedSetGenerator implements TestSortedSetGenerator<Long> {
+    @Override
+    public SampleElements<Long> samples() {
+      return new SampleElements<Long>(-1000L, 0L, 1L, 1L << 40, Long.MAX_VALUE - 4);
+    }
+
+    @Override
+    public SortedSet<Long> create(Object... elements) {
+      long[] array = new long[elements.length];
+      for (int i = 0; i < elements.length; i++) {
+        array[i] = (Long) elements[i];
+      }
+      return create(array);
+    }
+
+    SortedSet<Long> create(long[] elements) {
+      return CompressedLongSortedSet.copyOf(elements);
+    }
+
+    @Override
+    public Long[] createArray(int length) {
+      return new Long[length];
+    }
+
+    @Override
+    public Iterable<Long> order(List<Long> insertionOrder) {
+      return Ordering.natural().sortedCopy(insertionOrder);
+    }
+
+    @Override
+    public Long belowSamplesLesser() {
+      return Long.MIN_VALUE + 1;
+    }
+
+    @Override
+    public Long belowSamplesGreater() {
+      return Long.MIN_VALUE + 2;
+    }
+
+    @Override
+    public Long aboveSamplesLesser() {
+      return Long.MAX_VALUE - 2;
+    }
+
+    @Override
+    public Long aboveSamplesGreater() {
+      return Long.MAX_VALUE - 1;
+    }
+  }
+
+  public void testEmpty() {
+    CompressedLongSortedSet set = CompressedLongSortedSet.empty();
+    assertTrue(set.isEmpty());
+    assertFalse(set.contains(0L));
+    assertNull(set.ceiling(0L));
+    assertEquals(0, set.toLongArray().length);
+    assertSame(set, CompressedLongSortedSet.copyOf(new long[0]));
+  }
+
+  public void testCopyOf_unsortedWithDuplicates() {
+    CompressedLongSortedSet set = CompressedLongSortedSet.copyOf(new long[] {5, 3, 5, -1, 3});
+    assertEquals(ImmutableSortedSet.of(-1L, 3L, 5L), set);
+    assertEquals(ImmutableList.of(-1L, 3L, 5L), set.asList());
+  }
+
+  @SuppressWarnings("deprecation") // testing the hiding methods
+  public void testUncompressedFactories_unsupported() {
+    try {
+      CompressedLongSortedSet.of(1L, 2L);
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+    try {
+      CompressedLongSortedSet.copyOf(Arrays.asList(1L, 2L));
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+  }
+
+  public void testCreate_range() {
+    CompressedLongSortedSet set = CompressedLongSortedSet.create(Range.closedOpen(10L, 1000L));
+    assertEquals(ContiguousSet.create(Range.closedOpen(10L, 1000L), DiscreteDomain.longs()), set);
+    assertEquals(10L, (long) set.first());
+    assertEquals(999L, (long) set.last());
+    assertTrue(set.contains(500L));
+    assertFalse(set.contains(1000L));
+    assertEquals(Long.valueOf(500), set.asList().get(490));
+    assertTrue(CompressedLongSortedSet.create(Range.openClosed(3L, 3L)).isEmpty());
+    assertEquals(ImmutableSortedSet.of(Long.MAX_VALUE),
+        CompressedLongSortedSet.create(Range.atLeast(Long.MAX_VALUE)));
+  }
+
+  public void testCreate_rangeTooLarge() {
+    try {
+      CompressedLongSortedSet.create(Range.<Long>all());
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testExtremeValues() {
+    long[] elements = {Long.MIN_VALUE, -1, 0, 1, Long.MAX_VALUE};
+    CompressedLongSortedSet set = CompressedLongSortedSet.copyOf(elements);
+    assertTrue(Arrays.equals(elements, set.toLongArray()));
+    assertEquals(Long.valueOf(Long.MAX_VALUE), set.higher(1L));
+    assertEquals(Long.valueOf(Long.MIN_VALUE), set.lower(-1L));
+    assertNull(set.higher(Long.MAX_VALUE));
+    assertEquals(ImmutableSortedSet.of(Long.MAX_VALUE), set.tailSet(Long.MAX_VALUE));
+  }
+
+  public void testNavigation_random() {
+    Random random = new Random(0);
+    for (int bits : new int[] {1, 4, 20, 63}) {
+      long[] elements = new long[2000];
+      for (int i = 0; i < elements.length; i++) {
+        elements[i] = random.nextLong() >> (64 - bits);
+      }
+      TreeSet<Long> expected = new TreeSet<Long>(Longs.asList(elements));
+      CompressedLongSortedSet set = CompressedLongSortedSet.copyOf(elements);
+      assertEquals(expected, set);
+      assertEquals(expected.hashCode(), set.hashCode());
+      assertEquals(ImmutableList.copyOf(expected), set.asList());
+      assertEquals(ImmutableList.copyOf(expected.descendingSet()),
+          ImmutableList.copyOf(set.descendingIterator()));
+
+      for (int i = 0; i < 200; i++) {
+        long probe = random.nextLong() >> (64 - bits);
+        assertEquals(expected.contains(probe), set.contains(probe));
+        assertEquals(expected.lower(probe), set.lower(probe));
+        assertEquals(expected.floor(probe), set.floor(probe));
+        assertEquals(expected.ceiling(probe), set.ceiling(probe));
+        assertEquals(expected.higher(probe), set.higher(probe));
+        NavigableSet<Long> expectedTail = expected.tailSet(probe, i % 2 == 0);
+        CompressedLongSortedSet tail = set.tailSet(probe, i % 2 == 0);
+        assertEquals(expectedTail, tail);
+        assertEquals(ImmutableList.copyOf(expectedTail), tail.asList());
+        assertEquals(expected.headSet(probe, i % 3 == 0), set.headSet(probe, i % 3 == 0));
+      }
+    }
+  }
+
+  public void testIntersectionAndUnion_random() {
+    Random random = new Random(1);
+    for (int trial = 0; trial < 20; trial++) {
+      CompressedLongSortedSet left = randomSet(random, random.nextInt(3000));
+      CompressedLongSortedSet right = randomSet(random, random.nextInt(3000));
+      if (trial % 2 == 0) {
+        right = right.tailSet(right.isEmpty() ? 0 : right.asList().get(right.size() / 3));
+      }
+      assertEquals(Sets.intersection(left, right), left.intersection(right));
+      assertEquals(Sets.intersection(left, right), right.intersection(left));
+      assertEquals(Sets.union(left, right), left.union(right));
+      assertEquals(Sets.union(left, right), right.union(left));
+    }
+  }
+
+  public void testIntersection_skipsBlocks() {
+    CompressedLongSortedSet dense = CompressedLongSortedSet.create(Range.closed(0L, 100000L));
+    CompressedLongSortedSet sparse = CompressedLongSortedSet.copyOf(new long[] {-5, 7, 65536, 99999});
+    assertEquals(ImmutableSortedSet.of(7L, 65536L, 99999L), dense.intersection(sparse));
+    assertEquals(ImmutableSortedSet.of(7L, 65536L, 99999L), sparse.intersection(dense));
+  }
+
+  public void testEquals() {
+    new EqualsTester()
+        .addEqualityGroup(
+            CompressedLongSortedSet.copyOf(new long[] {1, 2, 3}),
+            CompressedLongSortedSet.create(Range.closed(1L, 3L)),
+            CompressedLongSortedSet.copyOf(new long[] {0, 1, 2, 3}).tailSet(1L),
+            ImmutableSortedSet.of(1L, 2L, 3L))
+        .addEqualityGroup(CompressedLongSortedSet.copyOf(new long[] {1, 2, 4}))
+        .addEqualityGroup(CompressedLongSortedSet.empty(), ImmutableSet.of())
+        .testEquals();
+  }
+
+  public void testSerialization() {
+    CompressedLongSortedSet set = randomSet(new Random(2), 1000);
+    reserializeAndAssert(set);
+    reserializeAndAssert(set.headSet(0L));
+  }
+
+  private static CompressedLongSortedSet randomSet(Random random, int size) {
+    long[] elements = new long[size];
+    for (int i = 0; i < size; i++) {
+      elements[i] = random.nextInt(10000) * (long) (1 + random.nextInt(3));
+    }
+    return CompressedLongSortedSet.copyOf(elements);
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import com.google.common.testing.NullPointerTester;
+import com.google.common.testing.SerializableTester;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Test cases for {@link ConcurrentHashBasedTable}.
+ */
+public class ConcurrentHashBasedTableTest extends AbstractTableTest {
+
+  @Override protected ConcurrentHashBasedTable<String, Integer, Character> create(
+      Object... data) {
+    ConcurrentHashBasedTable<String, Integer, Character> table =
+        ConcurrentHashBasedTable.create();
+    table.put("foo", 4, 'a');
+    table.put("cat", 1, 'b');
+    table.clear();
+    populate(table, data);
+    return table;
+  }
+
+  public void testCreateWithValidSizes() {
+    Table<String, Integer, Character> table1 = ConcurrentHashBasedTable.create(100, 20);
+    table1.put("foo", 1, 'a');
+    assertEquals((Character) 'a', table1.get("foo", 1));
+
+    Table<String, Integer, Character> table2 = ConcurrentHashBasedTable.create(0, 0);
+    table2.put("foo", 1, 'a');
+    assertEquals((Character) 'a', table2.get("foo", 1));
+  }
+
+  public void testCreateWithInvalidSizes() {
+    try {
+      ConcurrentHashBasedTable.create(100, -5);
+      fail();
+    } catch (IllegalArgumentException expected) {}
+
+    try {
+      ConcurrentHashBasedTable.create(-5, 20);
+      fail();
+    } catch (IllegalArgumentException expected) {}
+  }
+
+  public void testCreateCopy() {
+    Table<String, Integer, Character> original = HashBasedTable.create();
+    original.put("foo", 1, 'a');
+    original.put("bar", 1, 'b');
+    original.put("foo", 3, 'c');
+    Table<String, Integer, Character> copy = ConcurrentHashBasedTable.create(original);
+    assertEquals(original, copy);
+    assertEquals((Character) 'a', copy.get("foo", 1));
+  }
+
+  public void testPutIfAbsent() {
+    ConcurrentHashBasedTable<String, Integer, Character> table = create("foo", 1, 'a');
+    assertNull(table.putIfAbsent("foo", 2, 'b'));
+    assertEquals((Character) 'b', table.putIfAbsent("foo", 2, 'c'));
+    assertNull(table.putIfAbsent("bar", 1, 'd'));
+    assertEquals((Character) 'a', table.putIfAbsent("foo", 1, 'e'));
+    assertEquals(create("foo", 1, 'a', "foo", 2, 'b', "bar", 1, 'd'), table);
+  }
+
+  public void testConditionalRemove() {
+    ConcurrentHashBasedTable<String, Integer, Character> table =
+        create("foo", 1, 'a', "bar", 1, 'b');
+    assertFalse(table.remove("foo", 1, 'b'));
+    assertFalse(table.remove("foo", 2, 'a'));
+    assertFalse(table.remove("foo", 1, null));
+    assertTrue(table.remove("foo", 1, 'a'));
+    assertFalse(table.containsRow("foo"));
+    assertEquals(create("bar", 1, 'b'), table);
+  }
+
+  public void testReplace() {
+    ConcurrentHashBasedTable<String, Integer, Character> table = create("foo", 1, 'a');
+    assertNull(table.replace("foo", 2, 'b'));
+    assertNull(table.replace("bar", 1, 'b'));
+    assertEquals((Character) 'a', table.replace("foo", 1, 'c'));
+    assertFalse(table.replace("foo", 1, 'a', 'd'));
+    assertTrue(table.replace("foo", 1, 'c', 'd'));
+    assertFalse(table.replace("bar", 1, 'c', 'd'));
+    assertEquals(create("foo", 1, 'd'), table);
+  }
+
+  public void testRowViewOfEmptyRow() {
+    ConcurrentHashBasedTable<String, Integer, Character> table = create();
+    Map<Integer, Character> row = table.row("foo");
+    assertTrue(row.isEmpty());
+    table.put("foo", 1, 'a');
+    assertEquals(ImmutableMap.of(1, 'a'), row);
+    row.remove(1);
+    assertTrue(table.isEmpty());
+    row.put(2, 'b');
+    assertEquals(create("foo", 2, 'b'), table);
+  }
+
+  public void testIteratorRemoveAndSetValue() {
+    ConcurrentHashBasedTable<String, Integer, Character> table =
+        create("foo", 1, 'a', "foo", 2, 'b', "bar", 1, 'c');
+    Map.Entry<Integer, Character> entry = table.row("foo").entrySet().iterator().next();
+    Character oldValue = entry.getValue();
+    assertEquals(oldValue, entry.setValue('z'));
+    assertEquals((Character) 'z', table.get("foo", entry.getKey()));
+
+    Iterators.clear(table.column(1).entrySet().iterator());
+    assertEquals(1, table.size());
+    Iterators.clear(table.cellSet().iterator());
+    assertTrue(table.isEmpty());
+  }
+
+  public void testSerialization() {
+    table = create("foo", 1, 'a', "bar", 1, 'b', "foo", 3, 'c');
+    SerializableTester.reserializeAndAssert(table);
+  }
+
+  public void testNullPointerStatic() {
+    new NullPointerTester().testAllPublicStaticMethods(ConcurrentHashBasedTable.class);
+  }
+
+  /**
+   * Checks that no update is lost while rows are repeatedly emptied and refilled: each thread
+   * owns one column of a few shared rows, and adds and removes its cells many times.
+   */
+  public void testConcurrentUpdates() throws Exception {
+    final ConcurrentHashBasedTable<Integer, Integer, Integer> table =
+        ConcurrentHashBasedTable.create();
+    final int rowCount = 4;
+    final int iterations = 20000;
+    int threadCount = 8;
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    try {
+      List<Future<Integer>> futures = Lists.newArrayList();
+      for (int i = 0; i < threadCount; i++) {
+        final int column = i;
+        futures.add(executor.submit(new Callable<Integer>() {
+          @Override public Integer call() {
+            int net = 0;
+            for (int j = 0; j < iterations; j++) {
+              int row = j % rowCount;
+              if (((j / rowCount) + column) % 3 == 0) {
+                if (table.remove(row, column) != null) {
+                  net--;
+                }
+              } else if (table.putIfAbsent(row, column, j) == null) {
+                net++;
+              } else {
+                Integer value = table.get(row, column);
+                assertTrue(table.replace(row, column, value, value + 1));
+              }
+            }
+            return net;
+          }
+        }));
+      }
+      int expectedSize = 0;
+      for (Future<Integer> future : futures) {
+        expectedSize += future.get();
+      }
+      assertEquals(expectedSize, table.size());
+      assertEquals(expectedSize, table.cellSet().size());
+      assertEquals(expectedSize, Iterators.size(table.cellSet().iterator()));
+      for (int row = 0; row < rowCount; row++) {
+        assertEquals(table.containsRow(row), !table.row(row).isEmpty());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.testing.NullPointerTester;
+
+import junit.framework.TestCase;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Unit test for {@link ConcurrentMinMaxPriorityQueue}.
+ */
+public class ConcurrentMinMaxPriorityQueueTest extends TestCase {
+  private static final Ordering<Integer> SOME_COMPARATOR = Ordering.natural().reverse();
+
+  public void testCreation_simple() {
+    ConcurrentMinMaxPriorityQueue<Integer> queue = ConcurrentMinMaxPriorityQueue.create();
+    assertEquals(Integer.MAX_VALUE, queue.maximumSize);
+    assertSame(Ordering.natural(), queue.comparator());
+    assertTrue(queue.isEmpty());
+  }
+
+  public void testCreation_comparator() {
+    ConcurrentMinMaxPriorityQueue<Integer> queue =
+        ConcurrentMinMaxPriorityQueue.orderedBy(SOME_COMPARATOR).create();
+    assertSame(SOME_COMPARATOR, queue.comparator());
+  }
+
+  public void testCreation_maximumSize() {
+    ConcurrentMinMaxPriorityQueue<Integer> queue =
+        ConcurrentMinMaxPriorityQueue.maximumSize(42).create();
+    assertEquals(42, queue.maximumSize);
+  }
+
+  public void testCreation_initialContents() {
+    ConcurrentMinMaxPriorityQueue<Integer> queue =
+        ConcurrentMinMaxPriorityQueue.create(Lists.newArrayList(3, 1, 2));
+    assertEquals(3, queue.size());
+    assertThat(queue).containsExactly(1, 2, 3);
+  }
+
+  public void testCreation_invalid() {
+    try {
+      ConcurrentMinMaxPriorityQueue.maximumSize(0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      ConcurrentMinMaxPriorityQueue.orderedBy(SOME_COMPARATOR).expectedSize(-1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      ConcurrentMinMaxPriorityQueue.orderedBy(SOME_COMPARATOR).concurrencyLevel(0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testStrictOrder_concurrencyLevelOne() {
+    Random random = new Random(0);
+    List<Integer> elements = Lists.newArrayList();
+    for (int i = 0; i < 500; i++) {
+      elements.add(random.nextInt(100));
+    }
+    ConcurrentMinMaxPriorityQueue<Integer> queue = ConcurrentMinMaxPriorityQueue
+        .orderedBy(Ordering.<Integer>natural())
+        .concurrencyLevel(1)
+        .create(elements);
+    List<Integer> sorted = Ordering.natural().sortedCopy(elements);
+    for (int i = 0, j = sorted.size() - 1; i <= j; i++, j--) {
+      assertEquals(sorted.get(i), queue.peekFirst());
+      assertEquals(sorted.get(i), queue.pollFirst());
+      if (i < j) {
+        assertEquals(sorted.get(j), queue.peekLast());
+        assertEquals(sorted.get(j), queue.pollLast());
+      }
+    }
+    assertTrue(queue.isEmpty());
+    assertNull(queue.pollFirst());
+    assertNull(queue.pollLast());
+  }
+
+  public void testRelaxedOrder_pollsEveryElementOnce() {
+    Random random = new Random(0);
+    List<Integer> elements = Lists.newArrayList();
+    for (int i = 0; i < 1000; i++) {
+      elements.add(random.nextInt(300));
+    }
+    ConcurrentMinMaxPriorityQueue<Integer> queue = ConcurrentMinMaxPriorityQueue
+        .orderedBy(Ordering.<Integer>natural())
+        .concurrencyLevel(8)
+        .create(elements);
+    assertEquals(Collections.min(elements), queue.peekFirst());
+    assertEquals(Collections.max(elements), queue.peekLast());
+    Multiset<Integer> polled = HashMultiset.create();
+    while (!queue.isEmpty()) {
+      polled.add(random.nextBoolean() ? queue.pollFirst() : queue.pollLast());
+    }
+    assertEquals(HashMultiset.create(elements), polled);
+    assertNull(queue.peekFirst());
+    assertNull(queue.peekLast());
+  }
+
+  public void testRelaxedOrder_pollFirstFavorsLeastElements() {
+    ConcurrentMinMaxPriorityQueue<Integer> queue = ConcurrentMinMaxPriorityQueue
+        .orderedBy(Ordering.<Integer>natural())
+        .concurrencyLevel(4)
+        .create(ContiguousSet.create(Range.closedOpen(0, 1000), DiscreteDomain.integers()));
+    long sum = 0;
+    for (int i = 0; i < 100; i++) {
+      sum += queue.pollFirst();
+    }
+    // Strictly the first 100 elements would sum to 4950; all of them, 499500.
+    assertTrue(sum < 4950 * 4);
+  }
+
+  public void testRemoveFirstAndLast_empty() {
+    ConcurrentMinMaxPriorityQueue<Integer> queue = ConcurrentMinMaxPriorityQueue.create();
+    try {
+      queue.removeFirst();
+      fail();
+    } catch (NoSuchElementException expected) {
+    }
+    try {
+      queue.removeLast();
+      fail();
+    } catch (NoSuchElementException expected) {
+    }
+  }
+
+  public void testMaximumSize_evictsGreatest() {
+    for (int concurrencyLevel : new int[] {1, 3, 8}) {
+      List<Integer> elements = Lists.newArrayList(
+          ContiguousSet.create(Range.closedOpen(0, 500), DiscreteDomain.integers()));
+      Collections.shuffle(elements, new Random(concurrencyLevel));
+      ConcurrentMinMaxPriorityQueue<Integer> queue = ConcurrentMinMaxPriorityQueue
+          .maximumSize(10)
+          .concurrencyLevel(concurrencyLevel)
+          .create();
+      MinMaxPriorityQueue<Integer> expected = MinMaxPriorityQueue.maximumSize(10).create();
+      for (Integer element : elements) {
+        assertEquals(expected.offer(element), queue.offer(element));
+        assertTrue(queue.size() <= 10);
+      }
+      assertEquals(HashMultiset.create(expected), HashMultiset.create(queue));
+    }
+  }
+
+  public void testMaximumSize_rejectsGreatest() {
+    ConcurrentMinMaxPriorityQueue<Integer> queue = ConcurrentMinMaxPriorityQueue
+        .maximumSize(3)
+        .create(Lists.newArrayList(1, 2, 3));
+    assertFalse(queue.offer(4));
+    assertTrue(queue.add(4));
+    assertTrue(queue.offer(0));
+    assertThat(queue).containsExactly(0, 1, 2);
+  }
+
+  public void testContainsAndRemove() {
+    ConcurrentMinMaxPriorityQueue<Integer> queue =
+        ConcurrentMinMaxPriorityQueue.create(Lists.newArrayList(5, 3, 5, 1));
+    assertTrue(queue.contains(5));
+    assertFalse(queue.contains(4));
+    assertFalse(queue.contains(null));
+    assertTrue(queue.remove(5));
+    assertTrue(queue.remove(5));
+    assertFalse(queue.remove(5));
+    assertFalse(queue.remove(null));
+    assertEquals(2, queue.size());
+    assertEquals((Integer) 3, queue.peekLast());
+  }
+
+  public void testIteratorRemove() {
+    ConcurrentMinMaxPriorityQueue<Integer> queue =
+        ConcurrentMinMaxPriorityQueue.create(Lists.newArrayList(1, 2, 3, 4, 5, 6));
+    Iterator<Integer> iterator = queue.iterator();
+    try {
+      iterator.remove();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    while (iterator.hasNext()) {
+      if (iterator.next() % 2 == 0) {
+        iterator.remove();
+      }
+    }
+    assertThat(queue).containsExactly(1, 3, 5);
+    assertEquals(3, queue.size());
+  }
+
+  public void testClear() {
+    ConcurrentMinMaxPriorityQueue<Integer> queue =
+        ConcurrentMinMaxPriorityQueue.create(Lists.newArrayList(1, 2, 3));
+    queue.clear();
+    assertTrue(queue.isEmpty());
+    assertNull(queue.peek());
+    assertNull(queue.poll());
+    queue.add(7);
+    assertEquals((Integer) 7, queue.peek());
+  }
+
+  public void testConcurrentAddAndPoll() throws Exception {
+    final int threads = 4;
+    final int perThread = 5000;
+    final ConcurrentMinMaxPriorityQueue<Integer> queue = ConcurrentMinMaxPriorityQueue
+        .orderedBy(Ordering.<Integer>natural())
+        .concurrencyLevel(2 * threads)
+        .create();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<List<Integer>>> futures = Lists.newArrayList();
+      for (int t = 0; t < threads; t++) {
+        final int base = t * perThread;
+        futures.add(executor.submit(new Callable<List<Integer>>() {
+          @Override public List<Integer> call() {
+            List<Integer> polled = Lists.newArrayList();
+            for (int i = 0; i < perThread; i++) {
+              queue.add(base + i);
+              Integer element = (i % 2 == 0) ? queue.pollFirst() : queue.pollLast();
+              if (element != null) {
+                polled.add(element);
+              }
+            }
+            return polled;
+          }
+        }));
+      }
+      List<Integer> all = Lists.newArrayList();
+      for (Future<List<Integer>> future : futures) {
+        all.addAll(future.get());
+      }
+      all.addAll(queue);
+      Collections.sort(all);
+      assertEquals(
+          ContiguousSet.create(Range.closedOpen(0, threads * perThread), DiscreteDomain.integers())
+              .asList(),
+          all);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void testConcurrentBounded() throws Exception {
+    final int threads = 4;
+    final ConcurrentMinMaxPriorityQueue<Integer> queue = ConcurrentMinMaxPriorityQueue
+        .maximumSize(100)
+        .concurrencyLevel(2 * threads)
+        .create();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = Lists.newArrayList();
+      for (int t = 0; t < threads; t++) {
+        final Random random = new Random(t);
+        futures.add(executor.submit(new Runnable() {
+          @Override public void run() {
+            for (int i = 0; i < 5000; i++) {
+              queue.offer(random.nextInt(100000));
+              assertTrue(queue.size() <= 100);
+            }
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      assertEquals(100, queue.size());
+      assertEquals(100, Iterators.size(queue.iterator()));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void testNulls() {
+    NullPointerTester tester = new NullPointerTester();
+    tester.testAllPublicStaticMethods(ConcurrentMinMaxPriorityQueue.class);
+    tester.testAllPublicStaticMethods(ConcurrentMinMaxPriorityQueue.Builder.class);
+    tester.testAllPublicInstanceMethods(ConcurrentMinMaxPriorityQueue.<String>create());
+  }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import static java.util.Arrays.asList;
+
+import com.google.common.annotations.GwtCompatible;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.testing.NullPointerTester;
+import com.google.common.testing.SerializableTester;
+
+import junit.framework.TestCase;
+
+import java.util.Map;
+
+/**
+ * Tests for {@link DoubleArrayTable}.
+ */
+@GwtCompatible(emulated = true)
+public class DoubleArrayTableTest extends TestCase {
+
+  private DoubleArrayTable<String, Integer> table;
+
+  @Override protected void setUp() {
+    table = DoubleArrayTable.create(asList("foo", "bar"), asList(1, 2, 3));
+  }
+
+  public void testCreate() {
+    assertEquals(ImmutableList.of("foo", "bar"), table.rowKeyList());
+    assertEquals(ImmutableList.of(1, 2, 3), table.columnKeyList());
+    assertEquals(6, table.size());
+    assertEquals(0.0, table.get("bar", 3));
+    try {
+      DoubleArrayTable.create(ImmutableList.<String>of(), asList(1));
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      DoubleArrayTable.create(asList("foo", "foo"), asList(1));
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testGetPutAdd() {
+    assertEquals(0.0, table.put("foo", 2, 1.5));
+    assertEquals(1.5, table.put("foo", 2, 2.5));
+    assertEquals(2.5, table.get("foo", 2));
+    assertEquals(4.0, table.add("foo", 2, 1.5));
+    assertEquals(-1.0, table.add("bar", 1, -1.0));
+    assertEquals(4.0, table.at(0, 1));
+    assertEquals(-1.0, table.at(1, 0));
+    assertEquals(0.0, table.get("bar", 2));
+  }
+
+  public void testGetPut_badKeys() {
+    try {
+      table.get("cat", 1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      table.put("foo", 4, 1.0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      table.add("foo", null, 1.0);
+      fail();
+    } catch (NullPointerException expected) {
+    }
+  }
+
+  public void testAtSet() {
+    assertEquals(0.0, table.set(1, 2, 3.0));
+    assertEquals(3.0, table.set(1, 2, 4.0));
+    assertEquals(4.0, table.at(1, 2));
+    assertEquals(4.0, table.get("bar", 3));
+    try {
+      table.at(2, 0);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+    try {
+      table.set(0, 3, 1.0);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+    try {
+      table.at(-1, 0);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+  }
+
+  public void testFill() {
+    table.fill(2.0);
+    for (int i = 0; i < 2; i++) {
+      for (int j = 0; j < 3; j++) {
+        assertEquals(2.0, table.at(i, j));
+      }
+    }
+  }
+
+  public void testAggregates() {
+    table.put("foo", 1, 1.0);
+    table.put("foo", 2, -2.0);
+    table.put("foo", 3, 4.0);
+    table.put("bar", 1, 8.0);
+    assertEquals(3.0, table.rowSum("foo"));
+    assertEquals(-2.0, table.rowMin("foo"));
+    assertEquals(4.0, table.rowMax("foo"));
+    assertEquals(8.0, table.rowSum("bar"));
+    assertEquals(0.0, table.rowMin("bar"));
+    assertEquals(8.0, table.rowMax("bar"));
+    assertEquals(9.0, table.columnSum(1));
+    assertEquals(1.0, table.columnMin(1));
+    assertEquals(8.0, table.columnMax(1));
+    assertEquals(-2.0, table.columnSum(2));
+    assertEquals(-2.0, table.columnMin(2));
+    assertEquals(0.0, table.columnMax(2));
+    try {
+      table.rowSum("cat");
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      table.columnMax(0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testAggregates_nan() {
+    table.put("foo", 2, Double.NaN);
+    assertTrue(Double.isNaN(table.rowSum("foo")));
+    assertTrue(Double.isNaN(table.rowMin("foo")));
+    assertTrue(Double.isNaN(table.rowMax("foo")));
+    assertTrue(Double.isNaN(table.columnMin(2)));
+    assertTrue(Double.isNaN(table.columnMax(2)));
+    assertEquals(0.0, table.rowMax("bar"));
+  }
+
+  public void testCopy() {
+    table.put("foo", 1, 1.0);
+    DoubleArrayTable<String, Integer> copy = DoubleArrayTable.create(table);
+    assertEquals(table.rowKeyList(), copy.rowKeyList());
+    assertEquals(table.columnKeyList(), copy.columnKeyList());
+    assertEquals(1.0, copy.get("foo", 1));
+    copy.put("foo", 1, 2.0);
+    table.put("bar", 1, 3.0);
+    assertEquals(1.0, table.get("foo", 1));
+    assertEquals(0.0, copy.get("bar", 1));
+  }
+
+  public void testAsTable() {
+    table.put("foo", 1, 1.0);
+    table.put("bar", 3, 2.0);
+    Table<String, Integer, Double> view = table.asTable();
+    assertSame(view, table.asTable());
+    assertEquals(6, view.size());
+    assertFalse(view.isEmpty());
+    assertEquals((Double) 1.0, view.get("foo", 1));
+    assertEquals((Double) 0.0, view.get("foo", 2));
+    assertNull(view.get("cat", 1));
+    assertNull(view.get("foo", null));
+    assertTrue(view.contains("bar", 3));
+    assertFalse(view.contains("bar", 4));
+    assertTrue(view.containsValue(2.0));
+    assertFalse(view.containsValue(3.0));
+    assertEquals(ImmutableSet.of("foo", "bar"), view.rowKeySet());
+    assertEquals(ImmutableSet.of(1, 2, 3), view.columnKeySet());
+
+    Table<String, Integer, Double> expected = ArrayTable.create(table.rowKeyList(),
+        table.columnKeyList());
+    for (String rowKey : table.rowKeyList()) {
+      for (Integer columnKey : table.columnKeyList()) {
+        expected.put(rowKey, columnKey, table.get(rowKey, columnKey));
+      }
+    }
+    assertEquals(expected, view);
+    assertEquals(expected.hashCode(), view.hashCode());
+    assertEquals(expected.toString(), view.toString());
+    assertEquals(expected.toString(), table.toString());
+    assertEquals(expected.cellSet(), view.cellSet());
+    assertEquals(expected.rowMap(), view.rowMap());
+    assertEquals(expected.columnMap(), view.columnMap());
+    assertEquals(ImmutableList.copyOf(expected.values()), ImmutableList.copyOf(view.values()));
+  }
+
+  public void testAsTable_writeThrough() {
+    Table<String, Integer, Double> view = table.asTable();
+    assertEquals((Double) 0.0, view.put("foo", 1, 3.0));
+    assertEquals(3.0, table.get("foo", 1));
+    Map<Integer, Double> row = view.row("bar");
+    assertEquals((Double) 0.0, row.put(2, 4.0));
+    assertEquals(4.0, table.get("bar", 2));
+    Map<String, Double> column = view.columnMap().get(3);
+    assertEquals((Double) 0.0, column.put("foo", 5.0));
+    assertEquals(5.0, table.get("foo", 3));
+    Map.Entry<String, Double> entry = column.entrySet().iterator().next();
+    assertEquals((Double) 5.0, entry.setValue(6.0));
+    assertEquals(6.0, table.get("foo", 3));
+    table.put("bar", 2, 7.0);
+    assertEquals((Double) 7.0, row.get(2));
+
+    try {
+      view.put("cat", 1, 1.0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      row.put(4, 1.0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      view.put("foo", 1, null);
+      fail();
+    } catch (NullPointerException expected) {
+    }
+    try {
+      row.put(1, null);
+      fail();
+    } catch (NullPointerException expected) {
+    }
+  }
+
+  public void testAsTable_unsupported() {
+    Table<String, Integer, Double> view = table.asTable();
+    try {
+      view.remove("foo", 1);
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+    try {
+      view.clear();
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+    try {
+      view.row("foo").remove(1);
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+    try {
+      view.rowMap().put("foo", ImmutableMap.<Integer, Double>of());
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+    assertEquals(ImmutableMap.of(), view.row("cat"));
+    assertEquals(ImmutableMap.of(), view.column(4));
+  }
+
+  @GwtIncompatible("SerializableTester")
+  public void testSerialization() {
+    table.put("foo", 2, 0.5);
+    DoubleArrayTable<String, Integer> copy = SerializableTester.reserialize(table);
+    assertEquals(table.rowKeyList(), copy.rowKeyList());
+    assertEquals(table.columnKeyList(), copy.columnKeyList());
+    assertEquals(table.asTable(), copy.asTable());
+  }
+
+  @GwtIncompatible("NullPointerTester")
+  public void testNulls() {
+    new NullPointerTester().testAllPublicStaticMethods(DoubleArrayTable.class);
+    new NullPointerTester().testAllPublicInstanceMethods(table);
+  }
+}
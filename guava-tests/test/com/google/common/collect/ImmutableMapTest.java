@@ -30,6 +30,7 @@ import com.google.common.collect.testing.MapTestSuiteBuilder;
 import com.google.common.collect.testing.MinimalSet;
 import com.google.common.collect.testing.SampleElements.Colliders;
 import com.google.common.collect.testing.SampleElements.Unhashables;
+import com.google.common.collect.testing.TestStringMapGenerator;
 import com.google.common.collect.testing.UnhashableObject;
 import com.google.common.collect.testing.features.CollectionFeature;
 import com.google.common.collect.testing.features.CollectionSize;
@@ -110,6 +111,36 @@ public class ImmutableMapTest extends TestCase {
         .named("ImmutableMap.copyOf[EnumMap]")
         .createTestSuite());
 
+    suite.addTest(MapTestSuiteBuilder.using(new TestStringMapGenerator() {
+          @Override protected Map<String, String> create(Entry<String, String>[] entries) {
+            return CompactImmutableMap.fromEntryArray(entries.length, entries);
+          }
+        })
+        .withFeatures(
+            CollectionSize.SEVERAL,
+            MapFeature.REJECTS_DUPLICATES_AT_CREATION,
+            CollectionFeature.KNOWN_ORDER,
+            CollectionFeature.ALLOWS_NULL_QUERIES)
+        .named("CompactImmutableMap")
+        .createTestSuite());
+
+    suite.addTest(MapTestSuiteBuilder.using(new TestStringMapGenerator() {
+          @Override protected Map<String, String> create(Entry<String, String>[] entries) {
+            ImmutableMap.Builder<String, String> builder = ImmutableMap.builder();
+            for (Entry<String, String> entry : entries) {
+              builder.put(entry);
+            }
+            return builder.buildPerfectHash();
+          }
+        })
+        .withFeatures(
+            CollectionSize.ANY,
+            MapFeature.REJECTS_DUPLICATES_AT_CREATION,
+            CollectionFeature.KNOWN_ORDER,
+            CollectionFeature.ALLOWS_NULL_QUERIES)
+        .named("ImmutableMap.Builder.buildPerfectHash")
+        .createTestSuite());
+
     suite.addTest(CollectionTestSuiteBuilder.using(
             new ImmutableMapUnhashableValuesGenerator())
         .withFeatures(CollectionSize.ANY, CollectionFeature.KNOWN_ORDER,
@@ -652,6 +683,105 @@ public class ImmutableMapTest extends TestCase {
     assertEquals(intMap.hashCode(), map.hashCode());
   }
 
+  @GwtIncompatible("CompactImmutableMap")
+  public void testLargeMap() {
+    int size = CompactImmutableMap.MIN_SIZE * 3;
+    ImmutableMap.Builder<Integer, String> builder = ImmutableMap.builder();
+    for (int i = 0; i < size; i++) {
+      // spread the keys so that some collide in the table
+      builder.put(i * 1024, Integer.toString(i));
+    }
+    ImmutableMap<Integer, String> map = builder.build();
+    assertTrue(map instanceof CompactImmutableMap);
+    assertEquals(size, map.size());
+    for (int i = 0; i < size; i++) {
+      assertEquals(Integer.toString(i), map.get(i * 1024));
+      assertNull(map.get(i * 1024 + 1));
+    }
+    assertNull(map.get(null));
+    assertNull(map.get("0"));
+
+    int i = 0;
+    for (Entry<Integer, String> entry : map.entrySet()) {
+      assertEquals(Integer.valueOf(i * 1024), entry.getKey());
+      assertEquals(Integer.toString(i), entry.getValue());
+      i++;
+    }
+    assertEquals(size, i);
+    assertEquals(Integer.valueOf(1024), map.keySet().asList().get(1));
+    assertEquals("1", map.values().asList().get(1));
+
+    Map<Integer, String> expected = new LinkedHashMap<Integer, String>(map);
+    assertEquals(expected, map);
+    assertEquals(expected.hashCode(), map.hashCode());
+    assertEquals(map, ImmutableMap.copyOf(expected.entrySet()));
+    assertTrue(ImmutableMap.copyOf(expected.entrySet()) instanceof CompactImmutableMap);
+    assertSame(map, ImmutableMap.copyOf(map));
+    assertEquals(map, SerializableTester.reserialize(map));
+  }
+
+  @GwtIncompatible("CompactImmutableMap")
+  public void testLargeMap_duplicateKey() {
+    ImmutableMap.Builder<Integer, Integer> builder = ImmutableMap.builder();
+    for (int i = 0; i < CompactImmutableMap.MIN_SIZE; i++) {
+      builder.put(i, i);
+    }
+    builder.put(7, 8);
+    try {
+      builder.build();
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertEquals("Multiple entries with same key: 7=8 and 7=7", expected.getMessage());
+    }
+  }
+
+  @GwtIncompatible("buildPerfectHash")
+  public void testBuildPerfectHash() {
+    for (int size : new int[] {2, 3, 10, 1000, 100000}) {
+      ImmutableMap.Builder<String, Integer> builder = ImmutableMap.builder();
+      for (int i = 0; i < size; i++) {
+        builder.put("key" + i, i);
+      }
+      ImmutableMap<String, Integer> map = builder.buildPerfectHash();
+      assertTrue(map instanceof PerfectHashImmutableMap);
+      assertEquals(builder.build(), map);
+      assertEquals(size, map.size());
+      for (int i = 0; i < size; i++) {
+        assertEquals(Integer.valueOf(i), map.get("key" + i));
+        assertNull(map.get("absent" + i));
+      }
+      assertEquals("key" + (size - 1), map.keySet().asList().get(size - 1));
+      assertEquals(map, SerializableTester.reserialize(map));
+    }
+  }
+
+  @GwtIncompatible("buildPerfectHash")
+  public void testBuildPerfectHash_equalHashCodes() {
+    // "Aa" and "BB" have the same hash code, so no perfect hash function can separate them
+    ImmutableMap<String, Integer> map = ImmutableMap.<String, Integer>builder()
+        .put("x", 0)
+        .put("Aa", 1)
+        .put("BB", 2)
+        .buildPerfectHash();
+    assertFalse(map instanceof PerfectHashImmutableMap);
+    assertMapEquals(map, "x", 0, "Aa", 1, "BB", 2);
+  }
+
+  @GwtIncompatible("buildPerfectHash")
+  public void testBuildPerfectHash_duplicateKey() {
+    ImmutableMap.Builder<String, Integer> builder = ImmutableMap.builder();
+    for (int i = 0; i < 100; i++) {
+      builder.put("key" + i, i);
+    }
+    builder.put("key7", 8);
+    try {
+      builder.buildPerfectHash();
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertEquals("Multiple entries with same key: key7=8 and key7=7", expected.getMessage());
+    }
+  }
+
   public void testCopyOfEnumMap() {
     EnumMap<AnEnum, String> map = new EnumMap<AnEnum, String>(AnEnum.class);
     map.put(AnEnum.B, "foo");
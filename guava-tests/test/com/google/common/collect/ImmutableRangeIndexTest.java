@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.collect.BoundType.CLOSED;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.testing.EqualsTester;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+
+/**
+ * Tests for {@code ImmutableRangeIndex}.
+ */
+@GwtIncompatible("NavigableMap")
+public class ImmutableRangeIndexTest extends TestCase {
+  private static final int MIN_BOUND = 0;
+  private static final int MAX_BOUND = 10;
+  private static final ImmutableList<Range<Integer>> RANGES;
+  static {
+    ImmutableList.Builder<Range<Integer>> builder = ImmutableList.builder();
+    builder.add(Range.<Integer>all());
+    for (int i = MIN_BOUND; i <= MAX_BOUND; i++) {
+      for (BoundType type : BoundType.values()) {
+        builder.add(Range.upTo(i, type));
+        builder.add(Range.downTo(i, type));
+      }
+    }
+    for (int i = MIN_BOUND; i <= MAX_BOUND; i++) {
+      for (int j = i; j <= MAX_BOUND; j++) {
+        for (BoundType lowerType : BoundType.values()) {
+          for (BoundType upperType : BoundType.values()) {
+            if (i < j || (lowerType == CLOSED & upperType == CLOSED)) {
+              builder.add(Range.range(i, lowerType, j, upperType));
+            }
+          }
+        }
+      }
+    }
+    RANGES = builder.build();
+  }
+
+  public void testEmpty() {
+    ImmutableRangeIndex<Integer, String> index = ImmutableRangeIndex.of();
+    assertTrue(index.isEmpty());
+    assertEquals(0, index.size());
+    assertTrue(index.getContaining(3).isEmpty());
+    assertTrue(index.getOverlapping(Range.<Integer>all()).isEmpty());
+    assertTrue(index.toRangeSet().isEmpty());
+    assertSame(index, ImmutableRangeIndex.<Integer, String>builder().build());
+  }
+
+  public void testBuilder_rejectsEmptyRange() {
+    ImmutableRangeIndex.Builder<Integer, String> builder = ImmutableRangeIndex.builder();
+    try {
+      builder.put(Range.closedOpen(1, 1), "a");
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testBuilder_overlappingAndEqualRanges() {
+    ImmutableRangeIndex<Integer, String> index = ImmutableRangeIndex.<Integer, String>builder()
+        .put(Range.closed(3, 8), "b")
+        .put(Range.closed(1, 5), "a")
+        .put(Range.closed(3, 8), "c")
+        .build();
+    assertEquals(3, index.size());
+    assertEquals(
+        ImmutableList.of(
+            Maps.immutableEntry(Range.closed(1, 5), "a"),
+            Maps.immutableEntry(Range.closed(3, 8), "b"),
+            Maps.immutableEntry(Range.closed(3, 8), "c")),
+        index.entries());
+    assertEquals(
+        ImmutableList.of(
+            Maps.immutableEntry(Range.closed(3, 8), "b"),
+            Maps.immutableEntry(Range.closed(3, 8), "c")),
+        index.getContaining(6));
+  }
+
+  public void testPutAll() {
+    RangeMap<Integer, String> rangeMap = TreeRangeMap.create();
+    rangeMap.put(Range.closed(1, 3), "a");
+    rangeMap.put(Range.open(5, 7), "b");
+    ImmutableRangeIndex<Integer, String> index = ImmutableRangeIndex.<Integer, String>builder()
+        .putAll(rangeMap)
+        .put(Range.closed(2, 6), "c")
+        .build();
+    assertEquals(ImmutableList.copyOf(rangeMap.asMapOfRanges().entrySet()).get(1),
+        index.entries().get(2));
+    assertEquals(ImmutableSet.of("a", "c"), valuesOf(index.getContaining(2)));
+    assertEquals(ImmutableSet.of("b", "c"), valuesOf(index.getContaining(6)));
+    assertEquals(ImmutableRangeSet.of(Range.closedOpen(1, 7)), index.toRangeSet());
+  }
+
+  public void testGetOverlapping_allPairs() {
+    for (Range<Integer> range1 : RANGES) {
+      for (Range<Integer> range2 : RANGES) {
+        ImmutableRangeIndex<Integer, Integer> index =
+            ImmutableRangeIndex.<Integer, Integer>builder()
+                .put(range1, 1)
+                .put(range2, 2)
+                .build();
+        for (int i = MIN_BOUND - 1; i <= MAX_BOUND + 1; i++) {
+          assertEquals(expectedContaining(index, i), index.getContaining(i));
+        }
+      }
+    }
+  }
+
+  public void testRandom() {
+    Random random = new Random(0);
+    for (int trial = 0; trial < 100; trial++) {
+      ImmutableRangeIndex.Builder<Integer, Integer> builder = ImmutableRangeIndex.builder();
+      RangeSet<Integer> expectedRangeSet = TreeRangeSet.create();
+      int size = random.nextInt(50);
+      for (int i = 0; i < size; i++) {
+        Range<Integer> range = RANGES.get(random.nextInt(RANGES.size()));
+        builder.put(range, i);
+        expectedRangeSet.add(range);
+      }
+      ImmutableRangeIndex<Integer, Integer> index = builder.build();
+      assertEquals(size, index.size());
+      assertEquals(expectedRangeSet, index.toRangeSet());
+      for (int i = MIN_BOUND - 1; i <= MAX_BOUND + 1; i++) {
+        assertEquals(expectedContaining(index, i), index.getContaining(i));
+      }
+      for (Range<Integer> query : RANGES) {
+        assertEquals(expectedOverlapping(index, query), index.getOverlapping(query));
+      }
+    }
+  }
+
+  public void testEquals() {
+    new EqualsTester()
+        .addEqualityGroup(
+            ImmutableRangeIndex.of(),
+            ImmutableRangeIndex.builder().build())
+        .addEqualityGroup(
+            ImmutableRangeIndex.<Integer, String>builder()
+                .put(Range.closed(1, 5), "a")
+                .put(Range.closed(3, 8), "b")
+                .build(),
+            ImmutableRangeIndex.<Integer, String>builder()
+                .put(Range.closed(3, 8), "b")
+                .put(Range.closed(1, 5), "a")
+                .build())
+        .addEqualityGroup(
+            ImmutableRangeIndex.<Integer, String>builder()
+                .put(Range.closed(1, 5), "b")
+                .put(Range.closed(3, 8), "a")
+                .build())
+        .testEquals();
+  }
+
+  private static <V> ImmutableList<Entry<Range<Integer>, V>> expectedContaining(
+      ImmutableRangeIndex<Integer, V> index, int key) {
+    ImmutableList.Builder<Entry<Range<Integer>, V>> expected = ImmutableList.builder();
+    for (Entry<Range<Integer>, V> entry : index.entries()) {
+      if (entry.getKey().contains(key)) {
+        expected.add(entry);
+      }
+    }
+    return expected.build();
+  }
+
+  private static <V> ImmutableList<Entry<Range<Integer>, V>> expectedOverlapping(
+      ImmutableRangeIndex<Integer, V> index, Range<Integer> query) {
+    ImmutableList.Builder<Entry<Range<Integer>, V>> expected = ImmutableList.builder();
+    for (Entry<Range<Integer>, V> entry : index.entries()) {
+      if (entry.getKey().isConnected(query) && !entry.getKey().intersection(query).isEmpty()) {
+        expected.add(entry);
+      }
+    }
+    return expected.build();
+  }
+
+  private static <V> ImmutableSet<V> valuesOf(List<Entry<Range<Integer>, V>> entries) {
+    ImmutableSet.Builder<V> values = ImmutableSet.builder();
+    for (Entry<Range<Integer>, V> entry : entries) {
+      values.add(entry.getValue());
+    }
+    return values.build();
+  }
+}
@@ -181,6 +181,47 @@ public class ImmutableRangeMapTest extends TestCase {
     }
   }
 
+  public void testGetAll() {
+    for (Range<Integer> range1 : RANGES) {
+      for (Range<Integer> range2 : RANGES) {
+        if (!range1.isConnected(range2) || range1.intersection(range2).isEmpty()) {
+          ImmutableRangeMap<Integer, Integer> rangeMap =
+              ImmutableRangeMap.<Integer, Integer>builder().put(range1, 1).put(range2, 2).build();
+          ImmutableMap.Builder<Integer, Integer> expected = ImmutableMap.builder();
+          for (int i = MIN_BOUND - 1; i <= MAX_BOUND + 1; i++) {
+            if (rangeMap.get(i) != null) {
+              expected.put(i, rangeMap.get(i));
+            }
+          }
+          assertEquals(expected.build(), rangeMap.getAll(
+              ContiguousSet.create(Range.closed(MIN_BOUND - 1, MAX_BOUND + 1),
+                  DiscreteDomain.integers())));
+        }
+      }
+    }
+  }
+
+  public void testGetAll_largeRangeMap() {
+    ImmutableRangeMap.Builder<Integer, Integer> builder = ImmutableRangeMap.builder();
+    for (int i = 0; i < 1000; i++) {
+      builder.put(Range.closedOpen(3 * i, 3 * i + 2), i);
+    }
+    ImmutableRangeMap<Integer, Integer> map = builder.build();
+    ImmutableMap<Integer, Integer> all = map.getAll(ImmutableList.of(-1, 0, 0, 4, 5, 2998, 4000));
+    assertEquals(ImmutableMap.of(0, 0, 4, 1, 2998, 999), all);
+    assertEquals(ImmutableList.of(0, 4, 2998), all.keySet().asList());
+  }
+
+  public void testGetAll_unsorted() {
+    ImmutableRangeMap<Integer, Integer> map =
+        ImmutableRangeMap.of(Range.closed(0, 10), 1);
+    try {
+      map.getAll(ImmutableList.of(3, 2));
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
   public void testAsMapOfRanges() {
     for (Range<Integer> range1 : RANGES) {
       for (Range<Integer> range2 : RANGES) {
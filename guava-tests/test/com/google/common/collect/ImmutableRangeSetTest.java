@@ -456,6 +456,32 @@ public class ImmutableRangeSetTest extends AbstractRangeSetTest {
     }
   }
   
+  public void testRangesContaining() {
+    ImmutableRangeSet<Integer> rangeSet = ImmutableRangeSet.<Integer>builder()
+        .add(Range.lessThan(0))
+        .add(Range.closedOpen(3, 5))
+        .add(Range.open(5, 8))
+        .add(Range.atLeast(10))
+        .build();
+    ImmutableMap.Builder<Integer, Range<Integer>> expected = ImmutableMap.builder();
+    for (int i = -2; i <= 12; i++) {
+      if (rangeSet.contains(i)) {
+        expected.put(i, rangeSet.rangeContaining(i));
+      }
+    }
+    assertEquals(expected.build(), rangeSet.rangesContaining(
+        ContiguousSet.create(Range.closed(-2, 12), DiscreteDomain.integers())));
+    assertEquals(ImmutableMap.of(6, Range.open(5, 8)),
+        rangeSet.rangesContaining(ImmutableList.of(5, 6, 6, 8)));
+    assertEquals(ImmutableMap.of(),
+        ImmutableRangeSet.<Integer>of().rangesContaining(ImmutableList.of(1, 2)));
+    try {
+      rangeSet.rangesContaining(ImmutableList.of(4, 3));
+      fail();
+    } catch (IllegalArgumentException expected2) {
+    }
+  }
+
   public void testSubRangeSet() {
     ImmutableList.Builder<Range<Integer>> rangesBuilder = ImmutableList.builder();
     rangesBuilder.add(Range.<Integer>all());
@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.collect.ImmutableSetAlgebra.GALLOP_RATIO;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Tests for {@link ImmutableSetAlgebra}, through {@link Sets.SetView#immutableCopy}.
+ */
+public class ImmutableSetAlgebraTest extends TestCase {
+
+  public void testSorted_merge() {
+    ImmutableSortedSet<Integer> set1 = ImmutableSortedSet.of(1, 3, 5, 7, 9);
+    ImmutableSortedSet<Integer> set2 = ImmutableSortedSet.of(2, 3, 4, 9, 10);
+    assertSortedCopy(ImmutableSortedSet.of(3, 9), Sets.intersection(set1, set2));
+    assertSortedCopy(ImmutableSortedSet.of(1, 5, 7), Sets.difference(set1, set2));
+    assertSortedCopy(ImmutableSortedSet.of(2, 4, 10), Sets.difference(set2, set1));
+  }
+
+  public void testSorted_reverseComparator() {
+    ImmutableSortedSet<Integer> set1 =
+        ImmutableSortedSet.<Integer>reverseOrder().add(1, 2, 3, 4).build();
+    TreeSet<Integer> set2 = new TreeSet<Integer>(Ordering.natural().reverse());
+    set2.addAll(ImmutableList.of(0, 2, 4, 6));
+    ImmutableSet<Integer> intersection = Sets.intersection(set1, set2).immutableCopy();
+    assertEquals(ImmutableList.of(4, 2), intersection.asList());
+    assertEquals(Ordering.natural().reverse(),
+        ((ImmutableSortedSet<Integer>) intersection).comparator());
+    assertEquals(ImmutableList.of(3, 1),
+        Sets.difference(set1, set2).immutableCopy().asList());
+  }
+
+  public void testSorted_empty() {
+    ImmutableSortedSet<Integer> set = ImmutableSortedSet.of(1, 2);
+    ImmutableSortedSet<Integer> empty = ImmutableSortedSet.of();
+    assertSortedCopy(empty, Sets.intersection(set, empty));
+    assertSortedCopy(empty, Sets.intersection(empty, set));
+    assertSortedCopy(set, Sets.difference(set, empty));
+    assertSortedCopy(empty, Sets.difference(empty, set));
+    assertSortedCopy(empty, Sets.difference(set, set));
+  }
+
+  public void testSorted_gallop() {
+    ImmutableSortedSet.Builder<Integer> builder = ImmutableSortedSet.naturalOrder();
+    for (int i = 0; i < 10000; i += 2) {
+      builder.add(i);
+    }
+    ImmutableSortedSet<Integer> large = builder.build();
+    ImmutableSortedSet<Integer> small = ImmutableSortedSet.of(-2, 0, 5, 4096, 9998, 10000);
+    assertSortedCopy(ImmutableSortedSet.of(0, 4096, 9998), Sets.intersection(small, large));
+    assertSortedCopy(ImmutableSortedSet.of(0, 4096, 9998), Sets.intersection(large, small));
+    assertSortedCopy(ImmutableSortedSet.of(-2, 5, 10000), Sets.difference(small, large));
+    assertSortedCopy(Sets.difference(large, small));
+  }
+
+  public void testSorted_random() {
+    Random random = new Random(0);
+    for (int trial = 0; trial < 100; trial++) {
+      int size1 = random.nextInt(trial % 2 == 0 ? 20 : 2000);
+      int size2 = random.nextInt(trial % 3 == 0 ? 20 : 2000);
+      ImmutableSortedSet<Integer> set1 = randomSortedSet(random, size1);
+      Set<Integer> set2 = (trial % 4 == 0)
+          ? new TreeSet<Integer>(randomSortedSet(random, size2))
+          : randomSortedSet(random, size2);
+      assertSortedCopy(Sets.intersection(set1, set2));
+      assertSortedCopy(Sets.intersection(set2, set1));
+      assertSortedCopy(Sets.difference(set1, set2));
+      assertSortedCopy(Sets.difference(set2, set1));
+    }
+  }
+
+  public void testHashed_random() {
+    Random random = new Random(1);
+    for (int trial = 0; trial < 100; trial++) {
+      ImmutableSet<Integer> set1 =
+          ImmutableSet.copyOf(randomSortedSet(random, random.nextInt(1000)).asList().reverse());
+      Set<Integer> set2 = new LinkedHashSet<Integer>(randomSortedSet(random, random.nextInt(1000)));
+      assertEquals(Sets.intersection(set1, set2), Sets.intersection(set1, set2).immutableCopy());
+      assertEquals(Sets.intersection(set2, set1), Sets.intersection(set2, set1).immutableCopy());
+      assertHashedCopy(Sets.difference(set1, set2));
+      assertHashedCopy(Sets.difference(set2, set1));
+    }
+  }
+
+  public void testHashed_iterationOrder() {
+    ImmutableSet<Integer> large = ImmutableSet.of(5, 4, 3, 2, 1);
+    Set<Integer> small = new LinkedHashSet<Integer>(ImmutableList.of(2, 6, 4));
+    // always in the order of set1
+    assertEquals(ImmutableList.of(4, 2), Sets.intersection(large, small).immutableCopy().asList());
+    assertEquals(ImmutableList.of(2, 4), Sets.intersection(small, large).immutableCopy().asList());
+    assertEquals(ImmutableList.of(5, 3, 1), Sets.difference(large, small).immutableCopy().asList());
+  }
+
+  public void testHashed_sortedSet1() {
+    ImmutableSortedSet<String> sorted = ImmutableSortedSet.of("a", "b", "c", "d", "e");
+    Set<String> hashed = ImmutableSet.of("e", "x", "b");
+    assertEquals(ImmutableList.of("b", "e"),
+        Sets.intersection(sorted, hashed).immutableCopy().asList());
+    assertEquals(ImmutableList.of("a", "c", "d"),
+        Sets.difference(sorted, hashed).immutableCopy().asList());
+  }
+
+  public void testSorted_equalElementsOfOtherTypes() {
+    Ordering<Iterable<Integer>> lexicographical = Ordering.<Integer>natural().lexicographical();
+    ImmutableSortedSet.Builder<ArrayList<Integer>> builder =
+        new ImmutableSortedSet.Builder<ArrayList<Integer>>(lexicographical);
+    for (int i = 0; i < 10 * GALLOP_RATIO; i++) {
+      builder.add(Lists.newArrayList(i));
+    }
+    ImmutableSortedSet<ArrayList<Integer>> arrayLists = builder.build();
+    TreeSet<LinkedList<Integer>> linkedLists = new TreeSet<LinkedList<Integer>>(lexicographical);
+    linkedLists.add(Lists.newLinkedList(ImmutableList.of(3)));
+    linkedLists.add(Lists.newLinkedList(ImmutableList.of(-1)));
+
+    // galloping through set1
+    ImmutableSet<ArrayList<Integer>> intersection =
+        Sets.intersection(arrayLists, linkedLists).immutableCopy();
+    assertEquals(1, intersection.size());
+    ArrayList<Integer> element = intersection.iterator().next();
+    assertSame(arrayLists.asList().get(3), element);
+
+    // merging
+    TreeSet<LinkedList<Integer>> moreLinkedLists =
+        new TreeSet<LinkedList<Integer>>(lexicographical);
+    for (int i = 0; i < 10 * GALLOP_RATIO; i += 2) {
+      moreLinkedLists.add(Lists.newLinkedList(ImmutableList.of(i)));
+    }
+    for (ArrayList<Integer> list : Sets.intersection(arrayLists, moreLinkedLists).immutableCopy()) {
+      assertSame(arrayLists.asList().get(list.get(0)), list);
+    }
+  }
+
+  public void testSorted_caseInsensitive() {
+    ImmutableSortedSet.Builder<String> builder =
+        new ImmutableSortedSet.Builder<String>(String.CASE_INSENSITIVE_ORDER);
+    for (char c = 'a'; c <= 'z'; c++) {
+      for (char d = 'a'; d <= 'z'; d++) {
+        builder.add("" + c + d);
+      }
+    }
+    ImmutableSortedSet<String> lowerCase = builder.build();
+    TreeSet<String> upperCase = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+    upperCase.add("BB");
+    upperCase.add("QX");
+    assertEquals(ImmutableList.of("bb", "qx"),
+        Sets.intersection(lowerCase, upperCase).immutableCopy().asList());
+    assertEquals(ImmutableList.of("BB", "QX"),
+        Sets.intersection(upperCase, lowerCase).immutableCopy().asList());
+    assertEquals(ImmutableList.of("bb", "qx"),
+        Sets.intersection(lowerCase, ImmutableSortedSet.copyOf(String.CASE_INSENSITIVE_ORDER,
+            ImmutableList.of("BB", "qX", "Z!"))).immutableCopy().asList());
+  }
+
+  public void testContiguous() {
+    ContiguousSet<Integer> range1 =
+        ContiguousSet.create(Range.closed(0, 100), DiscreteDomain.integers());
+    ContiguousSet<Integer> range2 =
+        ContiguousSet.create(Range.closed(50, 1000), DiscreteDomain.integers());
+    ImmutableSortedSet<Integer> sparse = ImmutableSortedSet.of(-3, 7, 64, 500);
+    assertSortedCopy(ContiguousSet.create(Range.closed(50, 100), DiscreteDomain.integers()),
+        Sets.intersection(range1, range2));
+    assertSortedCopy(ImmutableSortedSet.of(7, 64), Sets.intersection(sparse, range1));
+    assertSortedCopy(ImmutableSortedSet.of(7, 64), Sets.intersection(range1, sparse));
+    assertSortedCopy(ImmutableSortedSet.of(-3, 500), Sets.difference(sparse, range1));
+    assertSortedCopy(ContiguousSet.create(Range.closed(0, 49), DiscreteDomain.integers()),
+        Sets.difference(range1, range2));
+    assertSortedCopy(Sets.difference(range1, sparse));
+  }
+
+  public void testNullElementsOfSet1() {
+    Set<String> withNull = new LinkedHashSet<String>();
+    withNull.add("a");
+    withNull.add(null);
+    try {
+      Sets.difference(withNull, ImmutableSet.of("a")).immutableCopy();
+      fail();
+    } catch (NullPointerException expected) {
+    }
+    assertEquals(ImmutableSet.of("a"),
+        Sets.intersection(withNull, ImmutableSet.of("a")).immutableCopy());
+  }
+
+  public void testSorted_nullElementOfSet2() {
+    Ordering<String> nullsFirst = Ordering.<String>natural().nullsFirst();
+    TreeSet<String> set1 = new TreeSet<String>(nullsFirst);
+    set1.add("a");
+    set1.add("b");
+    TreeSet<String> set2 = new TreeSet<String>(nullsFirst);
+    set2.add(null);
+    set2.add("a");
+    Sets.SetView<String> difference = Sets.difference(set1, set2);
+    assertEquals(ImmutableList.of("b"), ImmutableList.copyOf(difference));
+    assertEquals(ImmutableList.of("b"), difference.immutableCopy().asList());
+    assertEquals(ImmutableList.of("a"),
+        Sets.intersection(set1, set2).immutableCopy().asList());
+  }
+
+  private static void assertSortedCopy(Sets.SetView<Integer> view) {
+    assertSortedCopy(ImmutableSortedSet.copyOf(view), view);
+  }
+
+  private static void assertSortedCopy(Set<Integer> expected, Sets.SetView<Integer> view) {
+    ImmutableSet<Integer> copy = view.immutableCopy();
+    assertTrue(copy instanceof ImmutableSortedSet);
+    assertEquals(expected, copy);
+    assertEquals(ImmutableList.copyOf(view), copy.asList());
+  }
+
+  private static <E> void assertHashedCopy(Sets.SetView<E> view) {
+    assertEquals(ImmutableList.copyOf(view), view.immutableCopy().asList());
+  }
+
+  private static ImmutableSortedSet<Integer> randomSortedSet(Random random, int size) {
+    ImmutableSortedSet.Builder<Integer> builder = ImmutableSortedSet.naturalOrder();
+    int bound = 1 + size * (1 + random.nextInt(GALLOP_RATIO * 2));
+    for (int i = 0; i < size; i++) {
+      builder.add(random.nextInt(bound));
+    }
+    return builder.build();
+  }
+}
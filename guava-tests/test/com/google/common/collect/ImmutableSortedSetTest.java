@@ -46,10 +46,13 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Unit tests for {@link ImmutableSortedSet}.
@@ -565,6 +568,27 @@ public class ImmutableSortedSetTest extends AbstractImmutableSetTest {
     assertSame(Ordering.natural(), set.comparator());
   }
 
+  @GwtIncompatible("java.util.concurrent")
+  public void testParallelCopyOf() {
+    List<String> elements = Lists.newArrayList();
+    for (int i = 0; i < 50000; i++) {
+      elements.add(Integer.toString(i % 7919, 36));
+    }
+    Comparator<String> comparator = String.CASE_INSENSITIVE_ORDER;
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      ImmutableSortedSet<String> set =
+          ImmutableSortedSet.parallelCopyOf(comparator, elements, executor);
+      assertEquals(ImmutableSortedSet.copyOf(comparator, elements), set);
+      assertEquals(ImmutableSortedSet.copyOf(comparator, elements).asList(), set.asList());
+      assertSame(comparator, set.comparator());
+      assertSame(comparator, ImmutableSortedSet.parallelCopyOf(
+          comparator, ImmutableList.<String>of(), executor).comparator());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   public void testCopyOf_iterator_ordering() {
     SortedSet<String> set = copyOf(asIterator("e", "a", "f", "b", "d", "c"));
     assertThat(set).containsExactly("a", "b", "c", "d", "e", "f").inOrder();
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import static java.util.Arrays.asList;
+
+import com.google.common.annotations.GwtCompatible;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.primitives.Ints;
+import com.google.common.testing.EqualsTester;
+import com.google.common.testing.SerializableTester;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Unit tests for {@link IntListMultimap}.
+ */
+@GwtCompatible(emulated = true)
+public class IntListMultimapTest extends TestCase {
+
+  public void testPutAndGet() {
+    IntListMultimap<String> multimap = IntListMultimap.create();
+    assertTrue(multimap.isEmpty());
+    assertTrue(multimap.put(1, "a"));
+    assertTrue(multimap.put(1, "b"));
+    assertTrue(multimap.put(1, "a"));
+    assertTrue(multimap.put(-2, null));
+    assertEquals(asList("a", "b", "a"), multimap.get(1));
+    assertEquals(Collections.singletonList(null), multimap.get(-2));
+    assertEquals(Collections.emptyList(), multimap.get(3));
+    assertTrue(multimap.containsKey(1));
+    assertFalse(multimap.containsKey(3));
+    assertEquals(4, multimap.size());
+    assertEquals(2, multimap.keyCount());
+  }
+
+  public void testGet_snapshot() {
+    IntListMultimap<String> multimap = IntListMultimap.create();
+    multimap.putAll(1, asList("a", "b"));
+    List<String> values = multimap.get(1);
+    multimap.put(1, "c");
+    multimap.remove(1, "a");
+    assertEquals(asList("a", "b"), values);
+    assertEquals(asList("b", "c"), multimap.get(1));
+    try {
+      values.set(0, "z");
+      fail();
+    } catch (UnsupportedOperationException expected) {}
+  }
+
+  public void testRemove() {
+    IntListMultimap<String> multimap = IntListMultimap.create();
+    multimap.putAll(1, asList("a", "b", "a"));
+    multimap.put(2, "c");
+    assertTrue(multimap.remove(1, "a"));
+    assertEquals(asList("b", "a"), multimap.get(1));
+    assertFalse(multimap.remove(1, "c"));
+    assertFalse(multimap.remove(3, "c"));
+    assertTrue(multimap.remove(2, "c"));
+    assertFalse(multimap.containsKey(2));
+    assertEquals(asList("b", "a"), multimap.removeAll(1));
+    assertEquals(Collections.emptyList(), multimap.removeAll(1));
+    assertTrue(multimap.isEmpty());
+    assertEquals(0, multimap.size());
+  }
+
+  public void testAgainstArrayListMultimap() {
+    Random random = new Random(0);
+    IntListMultimap<Integer> multimap = IntListMultimap.create();
+    ListMultimap<Integer, Integer> expected = ArrayListMultimap.create();
+    for (int i = 0; i < 100000; i++) {
+      int key = random.nextInt(1000) * 997;
+      int value = random.nextInt(4);
+      switch (random.nextInt(4)) {
+        case 0:
+        case 1:
+          assertEquals(expected.put(key, value), multimap.put(key, value));
+          break;
+        case 2:
+          assertEquals(expected.remove(key, value), multimap.remove(key, value));
+          break;
+        default:
+          assertEquals(expected.removeAll(key), multimap.removeAll(key));
+      }
+    }
+    assertEquals(expected.size(), multimap.size());
+    assertEquals(expected.keySet().size(), multimap.keyCount());
+    for (int key : expected.keySet()) {
+      assertEquals(expected.get(key), multimap.get(key));
+    }
+    assertEquals(expected.hashCode(), multimap.hashCode());
+    int[] keys = multimap.toKeyArray();
+    Arrays.sort(keys);
+    assertEquals(Ordering.natural().sortedCopy(expected.keySet()), Ints.asList(keys));
+  }
+
+  public void testClear() {
+    IntListMultimap<String> multimap = IntListMultimap.create(100);
+    multimap.put(1, "a");
+    multimap.clear();
+    assertTrue(multimap.isEmpty());
+    assertEquals(0, multimap.size());
+    assertFalse(multimap.containsKey(1));
+  }
+
+  public void testEquals() {
+    IntListMultimap<String> a = IntListMultimap.create();
+    a.putAll(1, asList("a", "b"));
+    IntListMultimap<String> b = IntListMultimap.create(100);
+    b.putAll(1, asList("a", "b", "c"));
+    b.remove(1, "c");
+    IntListMultimap<String> c = IntListMultimap.create();
+    c.putAll(1, asList("b", "a"));
+    new EqualsTester()
+        .addEqualityGroup(a, b)
+        .addEqualityGroup(c)
+        .addEqualityGroup(IntListMultimap.create())
+        .testEquals();
+    assertEquals("{1=[a, b]}", a.toString());
+  }
+
+  @GwtIncompatible("SerializableTester")
+  public void testSerialization() {
+    IntListMultimap<String> multimap = IntListMultimap.create();
+    multimap.putAll(1, asList("a", "b"));
+    multimap.put(Integer.MIN_VALUE, null);
+    multimap.put(3, "c");
+    multimap.removeAll(3);
+    SerializableTester.reserializeAndAssert(multimap);
+  }
+}
@@ -23,6 +23,13 @@ import com.google.common.testing.NullPointerTester;
 import junit.framework.TestCase;
 
 import java.lang.ref.WeakReference;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Unit test for {@link Interners}.
@@ -79,6 +86,147 @@ public class InternersTest extends TestCase {
     assertSame(not, pool.intern(not));
   }
 
+  public void testString_simplistic() {
+    String canonical = "a";
+    String not = new String("a");
+
+    StringInterner pool = Interners.newStringInterner(10);
+    assertSame(canonical, pool.intern(canonical));
+    assertSame(canonical, pool.intern(not));
+    assertSame(canonical, pool.intern(new StringBuilder("a")));
+    assertEquals(1, pool.size());
+  }
+
+  public void testString_charSequence() {
+    StringInterner pool = Interners.newStringInterner(10);
+    StringBuilder builder = new StringBuilder("token");
+    String canonical = pool.intern(builder);
+    assertEquals("token", canonical);
+    builder.setLength(0);
+    assertSame(canonical, pool.intern(builder.append("token")));
+    assertSame(canonical, pool.intern(CharBuffer.wrap("a token").subSequence(2, 7)));
+    assertSame(canonical, pool.intern(new String("token")));
+    assertSame(pool.intern(""), pool.intern(new StringBuilder()));
+  }
+
+  public void testString_null() {
+    StringInterner pool = Interners.newStringInterner(10);
+    try {
+      pool.intern((String) null);
+      fail();
+    } catch (NullPointerException ok) {}
+  }
+
+  public void testString_maximumSize() {
+    try {
+      Interners.newStringInterner(0);
+      fail();
+    } catch (IllegalArgumentException ok) {}
+
+    StringInterner pool = Interners.newStringInterner(100);
+    String hot = pool.intern("hot");
+    for (int i = 0; i < 10000; i++) {
+      pool.intern(Integer.toString(i));
+      assertTrue(pool.size() <= 100);
+      // found by lookups, so never evicted
+      assertSame(hot, pool.intern(new String("hot")));
+    }
+    assertEquals(100, pool.size());
+    String recent = pool.intern("9999");
+    assertSame(recent, pool.intern(new String("9999")));
+  }
+
+  public void testBounded_steadyStateRebuilds() {
+    // 16 segments of 12288 instances, whose tables would otherwise have no room for tombstones
+    int maximumSize = 12288 * 16;
+    BoundedInterner<String> interner = new BoundedInterner<String>(maximumSize) {
+      @Override int hash(Object key, int offset, int length) {
+        return key.hashCode();
+      }
+
+      @Override boolean matches(String canonical, Object key, int offset, int length) {
+        return canonical.equals(key);
+      }
+
+      @Override String copyOf(Object key, int offset, int length) {
+        return (String) key;
+      }
+    };
+    for (int i = 0; i < maximumSize; i++) {
+      interner.intern(Integer.toString(i), 0, 0);
+    }
+    long rebuilds = interner.rebuilds();
+    for (int i = maximumSize; i < 4 * maximumSize; i++) {
+      interner.intern(Integer.toString(i), 0, 0);
+    }
+    assertEquals(maximumSize, interner.size());
+    // a full segment evicts at least 12288 instances between rebuilds, rather than rebuilding on
+    // every miss
+    assertTrue(interner.rebuilds() - rebuilds <= 5 * 16);
+  }
+
+  public void testString_concurrent() throws Exception {
+    final StringInterner pool = Interners.newStringInterner(500);
+    final int keyCount = 1000;
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<?>> futures = Lists.newArrayList();
+    for (int t = 0; t < 8; t++) {
+      final int seed = t;
+      futures.add(executor.submit(new Runnable() {
+        @Override public void run() {
+          Random random = new Random(seed);
+          for (int i = 0; i < 100000; i++) {
+            String key = Integer.toString(random.nextInt(keyCount));
+            String canonical = (i % 2 == 0)
+                ? pool.intern(new String(key))
+                : pool.intern(new StringBuilder(key));
+            assertEquals(key, canonical);
+          }
+        }
+      }));
+    }
+    executor.shutdown();
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    assertTrue(pool.size() <= 500);
+  }
+
+  public void testByteArray_simplistic() {
+    byte[] canonical = {1, 2, 3};
+    ByteArrayInterner pool = Interners.newByteArrayInterner(10);
+    assertSame(canonical, pool.intern(canonical));
+    assertSame(canonical, pool.intern(new byte[] {1, 2, 3}));
+    assertSame(canonical, pool.intern(new byte[] {0, 1, 2, 3, 4}, 1, 3));
+
+    byte[] copied = pool.intern(new byte[] {9, 8, 7}, 1, 2);
+    assertTrue(Arrays.equals(new byte[] {8, 7}, copied));
+    assertSame(copied, pool.intern(new byte[] {8, 7}));
+    assertEquals(2, pool.size());
+  }
+
+  public void testByteArray_wholeRangeCopied() {
+    byte[] buffer = {4, 5, 6};
+    ByteArrayInterner pool = Interners.newByteArrayInterner(10);
+    byte[] canonical = pool.intern(buffer, 0, buffer.length);
+    assertNotSame(buffer, canonical);
+    assertTrue(Arrays.equals(buffer, canonical));
+    buffer[0] = 0;
+    assertSame(canonical, pool.intern(new byte[] {4, 5, 6}));
+  }
+
+  public void testByteArray_badRange() {
+    ByteArrayInterner pool = Interners.newByteArrayInterner(10);
+    try {
+      pool.intern(new byte[3], 2, 2);
+      fail();
+    } catch (IndexOutOfBoundsException ok) {}
+    try {
+      pool.intern(new byte[3], 1, -1);
+      fail();
+    } catch (IndexOutOfBoundsException ok) {}
+  }
+
   public void testAsFunction_simplistic() {
     String canonical = "a";
     String not = new String("a");
@@ -43,6 +43,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
 import java.util.RandomAccess;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.annotation.Nullable;
 
@@ -450,6 +452,29 @@ public class OrderingTest extends TestCase {
     }
   }
 
+  @GwtIncompatible("java.util.concurrent")
+  public void testParallelSortedCopy() {
+    Random random = new Random(0);
+    List<Integer> unsortedInts = Lists.newArrayList();
+    for (int i = 0; i < 50000; i++) {
+      unsortedInts.add(random.nextInt(1000));
+    }
+    unsortedInts.add(null);
+    Ordering<Integer> ordering = numberOrdering.nullsLast();
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      assertEquals(ordering.sortedCopy(unsortedInts),
+          ordering.parallelSortedCopy(unsortedInts, executor));
+      unsortedInts.remove(null);
+      assertEquals(ordering.immutableSortedCopy(unsortedInts),
+          ordering.parallelImmutableSortedCopy(unsortedInts, executor));
+      assertEquals(Collections.emptyList(), numberOrdering.parallelImmutableSortedCopy(
+          Collections.<Integer>emptyList(), executor));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   public void testIsOrdered() {
     assertFalse(numberOrdering.isOrdered(asList(5, 3, 0, 9)));
     assertFalse(numberOrdering.isOrdered(asList(0, 5, 3, 9)));
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.collect.ParallelMergeSort.MIN_SLICE_SIZE;
+
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for {@link ParallelMergeSort}.
+ */
+public class ParallelMergeSortTest extends TestCase {
+  /** Compares integers by their tens, so that the order of equal elements is observable. */
+  private static final Comparator<Integer> BY_TENS = new Comparator<Integer>() {
+    @Override public int compare(Integer a, Integer b) {
+      return Ints.compare(a / 10, b / 10);
+    }
+  };
+
+  private ExecutorService executor;
+
+  @Override protected void setUp() {
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @Override protected void tearDown() {
+    executor.shutdown();
+  }
+
+  public void testSort_matchesArraysSort() {
+    Random random = new Random(0);
+    for (int parallelism = 1; parallelism <= 7; parallelism++) {
+      for (int size : new int[] {0, 1, MIN_SLICE_SIZE * 2 - 1, MIN_SLICE_SIZE * 7 + 3}) {
+        Integer[] array = randomArray(random, size, 100000);
+        Integer[] expected = array.clone();
+        Arrays.sort(expected, BY_TENS);
+        assertEquals(size, ParallelMergeSort.sort(array, BY_TENS, false, executor, parallelism));
+        // the sort is stable, so equal elements keep their order
+        assertTrue(Arrays.equals(expected, array));
+      }
+    }
+  }
+
+  public void testSort_dedup() {
+    Random random = new Random(1);
+    for (int parallelism = 1; parallelism <= 7; parallelism++) {
+      for (int bound : new int[] {10, 1000, 100000}) {
+        Integer[] array = randomArray(random, MIN_SLICE_SIZE * 5 + 1, bound);
+        ImmutableSortedSet<Integer> expected =
+            ImmutableSortedSet.copyOf(BY_TENS, Arrays.asList(array));
+        int size = ParallelMergeSort.sort(array, BY_TENS, true, executor, parallelism);
+        assertEquals(expected.size(), size);
+        // the first of each group of equal elements is kept
+        assertEquals(expected.asList(), Arrays.asList(array).subList(0, size));
+        for (int i = size; i < array.length; i++) {
+          assertNull(array[i]);
+        }
+      }
+    }
+  }
+
+  public void testSort_directExecutor() {
+    Executor directExecutor = MoreExecutors.directExecutor();
+    Integer[] array = randomArray(new Random(2), MIN_SLICE_SIZE * 4, 1000);
+    Integer[] expected = array.clone();
+    Arrays.sort(expected);
+    ParallelMergeSort.sort(array, Ordering.natural(), false, directExecutor, 4);
+    assertTrue(Arrays.equals(expected, array));
+  }
+
+  public void testSort_rejectingExecutor() {
+    final AtomicInteger executed = new AtomicInteger();
+    Executor rejectingExecutor = new Executor() {
+      @Override public void execute(Runnable task) {
+        if (executed.incrementAndGet() > 1) {
+          throw new RejectedExecutionException();
+        }
+        executor.execute(task);
+      }
+    };
+    Integer[] array = randomArray(new Random(4), MIN_SLICE_SIZE * 4, 1000);
+    Integer[] expected = array.clone();
+    Arrays.sort(expected);
+    ParallelMergeSort.sort(array, Ordering.natural(), false, rejectingExecutor, 4);
+    assertTrue(Arrays.equals(expected, array));
+  }
+
+  public void testSort_fromTaskOfSameExecutor() throws Exception {
+    // the only thread of the executor runs the sort, so none is left to run its tasks
+    final ExecutorService singleThread = Executors.newSingleThreadExecutor();
+    try {
+      final Integer[] array = randomArray(new Random(5), MIN_SLICE_SIZE * 4, 1000);
+      Integer[] expected = array.clone();
+      Arrays.sort(expected);
+      singleThread.submit(new Runnable() {
+        @Override public void run() {
+          ParallelMergeSort.sort(array, Ordering.natural(), false, singleThread, 4);
+        }
+      }).get(10, TimeUnit.SECONDS);
+      assertTrue(Arrays.equals(expected, array));
+    } finally {
+      singleThread.shutdown();
+    }
+  }
+
+  public void testSort_comparatorThrows() {
+    final Integer poison = -1;
+    Integer[] array = randomArray(new Random(3), MIN_SLICE_SIZE * 4, 1000);
+    array[array.length - 1] = poison;
+    Comparator<Integer> comparator = new Comparator<Integer>() {
+      @Override public int compare(Integer a, Integer b) {
+        if (a.equals(poison) || b.equals(poison)) {
+          throw new IllegalStateException();
+        }
+        return a.compareTo(b);
+      }
+    };
+    try {
+      ParallelMergeSort.sort(array, comparator, false, executor, 4);
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  public void testSort_badParallelism() {
+    try {
+      ParallelMergeSort.sort(new Integer[0], BY_TENS, false, executor, 0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  private static Integer[] randomArray(Random random, int size, int bound) {
+    Integer[] array = new Integer[size];
+    for (int i = 0; i < size; i++) {
+      array[i] = random.nextInt(bound);
+    }
+    return array;
+  }
+}
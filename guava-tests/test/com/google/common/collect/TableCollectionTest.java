@@ -87,6 +87,7 @@ public class TableCollectionTest extends TestCase {
     TestSuite suite = new TestSuite();
     suite.addTestSuite(ArrayRowTests.class);
     suite.addTestSuite(HashRowTests.class);
+    suite.addTestSuite(ConcurrentHashRowTests.class);
     suite.addTestSuite(TreeRowTests.class);
     suite.addTestSuite(TransposeRowTests.class);
     suite.addTestSuite(TransformValueRowTests.class);
@@ -94,6 +95,7 @@ public class TableCollectionTest extends TestCase {
     suite.addTestSuite(UnmodifiableTreeRowTests.class);
     suite.addTestSuite(ArrayColumnTests.class);
     suite.addTestSuite(HashColumnTests.class);
+    suite.addTestSuite(ConcurrentHashColumnTests.class);
     suite.addTestSuite(TreeColumnTests.class);
     suite.addTestSuite(TransposeColumnTests.class);
     suite.addTestSuite(TransformValueColumnTests.class);
@@ -101,6 +103,7 @@ public class TableCollectionTest extends TestCase {
     suite.addTestSuite(UnmodifiableTreeColumnTests.class);
     suite.addTestSuite(ArrayRowMapTests.class);
     suite.addTestSuite(HashRowMapTests.class);
+    suite.addTestSuite(ConcurrentHashRowMapTests.class);
     suite.addTestSuite(TreeRowMapTests.class);
     suite.addTestSuite(TreeRowMapHeadMapTests.class);
     suite.addTestSuite(TreeRowMapTailMapTests.class);
@@ -110,6 +113,7 @@ public class TableCollectionTest extends TestCase {
     suite.addTestSuite(UnmodifiableTreeRowMapTests.class);
     suite.addTestSuite(ArrayColumnMapTests.class);
     suite.addTestSuite(HashColumnMapTests.class);
+    suite.addTestSuite(ConcurrentHashColumnMapTests.class);
     suite.addTestSuite(TreeColumnMapTests.class);
     suite.addTestSuite(TransformValueColumnMapTests.class);
     suite.addTestSuite(UnmodifiableHashColumnMapTests.class);
@@ -409,6 +413,16 @@ public class TableCollectionTest extends TestCase {
             CollectionFeature.ALLOWS_NULL_QUERIES)
         .createTestSuite());
 
+    suite.addTest(SetTestSuiteBuilder.using(new TestCellSetGenerator() {
+          @Override Table<String, Integer, Character> createTable() {
+            return ConcurrentHashBasedTable.create();
+          }
+        })
+        .named("ConcurrentHashBasedTable.cellSet")
+        .withFeatures(CollectionSize.ANY, CollectionFeature.REMOVE_OPERATIONS,
+            CollectionFeature.ALLOWS_NULL_QUERIES)
+        .createTestSuite());
+
     suite.addTest(SetTestSuiteBuilder.using(new TestCellSetGenerator() {
           @Override Table<String, Integer, Character> createTable() {
             return TreeBasedTable.create();
@@ -712,6 +726,17 @@ public class TableCollectionTest extends TestCase {
     }
   }
 
+  @GwtIncompatible("ConcurrentHashBasedTable")
+  public static class ConcurrentHashRowTests extends RowTests {
+    public ConcurrentHashRowTests() {
+      super(false, true, true, true, true);
+    }
+
+    @Override Table<Character, String, Integer> makeTable() {
+      return ConcurrentHashBasedTable.create();
+    }
+  }
+
   public static class TreeRowTests extends RowTests {
     public TreeRowTests() {
       super(false, true, true, true, true);
@@ -853,6 +878,17 @@ public class TableCollectionTest extends TestCase {
     }
   }
 
+  @GwtIncompatible("ConcurrentHashBasedTable")
+  public static class ConcurrentHashColumnTests extends ColumnTests {
+    public ConcurrentHashColumnTests() {
+      super(false, true, true, true, true);
+    }
+
+    @Override Table<String, Character, Integer> makeTable() {
+      return ConcurrentHashBasedTable.create();
+    }
+  }
+
   public static class TreeColumnTests extends ColumnTests {
     public TreeColumnTests() {
       super(false, true, true, true, false);
@@ -1040,6 +1076,17 @@ public class TableCollectionTest extends TestCase {
     }
   }
 
+  @GwtIncompatible("ConcurrentHashBasedTable")
+  public static class ConcurrentHashRowMapTests extends RowMapTests {
+    public ConcurrentHashRowMapTests() {
+      super(false, true, true, true);
+    }
+
+    @Override Table<String, Integer, Character> makeTable() {
+      return ConcurrentHashBasedTable.create();
+    }
+  }
+
   public static class TreeRowMapTests extends RowMapTests {
     public TreeRowMapTests() {
       super(false, true, true, true);
@@ -1252,6 +1299,17 @@ public class TableCollectionTest extends TestCase {
     }
   }
 
+  @GwtIncompatible("ConcurrentHashBasedTable")
+  public static class ConcurrentHashColumnMapTests extends ColumnMapTests {
+    public ConcurrentHashColumnMapTests() {
+      super(false, true, true, true);
+    }
+
+    @Override Table<Integer, String, Character> makeTable() {
+      return ConcurrentHashBasedTable.create();
+    }
+  }
+
   public static class TreeColumnMapTests extends ColumnMapTests {
     public TreeColumnMapTests() {
       super(false, true, true, false);
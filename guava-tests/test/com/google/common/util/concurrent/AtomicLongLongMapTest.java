@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.util.concurrent;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.testing.NullPointerTester;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tests for {@link AtomicLongLongMap}.
+ */
+public class AtomicLongLongMapTest extends TestCase {
+  private static final int ITERATIONS = 100;
+
+  public void testNulls() {
+    NullPointerTester tester = new NullPointerTester();
+    tester.testAllPublicStaticMethods(AtomicLongLongMap.class);
+    tester.testAllPublicInstanceMethods(AtomicLongLongMap.create());
+  }
+
+  public void testCreate_negativeExpectedKeys() {
+    try {
+      AtomicLongLongMap.create(-1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testCreate_map() {
+    Map<Long, Long> in = ImmutableMap.of(1L, 1L, 2L, 2L, 3L, 3L);
+    AtomicLongLongMap map = AtomicLongLongMap.create(in);
+    assertFalse(map.isEmpty());
+    assertEquals(3, map.size());
+    assertTrue(map.containsKey(1L));
+    assertEquals(1L, map.get(1L));
+    assertEquals(2L, map.get(2L));
+    assertEquals(3L, map.get(3L));
+    assertEquals(in, map.snapshot());
+  }
+
+  public void testAddAndGet() {
+    AtomicLongLongMap map = AtomicLongLongMap.create();
+    long key = 42L;
+    for (int i = 0; i < ITERATIONS; i++) {
+      long before = map.get(key);
+      assertEquals(before + i, map.addAndGet(key, i));
+      assertEquals(before + i, map.get(key));
+    }
+    assertEquals(1, map.size());
+    assertEquals(ITERATIONS * (ITERATIONS - 1) / 2, map.get(key));
+  }
+
+  public void testIncrementAndDecrement_zero() {
+    AtomicLongLongMap map = AtomicLongLongMap.create();
+    long key = 0L;
+    assertEquals(0L, map.get(key));
+    assertFalse(map.containsKey(key));
+
+    assertEquals(1L, map.incrementAndGet(key));
+    assertEquals(1L, map.getAndDecrement(key));
+    assertEquals(0L, map.get(key));
+    assertTrue(map.containsKey(key));
+
+    assertEquals(0L, map.getAndIncrement(key));
+    assertEquals(0L, map.decrementAndGet(key));
+    assertEquals(5L, map.getAndAdd(key, -3) + 5L);
+    assertEquals(-3L, map.get(key));
+  }
+
+  public void testPut() {
+    AtomicLongLongMap map = AtomicLongLongMap.create();
+    assertEquals(0L, map.put(7L, 3L));
+    assertEquals(3L, map.put(7L, 0L));
+    assertEquals(0L, map.get(7L));
+    assertTrue(map.containsKey(7L));
+  }
+
+  public void testRemove() {
+    AtomicLongLongMap map = AtomicLongLongMap.create();
+    assertEquals(0L, map.remove(7L));
+    for (int i = 0; i < ITERATIONS; i++) {
+      map.put(7L, i);
+      assertEquals(i, map.remove(7L));
+      assertFalse(map.containsKey(7L));
+      assertEquals(0L, map.get(7L));
+    }
+    assertTrue(map.isEmpty());
+  }
+
+  public void testRemoveAllZeros() {
+    AtomicLongLongMap map = AtomicLongLongMap.create();
+    ImmutableMap.Builder<Long, Long> nonZero = ImmutableMap.builder();
+    for (long i = 0; i < ITERATIONS; i++) {
+      map.put(i, i % 2);
+      if (i % 2 != 0) {
+        nonZero.put(i, 1L);
+      }
+    }
+    assertEquals(ITERATIONS, map.size());
+    map.removeAllZeros();
+    assertEquals(ITERATIONS / 2, map.size());
+    assertEquals(nonZero.build(), map.snapshot());
+  }
+
+  public void testClear() {
+    AtomicLongLongMap map = AtomicLongLongMap.create();
+    for (long i = 0; i < ITERATIONS; i++) {
+      map.put(i, i);
+    }
+    map.clear();
+    assertTrue(map.isEmpty());
+    assertEquals(0L, map.get(1L));
+    assertEquals(ImmutableMap.of(), map.snapshot());
+  }
+
+  public void testSum() {
+    AtomicLongLongMap map = AtomicLongLongMap.create();
+    long sum = 0;
+    for (long i = 0; i < ITERATIONS; i++) {
+      map.put(i * 31, i);
+      sum += i;
+    }
+    assertEquals(sum, map.sum());
+  }
+
+  public void testToString() {
+    AtomicLongLongMap map = AtomicLongLongMap.create();
+    map.put(1L, 2L);
+    assertEquals("{1=2}", map.toString());
+  }
+
+  public void testManyKeys_resize() {
+    AtomicLongLongMap map = AtomicLongLongMap.createWithSegments(1);
+    int n = 10000;
+    for (long i = 0; i < n; i++) {
+      map.addAndGet(i << 20, i);
+      if (i % 3 == 0) {
+        assertEquals(i, map.remove(i << 20));
+      }
+    }
+    long sum = 0;
+    for (long i = 0; i < n; i++) {
+      long expected = (i % 3 == 0) ? 0 : i;
+      assertEquals(expected, map.get(i << 20));
+      assertEquals(i % 3 != 0, map.containsKey(i << 20));
+      sum += expected;
+    }
+    assertEquals(n - (n + 2) / 3, map.size());
+    assertEquals(sum, map.sum());
+    assertEquals(map.size(), map.snapshot().size());
+  }
+
+  public void testExtremeKeys() {
+    AtomicLongLongMap map = AtomicLongLongMap.create();
+    long[] keys = {Long.MIN_VALUE, -1L, 0L, 1L, Long.MAX_VALUE};
+    for (int i = 0; i < keys.length; i++) {
+      assertEquals(i + 1, map.addAndGet(keys[i], i + 1));
+    }
+    assertEquals(keys.length, map.size());
+    for (int i = 0; i < keys.length; i++) {
+      assertEquals(i + 1, map.get(keys[i]));
+    }
+    assertEquals(1L, map.remove(Long.MIN_VALUE));
+    assertEquals(5L, map.remove(Long.MAX_VALUE));
+    assertEquals(ImmutableMap.of(-1L, 2L, 0L, 3L, 1L, 4L), map.snapshot());
+  }
+
+  public void testRemove_concurrentAdditions() throws Exception {
+    final long initialValue = 1000000L;
+    final AtomicLongLongMap map = AtomicLongLongMap.createWithSegments(1);
+    ExecutorService threadPool = Executors.newFixedThreadPool(3);
+    try {
+      for (int round = 0; round < 1000; round++) {
+        map.put(0L, initialValue);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicBoolean removed = new AtomicBoolean();
+        List<Future<Long>> adders = Lists.newArrayList();
+        for (int i = 0; i < 3; i++) {
+          adders.add(threadPool.submit(new Callable<Long>() {
+            @Override public Long call() throws InterruptedException {
+              start.await();
+              long added = 0;
+              while (!removed.get()) {
+                map.incrementAndGet(0L);
+                added++;
+              }
+              return added;
+            }
+          }));
+        }
+        start.countDown();
+        long value = map.remove(0L);
+        removed.set(true);
+        long added = 0;
+        for (Future<Long> adder : adders) {
+          added += adder.get();
+        }
+        // the removed value never comes back, whether or not additions were made after it
+        assertTrue(value >= initialValue);
+        assertEquals(initialValue + added, value + map.remove(0L));
+      }
+    } finally {
+      threadPool.shutdown();
+    }
+  }
+
+  public void testModify_basher() throws InterruptedException {
+    int nTasks = 200;
+    int nThreads = 16;
+    final int opsPerTask = 5000;
+    final int keyCount = 2000;
+    // a single small segment, so that keys are added and removed while it is resized
+    final AtomicLongLongMap map = AtomicLongLongMap.createWithSegments(1);
+    final AtomicLongArray expected = new AtomicLongArray(keyCount);
+
+    ExecutorService threadPool = Executors.newFixedThreadPool(nThreads);
+    for (int i = 0; i < nTasks; i++) {
+      final int seed = i;
+      threadPool.submit(new Runnable() {
+        @Override public void run() {
+          Random random = new Random(seed);
+          for (int j = 0; j < opsPerTask; j++) {
+            int key = random.nextInt(keyCount);
+            long delta = random.nextInt(100);
+            switch (random.nextInt(6)) {
+              case 0:
+                map.incrementAndGet(key);
+                expected.addAndGet(key, 1);
+                break;
+              case 1:
+              case 2:
+                map.addAndGet(key, delta);
+                expected.addAndGet(key, delta);
+                break;
+              case 3:
+                map.getAndAdd(key, -delta);
+                expected.addAndGet(key, -delta);
+                break;
+              case 4:
+                expected.addAndGet(key, -map.remove(key));
+                break;
+              case 5:
+                if (random.nextInt(100) == 0) {
+                  map.removeAllZeros();
+                } else {
+                  long oldValue = map.put(key, delta);
+                  expected.addAndGet(key, delta - oldValue);
+                }
+                break;
+              default:
+                throw new AssertionError();
+            }
+          }
+        }
+      });
+    }
+
+    threadPool.shutdown();
+    assertTrue(threadPool.awaitTermination(300, TimeUnit.SECONDS));
+
+    long sum = 0;
+    for (int key = 0; key < keyCount; key++) {
+      assertEquals(expected.get(key), map.get(key));
+      sum += expected.get(key);
+    }
+    assertEquals(sum, map.sum());
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.util.concurrent;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.testing.GcFinalization;
+import com.google.common.testing.NullPointerTester;
+
+import junit.framework.TestCase;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.Nullable;
+
+/**
+ * Tests for {@link CompactAtomicLongMap}. The operations it shares with {@link AtomicLongLongMap}
+ * are tested by {@link AtomicLongLongMapTest}; these tests concern its object keys.
+ */
+public class CompactAtomicLongMapTest extends TestCase {
+
+  public void testNulls() {
+    NullPointerTester tester = new NullPointerTester();
+    tester.testAllPublicStaticMethods(CompactAtomicLongMap.class);
+    tester.testAllPublicInstanceMethods(CompactAtomicLongMap.create());
+  }
+
+  public void testCreate_negativeExpectedKeys() {
+    try {
+      CompactAtomicLongMap.create(-1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testCreate_map() {
+    Map<String, Long> in = ImmutableMap.of("a", 1L, "b", 2L, "c", 3L);
+    CompactAtomicLongMap<String> map = CompactAtomicLongMap.create(in);
+    assertEquals(3, map.size());
+    assertEquals(2L, map.get("b"));
+    assertEquals(6L, map.sum());
+    assertEquals(in, map.snapshot());
+  }
+
+  public void testEqualKeys() {
+    CompactAtomicLongMap<String> map = CompactAtomicLongMap.create();
+    String a1 = new String("a");
+    String a2 = new String("a");
+    assertEquals(1L, map.incrementAndGet(a1));
+    assertEquals(3L, map.addAndGet(a2, 2));
+    assertEquals(1, map.size());
+    assertTrue(map.containsKey("a"));
+    assertEquals(3L, map.put(new String("a"), 5L));
+    assertEquals(5L, map.remove(a2));
+    assertFalse(map.containsKey(a1));
+    assertTrue(map.isEmpty());
+  }
+
+  public void testContainsKey_otherType() {
+    CompactAtomicLongMap<String> map = CompactAtomicLongMap.create();
+    map.put("1", 1L);
+    assertFalse(map.containsKey(1));
+    assertFalse(map.containsKey(1L));
+  }
+
+  public void testRemove_releasesKey() {
+    CompactAtomicLongMap<Object> map = CompactAtomicLongMap.create();
+    Object key = new Object();
+    map.put(key, 1L);
+    WeakReference<Object> signal = new WeakReference<Object>(key);
+    assertEquals(1L, map.remove(key));
+    key = null;  // Hint to the JIT that key is unreachable
+
+    GcFinalization.awaitClear(signal);
+    assertTrue(map.isEmpty());
+  }
+
+  public void testRemoveAllZeros_releasesKey() {
+    CompactAtomicLongMap<Object> map = CompactAtomicLongMap.create();
+    Object key = new Object();
+    map.put(key, 0L);
+    map.put("a", 1L);
+    WeakReference<Object> signal = new WeakReference<Object>(key);
+    map.removeAllZeros();
+    key = null;  // Hint to the JIT that key is unreachable
+
+    GcFinalization.awaitClear(signal);
+    assertEquals(ImmutableMap.of("a", 1L), map.snapshot());
+  }
+
+  public void testCollidingHashCodes_resize() {
+    CompactAtomicLongMap<CollidingKey> map = CompactAtomicLongMap.createWithSegments(1);
+    int n = 2000;
+    for (int i = 0; i < n; i++) {
+      map.addAndGet(new CollidingKey(i), i);
+      if (i % 3 == 0) {
+        assertEquals(i, map.remove(new CollidingKey(i)));
+      }
+    }
+    long sum = 0;
+    for (int i = 0; i < n; i++) {
+      long expected = (i % 3 == 0) ? 0 : i;
+      assertEquals(expected, map.get(new CollidingKey(i)));
+      assertEquals(i % 3 != 0, map.containsKey(new CollidingKey(i)));
+      sum += expected;
+    }
+    assertEquals(n - (n + 2) / 3, map.size());
+    assertEquals(sum, map.sum());
+    assertEquals(map.size(), map.snapshot().size());
+
+    assertEquals(1L, map.put(new CollidingKey(1), 0L));
+    map.removeAllZeros();
+    assertEquals(n - (n + 2) / 3 - 1, map.size());
+    assertFalse(map.containsKey(new CollidingKey(1)));
+    map.clear();
+    assertTrue(map.isEmpty());
+    assertEquals(0L, map.get(new CollidingKey(1)));
+  }
+
+  public void testModify_basher() throws InterruptedException {
+    int nTasks = 200;
+    int nThreads = 16;
+    final int opsPerTask = 5000;
+    final int keyCount = 2000;
+    // a single small segment and colliding keys, so that long probe sequences are resized
+    final CompactAtomicLongMap<CollidingKey> map = CompactAtomicLongMap.createWithSegments(1);
+    final AtomicLongArray expected = new AtomicLongArray(keyCount);
+
+    ExecutorService threadPool = Executors.newFixedThreadPool(nThreads);
+    for (int i = 0; i < nTasks; i++) {
+      final int seed = i;
+      threadPool.submit(new Runnable() {
+        @Override public void run() {
+          Random random = new Random(seed);
+          for (int j = 0; j < opsPerTask; j++) {
+            int id = random.nextInt(keyCount);
+            CollidingKey key = new CollidingKey(id);
+            long delta = random.nextInt(100);
+            switch (random.nextInt(5)) {
+              case 0:
+              case 1:
+                map.addAndGet(key, delta);
+                expected.addAndGet(id, delta);
+                break;
+              case 2:
+                map.getAndAdd(key, -delta);
+                expected.addAndGet(id, -delta);
+                break;
+              case 3:
+                expected.addAndGet(id, -map.remove(key));
+                break;
+              case 4:
+                if (random.nextInt(100) == 0) {
+                  map.removeAllZeros();
+                } else {
+                  long oldValue = map.put(key, delta);
+                  expected.addAndGet(id, delta - oldValue);
+                }
+                break;
+              default:
+                throw new AssertionError();
+            }
+          }
+        }
+      });
+    }
+
+    threadPool.shutdown();
+    assertTrue(threadPool.awaitTermination(300, TimeUnit.SECONDS));
+
+    long sum = 0;
+    for (int id = 0; id < keyCount; id++) {
+      assertEquals(expected.get(id), map.get(new CollidingKey(id)));
+      sum += expected.get(id);
+    }
+    assertEquals(sum, map.sum());
+  }
+
+  /** A key whose hash code is shared with many other keys. */
+  private static final class CollidingKey {
+    final int id;
+
+    CollidingKey(int id) {
+      this.id = id;
+    }
+
+    @Override public boolean equals(@Nullable Object o) {
+      return o instanceof CollidingKey && ((CollidingKey) o).id == id;
+    }
+
+    @Override public int hashCode() {
+      return id % 7;
+    }
+
+    @Override public String toString() {
+      return "key" + id;
+    }
+  }
+}
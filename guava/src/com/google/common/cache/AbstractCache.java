@@ -196,18 +196,35 @@ public abstract class AbstractCache<K, V> implements Cache<K, V> {
     CacheStats snapshot();
   }
 
+  /**
+   * Records rejections by the admission policy of a cache built with {@link
+   * CacheBuilder#admitByFrequency}, for the {@link StatsCounter} implementations which count them.
+   * This is not part of {@code StatsCounter} itself, so that existing implementations of that
+   * interface remain valid.
+   */
+  interface AdmissionRejectionRecorder {
+    /**
+     * Records the rejection of a newly added entry by the cache's admission policy. This should
+     * only be called when the rejected entry is evicted in favor of retaining an existing entry,
+     * in addition to the corresponding call to {@link StatsCounter#recordEviction}.
+     */
+    void recordAdmissionRejection();
+  }
+
   /**
    * A thread-safe {@link StatsCounter} implementation for use by {@link Cache} implementors.
    *
    * @since 10.0
    */
-  public static final class SimpleStatsCounter implements StatsCounter {
+  public static final class SimpleStatsCounter
+      implements StatsCounter, AdmissionRejectionRecorder {
     private final LongAddable hitCount = LongAddables.create();
     private final LongAddable missCount = LongAddables.create();
     private final LongAddable loadSuccessCount = LongAddables.create();
     private final LongAddable loadExceptionCount = LongAddables.create();
     private final LongAddable totalLoadTime = LongAddables.create();
     private final LongAddable evictionCount = LongAddables.create();
+    private final LongAddable admissionRejectionCount = LongAddables.create();
 
     /**
      * Constructs an instance with all counts initialized to zero.
@@ -247,6 +264,17 @@ public abstract class AbstractCache<K, V> implements Cache<K, V> {
       evictionCount.increment();
     }
 
+    /**
+     * Records the rejection of a newly added entry by the admission policy of a cache built with
+     * {@link CacheBuilder#admitByFrequency}, in addition to its eviction.
+     *
+     * @since 19.0
+     */
+    @Override
+    public void recordAdmissionRejection() {
+      admissionRejectionCount.increment();
+    }
+
     @Override
     public CacheStats snapshot() {
       return new CacheStats(
@@ -255,7 +283,8 @@ public abstract class AbstractCache<K, V> implements Cache<K, V> {
           loadSuccessCount.sum(),
           loadExceptionCount.sum(),
           totalLoadTime.sum(),
-          evictionCount.sum());
+          evictionCount.sum(),
+          admissionRejectionCount.sum());
     }
 
     /**
@@ -269,6 +298,7 @@ public abstract class AbstractCache<K, V> implements Cache<K, V> {
       loadExceptionCount.add(otherStats.loadExceptionCount());
       totalLoadTime.add(otherStats.totalLoadTime());
       evictionCount.add(otherStats.evictionCount());
+      admissionRejectionCount.add(otherStats.admissionRejectionCount());
     }
   }
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.cache;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import javax.annotation.Nullable;
+
+/**
+ * A semi-persistent mapping from keys to values, whose values are automatically loaded by the
+ * cache and are returned as {@link ListenableFuture} instances. Unlike {@link LoadingCache#get},
+ * retrieving a value never blocks: a caller which misses, or which requests a key that is already
+ * being loaded, immediately receives a future of the pending value, and can compose on it with
+ * {@link com.google.common.util.concurrent.Futures#transformAsync} instead of waiting.
+ *
+ * <p>Loads are performed on the {@linkplain CacheBuilder#executor executor} of the cache, or on
+ * the calling thread if none was specified, in which case the returned futures are always done.
+ * While a value is loading, its future is held in the cache in place of the value, so that
+ * concurrent requests for the key share a single load.
+ *
+ * <p>Implementations of this interface are expected to be thread-safe, and can be safely accessed
+ * by multiple concurrent threads.
+ *
+ * @since 19.0
+ */
+@Beta
+@GwtIncompatible("To be supported")
+public interface AsyncLoadingCache<K, V> {
+
+  /**
+   * Returns a future of the value associated with {@code key} in this cache, or {@code null} if
+   * there is no cached value and no value currently being loaded for {@code key}.
+   */
+  @Nullable
+  ListenableFuture<V> getIfPresent(Object key);
+
+  /**
+   * Returns a future of the value associated with {@code key} in this cache, first starting to
+   * load that value if necessary. If the value is already being loaded, the future of that load is
+   * returned.
+   *
+   * <p>If the load fails, the returned future fails with the exception thrown by the {@link
+   * CacheLoader}, or with an {@link CacheLoader.InvalidCacheLoadException} if it returned null,
+   * and nothing is cached for {@code key}.
+   *
+   * @throws NullPointerException if {@code key} is null
+   */
+  ListenableFuture<V> get(K key);
+
+  /**
+   * Returns a future of a map of the values associated with {@code keys}, starting to load any
+   * missing values as with {@link #get}. The returned map contains each distinct key in the order
+   * in which it was first encountered, and fails if any of the values fails to load.
+   *
+   * @throws NullPointerException if {@code keys} or any of its elements is null
+   */
+  ListenableFuture<ImmutableMap<K, V>> getAll(Iterable<? extends K> keys);
+
+  /**
+   * Returns a view of this cache which blocks while values are loaded. The view shares all state
+   * with this cache.
+   */
+  LoadingCache<K, V> synchronous();
+}
@@ -19,6 +19,7 @@ package com.google.common.cache;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 
 import com.google.common.annotations.GwtCompatible;
 import com.google.common.annotations.GwtIncompatible;
@@ -31,16 +32,19 @@ import com.google.common.base.Ticker;
 import com.google.common.cache.AbstractCache.SimpleStatsCounter;
 import com.google.common.cache.AbstractCache.StatsCounter;
 import com.google.common.cache.LocalCache.Strength;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import java.lang.ref.SoftReference;
 import java.lang.ref.WeakReference;
 import java.util.ConcurrentModificationException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.annotation.CheckReturnValue;
+import javax.annotation.Nullable;
 
 /**
  * <p>A builder of {@link LoadingCache} and {@link Cache} instances having any combination of the
@@ -221,21 +225,28 @@ public final class CacheBuilder<K, V> {
   long maximumSize = UNSET_INT;
   long maximumWeight = UNSET_INT;
   Weigher<? super K, ? super V> weigher;
+  ValueSerializer<?> valueSerializer;
+  boolean admitByFrequency;
 
   Strength keyStrength;
   Strength valueStrength;
 
   long expireAfterWriteNanos = UNSET_INT;
   long expireAfterAccessNanos = UNSET_INT;
+  Expiry<? super K, ? super V> expiry;
   long refreshNanos = UNSET_INT;
+  int maximumBatchSize = UNSET_INT;
+  long batchWindowNanos = UNSET_INT;
 
   Equivalence<Object> keyEquivalence;
   Equivalence<Object> valueEquivalence;
 
   RemovalListener<? super K, ? super V> removalListener;
+  Executor executor;
   Ticker ticker;
 
   Supplier<? extends StatsCounter> statsCounterSupplier = NULL_STATS_COUNTER;
+  boolean recordDiagnostics;
 
   // TODO(fry): make constructor private and update tests to use newBuilder
   CacheBuilder() {}
@@ -401,6 +412,7 @@ public final class CacheBuilder<K, V> {
     checkState(this.maximumWeight == UNSET_INT, "maximum weight was already set to %s",
         this.maximumWeight);
     checkState(this.weigher == null, "maximum size can not be combined with weigher");
+    checkState(this.valueSerializer == null, "maximum size can not be combined with offHeapValues");
     checkArgument(size >= 0, "maximum size must not be negative");
     this.maximumSize = size;
     return this;
@@ -473,6 +485,7 @@ public final class CacheBuilder<K, V> {
   public <K1 extends K, V1 extends V> CacheBuilder<K1, V1> weigher(
       Weigher<? super K1, ? super V1> weigher) {
     checkState(this.weigher == null);
+    checkState(this.valueSerializer == null, "weigher can not be combined with offHeapValues");
     if (strictParsing) {
       checkState(this.maximumSize == UNSET_INT, "weigher can not be combined with maximum size",
           this.maximumSize);
@@ -489,7 +502,7 @@ public final class CacheBuilder<K, V> {
     if (expireAfterWriteNanos == 0 || expireAfterAccessNanos == 0) {
       return 0;
     }
-    return (weigher == null) ? maximumSize : maximumWeight;
+    return (weigher == null && valueSerializer == null) ? maximumSize : maximumWeight;
   }
 
   // Make a safe contravariant cast now so we don't have to do it over and over.
@@ -498,6 +511,88 @@ public final class CacheBuilder<K, V> {
     return (Weigher<K1, V1>) MoreObjects.firstNonNull(weigher, OneWeigher.INSTANCE);
   }
 
+  /**
+   * Specifies that values should be stored off the heap, in direct buffers, rather than as objects
+   * referenced by the cache. Each value is converted to bytes by {@code serializer} when it is
+   * stored, and converted back whenever it is read, so that reads return a new copy of the value.
+   * This keeps large values out of the garbage-collected heap, at the cost of copying them on each
+   * access. Use of this method requires a corresponding call to {@link #maximumWeight} prior to
+   * calling {@link #build}.
+   *
+   * <p>The weight of each entry is the number of bytes reserved for its value, which is its
+   * serialized size rounded up to a power of two of at least 64 bytes, so that {@link
+   * #maximumWeight} bounds the memory held for values. Memory is reserved in slabs of up to a
+   * megabyte; values which are evicted or replaced return their space to be reused by later
+   * values, rather than to the operating system.
+   *
+   * <p><b>Note:</b> as each read returns a new copy, the values of the cache are compared using
+   * {@link Object#equals}, unless a different {@linkplain #valueEquivalence value equivalence} is
+   * specified. This cannot be combined with {@link #weigher}, {@link #weakValues} or {@link
+   * #softValues}.
+   *
+   * <p><b>Warning:</b> after invoking this method, do not continue to use <i>this</i> cache
+   * builder reference; instead use the reference this method <i>returns</i>, as with
+   * {@link #weigher}.
+   *
+   * @param serializer the serializer used to store values
+   * @throws IllegalStateException if values are already stored off the heap or referenced weakly
+   *     or softly, or if a weigher or maximum size was already set
+   * @since 19.0
+   */
+  @GwtIncompatible("java.nio.ByteBuffer")
+  public <K1 extends K, V1 extends V> CacheBuilder<K1, V1> offHeapValues(
+      ValueSerializer<V1> serializer) {
+    checkState(valueSerializer == null, "offHeapValues was already set to %s", valueSerializer);
+    checkState(valueStrength == null || valueStrength == Strength.STRONG,
+        "offHeapValues can not be combined with value strength %s", valueStrength);
+    checkState(weigher == null, "offHeapValues can not be combined with weigher");
+    checkState(maximumSize == UNSET_INT, "offHeapValues can not be combined with maximum size");
+
+    // safely limiting the kinds of caches this can produce
+    @SuppressWarnings("unchecked")
+    CacheBuilder<K1, V1> me = (CacheBuilder<K1, V1>) this;
+    me.valueSerializer = checkNotNull(serializer);
+    return me;
+  }
+
+  @SuppressWarnings("unchecked") // the value type was fixed by offHeapValues
+  @Nullable
+  <K1 extends K, V1 extends V> ValueSerializer<V1> getValueSerializer() {
+    return (ValueSerializer<V1>) valueSerializer;
+  }
+
+  /**
+   * Specifies that size-based eviction should take the access frequency of entries into account,
+   * rather than only their recency. Use of this method requires a corresponding call to
+   * {@link #maximumSize} or {@link #maximumWeight} prior to calling {@link #build}.
+   *
+   * <p>By default, a cache which is bounded by size evicts the least-recently-used entry. This
+   * performs poorly when a large number of entries are each accessed only once, such as during a
+   * scan, as those entries displace frequently accessed ones. When this method is used, newly
+   * added entries are first retained in a small admission window. Once an entry leaves the window
+   * it is only admitted into the remainder of the cache if it has been accessed more frequently
+   * than the entry which would be evicted in its place; otherwise the new entry itself is evicted.
+   * Access frequencies are estimated using a compact probabilistic sketch, which periodically ages
+   * its counts so that the cache adapts to changing access patterns.
+   *
+   * <p>New entries which are rejected in this manner are notified to the {@linkplain
+   * #removalListener removal listener} with {@link RemovalCause#SIZE}, and are counted by both
+   * {@link CacheStats#evictionCount} and {@link CacheStats#admissionRejectionCount}.
+   *
+   * @throws IllegalStateException if frequency-based admission was already requested
+   * @since 19.0
+   */
+  @GwtIncompatible("To be supported")
+  public CacheBuilder<K, V> admitByFrequency() {
+    checkState(!admitByFrequency, "admitByFrequency was already set");
+    admitByFrequency = true;
+    return this;
+  }
+
+  boolean getAdmitByFrequency() {
+    return admitByFrequency;
+  }
+
   /**
    * Specifies that each key (not value) stored in the cache should be wrapped in a {@link
    * WeakReference} (by default, strong references are used).
@@ -573,6 +668,8 @@ public final class CacheBuilder<K, V> {
 
   CacheBuilder<K, V> setValueStrength(Strength strength) {
     checkState(valueStrength == null, "Value strength was already set to %s", valueStrength);
+    checkState(valueSerializer == null || strength == Strength.STRONG,
+        "Value strength can not be combined with offHeapValues");
     valueStrength = checkNotNull(strength);
     return this;
   }
@@ -598,11 +695,13 @@ public final class CacheBuilder<K, V> {
    *     removed
    * @param unit the unit that {@code duration} is expressed in
    * @throws IllegalArgumentException if {@code duration} is negative
-   * @throws IllegalStateException if the time to live or time to idle was already set
+   * @throws IllegalStateException if the time to live or time to idle was already set, or if
+   *     {@link #expireAfter} was used
    */
   public CacheBuilder<K, V> expireAfterWrite(long duration, TimeUnit unit) {
     checkState(expireAfterWriteNanos == UNSET_INT, "expireAfterWrite was already set to %s ns",
         expireAfterWriteNanos);
+    checkState(expiry == null, "expireAfterWrite can not be combined with expireAfter");
     checkArgument(duration >= 0, "duration cannot be negative: %s %s", duration, unit);
     this.expireAfterWriteNanos = unit.toNanos(duration);
     return this;
@@ -632,11 +731,13 @@ public final class CacheBuilder<K, V> {
    *     automatically removed
    * @param unit the unit that {@code duration} is expressed in
    * @throws IllegalArgumentException if {@code duration} is negative
-   * @throws IllegalStateException if the time to idle or time to live was already set
+   * @throws IllegalStateException if the time to idle or time to live was already set, or if
+   *     {@link #expireAfter} was used
    */
   public CacheBuilder<K, V> expireAfterAccess(long duration, TimeUnit unit) {
     checkState(expireAfterAccessNanos == UNSET_INT, "expireAfterAccess was already set to %s ns",
         expireAfterAccessNanos);
+    checkState(expiry == null, "expireAfterAccess can not be combined with expireAfter");
     checkArgument(duration >= 0, "duration cannot be negative: %s %s", duration, unit);
     this.expireAfterAccessNanos = unit.toNanos(duration);
     return this;
@@ -647,6 +748,50 @@ public final class CacheBuilder<K, V> {
         ? DEFAULT_EXPIRATION_NANOS : expireAfterAccessNanos;
   }
 
+  /**
+   * Specifies that each entry should be automatically removed from the cache once a duration
+   * calculated by {@code expiry} has elapsed. The duration is calculated when the entry is created,
+   * and recalculated whenever its value is replaced or it is read, so that entries can each have
+   * their own lifetime, such as one taken from the value itself.
+   *
+   * <p>Expired entries are tracked by a hierarchical timer wheel, in which each entry is filed
+   * under the coarse interval of time in which it expires. Scheduling an entry, and finding the
+   * entries which have expired, therefore take amortized constant time regardless of how many
+   * distinct durations are in use. Expired entries may be counted in {@link Cache#size}, but will
+   * never be visible to read or write operations, and are cleaned up as part of the routine
+   * maintenance described in the class javadoc.
+   *
+   * <p><b>Warning:</b> after invoking this method, do not continue to use <i>this</i> cache
+   * builder reference; instead use the reference this method <i>returns</i>, as with
+   * {@link #weigher}.
+   *
+   * @param expiry the expiry to use in calculating the lifetime of cache entries
+   * @throws IllegalStateException if an expiry, time to live or time to idle was already set
+   * @since 19.0
+   */
+  @GwtIncompatible("To be supported")
+  public <K1 extends K, V1 extends V> CacheBuilder<K1, V1> expireAfter(
+      Expiry<? super K1, ? super V1> expiry) {
+    checkState(this.expiry == null, "expireAfter was already set to %s", this.expiry);
+    checkState(expireAfterWriteNanos == UNSET_INT,
+        "expireAfter can not be combined with expireAfterWrite");
+    checkState(expireAfterAccessNanos == UNSET_INT,
+        "expireAfter can not be combined with expireAfterAccess");
+
+    // safely limiting the kinds of caches this can produce
+    @SuppressWarnings("unchecked")
+    CacheBuilder<K1, V1> me = (CacheBuilder<K1, V1>) this;
+    me.expiry = checkNotNull(expiry);
+    return me;
+  }
+
+  // Make a safe contravariant cast now so we don't have to do it over and over.
+  @SuppressWarnings("unchecked")
+  @Nullable
+  <K1 extends K, V1 extends V> Expiry<K1, V1> getExpiry() {
+    return (Expiry<K1, V1>) expiry;
+  }
+
   /**
    * Specifies that active entries are eligible for automatic refresh once a fixed duration has
    * elapsed after the entry's creation, or the most recent replacement of its value. The semantics
@@ -685,6 +830,57 @@ public final class CacheBuilder<K, V> {
     return (refreshNanos == UNSET_INT) ? DEFAULT_REFRESH_NANOS : refreshNanos;
   }
 
+  /**
+   * Specifies that loads by the cache's {@link CacheLoader} should be gathered into batches, each
+   * of which is sent to {@link CacheLoader#loadAll} as a single call. This applies both to cache
+   * misses and to refreshes, including those triggered by {@link #refreshAfterWrite}; refreshed
+   * values are then also obtained from {@code loadAll} rather than {@link CacheLoader#reload}.
+   *
+   * <p>The first load which does not join an existing batch opens a new one, and its thread waits
+   * until either {@code duration} has elapsed or the batch holds {@code maximumBatchSize} keys,
+   * before calling {@code loadAll} on behalf of every key in the batch. Other threads loading keys
+   * in the meantime join the batch, and wait for its results just as they would wait for a
+   * concurrent load of the same key. Any keys which {@code loadAll} does not return a value for are
+   * treated as if {@link CacheLoader#load} had returned null, and any additional keys it returns
+   * are cached as well. If the loader does not support {@code loadAll}, every key is loaded
+   * individually and batching is abandoned.
+   *
+   * <p>Batching trades latency for fewer calls to the loader: a load may take up to {@code
+   * duration} longer than it would have otherwise. Values loaded by a {@code Callable} passed to
+   * {@link Cache#get} are never batched.
+   *
+   * @param maximumBatchSize the maximum number of keys in a batch
+   * @param duration the maximum length of time that a batch waits for further keys
+   * @param unit the unit that {@code duration} is expressed in
+   * @throws IllegalArgumentException if {@code maximumBatchSize} is not positive or {@code
+   *     duration} is negative
+   * @throws IllegalStateException if load batching was already set
+   * @since 19.0
+   */
+  @GwtIncompatible("To be supported")
+  public CacheBuilder<K, V> batchLoads(int maximumBatchSize, long duration, TimeUnit unit) {
+    checkNotNull(unit);
+    checkState(this.maximumBatchSize == UNSET_INT,
+        "load batching was already set to %s keys", this.maximumBatchSize);
+    checkArgument(maximumBatchSize > 0, "maximum batch size must be positive");
+    checkArgument(duration >= 0, "duration cannot be negative: %s %s", duration, unit);
+    this.maximumBatchSize = maximumBatchSize;
+    this.batchWindowNanos = unit.toNanos(duration);
+    return this;
+  }
+
+  boolean batchesLoads() {
+    return maximumBatchSize != UNSET_INT;
+  }
+
+  int getMaximumBatchSize() {
+    return maximumBatchSize;
+  }
+
+  long getBatchWindowNanos() {
+    return batchWindowNanos;
+  }
+
   /**
    * Specifies a nanosecond-precision time source for this cache. By default,
    * {@link System#nanoTime} is used.
@@ -747,6 +943,36 @@ public final class CacheBuilder<K, V> {
         MoreObjects.firstNonNull(removalListener, NullListener.INSTANCE);
   }
 
+  /**
+   * Specifies the executor on which caches perform routine maintenance and notify the {@linkplain
+   * #removalListener removal listener}. By default, both are done by the threads calling cache
+   * operations, which adds the cost of maintenance and of the listener to those operations.
+   *
+   * <p>With an executor, writes still remove expired and garbage-collected entries before they
+   * modify the cache, so that they never observe such entries, but leave size-based eviction and
+   * removal notification to a maintenance task which is submitted to the executor. Writes may
+   * therefore leave a cache temporarily over its {@linkplain #maximumSize maximum size}; to bound
+   * this, a write evicts entries itself once a small number of writes are awaiting eviction. If the
+   * executor rejects the maintenance task, the calling thread performs it. An explicit call to
+   * {@link Cache#cleanUp} always performs maintenance on the calling thread.
+   *
+   * <p>Removal notifications for a cache are delivered by whichever maintenance task first drains
+   * them, so a listener may be invoked concurrently unless the executor runs tasks sequentially.
+   *
+   * @throws IllegalStateException if an executor was already set
+   * @since 19.0
+   */
+  @GwtIncompatible("To be supported")
+  public CacheBuilder<K, V> executor(Executor executor) {
+    checkState(this.executor == null, "executor was already set to %s", this.executor);
+    this.executor = checkNotNull(executor);
+    return this;
+  }
+
+  Executor getExecutor() {
+    return MoreObjects.firstNonNull(executor, directExecutor());
+  }
+
   /**
    * Enable the accumulation of {@link CacheStats} during the operation of the cache. Without this
    * {@link Cache#stats} will return zero for all statistics. Note that recording stats requires
@@ -760,14 +986,57 @@ public final class CacheBuilder<K, V> {
     return this;
   }
 
+  /**
+   * Enable the accumulation of {@link CacheStats} during the operation of the cache, recording them
+   * with the counters returned by {@code statsCounterSupplier} rather than with a {@link
+   * AbstractCache.SimpleStatsCounter}. This allows, for example, a {@link HistogramStatsCounter} to
+   * record the distribution of load latencies.
+   *
+   * <p>The supplier is invoked for each segment of the cache, and once more for the cache as a
+   * whole. It may return a new counter on each invocation, or a single thread-safe counter which is
+   * then shared by the whole cache; {@link Cache#stats} sums the snapshots of the distinct
+   * counters.
+   *
+   * @param statsCounterSupplier supplies the counters which record the statistics of the cache
+   * @return this {@code CacheBuilder} instance (for chaining)
+   * @since 19.0
+   */
+  @GwtIncompatible("To be supported")
+  public CacheBuilder<K, V> recordStats(Supplier<? extends StatsCounter> statsCounterSupplier) {
+    this.statsCounterSupplier = checkNotNull(statsCounterSupplier);
+    return this;
+  }
+
   boolean isRecordingStats() {
-    return statsCounterSupplier == CACHE_STATS_COUNTER;
+    return statsCounterSupplier != NULL_STATS_COUNTER;
   }
 
   Supplier<? extends StatsCounter> getStatsCounterSupplier() {
     return statsCounterSupplier;
   }
 
+  /**
+   * Enable the recording of the diagnostics reported by {@link CacheDiagnostics}: how long each
+   * segment's lock is held and waited for, and a sample of the keys which are read most often.
+   * Without this those diagnostics are zero or empty, though the size of each segment is still
+   * reported. Recording the diagnostics reads the system clock whenever a segment is locked, so it
+   * imposes a modest performance penalty on writes.
+   *
+   * @return this {@code CacheBuilder} instance (for chaining)
+   * @throws IllegalStateException if the recording of diagnostics was already requested
+   * @since 19.0
+   */
+  @GwtIncompatible("To be supported")
+  public CacheBuilder<K, V> recordDiagnostics() {
+    checkState(!recordDiagnostics, "recordDiagnostics was already set");
+    recordDiagnostics = true;
+    return this;
+  }
+
+  boolean isRecordingDiagnostics() {
+    return recordDiagnostics;
+  }
+
   /**
    * Builds a cache, which either returns an already-loaded value for a given key or atomically
    * computes or retrieves it using the supplied {@code CacheLoader}. If another thread is currently
@@ -783,9 +1052,32 @@ public final class CacheBuilder<K, V> {
   public <K1 extends K, V1 extends V> LoadingCache<K1, V1> build(
           CacheLoader<? super K1, V1> loader) {
     checkWeightWithWeigher();
+    checkAdmissionWithMaximum();
     return new LocalCache.LocalLoadingCache<K1, V1>(this, loader);
   }
 
+  /**
+   * Builds a cache which loads values with the supplied {@code CacheLoader}, but which returns
+   * {@link ListenableFuture futures} of its values instead of waiting for them to load. Loads are
+   * performed on the {@linkplain #executor executor} of the cache, which is also used to run
+   * {@linkplain CacheLoader#asyncReloading reloads}; without an executor, loads run on the calling
+   * thread.
+   *
+   * <p>This method does not alter the state of this {@code CacheBuilder} instance, so it can be
+   * invoked again to create multiple independent caches.
+   *
+   * @param loader the cache loader used to obtain new values
+   * @return a cache having the requested features
+   * @since 19.0
+   */
+  @GwtIncompatible("To be supported")
+  public <K1 extends K, V1 extends V> AsyncLoadingCache<K1, V1> buildAsync(
+      CacheLoader<? super K1, V1> loader) {
+    checkWeightWithWeigher();
+    checkAdmissionWithMaximum();
+    return new LocalCache.LocalAsyncLoadingCache<K1, V1>(this, loader);
+  }
+
   /**
    * Builds a cache which does not automatically load values when keys are requested.
    *
@@ -800,16 +1092,20 @@ public final class CacheBuilder<K, V> {
    */
   public <K1 extends K, V1 extends V> Cache<K1, V1> build() {
     checkWeightWithWeigher();
+    checkAdmissionWithMaximum();
     checkNonLoadingCache();
     return new LocalCache.LocalManualCache<K1, V1>(this);
   }
 
   private void checkNonLoadingCache() {
     checkState(refreshNanos == UNSET_INT, "refreshAfterWrite requires a LoadingCache");
+    checkState(maximumBatchSize == UNSET_INT, "batchLoads requires a LoadingCache");
   }
 
   private void checkWeightWithWeigher() {
-    if (weigher == null) {
+    if (valueSerializer != null) {
+      checkState(maximumWeight != UNSET_INT, "offHeapValues requires maximumWeight");
+    } else if (weigher == null) {
       checkState(maximumWeight == UNSET_INT, "maximumWeight requires weigher");
     } else {
       if (strictParsing) {
@@ -822,6 +1118,13 @@ public final class CacheBuilder<K, V> {
     }
   }
 
+  private void checkAdmissionWithMaximum() {
+    if (admitByFrequency) {
+      checkState(maximumSize != UNSET_INT || maximumWeight != UNSET_INT,
+          "admitByFrequency requires maximumSize or maximumWeight");
+    }
+  }
+
   /**
    * Returns a string representation for this CacheBuilder instance. The exact form of the returned
    * string is not specified.
@@ -841,12 +1144,21 @@ public final class CacheBuilder<K, V> {
     if (maximumWeight != UNSET_INT) {
       s.add("maximumWeight", maximumWeight);
     }
+    if (valueSerializer != null) {
+      s.addValue("offHeapValues");
+    }
+    if (admitByFrequency) {
+      s.addValue("admitByFrequency");
+    }
     if (expireAfterWriteNanos != UNSET_INT) {
       s.add("expireAfterWrite", expireAfterWriteNanos + "ns");
     }
     if (expireAfterAccessNanos != UNSET_INT) {
       s.add("expireAfterAccess", expireAfterAccessNanos + "ns");
     }
+    if (expiry != null) {
+      s.addValue("expireAfter");
+    }
     if (keyStrength != null) {
       s.add("keyStrength", Ascii.toLowerCase(keyStrength.toString()));
     }
@@ -859,9 +1171,15 @@ public final class CacheBuilder<K, V> {
     if (valueEquivalence != null) {
       s.addValue("valueEquivalence");
     }
+    if (maximumBatchSize != UNSET_INT) {
+      s.add("batchLoads", maximumBatchSize + " keys/" + batchWindowNanos + "ns");
+    }
     if (removalListener != null) {
       s.addValue("removalListener");
     }
+    if (executor != null) {
+      s.addValue("executor");
+    }
     return s.toString();
   }
 }
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.base.MoreObjects;
+import com.google.common.cache.LocalCache.LocalManualCache;
+import com.google.common.cache.LocalCache.Segment;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Multisets;
+
+/**
+ * A read-only view of the internal state of a cache built by {@link CacheBuilder}, for diagnosing
+ * uneven load across its segments and the keys which are read most often. Instances of this class
+ * are immutable snapshots, taken by {@link #snapshot}.
+ *
+ * <p>A cache is divided into segments, as configured by {@link CacheBuilder#concurrencyLevel},
+ * each guarded by a lock of its own. The entry count, total weight and modification count of
+ * every segment are always available. The time spent waiting for and holding the lock of each
+ * segment, and the hottest keys of each segment, are only recorded by caches which were built
+ * with {@link CacheBuilder#recordDiagnostics}; otherwise they are reported as zero and empty.
+ *
+ * <p>The hottest keys are estimated by sampling the reads which are buffered to maintain the
+ * recency order of a segment, so they are only recorded by caches which are bounded by {@link
+ * CacheBuilder#maximumSize maximum size}, {@link CacheBuilder#maximumWeight maximum weight}, or
+ * {@link CacheBuilder#expireAfterAccess access time}, and which do not use {@link
+ * CacheBuilder#weakKeys weak keys}. The estimated counts are periodically halved so that they
+ * follow the current workload, and should only be compared with each other.
+ *
+ * @since 19.0
+ */
+@Beta
+@GwtIncompatible("Only supported by the server-side LocalCache")
+public final class CacheDiagnostics<K> {
+  private final ImmutableList<SegmentDiagnostics<K>> segments;
+
+  private CacheDiagnostics(ImmutableList<SegmentDiagnostics<K>> segments) {
+    this.segments = segments;
+  }
+
+  /**
+   * Returns a snapshot of the diagnostics of {@code cache}. Each segment is briefly locked in turn
+   * while its diagnostics are read, so the snapshot is consistent for each segment but not across
+   * segments.
+   *
+   * @throws IllegalArgumentException if {@code cache} was not built by {@link CacheBuilder}
+   */
+  public static <K> CacheDiagnostics<K> snapshot(Cache<K, ?> cache) {
+    checkNotNull(cache);
+    checkArgument(cache instanceof LocalManualCache,
+        "Diagnostics are only available for caches built by CacheBuilder: %s", cache);
+    return snapshot(((LocalManualCache<K, ?>) cache).localCache);
+  }
+
+  private static <K, V> CacheDiagnostics<K> snapshot(LocalCache<K, V> localCache) {
+    ImmutableList.Builder<SegmentDiagnostics<K>> segments = ImmutableList.builder();
+    for (Segment<K, V> segment : localCache.segments) {
+      segment.lock();
+      try {
+        SegmentMonitor<K> monitor = segment.monitor;
+        segments.add((monitor == null)
+            ? new SegmentDiagnostics<K>(segment.count, segment.totalWeight, segment.modCount,
+                0, 0, 0, 0, ImmutableMultiset.<K>of())
+            : new SegmentDiagnostics<K>(segment.count, segment.totalWeight, segment.modCount,
+                monitor.lockAcquisitions, monitor.contendedAcquisitions, monitor.lockWaitNanos,
+                monitor.lockHoldNanos, monitor.hotKeys()));
+      } finally {
+        segment.unlock();
+      }
+    }
+    return new CacheDiagnostics<K>(segments.build());
+  }
+
+  /** Returns the diagnostics of each segment of the cache. */
+  public ImmutableList<SegmentDiagnostics<K>> segments() {
+    return segments;
+  }
+
+  /**
+   * Returns the estimated counts of the hottest keys of all segments, from the most to the least
+   * often read.
+   */
+  public ImmutableMultiset<K> hotKeys() {
+    Multiset<K> hotKeys = HashMultiset.create();
+    for (SegmentDiagnostics<K> segment : segments) {
+      hotKeys.addAll(segment.hotKeys());
+    }
+    return Multisets.copyHighestCountFirst(hotKeys);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this).add("segments", segments).toString();
+  }
+
+  /**
+   * The diagnostics of a single segment of a cache.
+   *
+   * @since 19.0
+   */
+  @Beta
+  public static final class SegmentDiagnostics<K> {
+    private final int count;
+    private final long totalWeight;
+    private final int modCount;
+    private final long lockAcquisitions;
+    private final long contendedAcquisitions;
+    private final long lockWaitNanos;
+    private final long lockHoldNanos;
+    private final ImmutableMultiset<K> hotKeys;
+
+    SegmentDiagnostics(int count, long totalWeight, int modCount, long lockAcquisitions,
+        long contendedAcquisitions, long lockWaitNanos, long lockHoldNanos,
+        ImmutableMultiset<K> hotKeys) {
+      this.count = count;
+      this.totalWeight = totalWeight;
+      this.modCount = modCount;
+      this.lockAcquisitions = lockAcquisitions;
+      this.contendedAcquisitions = contendedAcquisitions;
+      this.lockWaitNanos = lockWaitNanos;
+      this.lockHoldNanos = lockHoldNanos;
+      this.hotKeys = checkNotNull(hotKeys);
+    }
+
+    /** Returns the number of live entries in the segment. */
+    public int count() {
+      return count;
+    }
+
+    /**
+     * Returns the total weight of the live entries in the segment, as measured by the {@linkplain
+     * CacheBuilder#weigher weigher} of the cache if it has one, or else by counting each entry
+     * once.
+     */
+    public long totalWeight() {
+      return totalWeight;
+    }
+
+    /**
+     * Returns the number of updates which have altered the size of the segment, such as insertions
+     * and removals. A segment whose count is stable but whose modification count grows quickly is
+     * churning through its entries.
+     */
+    public int modCount() {
+      return modCount;
+    }
+
+    /** Returns the number of times the lock of the segment was acquired. */
+    public long lockAcquisitions() {
+      return lockAcquisitions;
+    }
+
+    /** Returns the number of times a thread had to wait to acquire the lock of the segment. */
+    public long contendedAcquisitions() {
+      return contendedAcquisitions;
+    }
+
+    /** Returns the total time which threads spent waiting to acquire the lock, in nanoseconds. */
+    public long lockWaitNanos() {
+      return lockWaitNanos;
+    }
+
+    /** Returns the total time which threads spent holding the lock, in nanoseconds. */
+    public long lockHoldNanos() {
+      return lockHoldNanos;
+    }
+
+    /**
+     * Returns the estimated counts of the hottest keys of the segment, from the most to the least
+     * often read.
+     */
+    public ImmutableMultiset<K> hotKeys() {
+      return hotKeys;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("count", count)
+          .add("totalWeight", totalWeight)
+          .add("modCount", modCount)
+          .add("lockAcquisitions", lockAcquisitions)
+          .add("contendedAcquisitions", contendedAcquisitions)
+          .add("lockWaitNanos", lockWaitNanos)
+          .add("lockHoldNanos", lockHoldNanos)
+          .add("hotKeys", hotKeys)
+          .toString();
+    }
+  }
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.LocalCache.LocalManualCache;
+import com.google.common.cache.LocalCache.Segment;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteSink;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Static methods which save the entries of a {@link Cache} to a {@link ByteSink}, and restore them
+ * from a {@link ByteSource}, so that a newly started process can begin with a warm cache.
+ *
+ * <p>Only the entries are saved. As with the serialized form of a cache, its configuration is not
+ * part of a snapshot; the entries are restored into a cache which was built with a {@link
+ * CacheBuilder} as usual. Keys and values are converted to bytes by {@link ValueSerializer}s, so
+ * they need not be {@link java.io.Serializable}.
+ *
+ * <p>For caches built by {@link CacheBuilder}, a snapshot also records how long ago each entry was
+ * written and read, and how long it has until it expires when {@linkplain CacheBuilder#expireAfter
+ * expiring variably}. When the entries are restored these are advanced by the time which passed
+ * since the snapshot was saved, so that each entry keeps only its remaining lifetime, and entries
+ * which would have expired are skipped. Entries are saved in the order in which they would be
+ * evicted, so that restoring them reproduces their recency.
+ *
+ * <p>A snapshot begins with a header holding a magic number, the format version and the time at
+ * which it was saved. Each entry follows as a flag byte, the entry's times in nanoseconds, and the
+ * lengths and bytes of its key and value; the times and lengths are written as variable-length
+ * integers. A zero byte and the number of entries end the snapshot, so that a truncated snapshot
+ * is detected.
+ *
+ * @since 19.0
+ */
+@Beta
+@GwtIncompatible("java.io")
+public final class CacheSnapshots {
+  private CacheSnapshots() {}
+
+  static final int MAGIC = 0x47436163; // "GCac"
+  static final int VERSION = 1;
+
+  /** Marks a time which was not recorded by the cache that was saved. */
+  static final long UNKNOWN = Long.MIN_VALUE;
+
+  static final int END = 0;
+  static final int ENTRY = 0x80;
+  static final int WRITE_AGE = 0x01;
+  static final int ACCESS_AGE = 0x02;
+  static final int EXPIRES_IN = 0x04;
+
+  /**
+   * The largest key or value which is read into an array of its saved length. Larger ones are read
+   * into arrays which grow as their bytes arrive, so that a malformed length fails with an
+   * exception at the end of the snapshot, rather than by allocating an array of that length.
+   */
+  @VisibleForTesting static final int MAX_TRUSTED_LENGTH = 64 * 1024;
+
+  /**
+   * Writes the current entries of {@code cache} to {@code sink}. The entries of each segment of the
+   * cache are copied while it is locked, and are then written while it is unlocked, so other
+   * threads may modify the cache while it is being saved; entries which are modified concurrently
+   * may or may not be saved.
+   *
+   * @return the number of entries which were written
+   * @throws IOException if an I/O error occurs in the process of writing to {@code sink}
+   */
+  public static <K, V> long save(Cache<K, V> cache, ByteSink sink,
+      ValueSerializer<? super K> keySerializer, ValueSerializer<? super V> valueSerializer)
+      throws IOException {
+    return save(cache, sink, keySerializer, valueSerializer, System.currentTimeMillis());
+  }
+
+  @VisibleForTesting
+  static <K, V> long save(Cache<K, V> cache, ByteSink sink,
+      ValueSerializer<? super K> keySerializer, ValueSerializer<? super V> valueSerializer,
+      long currentTimeMillis) throws IOException {
+    checkNotNull(cache);
+    checkNotNull(keySerializer);
+    checkNotNull(valueSerializer);
+
+    Closer closer = Closer.create();
+    try {
+      DataOutputStream out = closer.register(new DataOutputStream(sink.openBufferedStream()));
+      out.writeInt(MAGIC);
+      out.writeByte(VERSION);
+      out.writeLong(currentTimeMillis);
+
+      long count = 0;
+      if (cache instanceof LocalManualCache) {
+        List<SnapshotEntry<K, V>> entries = Lists.newArrayList();
+        for (Segment<K, V> segment : ((LocalManualCache<K, V>) cache).localCache.segments) {
+          segment.snapshot(entries);
+          for (SnapshotEntry<K, V> entry : entries) {
+            writeEntry(out, entry, keySerializer, valueSerializer);
+          }
+          count += entries.size();
+          entries.clear();
+        }
+      } else {
+        for (Map.Entry<K, V> entry : cache.asMap().entrySet()) {
+          writeEntry(out, new SnapshotEntry<K, V>(
+              entry.getKey(), entry.getValue(), UNKNOWN, UNKNOWN, UNKNOWN),
+              keySerializer, valueSerializer);
+          count++;
+        }
+      }
+
+      out.writeByte(END);
+      writeVarLong(out, count);
+      out.flush();
+      return count;
+    } catch (Throwable e) {
+      throw closer.rethrow(e);
+    } finally {
+      closer.close();
+    }
+  }
+
+  /**
+   * Adds the entries which were saved to {@code source} by {@link #save} to {@code cache}. An entry
+   * is skipped if its key is already present in the cache, or if it would have expired by now, so
+   * restoring a snapshot never replaces newer values. Restored entries are not considered to have
+   * been loaded, so they are not recorded in the statistics of the cache.
+   *
+   * <p>Entries are added one at a time, so concurrent readers may observe a partially restored
+   * cache. If the snapshot turns out to be malformed, the entries which preceded the malformed one
+   * remain in the cache.
+   *
+   * @return the number of entries which were added
+   * @throws IOException if an I/O error occurs in the process of reading from {@code source}, or if
+   *     it does not hold a complete snapshot in a supported format
+   */
+  public static <K, V> long restore(Cache<K, V> cache, ByteSource source,
+      ValueSerializer<? extends K> keySerializer, ValueSerializer<? extends V> valueSerializer)
+      throws IOException {
+    return restore(cache, source, keySerializer, valueSerializer, System.currentTimeMillis());
+  }
+
+  @VisibleForTesting
+  static <K, V> long restore(Cache<K, V> cache, ByteSource source,
+      ValueSerializer<? extends K> keySerializer, ValueSerializer<? extends V> valueSerializer,
+      long currentTimeMillis) throws IOException {
+    checkNotNull(cache);
+    checkNotNull(keySerializer);
+    checkNotNull(valueSerializer);
+
+    Closer closer = Closer.create();
+    try {
+      DataInputStream in = closer.register(new DataInputStream(source.openBufferedStream()));
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Not a cache snapshot");
+      }
+      int version = in.readUnsignedByte();
+      if (version != VERSION) {
+        throw new IOException("Unsupported cache snapshot version: " + version);
+      }
+      long elapsed = MILLISECONDS.toNanos(Math.max(0, currentTimeMillis - in.readLong()));
+
+      LocalCache<K, V> localCache = (cache instanceof LocalManualCache)
+          ? ((LocalManualCache<K, V>) cache).localCache
+          : null;
+      ConcurrentMap<K, V> map = cache.asMap();
+      long count = 0;
+      long restored = 0;
+      int flags;
+      while ((flags = in.readUnsignedByte()) != END) {
+        if ((flags & ENTRY) == 0) {
+          throw new IOException("Malformed cache snapshot entry: " + flags);
+        }
+        long writeAge = ((flags & WRITE_AGE) != 0) ? age(readVarLong(in), elapsed) : UNKNOWN;
+        long accessAge = ((flags & ACCESS_AGE) != 0) ? age(readVarLong(in), elapsed) : UNKNOWN;
+        long expiresIn = ((flags & EXPIRES_IN) != 0) ? readVarLong(in) - elapsed : UNKNOWN;
+        K key = readObject(in, keySerializer);
+        V value = readObject(in, valueSerializer);
+        count++;
+
+        boolean added;
+        if (localCache != null) {
+          int hash = localCache.hash(key);
+          added = localCache.segmentFor(hash)
+              .restore(key, hash, value, writeAge, accessAge, expiresIn);
+        } else {
+          added = (map.putIfAbsent(key, value) == null);
+        }
+        if (added) {
+          restored++;
+        }
+      }
+      if (readVarLong(in) != count) {
+        throw new IOException("Truncated cache snapshot");
+      }
+      return restored;
+    } catch (Throwable e) {
+      throw closer.rethrow(e);
+    } finally {
+      closer.close();
+    }
+  }
+
+  /** Advances a saved age by the time which has elapsed since it was saved. */
+  private static long age(long savedAge, long elapsed) {
+    long age = savedAge + elapsed;
+    return (age < 0) ? Long.MAX_VALUE : age;
+  }
+
+  private static <K, V> void writeEntry(DataOutputStream out, SnapshotEntry<K, V> entry,
+      ValueSerializer<? super K> keySerializer, ValueSerializer<? super V> valueSerializer)
+      throws IOException {
+    int flags = ENTRY;
+    if (entry.writeAge != UNKNOWN) {
+      flags |= WRITE_AGE;
+    }
+    if (entry.accessAge != UNKNOWN) {
+      flags |= ACCESS_AGE;
+    }
+    if (entry.expiresIn != UNKNOWN) {
+      flags |= EXPIRES_IN;
+    }
+    out.writeByte(flags);
+    if (entry.writeAge != UNKNOWN) {
+      writeVarLong(out, entry.writeAge);
+    }
+    if (entry.accessAge != UNKNOWN) {
+      writeVarLong(out, entry.accessAge);
+    }
+    if (entry.expiresIn != UNKNOWN) {
+      writeVarLong(out, entry.expiresIn);
+    }
+    writeObject(out, entry.key, keySerializer);
+    writeObject(out, entry.value, valueSerializer);
+  }
+
+  private static <T> void writeObject(DataOutputStream out, T object,
+      ValueSerializer<? super T> serializer) throws IOException {
+    int length = serializer.serializedSize(object);
+    checkState(length >= 0, "Serialized sizes must be non-negative");
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    serializer.serialize(object, buffer);
+    checkState(!buffer.hasRemaining(), "%s wrote %s fewer bytes than its serialized size",
+        serializer, buffer.remaining());
+    writeVarLong(out, length);
+    out.write(buffer.array());
+  }
+
+  private static <T> T readObject(DataInputStream in, ValueSerializer<? extends T> serializer)
+      throws IOException {
+    long length = readVarLong(in);
+    if (length > Integer.MAX_VALUE) {
+      throw new IOException("Malformed cache snapshot length: " + length);
+    }
+    byte[] bytes;
+    if (length <= MAX_TRUSTED_LENGTH) {
+      bytes = new byte[(int) length];
+      in.readFully(bytes);
+    } else {
+      bytes = ByteStreams.toByteArray(ByteStreams.limit(in, length));
+      if (bytes.length != length) {
+        throw new IOException("Truncated cache snapshot");
+      }
+    }
+    T object = serializer.deserialize(ByteBuffer.wrap(bytes));
+    if (object == null) {
+      throw new IOException(serializer + " deserialized null");
+    }
+    return object;
+  }
+
+  /** Writes a non-negative value in groups of seven bits, least significant first. */
+  static void writeVarLong(DataOutputStream out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  static long readVarLong(DataInputStream in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed cache snapshot integer");
+  }
+
+  /**
+   * An entry copied from a segment, with the times since it was written and read and until it
+   * expires, each of which may be {@link #UNKNOWN}.
+   */
+  static final class SnapshotEntry<K, V> {
+    final K key;
+    final V value;
+    final long writeAge;
+    final long accessAge;
+    final long expiresIn;
+
+    SnapshotEntry(K key, V value, long writeAge, long accessAge, long expiresIn) {
+      this.key = checkNotNull(key);
+      this.value = checkNotNull(value);
+      this.writeAge = writeAge;
+      this.accessAge = accessAge;
+      this.expiresIn = expiresIn;
+    }
+  }
+}
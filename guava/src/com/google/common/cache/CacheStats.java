@@ -45,6 +45,9 @@ import javax.annotation.Nullable;
  *     for loading to complete (whether successful or not) and then increment {@code missCount}.
  * </ul>
  * <li>When an entry is evicted from the cache, {@code evictionCount} is incremented.
+ * <li>When a newly added entry is evicted because the cache's admission policy preferred to retain
+ *     an existing entry, both {@code evictionCount} and {@code admissionRejectionCount} are
+ *     incremented.
  * <li>No stats are modified when a cache entry is invalidated or manually removed.
  * <li>No stats are modified by operations invoked on the {@linkplain Cache#asMap asMap} view of
  *     the cache.
@@ -65,6 +68,7 @@ public final class CacheStats {
   private final long loadExceptionCount;
   private final long totalLoadTime;
   private final long evictionCount;
+  private final long admissionRejectionCount;
 
   /**
    * Constructs a new {@code CacheStats} instance.
@@ -74,12 +78,26 @@ public final class CacheStats {
    */
   public CacheStats(long hitCount, long missCount, long loadSuccessCount,
       long loadExceptionCount, long totalLoadTime, long evictionCount) {
+    this(hitCount, missCount, loadSuccessCount, loadExceptionCount, totalLoadTime, evictionCount,
+        0);
+  }
+
+  /**
+   * Constructs a new {@code CacheStats} instance, including the number of entries which were
+   * rejected by the cache's admission policy.
+   *
+   * @since 19.0
+   */
+  public CacheStats(long hitCount, long missCount, long loadSuccessCount,
+      long loadExceptionCount, long totalLoadTime, long evictionCount,
+      long admissionRejectionCount) {
     checkArgument(hitCount >= 0);
     checkArgument(missCount >= 0);
     checkArgument(loadSuccessCount >= 0);
     checkArgument(loadExceptionCount >= 0);
     checkArgument(totalLoadTime >= 0);
     checkArgument(evictionCount >= 0);
+    checkArgument(admissionRejectionCount >= 0);
 
     this.hitCount = hitCount;
     this.missCount = missCount;
@@ -87,6 +105,7 @@ public final class CacheStats {
     this.loadExceptionCount = loadExceptionCount;
     this.totalLoadTime = totalLoadTime;
     this.evictionCount = evictionCount;
+    this.admissionRejectionCount = admissionRejectionCount;
   }
 
   /**
@@ -209,6 +228,19 @@ public final class CacheStats {
     return evictionCount;
   }
 
+  /**
+   * Returns the number of times a newly added entry was evicted because the cache's admission
+   * policy estimated it to be less valuable than the entry it would have displaced. Such
+   * rejections are also included in {@link #evictionCount}. This is always zero unless the cache
+   * was built with {@link CacheBuilder#admitByFrequency}, and its statistics are recorded by an
+   * {@link AbstractCache.SimpleStatsCounter} or a {@link HistogramStatsCounter}.
+   *
+   * @since 19.0
+   */
+  public long admissionRejectionCount() {
+    return admissionRejectionCount;
+  }
+
   /**
    * Returns a new {@code CacheStats} representing the difference between this {@code CacheStats}
    * and {@code other}. Negative values, which aren't supported by {@code CacheStats} will be
@@ -221,7 +253,8 @@ public final class CacheStats {
         Math.max(0, loadSuccessCount - other.loadSuccessCount),
         Math.max(0, loadExceptionCount - other.loadExceptionCount),
         Math.max(0, totalLoadTime - other.totalLoadTime),
-        Math.max(0, evictionCount - other.evictionCount));
+        Math.max(0, evictionCount - other.evictionCount),
+        Math.max(0, admissionRejectionCount - other.admissionRejectionCount));
   }
 
   /**
@@ -237,13 +270,14 @@ public final class CacheStats {
         loadSuccessCount + other.loadSuccessCount,
         loadExceptionCount + other.loadExceptionCount,
         totalLoadTime + other.totalLoadTime,
-        evictionCount + other.evictionCount);
+        evictionCount + other.evictionCount,
+        admissionRejectionCount + other.admissionRejectionCount);
   }
 
   @Override
   public int hashCode() {
     return Objects.hashCode(hitCount, missCount, loadSuccessCount, loadExceptionCount,
-        totalLoadTime, evictionCount);
+        totalLoadTime, evictionCount, admissionRejectionCount);
   }
 
   @Override
@@ -255,7 +289,8 @@ public final class CacheStats {
           && loadSuccessCount == other.loadSuccessCount
           && loadExceptionCount == other.loadExceptionCount
           && totalLoadTime == other.totalLoadTime
-          && evictionCount == other.evictionCount;
+          && evictionCount == other.evictionCount
+          && admissionRejectionCount == other.admissionRejectionCount;
     }
     return false;
   }
@@ -269,6 +304,7 @@ public final class CacheStats {
         .add("loadExceptionCount", loadExceptionCount)
         .add("totalLoadTime", totalLoadTime)
         .add("evictionCount", evictionCount)
+        .add("admissionRejectionCount", admissionRejectionCount)
         .toString();
   }
 }
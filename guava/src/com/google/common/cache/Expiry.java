@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.cache;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+
+/**
+ * Calculates how long each cache entry should be retained, for caches which {@linkplain
+ * CacheBuilder#expireAfter expire entries variably}. Each method is called with the time at which
+ * the operation took place, as read from the {@linkplain CacheBuilder#ticker ticker} of the cache,
+ * and returns the length of time after which the entry should expire. A duration which is zero or
+ * negative causes the entry to expire immediately.
+ *
+ * <p>All durations and times are in nanoseconds. Methods are invoked while the cache holds locks,
+ * so implementations should be fast and must not access the cache.
+ *
+ * @since 19.0
+ */
+@Beta
+@GwtIncompatible("To be supported")
+public abstract class Expiry<K, V> {
+
+  /**
+   * Returns the duration after which a newly created entry should expire. This is also used for an
+   * entry whose previous value was garbage collected.
+   *
+   * @param key the key of the entry
+   * @param value the value of the entry
+   * @param currentTime the current time, in nanoseconds
+   * @return the length of time before the entry expires, in nanoseconds
+   */
+  public abstract long expireAfterCreate(K key, V value, long currentTime);
+
+  /**
+   * Returns the duration after which an entry whose value was just replaced should expire. This is
+   * called when a value is put over an existing one, and when a refresh completes.
+   *
+   * <p>The default implementation returns {@code expireAfterCreate(key, value, currentTime)}, so
+   * that entries are retained for a duration measured from their most recent write.
+   *
+   * @param key the key of the entry
+   * @param value the new value of the entry
+   * @param currentTime the current time, in nanoseconds
+   * @param currentDuration the remaining time before the entry would have expired, in nanoseconds
+   * @return the length of time before the entry expires, in nanoseconds
+   */
+  public long expireAfterUpdate(K key, V value, long currentTime, long currentDuration) {
+    return expireAfterCreate(key, value, currentTime);
+  }
+
+  /**
+   * Returns the duration after which an entry which was just read should expire.
+   *
+   * <p>The default implementation returns {@code currentDuration}, so that reads do not extend the
+   * lifetime of entries.
+   *
+   * @param key the key of the entry
+   * @param value the value of the entry
+   * @param currentTime the current time, in nanoseconds
+   * @param currentDuration the remaining time before the entry expires, in nanoseconds
+   * @return the length of time before the entry expires, in nanoseconds
+   */
+  public long expireAfterRead(K key, V value, long currentTime, long currentDuration) {
+    return currentDuration;
+  }
+}
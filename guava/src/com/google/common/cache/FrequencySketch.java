@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.annotations.GwtIncompatible;
+
+/**
+ * A probabilistic multiset for estimating the popularity of an element within a time window, as
+ * used by the TinyLFU admission policy. The maximum frequency of an element is limited to 15
+ * (4 bits), and an aging process periodically halves the popularity of all elements.
+ *
+ * <p>The sketch is a Count-Min sketch of depth four, where the four 4-bit counters of an element
+ * are packed into a {@code long[]} table. Each element selects one group of four counters within
+ * each of four table slots. Since the counters are so small, a table whose length is the expected
+ * number of distinct elements uses only 8 bytes per element.
+ *
+ * <p>Instances are not thread-safe; within {@link LocalCache} each segment owns a sketch which is
+ * guarded by the segment lock.
+ */
+@GwtIncompatible("Only used by the server-side LocalCache")
+final class FrequencySketch {
+
+  /*
+   * The hash of an element is spread into four table indexes using the seeds below (taken from
+   * FNV-1a, CityHash, and Murmur3). The two lowest bits of the element's hash choose which group
+   * of four counters is used within each slot, so that elements which collide on a slot are
+   * unlikely to also collide on the counters.
+   *
+   * Once the number of increments reaches the sample size, every counter is halved. This keeps
+   * the sketch responsive to changes in the popularity distribution, as described in "TinyLFU: A
+   * Highly Efficient Cache Admission Policy" by Einziger, Friedman and Manes.
+   */
+
+  static final long[] SEED = {
+      0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+  static final long RESET_MASK = 0x7777777777777777L;
+  static final long ONE_MASK = 0x1111111111111111L;
+
+  /** The maximum table length that the sketch will use. */
+  static final int MAXIMUM_CAPACITY = 1 << 30;
+
+  long[] table;
+  int tableMask;
+  int sampleSize;
+  int size;
+
+  /**
+   * Creates a sketch sized for approximately {@code expectedSize} distinct elements.
+   */
+  FrequencySketch(long expectedSize) {
+    ensureCapacity(expectedSize);
+  }
+
+  /**
+   * Grows the sketch, if necessary, so that it can accurately estimate the popularity of
+   * {@code expectedSize} distinct elements. The counts of elements are kept when the sketch grows,
+   * so that it may be sized for the elements that are present rather than for the most that could
+   * be.
+   */
+  void ensureCapacity(long expectedSize) {
+    checkArgument(expectedSize >= 0);
+    int maximum = (int) Math.min(Math.max(expectedSize, 1), MAXIMUM_CAPACITY);
+    if ((table != null) && (table.length >= maximum)) {
+      return;
+    }
+
+    int tableSize = 1;
+    while (tableSize < maximum) {
+      tableSize <<= 1;
+    }
+    long[] newTable = new long[tableSize];
+    if (table != null) {
+      // an index into the larger table has the same low bits as the index of the same element into
+      // the smaller one, so repeating the smaller table keeps every element's counters
+      for (int i = 0; i < tableSize; i += table.length) {
+        System.arraycopy(table, 0, newTable, i, table.length);
+      }
+    }
+    table = newTable;
+    tableMask = tableSize - 1;
+    sampleSize = (int) Math.min(10L * maximum, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns the estimated number of occurrences of the element with the given {@code hash}, up to
+   * the maximum value of 15.
+   */
+  int frequency(int hash) {
+    int start = (hash & 3) << 2;
+    int frequency = Integer.MAX_VALUE;
+    for (int i = 0; i < 4; i++) {
+      int index = indexOf(hash, i);
+      int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  /**
+   * Increments the popularity of the element with the given {@code hash} if it does not already
+   * exceed the maximum value. When the number of increments reaches the sample size, all counters
+   * are aged.
+   */
+  void increment(int hash) {
+    int start = (hash & 3) << 2;
+    boolean added = false;
+    for (int i = 0; i < 4; i++) {
+      added |= incrementAt(indexOf(hash, i), start + i);
+    }
+
+    if (added && (++size == sampleSize)) {
+      reset();
+    }
+  }
+
+  /**
+   * Increments the counter at position {@code counter} in the slot at {@code index}, unless it is
+   * already at its maximum value. Returns whether the counter was incremented.
+   */
+  boolean incrementAt(int index, int counter) {
+    int offset = counter << 2;
+    long mask = 0xfL << offset;
+    if ((table[index] & mask) != mask) {
+      table[index] += 1L << offset;
+      return true;
+    }
+    return false;
+  }
+
+  /** Halves every counter, adjusting the sample size for the truncated odd counts. */
+  void reset() {
+    int oddCount = 0;
+    for (int i = 0; i < table.length; i++) {
+      oddCount += Long.bitCount(table[i] & ONE_MASK);
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    // the odd counts of a grown table are repeated, so this may otherwise become negative
+    size = Math.max(0, (size >>> 1) - (oddCount >>> 2));
+  }
+
+  /**
+   * Returns the table index of the counters for the element with the given {@code hash}, using the
+   * {@code i}-th hash function.
+   */
+  int indexOf(int hash, int i) {
+    long h = (hash + SEED[i]) * SEED[i];
+    h += h >>> 32;
+    return ((int) h) & tableMask;
+  }
+}
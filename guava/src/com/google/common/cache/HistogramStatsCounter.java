@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.cache.LatencyHistogram.BUCKETS;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.base.Supplier;
+import com.google.common.cache.AbstractCache.AdmissionRejectionRecorder;
+import com.google.common.cache.AbstractCache.SimpleStatsCounter;
+import com.google.common.cache.AbstractCache.StatsCounter;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@link StatsCounter} which records the distribution of load latencies in addition to the
+ * counts recorded by {@link SimpleStatsCounter}, so that the slowest loads are not hidden by
+ * {@link CacheStats#averageLoadPenalty}. Use it with {@link CacheBuilder#recordStats(Supplier)},
+ * sharing a single instance across the whole cache so that its histograms cover every load:
+ *
+ * <pre>   {@code
+ *   HistogramStatsCounter statsCounter = new HistogramStatsCounter();
+ *   LoadingCache<Key, Graph> graphs = CacheBuilder.newBuilder()
+ *       .recordStats(Suppliers.ofInstance(statsCounter))
+ *       .build(loader);
+ *   ...
+ *   long p999 = statsCounter.loadSuccessLatency().percentile(99.9);}</pre>
+ *
+ * <p>Latencies are counted in a fixed number of buckets, as described by {@link
+ * LatencyHistogram}, so the memory used by the counter does not grow with the number of loads.
+ * To avoid contention between loading threads, the buckets are striped by thread, in the manner of
+ * {@code LongAdder}. Histograms are summed from the stripes without locking, so they may be
+ * exported while the cache is in use; like {@link #snapshot}, they may then be inconsistent views
+ * which are interleaved with the recording of loads.
+ *
+ * @since 19.0
+ */
+@Beta
+@GwtIncompatible("java.util.concurrent.atomic.AtomicLongArray")
+public final class HistogramStatsCounter implements StatsCounter, AdmissionRejectionRecorder {
+  private static final int MAX_STRIPES = 16;
+
+  /** The spacing of the per-stripe maxima, so that each is on a cache line of its own. */
+  private static final int MAX_PADDING = 8;
+
+  private final SimpleStatsCounter counts = new SimpleStatsCounter();
+  private final StripedHistogram loadSuccessLatency = new StripedHistogram();
+  private final StripedHistogram loadExceptionLatency = new StripedHistogram();
+
+  /**
+   * Constructs an instance with all counts and histograms empty.
+   */
+  public HistogramStatsCounter() {}
+
+  @Override
+  public void recordHits(int count) {
+    counts.recordHits(count);
+  }
+
+  @Override
+  public void recordMisses(int count) {
+    counts.recordMisses(count);
+  }
+
+  @Override
+  public void recordLoadSuccess(long loadTime) {
+    counts.recordLoadSuccess(loadTime);
+    loadSuccessLatency.record(loadTime);
+  }
+
+  @Override
+  public void recordLoadException(long loadTime) {
+    counts.recordLoadException(loadTime);
+    loadExceptionLatency.record(loadTime);
+  }
+
+  @Override
+  public void recordEviction() {
+    counts.recordEviction();
+  }
+
+  @Override
+  public void recordAdmissionRejection() {
+    counts.recordAdmissionRejection();
+  }
+
+  @Override
+  public CacheStats snapshot() {
+    return counts.snapshot();
+  }
+
+  /** Returns the distribution of the latencies of the loads which succeeded. */
+  public LatencyHistogram loadSuccessLatency() {
+    return loadSuccessLatency.snapshot();
+  }
+
+  /** Returns the distribution of the latencies of the loads which threw an exception. */
+  public LatencyHistogram loadExceptionLatency() {
+    return loadExceptionLatency.snapshot();
+  }
+
+  /** Returns the distribution of the latencies of all loads, whether or not they succeeded. */
+  public LatencyHistogram loadLatency() {
+    return loadSuccessLatency().plus(loadExceptionLatency());
+  }
+
+  /**
+   * Bucket counts which are striped by thread. The stripes are laid out consecutively in a single
+   * array; each spans several cache lines, so threads recording to different stripes rarely
+   * contend.
+   */
+  static final class StripedHistogram {
+    final int stripeMask;
+    final AtomicLongArray counts;
+    final AtomicLongArray max;
+
+    StripedHistogram() {
+      int processors = Runtime.getRuntime().availableProcessors();
+      int stripes = Math.min(MAX_STRIPES, Integer.highestOneBit(Math.max(1, 2 * processors - 1)));
+      stripeMask = stripes - 1;
+      counts = new AtomicLongArray(stripes * BUCKETS);
+      max = new AtomicLongArray(stripes * MAX_PADDING);
+    }
+
+    int stripe() {
+      // spread the sequential thread ids with the golden ratio
+      return ((int) Thread.currentThread().getId() * 0x9E3779B9 >>> 16) & stripeMask;
+    }
+
+    void record(long nanos) {
+      int stripe = stripe();
+      counts.incrementAndGet(stripe * BUCKETS + LatencyHistogram.bucket(nanos));
+      int index = stripe * MAX_PADDING;
+      long current;
+      while (nanos > (current = max.get(index)) && !max.compareAndSet(index, current, nanos)) {}
+    }
+
+    LatencyHistogram snapshot() {
+      long[] sum = new long[BUCKETS];
+      long maximum = 0;
+      for (int stripe = 0; stripe <= stripeMask; stripe++) {
+        for (int i = 0; i < BUCKETS; i++) {
+          sum[i] += counts.get(stripe * BUCKETS + i);
+        }
+        maximum = Math.max(maximum, max.get(stripe * MAX_PADDING));
+      }
+      return new LatencyHistogram(sum, maximum);
+    }
+  }
+}
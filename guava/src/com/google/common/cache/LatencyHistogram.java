@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableSortedMap;
+
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+/**
+ * A distribution of latencies recorded by a {@link HistogramStatsCounter}. Instances of this class
+ * are immutable.
+ *
+ * <p>Latencies are counted in buckets whose bounds are spaced logarithmically, with eight buckets
+ * between each power of two, so a latency is reported within an eighth of its recorded value.
+ * Latencies of an hour or more share the last bucket.
+ *
+ * @since 19.0
+ */
+@Beta
+@GwtIncompatible("HistogramStatsCounter")
+public final class LatencyHistogram {
+  /** The number of buckets between successive powers of two. */
+  static final int SUB_BUCKETS = 8;
+  static final int SUB_BUCKET_BITS = 3;
+
+  /** The exponent of the largest power of two with buckets of its own, which is over an hour. */
+  static final int MAX_EXPONENT = 42;
+
+  static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+  static final LatencyHistogram EMPTY = new LatencyHistogram(new long[BUCKETS], 0);
+
+  private final long[] counts;
+  private final long count;
+  private final long max;
+
+  LatencyHistogram(long[] counts, long max) {
+    checkArgument(counts.length <= BUCKETS);
+    this.counts = Arrays.copyOf(counts, BUCKETS);
+    long count = 0;
+    for (long bucketCount : counts) {
+      count += bucketCount;
+    }
+    this.count = count;
+    this.max = max;
+  }
+
+  /** Returns the bucket which counts {@code nanos}. */
+  static int bucket(long nanos) {
+    if (nanos < 2 * SUB_BUCKETS) {
+      return (int) Math.max(0, nanos);
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+    if (exponent > MAX_EXPONENT) {
+      return BUCKETS - 1;
+    }
+    int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /** Returns the largest latency which is counted by {@code bucket}. */
+  static long upperBound(int bucket) {
+    if (bucket < 2 * SUB_BUCKETS) {
+      return bucket;
+    } else if (bucket == BUCKETS - 1) {
+      return Long.MAX_VALUE;
+    }
+    int shift = bucket / SUB_BUCKETS - 1;
+    long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    return lowerBound + (1L << shift) - 1;
+  }
+
+  /** Returns the number of latencies which were recorded. */
+  public long count() {
+    return count;
+  }
+
+  /** Returns the largest latency which was recorded, in nanoseconds, or zero if there were none. */
+  public long max() {
+    return max;
+  }
+
+  /**
+   * Returns the latency, in nanoseconds, which is at least as great as {@code percentile} percent
+   * of the recorded latencies, or zero if none were recorded. The latency is the upper bound of
+   * the bucket in which that percentile falls, and is never greater than {@link #max}.
+   *
+   * @throws IllegalArgumentException if {@code percentile} is not between 0 and 100
+   */
+  public long percentile(double percentile) {
+    checkArgument(percentile >= 0.0 && percentile <= 100.0,
+        "percentile (%s) must be between 0 and 100", percentile);
+    if (count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(upperBound(i), max);
+      }
+    }
+    return max;
+  }
+
+  /**
+   * Returns the number of latencies counted by each nonempty bucket, keyed by the largest latency
+   * which the bucket counts, in nanoseconds. This is suitable for exporting to monitoring systems
+   * which aggregate histograms.
+   */
+  public ImmutableSortedMap<Long, Long> bucketCounts() {
+    ImmutableSortedMap.Builder<Long, Long> builder = ImmutableSortedMap.naturalOrder();
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] != 0) {
+        builder.put(upperBound(i), counts[i]);
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns a new histogram of the latencies recorded by both this histogram and {@code other}.
+   */
+  public LatencyHistogram plus(LatencyHistogram other) {
+    long[] sum = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      sum[i] = counts[i] + other.counts[i];
+    }
+    return new LatencyHistogram(sum, Math.max(max, other.max));
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(counts) * 31 + (int) (max ^ (max >>> 32));
+  }
+
+  @Override
+  public boolean equals(@Nullable Object object) {
+    if (object instanceof LatencyHistogram) {
+      LatencyHistogram other = (LatencyHistogram) object;
+      return max == other.max && Arrays.equals(counts, other.counts);
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("count", count)
+        .add("p50", percentile(50))
+        .add("p99", percentile(99))
+        .add("p999", percentile(99.9))
+        .add("max", max)
+        .toString();
+  }
+}
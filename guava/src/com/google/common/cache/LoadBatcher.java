@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static com.google.common.util.concurrent.Uninterruptibles.getUninterruptibly;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
+import com.google.common.cache.CacheLoader.UnsupportedLoadingOperationException;
+import com.google.common.cache.LocalCache.LoadingValueReference;
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Gathers the loads of a {@link LocalCache} into batches which are sent to {@link
+ * CacheLoader#loadAll} as a single call, as configured by {@link CacheBuilder#batchLoads}.
+ *
+ * <p>Each load is represented by the {@link LoadingValueReference} which the cache has already
+ * installed for its key, so that the usual per-key futures are completed by the batch. The thread
+ * which opens a batch waits for it to fill up or for its window to elapse, and then loads it; any
+ * other thread adding a key returns immediately, and waits on its own future.
+ *
+ * <p>A batch may hold several loading value references for equal keys, as when the cache compares
+ * keys by identity, or when a key is loaded again while its earlier load is still pending. Such
+ * keys are passed to {@code loadAll} once, and every reference is completed with the result.
+ */
+@GwtIncompatible("Only used by the server-side LocalCache")
+final class LoadBatcher<K, V> {
+  final LocalCache<K, V> map;
+  final CacheLoader<? super K, V> loader;
+  final int maximumBatchSize;
+  final long windowNanos;
+
+  final ReentrantLock lock = new ReentrantLock();
+
+  /** Signalled when the pending batch is taken by a thread which filled it. */
+  final Condition batchClosed = lock.newCondition();
+
+  /** The batch which is accepting keys, or null if there is none. */
+  @GuardedBy("lock")
+  ListMultimap<K, LoadingValueReference<K, V>> pending;
+
+  /** Set once the loader is found not to support loadAll, after which keys are loaded singly. */
+  volatile boolean loadAllUnsupported;
+
+  LoadBatcher(LocalCache<K, V> map, CacheLoader<? super K, V> loader, int maximumBatchSize,
+      long windowNanos) {
+    this.map = checkNotNull(map);
+    this.loader = checkNotNull(loader);
+    this.maximumBatchSize = maximumBatchSize;
+    this.windowNanos = windowNanos;
+  }
+
+  /**
+   * Adds the load of {@code key} to a batch, returning the future of {@code loadingValueReference}
+   * which the batch will complete. If this opens a new batch, the batch is loaded before returning.
+   */
+  ListenableFuture<V> load(K key, LoadingValueReference<K, V> loadingValueReference) {
+    checkNotNull(key);
+    checkNotNull(loadingValueReference);
+    if (loadAllUnsupported) {
+      loadSingly(key, loadingValueReference);
+    } else {
+      ListMultimap<K, LoadingValueReference<K, V>> batch = join(key, loadingValueReference);
+      if (batch != null) {
+        loadBatch(batch);
+      }
+    }
+    return loadingValueReference.futureValue;
+  }
+
+  /**
+   * Adds {@code key} to the pending batch, or opens a new batch if there is none. Returns the
+   * batch once it is closed if the calling thread opened it, and null otherwise.
+   */
+  private ListMultimap<K, LoadingValueReference<K, V>> join(
+      K key, LoadingValueReference<K, V> loadingValueReference) {
+    lock.lock();
+    try {
+      if (pending != null) {
+        pending.put(key, loadingValueReference);
+        if (pending.keySet().size() >= maximumBatchSize) {
+          pending = null;
+          batchClosed.signalAll();
+        }
+        return null;
+      }
+
+      ListMultimap<K, LoadingValueReference<K, V>> batch = LinkedListMultimap.create();
+      batch.put(key, loadingValueReference);
+      if (maximumBatchSize == 1) {
+        return batch;
+      }
+      pending = batch;
+      long remainingNanos = windowNanos;
+      try {
+        while (pending == batch && remainingNanos > 0) {
+          remainingNanos = batchClosed.awaitNanos(remainingNanos);
+        }
+      } catch (InterruptedException e) {
+        // load what has been gathered so far
+        Thread.currentThread().interrupt();
+      }
+      if (pending == batch) {
+        pending = null;
+      }
+      return batch;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Loads every key in {@code batch} with a single call to {@link CacheLoader#loadAll}, and
+   * completes the futures of their loading value references.
+   */
+  private void loadBatch(ListMultimap<K, LoadingValueReference<K, V>> batch) {
+    for (LoadingValueReference<K, V> loadingValueReference : batch.values()) {
+      loadingValueReference.stopwatch.start();
+    }
+
+    Map<K, V> result;
+    try {
+      @SuppressWarnings("unchecked") // safe since all keys extend K
+      Map<K, V> map = (Map<K, V>) loader.loadAll(batch.keySet());
+      result = map;
+    } catch (UnsupportedLoadingOperationException e) {
+      loadAllUnsupported = true;
+      for (Map.Entry<K, LoadingValueReference<K, V>> entry : batch.entries()) {
+        entry.getValue().stopwatch.reset();
+        loadSingly(entry.getKey(), entry.getValue());
+      }
+      return;
+    } catch (Throwable t) {
+      for (LoadingValueReference<K, V> loadingValueReference : batch.values()) {
+        loadingValueReference.setException(t);
+      }
+      if (t instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
+      return;
+    }
+
+    if (result == null) {
+      InvalidCacheLoadException e =
+          new InvalidCacheLoadException(loader + " returned null map from loadAll");
+      for (LoadingValueReference<K, V> loadingValueReference : batch.values()) {
+        loadingValueReference.setException(e);
+      }
+      return;
+    }
+
+    for (Map.Entry<K, V> entry : result.entrySet()) {
+      K key = entry.getKey();
+      V value = entry.getValue();
+      if (key != null && value != null && !batch.containsKey(key)) {
+        map.put(key, value);
+      }
+    }
+    // a missing value completes the load with null, which is reported as for CacheLoader.load
+    for (Map.Entry<K, LoadingValueReference<K, V>> entry : batch.entries()) {
+      entry.getValue().set(result.get(entry.getKey()));
+    }
+  }
+
+  /**
+   * Loads {@code key} without batching, propagating the result into the future of {@code
+   * loadingValueReference} if the loader did not complete it directly.
+   */
+  private void loadSingly(K key, final LoadingValueReference<K, V> loadingValueReference) {
+    final ListenableFuture<V> future = loadingValueReference.loadFuture(key, loader);
+    if (future != loadingValueReference.futureValue) {
+      future.addListener(
+          new Runnable() {
+            @Override
+            public void run() {
+              try {
+                loadingValueReference.set(getUninterruptibly(future));
+              } catch (ExecutionException e) {
+                loadingValueReference.setException(e.getCause());
+              } catch (Throwable t) {
+                loadingValueReference.setException(t);
+              }
+            }
+          }, directExecutor());
+    }
+  }
+}
@@ -31,15 +31,18 @@ import com.google.common.base.Equivalence;
 import com.google.common.base.Function;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Ticker;
+import com.google.common.cache.AbstractCache.AdmissionRejectionRecorder;
 import com.google.common.cache.AbstractCache.SimpleStatsCounter;
 import com.google.common.cache.AbstractCache.StatsCounter;
 import com.google.common.cache.CacheBuilder.NullListener;
 import com.google.common.cache.CacheBuilder.OneWeigher;
 import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
 import com.google.common.cache.CacheLoader.UnsupportedLoadingOperationException;
+import com.google.common.cache.CacheSnapshots.SnapshotEntry;
 import com.google.common.collect.AbstractSequentialIterator;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.primitives.Ints;
@@ -62,7 +65,9 @@ import java.util.AbstractMap;
 import java.util.AbstractQueue;
 import java.util.AbstractSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
@@ -72,8 +77,11 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
@@ -152,6 +160,37 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
   // TODO(fry): empirically optimize this
   static final int DRAIN_MAX = 16;
 
+  /**
+   * Number of reads that each stripe of a segment's read buffer can hold. A single thread records
+   * at most DRAIN_THRESHOLD reads before it attempts to drain, so this is large enough for an
+   * uncontended stripe to never drop a read.
+   *
+   * <p>This must be a power of two as it is used to compute a mask.
+   */
+  static final int READ_BUFFER_SIZE = DRAIN_THRESHOLD + 1;
+
+  /**
+   * Maximum number of stripes in a segment's read buffer. The number used is the smallest power of
+   * two which is at least the number of available processors, up to this limit.
+   */
+  static final int MAX_READ_BUFFER_STRIPES = 16;
+
+  static final int READ_BUFFER_STRIPES = Integer.highestOneBit(
+      2 * Math.min(Runtime.getRuntime().availableProcessors(), MAX_READ_BUFFER_STRIPES) - 1);
+
+  /**
+   * Maximum number of writes per segment whose eviction can be left to the maintenance executor.
+   * The write which exceeds this performs eviction itself, which bounds how far a segment can grow
+   * past its maximum weight while maintenance is pending.
+   */
+  static final int WRITE_BUFFER_SIZE = DRAIN_THRESHOLD + 1;
+
+  /**
+   * Maximum duration for which an entry which expires variably can be retained (about 146 years),
+   * so that the time until it expires can always be computed without overflow.
+   */
+  static final long MAX_EXPIRY_NANOS = Long.MAX_VALUE >> 1;
+
   // Fields
 
   static final Logger logger = Logger.getLogger(LocalCache.class.getName());
@@ -192,12 +231,23 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
   /** Weigher to weigh cache entries. */
   final Weigher<K, V> weigher;
 
+  /** Serializes values which are stored off the heap, or null if values are held on the heap. */
+  @Nullable
+  final ValueSerializer<V> valueSerializer;
+
+  /** Whether size-based eviction consults the access frequency of new entries. */
+  final boolean admitByFrequency;
+
   /** How long after the last access to an entry the map will retain that entry. */
   final long expireAfterAccessNanos;
 
   /** How long after the last write to an entry the map will retain that entry. */
   final long expireAfterWriteNanos;
 
+  /** Calculates how long each entry is retained, or null if entries do not expire variably. */
+  @Nullable
+  final Expiry<K, V> expiry;
+
   /** How long after the last write an entry becomes a candidate for refresh. */
   final long refreshNanos;
 
@@ -211,6 +261,9 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
    */
   final RemovalListener<K, V> removalListener;
 
+  /** The executor on which maintenance and removal notifications are run. */
+  final Executor executor;
+
   /** Measures time in a testable way. */
   final Ticker ticker;
 
@@ -223,12 +276,21 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
    */
   final StatsCounter globalStatsCounter;
 
+  /** Whether segments record the diagnostics reported by {@link CacheDiagnostics}. */
+  final boolean recordsDiagnostics;
+
   /**
    * The default cache loader to use on loading operations.
    */
   @Nullable
   final CacheLoader<? super K, V> defaultLoader;
 
+  /**
+   * Gathers the loads of the default cache loader into batches, or null if loads are not batched.
+   */
+  @Nullable
+  final LoadBatcher<K, V> loadBatcher;
+
   /**
    * Creates a new, empty map with the specified strategy, initial capacity and concurrency level.
    */
@@ -244,8 +306,11 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
 
     maxWeight = builder.getMaximumWeight();
     weigher = builder.getWeigher();
+    valueSerializer = builder.getValueSerializer();
+    admitByFrequency = builder.getAdmitByFrequency() && evictsBySize();
     expireAfterAccessNanos = builder.getExpireAfterAccessNanos();
     expireAfterWriteNanos = builder.getExpireAfterWriteNanos();
+    expiry = builder.getExpiry();
     refreshNanos = builder.getRefreshNanos();
 
     removalListener = builder.getRemovalListener();
@@ -253,10 +318,16 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
         ? LocalCache.<RemovalNotification<K, V>>discardingQueue()
         : new ConcurrentLinkedQueue<RemovalNotification<K, V>>();
 
+    executor = builder.getExecutor();
     ticker = builder.getTicker(recordsTime());
     entryFactory = EntryFactory.getFactory(keyStrength, usesAccessEntries(), usesWriteEntries());
     globalStatsCounter = builder.getStatsCounterSupplier().get();
+    recordsDiagnostics = builder.isRecordingDiagnostics();
     defaultLoader = loader;
+    loadBatcher = (loader != null && builder.batchesLoads())
+        ? new LoadBatcher<K, V>(this, loader, builder.getMaximumBatchSize(),
+            builder.getBatchWindowNanos())
+        : null;
 
     int initialCapacity = Math.min(builder.getInitialCapacity(), MAXIMUM_CAPACITY);
     if (evictsBySize() && !customWeigher()) {
@@ -314,11 +385,24 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
   }
 
   boolean customWeigher() {
-    return weigher != OneWeigher.INSTANCE;
+    // values stored off the heap are weighed by their size in bytes
+    return weigher != OneWeigher.INSTANCE || storesValuesOffHeap();
+  }
+
+  boolean storesValuesOffHeap() {
+    return valueSerializer != null;
+  }
+
+  boolean admitsByFrequency() {
+    return admitByFrequency;
+  }
+
+  boolean defersMaintenance() {
+    return executor != directExecutor();
   }
 
   boolean expires() {
-    return expiresAfterWrite() || expiresAfterAccess();
+    return expiresAfterWrite() || expiresAfterAccess() || expiresVariably();
   }
 
   boolean expiresAfterWrite() {
@@ -329,6 +413,10 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     return expireAfterAccessNanos > 0;
   }
 
+  boolean expiresVariably() {
+    return expiry != null;
+  }
+
   boolean refreshes() {
     return refreshNanos > 0;
   }
@@ -338,7 +426,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
   }
 
   boolean usesWriteQueue() {
-    return expiresAfterWrite();
+    return expiresAfterWrite() || expiresVariably();
   }
 
   boolean recordsWrite() {
@@ -350,7 +438,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
   }
 
   boolean recordsTime() {
-    return recordsWrite() || recordsAccess();
+    return recordsWrite() || recordsAccess() || expiresVariably();
   }
 
   boolean usesWriteEntries() {
@@ -358,7 +446,8 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
   }
 
   boolean usesAccessEntries() {
-    return usesAccessQueue() || recordsAccess();
+    // the access time of an entry which expires variably holds its expiration time
+    return usesAccessQueue() || recordsAccess() || expiresVariably();
   }
 
   boolean usesKeyReferences() {
@@ -733,6 +822,26 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     return (ValueReference<K, V>) UNSET;
   }
 
+  /**
+   * Returns a future of the value being loaded by {@code valueReference}, which fails if the loader
+   * returns null for {@code key}.
+   */
+  static <K, V> ListenableFuture<V> loadingFuture(
+      final Object key, ValueReference<K, V> valueReference) {
+    checkNotNull(key);
+    checkState(valueReference.isLoading());
+    return Futures.transform(((LoadingValueReference<K, V>) valueReference).futureValue,
+        new Function<V, V>() {
+          @Override
+          public V apply(V value) {
+            if (value == null) {
+              throw new InvalidCacheLoadException("CacheLoader returned null for key " + key + ".");
+            }
+            return value;
+          }
+        });
+  }
+
   /**
    * An entry in a reference map.
    *
@@ -1913,9 +2022,21 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
         && (now - entry.getWriteTime() >= expireAfterWriteNanos)) {
       return true;
     }
+    if (expiresVariably() && (now - entry.getAccessTime() >= 0)) {
+      return true;
+    }
     return false;
   }
 
+  /**
+   * Returns the time at which an entry expires if it is retained for {@code duration} after
+   * {@code now}. A duration which is not positive expires the entry immediately, and durations are
+   * limited so that the difference between the two times does not overflow.
+   */
+  static long expirationTime(long now, long duration) {
+    return now + Math.max(0, Math.min(duration, MAX_EXPIRY_NANOS));
+  }
+
   // queues
 
   // Guarded By Segment.this
@@ -2058,8 +2179,9 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
 
     /**
      * The recency queue is used to record which entries were accessed for updating the access
-     * list's ordering. It is drained as a batch operation when either the DRAIN_THRESHOLD is
-     * crossed or a write occurs on the segment.
+     * list's ordering. It is a lossy, striped {@link ReadBuffer} which is drained as a batch
+     * operation when either the DRAIN_THRESHOLD is crossed, a stripe fills up, or a write occurs on
+     * the segment.
      */
     final Queue<ReferenceEntry<K, V>> recencyQueue;
 
@@ -2069,6 +2191,27 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
      */
     final AtomicInteger readCount = new AtomicInteger();
 
+    /**
+     * The number of writes which left the segment over its maximum weight, and whose eviction has
+     * been left to the maintenance executor. This is always zero unless the map defers maintenance.
+     */
+    @GuardedBy("this")
+    int deferredWrites;
+
+    /**
+     * Whether a maintenance task has been submitted to the executor and has not yet started.
+     */
+    final AtomicBoolean maintenanceScheduled = new AtomicBoolean();
+
+    /** Performs deferred maintenance on the executor. */
+    final Runnable maintenanceTask = new Runnable() {
+      @Override
+      public void run() {
+        maintenanceScheduled.set(false);
+        runMaintenance();
+      }
+    };
+
     /**
      * A queue of elements currently in the map, ordered by write time. Elements are added to the
      * tail of the queue on write.
@@ -2083,6 +2226,45 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     @GuardedBy("this")
     final Queue<ReferenceEntry<K, V>> accessQueue;
 
+    /**
+     * A queue of recently added elements, ordered by access time, which have not yet been
+     * considered for admission into the access queue. Elements are added to the tail of the queue
+     * when first written, and leave it from the head once the window exceeds its maximum weight.
+     * Only used when admitting by frequency.
+     */
+    @GuardedBy("this")
+    final Queue<ReferenceEntry<K, V>> windowQueue;
+
+    /**
+     * The elements which are currently linked into the window queue rather than the access queue.
+     * Null unless admitting by frequency.
+     */
+    @GuardedBy("this")
+    final Set<ReferenceEntry<K, V>> windowEntries;
+
+    /** The weight of the elements in the window queue. */
+    @GuardedBy("this")
+    long windowWeight;
+
+    /** The maximum weight of the window queue. */
+    final long maxWindowWeight;
+
+    /**
+     * Estimates the access frequency of elements, in order to decide whether an element leaving
+     * the window queue should be admitted in place of the access queue's eviction candidate. Null
+     * unless admitting by frequency.
+     */
+    @GuardedBy("this")
+    final FrequencySketch frequencySketch;
+
+    /** Holds the values of this segment when they are stored off the heap, and null otherwise. */
+    @GuardedBy("this")
+    final OffHeapStore<V> offHeapStore;
+
+    /** Records diagnostics, or null unless the map records them. */
+    @Nullable
+    final SegmentMonitor<K> monitor;
+
     /** Accumulates cache statistics. */
     final StatsCounter statsCounter;
 
@@ -2100,16 +2282,72 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
            ? new ReferenceQueue<V>() : null;
 
       recencyQueue = map.usesAccessQueue()
-          ? new ConcurrentLinkedQueue<ReferenceEntry<K, V>>()
+          ? new ReadBuffer<ReferenceEntry<K, V>>()
           : LocalCache.<ReferenceEntry<K, V>>discardingQueue();
 
-      writeQueue = map.usesWriteQueue()
+      writeQueue = map.expiresVariably()
+          ? new TimerWheel<K, V>(map.ticker.read())
+          : map.usesWriteQueue()
           ? new WriteQueue<K, V>()
           : LocalCache.<ReferenceEntry<K, V>>discardingQueue();
 
       accessQueue = map.usesAccessQueue()
           ? new AccessQueue<K, V>()
           : LocalCache.<ReferenceEntry<K, V>>discardingQueue();
+
+      if (map.admitsByFrequency()) {
+        // the window holds roughly 1% of the segment, but always has room for at least one entry
+        windowQueue = new AccessQueue<K, V>();
+        windowEntries = Sets.newIdentityHashSet();
+        maxWindowWeight = Math.max(1, maxSegmentWeight / 100);
+        // sized for the table and grown with it, rather than for a maximum size which may be large
+        frequencySketch = new FrequencySketch(initialCapacity);
+      } else {
+        windowQueue = LocalCache.<ReferenceEntry<K, V>>discardingQueue();
+        windowEntries = null;
+        maxWindowWeight = UNSET_INT;
+        frequencySketch = null;
+      }
+
+      offHeapStore = map.storesValuesOffHeap()
+          ? new OffHeapStore<V>(map.valueSerializer, maxSegmentWeight)
+          : null;
+
+      monitor = map.recordsDiagnostics ? new SegmentMonitor<K>() : null;
+    }
+
+    // locking
+
+    @Override
+    public void lock() {
+      if (monitor == null) {
+        super.lock();
+      } else if (super.tryLock()) {
+        if (getHoldCount() == 1) {
+          monitor.acquired(0);
+        }
+      } else {
+        long start = System.nanoTime();
+        super.lock();
+        monitor.acquired(System.nanoTime() - start);
+      }
+    }
+
+    @Override
+    public boolean tryLock() {
+      boolean locked = super.tryLock();
+      if (locked && monitor != null && getHoldCount() == 1) {
+        monitor.acquired(0);
+      }
+      return locked;
+    }
+
+    @Override
+    public void unlock() {
+      if (monitor != null && getHoldCount() == 1) {
+        monitor.releasing();
+      }
+      super.unlock();
     }
 
     AtomicReferenceArray<ReferenceEntry<K, V>> newEntryArray(int size) {
@@ -2150,6 +2388,10 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
 
       ReferenceEntry<K, V> newEntry = map.entryFactory.copyEntry(this, original, newNext);
       newEntry.setValueReference(valueReference.copyFor(this.valueReferenceQueue, value, newEntry));
+      if (map.admitsByFrequency() && windowEntries.remove(original)) {
+        // the copy has taken the place of the original within the window queue
+        windowEntries.add(newEntry);
+      }
       return newEntry;
     }
 
@@ -2159,11 +2401,32 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     @GuardedBy("this")
     void setValue(ReferenceEntry<K, V> entry, K key, V value, long now) {
       ValueReference<K, V> previous = entry.getValueReference();
-      int weight = map.weigher.weigh(key, value);
-      checkState(weight >= 0, "Weights must be non-negative");
-
-      ValueReference<K, V> valueReference =
-          map.valueStrength.referenceValue(this, entry, value, weight);
+      if (map.expiresVariably()) {
+        // the block of a replaced off-heap value may already have been released, and reading it
+        // back would deserialize it
+        boolean created = !previous.isActive()
+            || (!map.storesValuesOffHeap() && previous.get() == null);
+        long duration = created
+            ? map.expiry.expireAfterCreate(key, value, now)
+            : map.expiry.expireAfterUpdate(key, value, now, entry.getAccessTime() - now);
+        // read by recordWrite, which files the entry in the timer wheel
+        entry.setAccessTime(expirationTime(now, duration));
+      }
+
+      int weight;
+      ValueReference<K, V> valueReference;
+      if (map.storesValuesOffHeap()) {
+        // the weight is the size of the block which the value was serialized into
+        valueReference = offHeapStore.store(value);
+        weight = valueReference.getWeight();
+      } else {
+        weight = map.weigher.weigh(key, value);
+        checkState(weight >= 0, "Weights must be non-negative");
+        valueReference = map.valueStrength.referenceValue(this, entry, value, weight);
+      }
+      if (map.admitsByFrequency() && windowEntries.contains(entry)) {
+        windowWeight -= previous.getWeight();
+      }
       entry.setValueReference(valueReference);
       recordWrite(entry, weight, now);
       previous.notifyNewValue(value);
@@ -2182,7 +2445,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
             long now = map.ticker.read();
             V value = getLiveValue(e, now);
             if (value != null) {
-              recordRead(e, now);
+              recordRead(e, value, now);
               statsCounter.recordHits(1);
               return scheduleRefresh(e, key, hash, value, now, loader);
             }
@@ -2242,7 +2505,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
                 // entries, but let's accomodate an incorrect expiration queue.
                 enqueueNotification(entryKey, hash, valueReference, RemovalCause.EXPIRED);
               } else {
-                recordLockedRead(e, now);
+                recordLockedRead(e, value, now);
                 statsCounter.recordHits(1);
                 // we were concurrent with loading; don't consider refresh
                 return value;
@@ -2251,6 +2514,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
               // immediately reuse invalid entries
               writeQueue.remove(e);
               accessQueue.remove(e);
+              removeFromWindow(e);
               this.count = newCount; // write-volatile
             }
             break;
@@ -2290,6 +2554,146 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       }
     }
 
+    /**
+     * Returns a future of the value of {@code key}, starting to load it with {@code loader} on the
+     * map's executor if necessary. Unlike {@link #get(Object, int, CacheLoader)}, this never waits
+     * for a load to complete.
+     */
+    ListenableFuture<V> getAsync(K key, int hash, CacheLoader<? super K, V> loader) {
+      checkNotNull(key);
+      checkNotNull(loader);
+      try {
+        if (count != 0) { // read-volatile
+          // don't call getLiveEntry, which would ignore loading values
+          ReferenceEntry<K, V> e = getEntry(key, hash);
+          if (e != null) {
+            long now = map.ticker.read();
+            V value = getLiveValue(e, now);
+            if (value != null) {
+              recordRead(e, value, now);
+              statsCounter.recordHits(1);
+              return Futures.immediateFuture(scheduleRefresh(e, key, hash, value, now, loader));
+            }
+            ValueReference<K, V> valueReference = e.getValueReference();
+            if (valueReference.isLoading()) {
+              statsCounter.recordMisses(1);
+              return loadingFuture(key, valueReference);
+            }
+          }
+        }
+
+        // at this point e is either null or expired;
+        return lockedGetOrLoadAsync(key, hash, loader);
+      } finally {
+        postReadCleanup();
+      }
+    }
+
+    ListenableFuture<V> lockedGetOrLoadAsync(K key, int hash, CacheLoader<? super K, V> loader) {
+      ReferenceEntry<K, V> e;
+      ValueReference<K, V> valueReference = null;
+      LoadingValueReference<K, V> loadingValueReference = null;
+      boolean createNewEntry = true;
+
+      lock();
+      try {
+        // re-read ticker once inside the lock
+        long now = map.ticker.read();
+        preWriteCleanup(now);
+
+        int newCount = this.count - 1;
+        AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
+        int index = hash & (table.length() - 1);
+        ReferenceEntry<K, V> first = table.get(index);
+
+        for (e = first; e != null; e = e.getNext()) {
+          K entryKey = e.getKey();
+          if (e.getHash() == hash && entryKey != null
+              && map.keyEquivalence.equivalent(key, entryKey)) {
+            valueReference = e.getValueReference();
+            if (valueReference.isLoading()) {
+              createNewEntry = false;
+            } else {
+              V value = valueReference.get();
+              if (value == null) {
+                enqueueNotification(entryKey, hash, valueReference, RemovalCause.COLLECTED);
+              } else if (map.isExpired(e, now)) {
+                enqueueNotification(entryKey, hash, valueReference, RemovalCause.EXPIRED);
+              } else {
+                recordLockedRead(e, value, now);
+                statsCounter.recordHits(1);
+                return Futures.immediateFuture(value);
+              }
+
+              // immediately reuse invalid entries
+              writeQueue.remove(e);
+              accessQueue.remove(e);
+              removeFromWindow(e);
+              this.count = newCount; // write-volatile
+            }
+            break;
+          }
+        }
+
+        if (createNewEntry) {
+          loadingValueReference = new LoadingValueReference<K, V>();
+
+          if (e == null) {
+            e = newEntry(key, hash, first);
+            e.setValueReference(loadingValueReference);
+            table.set(index, e);
+          } else {
+            e.setValueReference(loadingValueReference);
+          }
+        }
+      } finally {
+        unlock();
+        postWriteCleanup();
+      }
+
+      statsCounter.recordMisses(1);
+      if (createNewEntry) {
+        startLoad(key, hash, loadingValueReference, loader);
+        return loadingFuture(key, loadingValueReference);
+      } else {
+        // The entry already exists. Share its pending load.
+        return loadingFuture(key, valueReference);
+      }
+    }
+
+    /**
+     * Loads {@code key} into {@code loadingValueReference} on the map's executor, or on the calling
+     * thread if the executor rejects the load, and stores the loaded value once it is available.
+     */
+    void startLoad(final K key, final int hash,
+        final LoadingValueReference<K, V> loadingValueReference,
+        final CacheLoader<? super K, V> loader) {
+      Runnable load = new Runnable() {
+        @Override
+        public void run() {
+          final ListenableFuture<V> loadingFuture =
+              loadFuture(key, loadingValueReference, loader);
+          loadingFuture.addListener(
+              new Runnable() {
+                @Override
+                public void run() {
+                  try {
+                    getAndRecordStats(key, hash, loadingValueReference, loadingFuture);
+                  } catch (Throwable t) {
+                    // the failure is reported through the future of loadingValueReference
+                  }
+                }
+              }, directExecutor());
+        }
+      };
+      try {
+        map.executor.execute(load);
+      } catch (RuntimeException e) {
+        logger.log(Level.WARNING, "Exception thrown when submitting load", e);
+        load.run();
+      }
+    }
+
     V waitForLoadingValue(ReferenceEntry<K, V> e, K key, ValueReference<K, V> valueReference)
         throws ExecutionException {
       if (!valueReference.isLoading()) {
@@ -2305,7 +2709,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
         }
         // re-read ticker now that loading has completed
         long now = map.ticker.read();
-        recordRead(e, now);
+        recordRead(e, value, now);
         return value;
       } finally {
         statsCounter.recordMisses(1);
@@ -2316,13 +2720,13 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
 
     V loadSync(K key, int hash, LoadingValueReference<K, V> loadingValueReference,
         CacheLoader<? super K, V> loader) throws ExecutionException {
-      ListenableFuture<V> loadingFuture = loadingValueReference.loadFuture(key, loader);
+      ListenableFuture<V> loadingFuture = loadFuture(key, loadingValueReference, loader);
       return getAndRecordStats(key, hash, loadingValueReference, loadingFuture);
     }
 
     ListenableFuture<V> loadAsync(final K key, final int hash,
         final LoadingValueReference<K, V> loadingValueReference, CacheLoader<? super K, V> loader) {
-      final ListenableFuture<V> loadingFuture = loadingValueReference.loadFuture(key, loader);
+      final ListenableFuture<V> loadingFuture = loadFuture(key, loadingValueReference, loader);
       loadingFuture.addListener(
           new Runnable() {
             @Override
@@ -2338,6 +2742,18 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       return loadingFuture;
     }
 
+    /**
+     * Starts loading {@code key} into {@code loadingValueReference}, as part of a batch if the map
+     * batches the loads of {@code loader}.
+     */
+    ListenableFuture<V> loadFuture(K key, LoadingValueReference<K, V> loadingValueReference,
+        CacheLoader<? super K, V> loader) {
+      if (map.loadBatcher != null && loader == map.defaultLoader) {
+        return map.loadBatcher.load(key, loadingValueReference);
+      }
+      return loadingValueReference.loadFuture(key, loader);
+    }
+
     /**
      * Waits uninterruptibly for {@code newValue} to be loaded, and then records loading stats.
      */
@@ -2533,15 +2949,23 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     /**
      * Records the relative order in which this read was performed by adding {@code entry} to the
      * recency queue. At write-time, or when the queue is full past the threshold, the queue will
-     * be drained and the entries therein processed.
+     * be drained and the entries therein processed. If the reading thread's stripe of the queue is
+     * full or contended, the queue is drained if the segment lock is free and the read is retried,
+     * and otherwise the read is not recorded.
      *
      * <p>Note: locked reads should use {@link #recordLockedRead}.
      */
-    void recordRead(ReferenceEntry<K, V> entry, long now) {
+    void recordRead(ReferenceEntry<K, V> entry, V value, long now) {
       if (map.recordsAccess()) {
         entry.setAccessTime(now);
       }
-      recencyQueue.add(entry);
+      if (map.expiresVariably()) {
+        // the timer wheel refiles the entry once its previous expiration time is reached
+        recordExpiryRead(entry, value, now);
+      }
+      if (!recencyQueue.offer(entry) && tryDrainRecencyQueue()) {
+        recencyQueue.offer(entry);
+      }
     }
 
     /**
@@ -2552,10 +2976,47 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
      * eviction queues. Unlocked reads should use {@link #recordRead}.
      */
     @GuardedBy("this")
-    void recordLockedRead(ReferenceEntry<K, V> entry, long now) {
+    void recordLockedRead(ReferenceEntry<K, V> entry, V value, long now) {
       if (map.recordsAccess()) {
         entry.setAccessTime(now);
       }
+      if (map.expiresVariably() && recordExpiryRead(entry, value, now)) {
+        writeQueue.add(entry);
+      }
+      recordAccessOrder(entry);
+    }
+
+    /**
+     * Updates the expiration time of {@code entry} after {@code value}, which the caller already
+     * read from it, was read, returning whether it changed.
+     */
+    boolean recordExpiryRead(ReferenceEntry<K, V> entry, V value, long now) {
+      K key = entry.getKey();
+      if (key == null) {
+        return false;
+      }
+      long currentDuration = entry.getAccessTime() - now;
+      long duration = map.expiry.expireAfterRead(key, value, now, currentDuration);
+      if (duration == currentDuration) {
+        return false;
+      }
+      entry.setAccessTime(expirationTime(now, duration));
+      return true;
+    }
+
+    /**
+     * Moves {@code entry} to the tail of the access-ordered queue which currently holds it, and
+     * records the access in the frequency sketch when admitting by frequency.
+     */
+    @GuardedBy("this")
+    void recordAccessOrder(ReferenceEntry<K, V> entry) {
+      if (map.admitsByFrequency()) {
+        frequencySketch.increment(entry.getHash());
+        if (windowEntries.contains(entry)) {
+          windowQueue.add(entry);
+          return;
+        }
+      }
       accessQueue.add(entry);
     }
 
@@ -2575,7 +3036,20 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       if (map.recordsWrite()) {
         entry.setWriteTime(now);
       }
-      accessQueue.add(entry);
+      if (map.admitsByFrequency()) {
+        frequencySketch.increment(entry.getHash());
+        // accessQueue.contains is true for entries linked into either access-ordered queue, so
+        // this admits new entries into the window and leaves existing entries where they are
+        if (windowEntries.contains(entry) || !accessQueue.contains(entry)) {
+          windowEntries.add(entry);
+          windowWeight += weight;
+          windowQueue.add(entry);
+        } else {
+          accessQueue.add(entry);
+        }
+      } else {
+        accessQueue.add(entry);
+      }
       writeQueue.add(entry);
     }
 
@@ -2589,16 +3063,37 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     void drainRecencyQueue() {
       ReferenceEntry<K, V> e;
       while ((e = recencyQueue.poll()) != null) {
+        if (monitor != null && !map.usesKeyReferences()) {
+          K key = e.getKey();
+          if (key != null) {
+            monitor.sampleRead(key);
+          }
+        }
         // An entry may be in the recency queue despite it being removed from
         // the map . This can occur when the entry was concurrently read while a
         // writer is removing it from the segment or after a clear has removed
         // all of the segment's entries.
         if (accessQueue.contains(e)) {
-          accessQueue.add(e);
+          recordAccessOrder(e);
         }
       }
     }
 
+    /**
+     * Drains the recency queue when the lock is available, returning whether it was drained.
+     */
+    boolean tryDrainRecencyQueue() {
+      if (tryLock()) {
+        try {
+          drainRecencyQueue();
+          return true;
+        } finally {
+          unlock();
+        }
+      }
+      return false;
+    }
+
     // expiration
 
     /**
@@ -2620,6 +3115,19 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       drainRecencyQueue();
 
       ReferenceEntry<K, V> e;
+      if (map.expiresVariably()) {
+        ((TimerWheel<K, V>) writeQueue).advance(now);
+        while ((e = writeQueue.peek()) != null) {
+          if (map.isExpired(e, now)) {
+            if (!removeEntry(e, e.getHash(), RemovalCause.EXPIRED)) {
+              throw new AssertionError();
+            }
+          } else {
+            // a read extended its lifetime after it was found to have expired
+            writeQueue.add(e);
+          }
+        }
+      }
       while ((e = writeQueue.peek()) != null && map.isExpired(e, now)) {
         if (!removeEntry(e, e.getHash(), RemovalCause.EXPIRED)) {
           throw new AssertionError();
@@ -2630,6 +3138,13 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
           throw new AssertionError();
         }
       }
+      // Entries admitted from the window are only approximately ordered by access time within the
+      // access queue, but expired entries are never visible to reads even before they are removed.
+      while ((e = windowQueue.peek()) != null && map.isExpired(e, now)) {
+        if (!removeEntry(e, e.getHash(), RemovalCause.EXPIRED)) {
+          throw new AssertionError();
+        }
+      }
     }
 
     // eviction
@@ -2651,6 +3166,12 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
         RemovalNotification<K, V> notification = RemovalNotification.create(key, value, cause);
         map.removalNotificationQueue.offer(notification);
       }
+      if (map.storesValuesOffHeap()) {
+        // return the block of the value, or of the value being refreshed, to the free list
+        offHeapStore.release(valueReference.isLoading()
+            ? ((LoadingValueReference<K, V>) valueReference).getOldValue()
+            : valueReference);
+      }
     }
 
     /**
@@ -2675,6 +3196,24 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
         }
       }
 
+      // leave eviction to the maintenance task, unless too many writes are already waiting on it
+      if (map.defersMaintenance()
+          && (totalWeight <= maxSegmentWeight || ++deferredWrites < WRITE_BUFFER_SIZE)) {
+        return;
+      }
+      evictToCapacity();
+    }
+
+    /**
+     * Evicts entries until the segment is no larger than its maximum weight.
+     */
+    @GuardedBy("this")
+    void evictToCapacity() {
+      deferredWrites = 0;
+      if (map.admitsByFrequency()) {
+        evictFromWindow();
+      }
+
       while (totalWeight > maxSegmentWeight) {
         ReferenceEntry<K, V> e = getNextEvictable();
         if (!removeEntry(e, e.getHash(), RemovalCause.SIZE)) {
@@ -2683,16 +3222,70 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       }
     }
 
+    /**
+     * Moves entries from the head of the window queue to the access queue while the window is
+     * over its maximum weight. If the segment is over capacity, each such candidate is only
+     * admitted if it has been accessed more frequently than the access queue's next evictable
+     * entry, which is then evicted in its place; otherwise the candidate itself is evicted.
+     */
+    @GuardedBy("this")
+    void evictFromWindow() {
+      ReferenceEntry<K, V> candidate;
+      while (windowWeight > maxWindowWeight && (candidate = windowQueue.peek()) != null) {
+        windowEntries.remove(candidate);
+        windowWeight -= candidate.getValueReference().getWeight();
+        accessQueue.add(candidate);
+
+        if (totalWeight > maxSegmentWeight) {
+          ReferenceEntry<K, V> victim = getNextEvictable(accessQueue, candidate);
+          if (victim == null) {
+            continue;
+          }
+          if (frequencySketch.frequency(candidate.getHash())
+              > frequencySketch.frequency(victim.getHash())) {
+            if (!removeEntry(victim, victim.getHash(), RemovalCause.SIZE)) {
+              throw new AssertionError();
+            }
+          } else {
+            if (!removeEntry(candidate, candidate.getHash(), RemovalCause.SIZE)) {
+              throw new AssertionError();
+            }
+            if (statsCounter instanceof AdmissionRejectionRecorder) {
+              ((AdmissionRejectionRecorder) statsCounter).recordAdmissionRejection();
+            }
+          }
+        }
+      }
+    }
+
     // TODO(fry): instead implement this with an eviction head
     @GuardedBy("this")
     ReferenceEntry<K, V> getNextEvictable() {
-      for (ReferenceEntry<K, V> e : accessQueue) {
+      ReferenceEntry<K, V> e = getNextEvictable(accessQueue, null);
+      if (e == null) {
+        e = getNextEvictable(windowQueue, null);
+      }
+      if (e == null) {
+        throw new AssertionError();
+      }
+      return e;
+    }
+
+    /**
+     * Returns the first entry in {@code queue} with a positive weight, other than {@code
+     * excluded}, or null if there is no such entry.
+     */
+    @GuardedBy("this")
+    @Nullable
+    ReferenceEntry<K, V> getNextEvictable(
+        Queue<ReferenceEntry<K, V>> queue, @Nullable ReferenceEntry<K, V> excluded) {
+      for (ReferenceEntry<K, V> e : queue) {
         int weight = e.getValueReference().getWeight();
-        if (weight > 0) {
+        if (weight > 0 && e != excluded) {
           return e;
         }
       }
-      throw new AssertionError();
+      return null;
     }
 
     /**
@@ -2773,7 +3366,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
 
           V value = e.getValueReference().get();
           if (value != null) {
-            recordRead(e, now);
+            recordRead(e, value, now);
             return scheduleRefresh(e, e.getKey(), hash, value, now, map.defaultLoader);
           }
           tryDrainReferenceQueues();
@@ -2875,7 +3468,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
               // Mimic
               // "if (!map.containsKey(key)) ...
               // else return map.get(key);
-              recordLockedRead(e, now);
+              recordLockedRead(e, entryValue, now);
               return entryValue;
             } else {
               // clobber existing entry, count remains unchanged
@@ -2927,6 +3520,12 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       int newCount = count;
       AtomicReferenceArray<ReferenceEntry<K, V>> newTable = newEntryArray(oldCapacity << 1);
       threshold = newTable.length() * 3 / 4;
+      if (map.admitsByFrequency()) {
+        // the number of entries is bounded by maxSegmentWeight unless there is a custom weigher
+        frequencySketch.ensureCapacity(map.customWeigher()
+            ? newTable.length()
+            : Math.min(newTable.length(), maxSegmentWeight));
+      }
       int newMask = newTable.length() - 1;
       for (int oldIndex = 0; oldIndex < oldCapacity; ++oldIndex) {
         // We need to guarantee that any existing reads of old Map can
@@ -3014,7 +3613,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
             } else {
               // Mimic
               // "if (map.containsKey(key) && map.get(key).equals(oldValue))..."
-              recordLockedRead(e, now);
+              recordLockedRead(e, entryValue, now);
               return false;
             }
           }
@@ -3243,6 +3842,11 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
           clearReferenceQueues();
           writeQueue.clear();
           accessQueue.clear();
+          windowQueue.clear();
+          if (map.admitsByFrequency()) {
+            windowEntries.clear();
+            windowWeight = 0;
+          }
           readCount.set(0);
 
           ++modCount;
@@ -3254,6 +3858,98 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       }
     }
 
+    /**
+     * Copies the live entries of this segment into {@code snapshot}, with the time since each was
+     * written and read and until each expires, in the order in which they would be evicted.
+     */
+    @GwtIncompatible("CacheSnapshots")
+    void snapshot(List<SnapshotEntry<K, V>> snapshot) {
+      lock();
+      try {
+        long now = map.ticker.read();
+        drainRecencyQueue();
+
+        List<ReferenceEntry<K, V>> entries = Lists.newArrayListWithCapacity(count);
+        if (map.usesAccessQueue()) {
+          entries.addAll(accessQueue);
+          entries.addAll(windowQueue);
+        } else if (map.usesWriteQueue()) {
+          entries.addAll(writeQueue);
+        } else {
+          AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
+          for (int i = 0; i < table.length(); ++i) {
+            for (ReferenceEntry<K, V> e = table.get(i); e != null; e = e.getNext()) {
+              entries.add(e);
+            }
+          }
+        }
+
+        for (ReferenceEntry<K, V> e : entries) {
+          K key = e.getKey();
+          V value = map.getLiveValue(e, now);
+          if (key != null && value != null) {
+            long writeAge = map.recordsWrite()
+                ? Math.max(0, now - e.getWriteTime())
+                : CacheSnapshots.UNKNOWN;
+            long accessAge = map.recordsAccess()
+                ? Math.max(0, now - e.getAccessTime())
+                : CacheSnapshots.UNKNOWN;
+            long expiresIn = map.expiresVariably()
+                ? e.getAccessTime() - now
+                : CacheSnapshots.UNKNOWN;
+            snapshot.add(new SnapshotEntry<K, V>(key, value, writeAge, accessAge, expiresIn));
+          }
+        }
+      } finally {
+        unlock();
+      }
+    }
+
+    /**
+     * Adds an entry restored from a snapshot unless its key is already present or it has expired,
+     * backdating its write and access times by the given ages and setting its expiration time when
+     * those are known. Returns whether the entry was added.
+     */
+    @GwtIncompatible("CacheSnapshots")
+    boolean restore(K key, int hash, V value, long writeAge, long accessAge, long expiresIn) {
+      if ((map.expiresAfterWrite() && writeAge >= map.expireAfterWriteNanos)
+          || (map.expiresAfterAccess() && accessAge >= map.expireAfterAccessNanos)
+          || (map.expiresVariably() && expiresIn != CacheSnapshots.UNKNOWN && expiresIn <= 0)) {
+        return false;
+      }
+
+      lock();
+      try {
+        long now = map.ticker.read();
+        if (getLiveEntry(key, hash, now) != null || put(key, hash, value, true) != null) {
+          return false;
+        }
+        ReferenceEntry<K, V> e = getEntry(key, hash);
+        if (e == null) {
+          // evicted as soon as it was added
+          return false;
+        }
+        if (map.recordsWrite() && writeAge != CacheSnapshots.UNKNOWN) {
+          e.setWriteTime(now - writeAge);
+          if (writeQueue instanceof WriteQueue) {
+            // entries are saved in eviction order, which need not be the order of their writes
+            ((WriteQueue<K, V>) writeQueue).restoreWriteOrder(e);
+          }
+        }
+        if (map.recordsAccess() && accessAge != CacheSnapshots.UNKNOWN) {
+          e.setAccessTime(now - accessAge);
+        }
+        if (map.expiresVariably() && expiresIn != CacheSnapshots.UNKNOWN) {
+          e.setAccessTime(expirationTime(now, expiresIn));
+          writeQueue.add(e);
+        }
+        return true;
+      } finally {
+        unlock();
+        postWriteCleanup();
+      }
+    }
+
     @GuardedBy("this")
     @Nullable
     ReferenceEntry<K, V> removeValueFromChain(ReferenceEntry<K, V> first,
@@ -3262,6 +3958,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       enqueueNotification(key, hash, valueReference, cause);
       writeQueue.remove(entry);
       accessQueue.remove(entry);
+      removeFromWindow(entry);
 
       if (valueReference.isLoading()) {
         valueReference.notifyNewValue(null);
@@ -3295,6 +3992,18 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       enqueueNotification(entry, RemovalCause.COLLECTED);
       writeQueue.remove(entry);
       accessQueue.remove(entry);
+      removeFromWindow(entry);
+    }
+
+    /**
+     * Updates the window's bookkeeping after {@code entry} has been unlinked from the
+     * access-ordered queues.
+     */
+    @GuardedBy("this")
+    void removeFromWindow(ReferenceEntry<K, V> entry) {
+      if (map.admitsByFrequency() && windowEntries.remove(entry)) {
+        windowWeight -= entry.getValueReference().getWeight();
+      }
     }
 
     /**
@@ -3425,7 +4134,11 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
      */
     void postReadCleanup() {
       if ((readCount.incrementAndGet() & DRAIN_THRESHOLD) == 0) {
-        cleanUp();
+        if (map.defersMaintenance()) {
+          scheduleMaintenance();
+        } else {
+          cleanUp();
+        }
       }
     }
 
@@ -3448,6 +4161,10 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     }
 
     void cleanUp() {
+      if (map.defersMaintenance()) {
+        runMaintenance();
+        return;
+      }
       long now = map.ticker.read();
       runLockedCleanup(now);
       runUnlockedCleanup();
@@ -3468,10 +4185,47 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     void runUnlockedCleanup() {
       // locked cleanup may generate notifications we can send unlocked
       if (!isHeldByCurrentThread()) {
-        map.processPendingNotifications();
+        if (map.defersMaintenance()) {
+          scheduleMaintenance();
+        } else {
+          map.processPendingNotifications();
+        }
       }
     }
 
+    /**
+     * Submits the maintenance task to the executor, unless it is already pending. If the executor
+     * rejects the task, maintenance is performed by the calling thread instead.
+     */
+    void scheduleMaintenance() {
+      if (maintenanceScheduled.compareAndSet(false, true)) {
+        try {
+          map.executor.execute(maintenanceTask);
+        } catch (RuntimeException e) {
+          logger.log(Level.WARNING, "Exception thrown when submitting maintenance task", e);
+          maintenanceScheduled.set(false);
+          runMaintenance();
+        }
+      }
+    }
+
+    /**
+     * Performs all maintenance which writes have left to the executor, waiting for the segment
+     * lock if necessary, and then notifies the removal listener.
+     */
+    void runMaintenance() {
+      lock();
+      try {
+        runLockedCleanup(map.ticker.read());
+        if (map.evictsBySize()) {
+          evictToCapacity();
+        }
+      } finally {
+        unlock();
+      }
+      map.processPendingNotifications();
+    }
+
   }
 
   static class LoadingValueReference<K, V> implements ValueReference<K, V> {
@@ -3653,6 +4407,23 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       return true;
     }
 
+    /**
+     * Moves {@code entry} ahead of the entries which were written after it, so that the queue
+     * remains in the order of write times after that of {@code entry} was set to an earlier time.
+     */
+    void restoreWriteOrder(ReferenceEntry<K, V> entry) {
+      ReferenceEntry<K, V> previous = entry.getPreviousInWriteQueue();
+      while (previous != head && previous.getWriteTime() - entry.getWriteTime() > 0) {
+        previous = previous.getPreviousInWriteQueue();
+      }
+      if (previous != entry.getPreviousInWriteQueue()) {
+        ReferenceEntry<K, V> next = previous.getNextInWriteQueue();
+        connectWriteOrder(entry.getPreviousInWriteQueue(), entry.getNextInWriteQueue());
+        connectWriteOrder(previous, entry);
+        connectWriteOrder(entry, next);
+      }
+    }
+
     @Override
     public ReferenceEntry<K, V> peek() {
       ReferenceEntry<K, V> next = head.getNextInWriteQueue();
@@ -3866,6 +4637,123 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     }
   }
 
+  /**
+   * A bounded, lossy queue for recording reads without taking the segment lock. Readers are spread
+   * across lazily allocated stripes by thread, each of which is a fixed size ring buffer, so that
+   * recording a read neither allocates nor contends with readers on other stripes. An element is
+   * rejected, rather than blocking or growing the queue, when its stripe is full or another reader
+   * concurrently claims the same slot.
+   *
+   * <p>Any number of threads may call {@link #offer}, but the remaining queue operations must only
+   * be called by one thread at a time, which in practice means under the segment lock. The order
+   * of elements is only preserved among those offered through the same stripe.
+   */
+  static final class ReadBuffer<E> extends AbstractQueue<E> {
+    final AtomicReferenceArray<ReadStripe<E>> stripes =
+        new AtomicReferenceArray<ReadStripe<E>>(READ_BUFFER_STRIPES);
+
+    ReadStripe<E> stripeForCurrentThread() {
+      int index = rehash((int) Thread.currentThread().getId()) & (READ_BUFFER_STRIPES - 1);
+      ReadStripe<E> stripe = stripes.get(index);
+      if (stripe == null) {
+        stripes.compareAndSet(index, null, new ReadStripe<E>());
+        stripe = stripes.get(index);
+      }
+      return stripe;
+    }
+
+    // implements Queue
+
+    @Override
+    public boolean offer(E e) {
+      checkNotNull(e);
+      ReadStripe<E> stripe = stripeForCurrentThread();
+      long head = stripe.readCounter;
+      long tail = stripe.writeCounter.get();
+      if ((tail - head >= READ_BUFFER_SIZE) || !stripe.writeCounter.compareAndSet(tail, tail + 1)) {
+        return false;
+      }
+      stripe.buffer.lazySet((int) tail & (READ_BUFFER_SIZE - 1), e);
+      return true;
+    }
+
+    @Override
+    public E peek() {
+      for (int i = 0; i < READ_BUFFER_STRIPES; i++) {
+        ReadStripe<E> stripe = stripes.get(i);
+        if (stripe != null) {
+          E e = stripe.buffer.get((int) stripe.readCounter & (READ_BUFFER_SIZE - 1));
+          if (e != null) {
+            return e;
+          }
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public E poll() {
+      for (int i = 0; i < READ_BUFFER_STRIPES; i++) {
+        ReadStripe<E> stripe = stripes.get(i);
+        if (stripe != null) {
+          long head = stripe.readCounter;
+          int index = (int) head & (READ_BUFFER_SIZE - 1);
+          // a null slot has either been drained or claimed by a reader which has yet to publish it,
+          // in which case the rest of the stripe is left for a later drain
+          E e = stripe.buffer.get(index);
+          if (e != null) {
+            stripe.buffer.lazySet(index, null);
+            stripe.readCounter = head + 1;
+            return e;
+          }
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public int size() {
+      long size = 0;
+      for (int i = 0; i < READ_BUFFER_STRIPES; i++) {
+        ReadStripe<E> stripe = stripes.get(i);
+        if (stripe != null) {
+          size += stripe.writeCounter.get() - stripe.readCounter;
+        }
+      }
+      return Ints.saturatedCast(size);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+      List<E> elements = Lists.newArrayList();
+      for (int i = 0; i < READ_BUFFER_STRIPES; i++) {
+        ReadStripe<E> stripe = stripes.get(i);
+        if (stripe != null) {
+          long tail = stripe.writeCounter.get();
+          for (long j = stripe.readCounter; j < tail; j++) {
+            E e = stripe.buffer.get((int) j & (READ_BUFFER_SIZE - 1));
+            if (e == null) {
+              break;
+            }
+            elements.add(e);
+          }
+        }
+      }
+      return Collections.unmodifiableList(elements).iterator();
+    }
+  }
+
+  /**
+   * A single stripe of a {@link ReadBuffer}. Readers claim a slot by advancing the write counter
+   * and then publish their element into it; the drainer consumes published elements in order,
+   * clearing each slot before advancing the read counter.
+   */
+  static final class ReadStripe<E> {
+    final AtomicLong writeCounter = new AtomicLong();
+    volatile long readCounter;
+    final AtomicReferenceArray<E> buffer = new AtomicReferenceArray<E>(READ_BUFFER_SIZE);
+  }
+
   // Cache support
 
   public void cleanUp() {
@@ -4097,6 +4985,30 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     return segmentFor(hash).getEntry(key, hash);
   }
 
+  ListenableFuture<V> getOrLoadAsync(K key) {
+    int hash = hash(checkNotNull(key));
+    return segmentFor(hash).getAsync(key, hash, defaultLoader);
+  }
+
+  /**
+   * Returns a future of the live or loading value of {@code key}, or null if there is neither.
+   */
+  @Nullable
+  ListenableFuture<V> getIfPresentAsync(Object key) {
+    V value = getIfPresent(key);
+    if (value != null) {
+      return Futures.immediateFuture(value);
+    }
+    ReferenceEntry<K, V> e = getEntry(key);
+    if (e != null) {
+      ValueReference<K, V> valueReference = e.getValueReference();
+      if (valueReference.isLoading()) {
+        return loadingFuture(key, valueReference);
+      }
+    }
+    return null;
+  }
+
   void refresh(K key) {
     int hash = hash(checkNotNull(key));
     segmentFor(hash).refresh(key, hash, defaultLoader, false);
@@ -4578,8 +5490,11 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     final Equivalence<Object> valueEquivalence;
     final long expireAfterWriteNanos;
     final long expireAfterAccessNanos;
+    final Expiry<K, V> expiry;
     final long maxWeight;
     final Weigher<K, V> weigher;
+    final ValueSerializer<V> valueSerializer;
+    final boolean admitByFrequency;
     final int concurrencyLevel;
     final RemovalListener<? super K, ? super V> removalListener;
     final Ticker ticker;
@@ -4595,8 +5510,11 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
           cache.valueEquivalence,
           cache.expireAfterWriteNanos,
           cache.expireAfterAccessNanos,
+          cache.expiry,
           cache.maxWeight,
           cache.weigher,
+          cache.valueSerializer,
+          cache.admitByFrequency,
           cache.concurrencyLevel,
           cache.removalListener,
           cache.ticker,
@@ -4606,8 +5524,9 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     private ManualSerializationProxy(
         Strength keyStrength, Strength valueStrength,
         Equivalence<Object> keyEquivalence, Equivalence<Object> valueEquivalence,
-        long expireAfterWriteNanos, long expireAfterAccessNanos, long maxWeight,
-        Weigher<K, V> weigher, int concurrencyLevel,
+        long expireAfterWriteNanos, long expireAfterAccessNanos, @Nullable Expiry<K, V> expiry,
+        long maxWeight, Weigher<K, V> weigher, @Nullable ValueSerializer<V> valueSerializer,
+        boolean admitByFrequency, int concurrencyLevel,
         RemovalListener<? super K, ? super V> removalListener,
         Ticker ticker, CacheLoader<? super K, V> loader) {
       this.keyStrength = keyStrength;
@@ -4616,8 +5535,11 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       this.valueEquivalence = valueEquivalence;
       this.expireAfterWriteNanos = expireAfterWriteNanos;
       this.expireAfterAccessNanos = expireAfterAccessNanos;
+      this.expiry = expiry;
       this.maxWeight = maxWeight;
       this.weigher = weigher;
+      this.valueSerializer = valueSerializer;
+      this.admitByFrequency = admitByFrequency;
       this.concurrencyLevel = concurrencyLevel;
       this.removalListener = removalListener;
       this.ticker = (ticker == Ticker.systemTicker() || ticker == NULL_TICKER)
@@ -4640,7 +5562,13 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       if (expireAfterAccessNanos > 0) {
         builder.expireAfterAccess(expireAfterAccessNanos, TimeUnit.NANOSECONDS);
       }
-      if (weigher != OneWeigher.INSTANCE) {
+      if (expiry != null) {
+        builder.expireAfter(expiry);
+      }
+      if (valueSerializer != null) {
+        builder.offHeapValues(valueSerializer);
+        builder.maximumWeight(maxWeight);
+      } else if (weigher != OneWeigher.INSTANCE) {
         builder.weigher(weigher);
         if (maxWeight != UNSET_INT) {
           builder.maximumWeight(maxWeight);
@@ -4650,6 +5578,9 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
           builder.maximumSize(maxWeight);
         }
       }
+      if (admitByFrequency) {
+        builder.admitByFrequency();
+      }
       if (ticker != null) {
         builder.ticker(ticker);
       }
@@ -4800,9 +5731,14 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     @Override
     public CacheStats stats() {
       SimpleStatsCounter aggregator = new SimpleStatsCounter();
-      aggregator.incrementBy(localCache.globalStatsCounter);
+      // a counter may be shared by the segments, in which case it must be counted only once
+      Set<StatsCounter> counters = Sets.newIdentityHashSet();
+      counters.add(localCache.globalStatsCounter);
       for (Segment<K, V> segment : localCache.segments) {
-        aggregator.incrementBy(segment.statsCounter);
+        counters.add(segment.statsCounter);
+      }
+      for (StatsCounter counter : counters) {
+        aggregator.incrementBy(counter);
       }
       return aggregator.snapshot();
     }
@@ -4829,6 +5765,10 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       super(new LocalCache<K, V>(builder, checkNotNull(loader)));
     }
 
+    LocalLoadingCache(LocalCache<K, V> localCache) {
+      super(localCache);
+    }
+
     // LoadingCache methods
 
     @Override
@@ -4869,4 +5809,64 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       return new LoadingSerializationProxy<K, V>(localCache);
     }
   }
+
+  static class LocalAsyncLoadingCache<K, V> implements AsyncLoadingCache<K, V> {
+    final LocalCache<K, V> localCache;
+    final LoadingCache<K, V> synchronous;
+
+    LocalAsyncLoadingCache(CacheBuilder<? super K, ? super V> builder,
+        CacheLoader<? super K, V> loader) {
+      this.localCache = new LocalCache<K, V>(builder, asyncReloading(builder, loader));
+      this.synchronous = new LocalLoadingCache<K, V>(localCache);
+    }
+
+    /**
+     * Returns a loader which reloads values on the executor of {@code builder}, so that refreshes
+     * triggered by reads don't block either.
+     */
+    static <K, V> CacheLoader<K, V> asyncReloading(
+        CacheBuilder<?, ?> builder, CacheLoader<K, V> loader) {
+      checkNotNull(loader);
+      Executor executor = builder.getExecutor();
+      return (executor == directExecutor()) ? loader : CacheLoader.asyncReloading(loader, executor);
+    }
+
+    @Override
+    @Nullable
+    public ListenableFuture<V> getIfPresent(Object key) {
+      return localCache.getIfPresentAsync(key);
+    }
+
+    @Override
+    public ListenableFuture<V> get(K key) {
+      return localCache.getOrLoadAsync(key);
+    }
+
+    @Override
+    public ListenableFuture<ImmutableMap<K, V>> getAll(Iterable<? extends K> keys) {
+      final Map<K, ListenableFuture<V>> futures = Maps.newLinkedHashMap();
+      for (K key : keys) {
+        if (!futures.containsKey(key)) {
+          futures.put(key, get(key));
+        }
+      }
+      return Futures.transform(Futures.allAsList(futures.values()),
+          new Function<List<V>, ImmutableMap<K, V>>() {
+            @Override
+            public ImmutableMap<K, V> apply(List<V> values) {
+              ImmutableMap.Builder<K, V> result = ImmutableMap.builder();
+              Iterator<V> valueIterator = values.iterator();
+              for (K key : futures.keySet()) {
+                result.put(key, valueIterator.next());
+              }
+              return result.build();
+            }
+          });
+    }
+
+    @Override
+    public LoadingCache<K, V> synchronous() {
+      return synchronous;
+    }
+  }
 }
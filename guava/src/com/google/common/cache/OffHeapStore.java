@@ -0,0 +1,336 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.cache.LocalCache.ReferenceEntry;
+import com.google.common.cache.LocalCache.ValueReference;
+import com.google.common.collect.Lists;
+
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Stores the values of a segment off the heap, in direct buffers, as configured by {@link
+ * CacheBuilder#offHeapValues}. Each value is serialized into a block of memory whose size is a
+ * power of two, carved out of a fixed-size slab; the entry holds only a small {@link
+ * ValueReference} naming the block, and values are deserialized whenever they are read. The weight
+ * of an entry is the size of its block, so the maximum weight of the cache bounds the memory used
+ * by its slabs. Values too large for a slab are given a buffer of their own.
+ *
+ * <p>Released blocks are kept on a free list per block size, and a block is split in halves when
+ * no block of the requested size is free. Blocks are not coalesced, so a workload whose value sizes
+ * shift over time may allocate further slabs.
+ *
+ * <p>Stores and releases are guarded by the lock of the owning segment, but values are read
+ * without locking. So that a read never copies a block which has been reused for another value,
+ * each reader registers in the current epoch, and a released block is only returned to the free
+ * list once every reader which registered before its release has finished.
+ */
+@GwtIncompatible("java.nio.ByteBuffer")
+final class OffHeapStore<V> {
+  static final int MIN_BLOCK_SIZE = 64;
+  static final int MAX_SLAB_SIZE = 1 << 20;
+
+  final ValueSerializer<V> serializer;
+  final int slabSize;
+
+  // Guarded By the owning segment
+
+  final List<ByteBuffer> slabs = Lists.newArrayList();
+
+  /** The offset of the unallocated remainder of the last slab. */
+  int slabOffset;
+
+  /** The free blocks of each size, encoded by {@link #block}. */
+  final long[][] freeLists;
+  final int[] freeCounts;
+
+  /** The blocks released during the current epoch. */
+  List<OffHeapValueReference<?, V>> retired = Lists.newArrayList();
+
+  /** The blocks released during the previous epoch, which may still be read. */
+  List<OffHeapValueReference<?, V>> awaiting = Lists.newArrayList();
+
+  /** Incremented when the blocks released during an epoch begin awaiting their readers. */
+  volatile int epoch;
+
+  /** The number of reads in progress which registered in an even or odd epoch. */
+  final AtomicIntegerArray readers = new AtomicIntegerArray(2);
+
+  OffHeapStore(ValueSerializer<V> serializer, long maxSegmentWeight) {
+    this.serializer = checkNotNull(serializer);
+    this.slabSize = (maxSegmentWeight >= MAX_SLAB_SIZE)
+        ? MAX_SLAB_SIZE
+        : ceilingPowerOfTwo((int) Math.max(MIN_BLOCK_SIZE, maxSegmentWeight));
+    int sizes = sizeClass(slabSize) + 1;
+    freeLists = new long[sizes][];
+    freeCounts = new int[sizes];
+    for (int i = 0; i < sizes; i++) {
+      freeLists[i] = new long[0];
+    }
+  }
+
+  static int ceilingPowerOfTwo(int x) {
+    return (x <= 1) ? 1 : Integer.highestOneBit(x - 1) << 1;
+  }
+
+  static int sizeClass(int blockSize) {
+    return Integer.numberOfTrailingZeros(blockSize)
+        - Integer.numberOfTrailingZeros(MIN_BLOCK_SIZE);
+  }
+
+  static long block(int slabIndex, int offset) {
+    return ((long) slabIndex << 32) | offset;
+  }
+
+  /** Serializes {@code value} into a newly allocated block. */
+  <K> OffHeapValueReference<K, V> store(V value) {
+    checkNotNull(value);
+    reclaim();
+    int length = serializer.serializedSize(value);
+    checkState(length >= 0, "Serialized sizes must be non-negative");
+
+    ByteBuffer slab;
+    int slabIndex;
+    int offset;
+    int blockSize;
+    if (length > slabSize) {
+      slab = ByteBuffer.allocateDirect(length);
+      slabIndex = -1;
+      offset = 0;
+      blockSize = length;
+    } else {
+      blockSize = ceilingPowerOfTwo(Math.max(MIN_BLOCK_SIZE, length));
+      long block = allocate(blockSize);
+      slabIndex = (int) (block >>> 32);
+      offset = (int) block;
+      slab = slabs.get(slabIndex);
+    }
+
+    ByteBuffer target = slab.duplicate();
+    target.limit(offset + length);
+    target.position(offset);
+    boolean stored = false;
+    try {
+      serializer.serialize(value, target);
+      checkState(!target.hasRemaining(), "%s wrote %s fewer bytes than its serialized size",
+          serializer, target.remaining());
+      stored = true;
+    } finally {
+      if (!stored) {
+        free(slabIndex, offset, blockSize);
+      }
+    }
+    return new OffHeapValueReference<K, V>(this, slab, slabIndex, offset, length, blockSize);
+  }
+
+  /**
+   * Releases the block of {@code valueReference} if it was stored here. The block is returned to
+   * the free list once concurrent reads of it have finished.
+   */
+  void release(ValueReference<?, V> valueReference) {
+    checkNotNull(valueReference);
+    if (valueReference instanceof OffHeapValueReference) {
+      OffHeapValueReference<?, V> offHeap = (OffHeapValueReference<?, V>) valueReference;
+      if (offHeap.store == this && !offHeap.released) {
+        offHeap.released = true;
+        if (offHeap.slabIndex >= 0) {
+          retired.add(offHeap);
+        }
+      }
+    }
+  }
+
+  /**
+   * Frees the blocks awaiting their readers if those have finished, and then starts a new epoch
+   * for the blocks released during the current one.
+   */
+  void reclaim() {
+    if (!awaiting.isEmpty()) {
+      if (readers.get((epoch - 1) & 1) != 0) {
+        return;
+      }
+      for (OffHeapValueReference<?, V> offHeap : awaiting) {
+        free(offHeap.slabIndex, offHeap.offset, offHeap.blockSize);
+      }
+      awaiting.clear();
+    }
+    if (!retired.isEmpty()) {
+      List<OffHeapValueReference<?, V>> released = retired;
+      retired = awaiting;
+      awaiting = released;
+      epoch++;
+    }
+  }
+
+  /** Returns a block of {@code blockSize} bytes, which must be a power of two within a slab. */
+  long allocate(int blockSize) {
+    int sizeClass = sizeClass(blockSize);
+    if (freeCounts[sizeClass] > 0) {
+      return freeLists[sizeClass][--freeCounts[sizeClass]];
+    }
+    for (int larger = sizeClass + 1; larger < freeCounts.length; larger++) {
+      if (freeCounts[larger] > 0) {
+        long block = freeLists[larger][--freeCounts[larger]];
+        // keep the first half, and free the second half of each split
+        for (int size = MIN_BLOCK_SIZE << (larger - 1); size >= blockSize; size >>= 1) {
+          push(sizeClass(size), block + size);
+        }
+        return block;
+      }
+    }
+    if (slabs.isEmpty() || slabOffset + blockSize > slabSize) {
+      // free the remainder of the last slab, in the largest blocks which fit
+      int remaining = slabSize - slabOffset;
+      while (!slabs.isEmpty() && remaining >= MIN_BLOCK_SIZE) {
+        int size = Integer.highestOneBit(remaining);
+        push(sizeClass(size), block(slabs.size() - 1, slabOffset));
+        slabOffset += size;
+        remaining -= size;
+      }
+      slabs.add(ByteBuffer.allocateDirect(slabSize));
+      slabOffset = 0;
+    }
+    long block = block(slabs.size() - 1, slabOffset);
+    slabOffset += blockSize;
+    return block;
+  }
+
+  void free(int slabIndex, int offset, int blockSize) {
+    if (slabIndex >= 0) {
+      push(sizeClass(blockSize), block(slabIndex, offset));
+    }
+  }
+
+  private void push(int sizeClass, long block) {
+    long[] freeList = freeLists[sizeClass];
+    if (freeCounts[sizeClass] == freeList.length) {
+      freeList = freeLists[sizeClass] = Arrays.copyOf(freeList, Math.max(4, 2 * freeList.length));
+    }
+    freeList[freeCounts[sizeClass]++] = block;
+  }
+
+  /** Returns the number of bytes in the free blocks of this store. */
+  long freeBytes() {
+    long bytes = slabs.isEmpty() ? 0 : slabSize - slabOffset;
+    for (int i = 0; i < freeCounts.length; i++) {
+      bytes += (long) freeCounts[i] * (MIN_BLOCK_SIZE << i);
+    }
+    return bytes;
+  }
+
+  /** Copies and deserializes the value of {@code offHeap}, or returns null if it was released. */
+  V read(OffHeapValueReference<?, V> offHeap) {
+    int parity;
+    while (true) {
+      int current = epoch;
+      parity = current & 1;
+      readers.incrementAndGet(parity);
+      if (epoch == current) {
+        break;
+      }
+      readers.decrementAndGet(parity);
+    }
+
+    ByteBuffer copy;
+    try {
+      if (offHeap.released) {
+        return null;
+      }
+      ByteBuffer source = offHeap.slab.duplicate();
+      source.limit(offHeap.offset + offHeap.length);
+      source.position(offHeap.offset);
+      copy = ByteBuffer.allocate(offHeap.length);
+      copy.put(source);
+      copy.flip();
+    } finally {
+      readers.decrementAndGet(parity);
+    }
+    return serializer.deserialize(copy);
+  }
+
+  /**
+   * A reference to a value which was serialized into a block of an {@link OffHeapStore}.
+   */
+  static final class OffHeapValueReference<K, V> implements ValueReference<K, V> {
+    final OffHeapStore<V> store;
+    final ByteBuffer slab;
+    final int slabIndex;
+    final int offset;
+    final int length;
+    final int blockSize;
+
+    /** Set under the segment lock once this value leaves the cache. */
+    volatile boolean released;
+
+    OffHeapValueReference(OffHeapStore<V> store, ByteBuffer slab, int slabIndex, int offset,
+        int length, int blockSize) {
+      this.store = store;
+      this.slab = slab;
+      this.slabIndex = slabIndex;
+      this.offset = offset;
+      this.length = length;
+      this.blockSize = blockSize;
+    }
+
+    @Override
+    public V get() {
+      return store.read(this);
+    }
+
+    @Override
+    public int getWeight() {
+      return blockSize;
+    }
+
+    @Override
+    public ReferenceEntry<K, V> getEntry() {
+      return null;
+    }
+
+    @Override
+    public ValueReference<K, V> copyFor(
+        ReferenceQueue<V> queue, V value, ReferenceEntry<K, V> entry) {
+      return this;
+    }
+
+    @Override
+    public boolean isLoading() {
+      return false;
+    }
+
+    @Override
+    public boolean isActive() {
+      return true;
+    }
+
+    @Override
+    public V waitForValue() {
+      return get();
+    }
+
+    @Override
+    public void notifyNewValue(V newValue) {}
+  }
+}
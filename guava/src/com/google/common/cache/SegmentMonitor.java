@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Multisets;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Records the diagnostics of a segment which are reported by {@link CacheDiagnostics}, for caches
+ * which {@linkplain CacheBuilder#recordDiagnostics record diagnostics}.
+ *
+ * <p>The lock of the segment is timed from when a thread first attempts to acquire it until the
+ * thread finally releases it; reentrant acquisitions are not timed separately. Since every update
+ * is made by the thread holding the lock, the counters are volatile only so that they may be read
+ * without it.
+ *
+ * <p>The hottest keys are estimated from the reads which are drained from the recency buffer of
+ * the segment, using the Space-Saving algorithm of Metwally et al: a bounded number of keys are
+ * counted, and a key which is not counted replaces the key with the smallest count, inheriting
+ * that count. The counts are periodically halved so that the estimate follows the current
+ * workload.
+ */
+@GwtIncompatible("Only used by the server-side LocalCache")
+final class SegmentMonitor<K> {
+  /** The number of keys counted by each segment. */
+  static final int HOT_KEYS = 32;
+
+  /** The number of reads which are sampled between each halving of the counts. */
+  static final int SAMPLE_PERIOD = 16 * HOT_KEYS;
+
+  volatile long lockAcquisitions;
+  volatile long contendedAcquisitions;
+  volatile long lockWaitNanos;
+  volatile long lockHoldNanos;
+
+  // Guarded By the owning segment
+
+  /** When the lock was acquired by the thread which holds it. */
+  long acquiredNanos;
+
+  final Map<K, long[]> counts = Maps.newHashMapWithExpectedSize(HOT_KEYS);
+  int samples;
+
+  /**
+   * Records that the segment's lock was acquired after waiting {@code waitNanos}, which is zero
+   * if the lock was not contended.
+   */
+  void acquired(long waitNanos) {
+    lockAcquisitions++;
+    if (waitNanos > 0) {
+      contendedAcquisitions++;
+      lockWaitNanos += waitNanos;
+    }
+    acquiredNanos = System.nanoTime();
+  }
+
+  /** Records that the segment's lock is about to be released. */
+  void releasing() {
+    lockHoldNanos += System.nanoTime() - acquiredNanos;
+  }
+
+  /** Records a read of {@code key}. */
+  void sampleRead(K key) {
+    checkNotNull(key);
+    long[] count = counts.get(key);
+    if (count != null) {
+      count[0]++;
+    } else if (counts.size() < HOT_KEYS) {
+      counts.put(key, new long[] {1});
+    } else {
+      Map.Entry<K, long[]> min = null;
+      for (Map.Entry<K, long[]> entry : counts.entrySet()) {
+        if (min == null || entry.getValue()[0] < min.getValue()[0]) {
+          min = entry;
+        }
+      }
+      long[] minCount = counts.remove(min.getKey());
+      minCount[0]++;
+      counts.put(key, minCount);
+    }
+
+    if (++samples == SAMPLE_PERIOD) {
+      samples = 0;
+      for (Iterator<long[]> i = counts.values().iterator(); i.hasNext(); ) {
+        long[] c = i.next();
+        c[0] >>= 1;
+        if (c[0] == 0) {
+          i.remove();
+        }
+      }
+    }
+  }
+
+  /** Returns the estimated counts of the hottest keys, from the most to the least often read. */
+  ImmutableMultiset<K> hotKeys() {
+    Multiset<K> hotKeys = HashMultiset.create();
+    for (Map.Entry<K, long[]> entry : counts.entrySet()) {
+      hotKeys.add(entry.getKey(), (int) Math.min(entry.getValue()[0], Integer.MAX_VALUE));
+    }
+    return Multisets.copyHighestCountFirst(hotKeys);
+  }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.cache.LocalCache.connectWriteOrder;
+import static com.google.common.cache.LocalCache.nullifyWriteOrder;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.cache.LocalCache.AbstractReferenceEntry;
+import com.google.common.cache.LocalCache.ReferenceEntry;
+import com.google.common.collect.AbstractIterator;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+
+/**
+ * A hierarchical timer wheel, which files the entries of a segment by their expiration time so
+ * that those which have expired can be found without keeping the entries sorted, as described in
+ * <a href="http://www.cs.columbia.edu/~nahum/w6998/papers/ton97-timing-wheels.pdf">Hashed and
+ * Hierarchical Timing Wheels</a> by Varghese and Lauck.
+ *
+ * <p>Each level of the wheel is an array of buckets, each of which spans a power-of-two number of
+ * nanoseconds; the levels span from about a second up to about a week. An entry is filed in the
+ * finest level whose range covers its expiration time, so scheduling it takes constant time.
+ * Advancing the wheel visits only the buckets whose span has elapsed: their entries have either
+ * expired, in which case they are moved to the expired list, or they are cascaded down to a finer
+ * level.
+ *
+ * <p>The expiration time of an entry is read from its access time, which is otherwise unused when
+ * entries expire variably. The buckets are circular lists threaded through the write queue links
+ * of the entries, so that the wheel takes the place of the write queue of the segment; it behaves
+ * as a queue of the expired entries, ordered by when they were found to have expired, while its
+ * iterator and size cover every entry it holds.
+ */
+@GwtIncompatible("Only used by the server-side LocalCache")
+final class TimerWheel<K, V> extends AbstractQueue<ReferenceEntry<K, V>> {
+
+  /** The number of buckets in each level of the wheel. */
+  static final int[] BUCKETS = { 64, 64, 32, 4, 1 };
+
+  /**
+   * The span of a bucket in each level, with a trailing sentinel for the span of the whole wheel.
+   * These are the powers of two just above a second, a minute, an hour and a day, and then four
+   * days.
+   */
+  static final long[] SPANS = {
+    1L << 30, // 1.07s
+    1L << 36, // 1.14m
+    1L << 42, // 1.22h
+    1L << 47, // 1.63d
+    1L << 49, // 6.52d
+    1L << 49, // 6.52d
+  };
+
+  /** The shift which converts a time into ticks of each level. */
+  static final int[] SHIFT = {
+    Long.numberOfTrailingZeros(SPANS[0]),
+    Long.numberOfTrailingZeros(SPANS[1]),
+    Long.numberOfTrailingZeros(SPANS[2]),
+    Long.numberOfTrailingZeros(SPANS[3]),
+    Long.numberOfTrailingZeros(SPANS[4]),
+  };
+
+  final ReferenceEntry<K, V>[][] wheel;
+
+  /** The entries which have been found to have expired, and are awaiting removal. */
+  final ReferenceEntry<K, V> expired = new Sentinel<K, V>();
+
+  /** The time up to which the wheel has been advanced. */
+  long nanos;
+
+  @SuppressWarnings("unchecked") // the arrays only ever hold ReferenceEntry<K, V>s
+  TimerWheel(long nanos) {
+    this.nanos = nanos;
+    wheel = (ReferenceEntry<K, V>[][]) new ReferenceEntry<?, ?>[BUCKETS.length][];
+    for (int i = 0; i < wheel.length; i++) {
+      wheel[i] = (ReferenceEntry<K, V>[]) new ReferenceEntry<?, ?>[BUCKETS[i]];
+      for (int j = 0; j < wheel[i].length; j++) {
+        wheel[i][j] = new Sentinel<K, V>();
+      }
+    }
+  }
+
+  /**
+   * Advances the wheel to {@code currentTime}, moving each entry whose expiration time has passed
+   * to the head of the queue, and cascading the other entries of the elapsed buckets down to finer
+   * levels.
+   */
+  void advance(long currentTime) {
+    long previousTime = nanos;
+    nanos = currentTime;
+    for (int i = 0; i < SHIFT.length; i++) {
+      long previousTicks = previousTime >>> SHIFT[i];
+      long currentTicks = currentTime >>> SHIFT[i];
+      if (currentTicks - previousTicks <= 0L) {
+        break;
+      }
+      expire(i, previousTicks, currentTicks);
+    }
+  }
+
+  /** Empties the buckets of level {@code index} which elapsed between the given ticks. */
+  void expire(int index, long previousTicks, long currentTicks) {
+    ReferenceEntry<K, V>[] level = wheel[index];
+    int mask = level.length - 1;
+    // the bucket of previousTicks may have been filled after it was last visited
+    int steps = (int) Math.min(1 + currentTicks - previousTicks, level.length);
+    int start = (int) (previousTicks & mask);
+    for (int i = start; i < start + steps; i++) {
+      ReferenceEntry<K, V> sentinel = level[i & mask];
+      ReferenceEntry<K, V> e = sentinel.getNextInWriteQueue();
+      sentinel.setNextInWriteQueue(sentinel);
+      sentinel.setPreviousInWriteQueue(sentinel);
+      while (e != sentinel) {
+        ReferenceEntry<K, V> next = e.getNextInWriteQueue();
+        nullifyWriteOrder(e);
+        offer(e);
+        e = next;
+      }
+    }
+  }
+
+  /** Returns the bucket in which an entry expiring at {@code time} should be filed. */
+  ReferenceEntry<K, V> findBucket(long time) {
+    long duration = time - nanos;
+    if (duration <= 0) {
+      return expired;
+    }
+    int last = wheel.length - 1;
+    for (int i = 0; i < last; i++) {
+      if (duration < SPANS[i + 1]) {
+        long ticks = time >>> SHIFT[i];
+        return wheel[i][(int) (ticks & (wheel[i].length - 1))];
+      }
+    }
+    return wheel[last][0];
+  }
+
+  // implements Queue
+
+  /**
+   * Files {@code entry} by its expiration time, first unlinking it from wherever it is currently
+   * held. An entry which has already expired is added to the tail of the queue.
+   */
+  @Override
+  public boolean offer(ReferenceEntry<K, V> entry) {
+    // unlink
+    connectWriteOrder(entry.getPreviousInWriteQueue(), entry.getNextInWriteQueue());
+
+    // add to the tail of its bucket
+    ReferenceEntry<K, V> sentinel = findBucket(entry.getAccessTime());
+    connectWriteOrder(sentinel.getPreviousInWriteQueue(), entry);
+    connectWriteOrder(entry, sentinel);
+    return true;
+  }
+
+  @Override
+  public ReferenceEntry<K, V> peek() {
+    ReferenceEntry<K, V> next = expired.getNextInWriteQueue();
+    return (next == expired) ? null : next;
+  }
+
+  @Override
+  public ReferenceEntry<K, V> poll() {
+    ReferenceEntry<K, V> next = expired.getNextInWriteQueue();
+    if (next == expired) {
+      return null;
+    }
+
+    remove(next);
+    return next;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public boolean remove(Object o) {
+    ReferenceEntry<K, V> e = (ReferenceEntry) o;
+    ReferenceEntry<K, V> previous = e.getPreviousInWriteQueue();
+    ReferenceEntry<K, V> next = e.getNextInWriteQueue();
+    connectWriteOrder(previous, next);
+    nullifyWriteOrder(e);
+
+    return next != LocalCache.nullEntry();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public boolean contains(Object o) {
+    ReferenceEntry<K, V> e = (ReferenceEntry) o;
+    return e.getNextInWriteQueue() != LocalCache.nullEntry();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return !iterator().hasNext();
+  }
+
+  @Override
+  public int size() {
+    int size = 0;
+    for (Iterator<ReferenceEntry<K, V>> i = iterator(); i.hasNext(); i.next()) {
+      size++;
+    }
+    return size;
+  }
+
+  @Override
+  public void clear() {
+    clear(expired);
+    for (ReferenceEntry<K, V>[] level : wheel) {
+      for (ReferenceEntry<K, V> sentinel : level) {
+        clear(sentinel);
+      }
+    }
+  }
+
+  private static <K, V> void clear(ReferenceEntry<K, V> sentinel) {
+    ReferenceEntry<K, V> e = sentinel.getNextInWriteQueue();
+    while (e != sentinel) {
+      ReferenceEntry<K, V> next = e.getNextInWriteQueue();
+      nullifyWriteOrder(e);
+      e = next;
+    }
+
+    sentinel.setNextInWriteQueue(sentinel);
+    sentinel.setPreviousInWriteQueue(sentinel);
+  }
+
+  /**
+   * Returns an iterator over the expired entries, followed by the entries of each bucket from the
+   * finest level to the coarsest.
+   */
+  @Override
+  public Iterator<ReferenceEntry<K, V>> iterator() {
+    return new AbstractIterator<ReferenceEntry<K, V>>() {
+      int level = -1;
+      int bucket;
+      ReferenceEntry<K, V> sentinel = expired;
+      ReferenceEntry<K, V> current = expired;
+
+      @Override
+      protected ReferenceEntry<K, V> computeNext() {
+        while (true) {
+          current = current.getNextInWriteQueue();
+          if (current != sentinel) {
+            return current;
+          }
+          if (level == -1 || ++bucket == wheel[level].length) {
+            if (++level == wheel.length) {
+              return endOfData();
+            }
+            bucket = 0;
+          }
+          sentinel = wheel[level][bucket];
+          current = sentinel;
+        }
+      }
+    };
+  }
+
+  /** The head of a bucket, linked to its first and last entries. */
+  static final class Sentinel<K, V> extends AbstractReferenceEntry<K, V> {
+    ReferenceEntry<K, V> nextWrite = this;
+    ReferenceEntry<K, V> previousWrite = this;
+
+    @Override
+    public long getAccessTime() {
+      return Long.MAX_VALUE;
+    }
+
+    @Override
+    public void setAccessTime(long time) {}
+
+    @Override
+    public ReferenceEntry<K, V> getNextInWriteQueue() {
+      return nextWrite;
+    }
+
+    @Override
+    public void setNextInWriteQueue(ReferenceEntry<K, V> next) {
+      this.nextWrite = next;
+    }
+
+    @Override
+    public ReferenceEntry<K, V> getPreviousInWriteQueue() {
+      return previousWrite;
+    }
+
+    @Override
+    public void setPreviousInWriteQueue(ReferenceEntry<K, V> previous) {
+      this.previousWrite = previous;
+    }
+  }
+}
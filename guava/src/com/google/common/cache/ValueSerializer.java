@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.cache;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts cache values to and from bytes, for caches which {@linkplain CacheBuilder#offHeapValues
+ * store their values off the heap}. Serializers also convert both the keys and the values of the
+ * entries saved by {@link CacheSnapshots}.
+ *
+ * <p>Implementations must be thread-safe, and are invoked while the cache holds locks, so they
+ * should be fast and must not access the cache.
+ *
+ * @since 19.0
+ */
+@Beta
+@GwtIncompatible("java.nio.ByteBuffer")
+public interface ValueSerializer<V> {
+
+  /**
+   * Returns the number of bytes which {@link #serialize} writes for {@code value}.
+   *
+   * @return the serialized size of the value; must be non-negative
+   */
+  int serializedSize(V value);
+
+  /**
+   * Writes exactly {@link #serializedSize serializedSize(value)} bytes representing {@code value}
+   * to {@code target}, starting at its position. The buffer has exactly that many bytes remaining.
+   */
+  void serialize(V value, ByteBuffer target);
+
+  /**
+   * Returns the value represented by the remaining bytes of {@code source}. The buffer is a new
+   * heap buffer which is owned by this method, so the returned value may share its contents, such
+   * as by returning {@code source} itself or its backing array.
+   */
+  V deserialize(ByteBuffer source);
+}
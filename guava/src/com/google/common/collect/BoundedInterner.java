@@ -0,0 +1,297 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.annotations.VisibleForTesting;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nullable;
+
+/**
+ * The table behind interners which compare the contents of their instances, such as {@link
+ * StringInterner} and {@link ByteArrayInterner}, and retain at most a maximum number of them.
+ *
+ * <p>A key to intern is given as an object and a range of it, which subclasses hash and compare
+ * with canonical instances without creating a new instance, so that one is created only when the
+ * key is not found. Canonical instances are kept in segments, each an open-addressed hash table of
+ * strong references with linear probing, so that no reference object is needed per instance. Keys
+ * are looked up without locking; a key which is not found is looked up again, and then inserted,
+ * while holding the lock of its segment.
+ *
+ * <p>When a segment is full, inserting a new instance evicts one chosen by the CLOCK algorithm: a
+ * hand sweeps the table, evicting the first instance which was not found by a lookup since the
+ * hand last passed it. Evicted slots are marked with a tombstone until the table is rebuilt.
+ *
+ * <p>The canonical instances are kept on the heap, rather than copied into direct buffers as the
+ * values of a cache may be: an interner must return the same instance for every equal key, and an
+ * instance read back from a buffer would be a new one.
+ */
+@GwtIncompatible("java.util.concurrent.atomic")
+abstract class BoundedInterner<E> {
+  @VisibleForTesting static final int MIN_TABLE_SIZE = 16;
+  @VisibleForTesting static final int MAX_TABLE_SIZE = 1 << 30;
+  private static final int MAX_SEGMENTS = 16;
+
+  /** The marker of a slot whose instance was evicted. */
+  private static final Object TOMBSTONE = new Object();
+
+  private final Segment[] segments;
+  private final int segmentShift;
+  private final int segmentMask;
+
+  @SuppressWarnings("unchecked") // generic array creation
+  BoundedInterner(int maximumSize) {
+    checkArgument(maximumSize > 0, "maximumSize (%s) must be positive", maximumSize);
+    int segmentCount = Integer.highestOneBit(Math.min(MAX_SEGMENTS, maximumSize));
+    this.segments = (Segment[]) new BoundedInterner<?>.Segment[segmentCount];
+    this.segmentShift = Integer.SIZE - Integer.numberOfTrailingZeros(segmentCount);
+    this.segmentMask = segmentCount - 1;
+    for (int i = 0; i < segmentCount; i++) {
+      int segmentSize = maximumSize / segmentCount + ((i < maximumSize % segmentCount) ? 1 : 0);
+      segments[i] = new Segment(segmentSize);
+    }
+  }
+
+  /** Returns the hash code of the range {@code [offset, offset + length)} of {@code key}. */
+  abstract int hash(Object key, int offset, int length);
+
+  /** Returns whether the contents of {@code canonical} equal the range of {@code key}. */
+  abstract boolean matches(E canonical, Object key, int offset, int length);
+
+  /** Returns a new canonical instance with the contents of the range of {@code key}. */
+  abstract E copyOf(Object key, int offset, int length);
+
+  /**
+   * Returns the canonical instance with the contents of the range {@code [offset, offset +
+   * length)} of {@code key}, first creating it if there is none.
+   */
+  final E intern(Object key, int offset, int length) {
+    return intern(key, offset, length, null);
+  }
+
+  /**
+   * Returns the canonical instance with the same contents as {@code instance}, whose contents are
+   * the range {@code [0, length)} of it, making {@code instance} canonical if there is none.
+   */
+  final E internInstance(E instance, int length) {
+    return intern(instance, 0, length, instance);
+  }
+
+  private E intern(Object key, int offset, int length, @Nullable E instance) {
+    int hash = Hashing.smear(hash(key, offset, length));
+    Segment segment = segments[(hash >>> segmentShift) & segmentMask];
+    E canonical = segment.get(key, offset, length, hash);
+    return (canonical != null) ? canonical : segment.intern(key, offset, length, hash, instance);
+  }
+
+  /**
+   * Returns the number of canonical instances retained by this interner. This is approximate if
+   * other threads are interning instances at the same time.
+   */
+  final int size() {
+    long size = 0;
+    for (Segment segment : segments) {
+      size += segment.count;
+    }
+    return (int) size;
+  }
+
+  /**
+   * Returns the number of times the tables of this interner were rebuilt, to remove tombstones or
+   * to grow.
+   */
+  @VisibleForTesting final long rebuilds() {
+    long rebuilds = 0;
+    for (Segment segment : segments) {
+      rebuilds += segment.rebuilds;
+    }
+    return rebuilds;
+  }
+
+  /**
+   * Returns the maximum size of the table of a segment which holds at most {@code maxCount} instances.
+   * Its maximum load is at least twice that, so that when the segment is full at least {@code
+   * maxCount} evictions leave tombstones before the table is rebuilt.
+   */
+  private static int tableSizeFor(int maxCount) {
+    int tableSize = MIN_TABLE_SIZE;
+    while (tableSize < MAX_TABLE_SIZE && maxLoad(tableSize) < 2L * maxCount) {
+      tableSize <<= 1;
+    }
+    return tableSize;
+  }
+
+  /** Returns the number of slots of a table which may be live or tombstones. */
+  private static int maxLoad(int tableSize) {
+    return tableSize - (tableSize >>> 2);
+  }
+
+  /**
+   * A table of canonical instances. Its slots are null, {@link #TOMBSTONE} or an instance. The hash
+   * of a slot is written before its instance, so that a thread which reads the instance also sees
+   * its hash; a stale hash only causes a lookup to fail, and be retried under the lock.
+   */
+  private static final class Table {
+    final AtomicReferenceArray<Object> entries;
+    final int[] hashes;
+
+    /**
+     * Whether each slot was found by a lookup since the clock hand last passed it. Written without
+     * synchronization, since a lost update only changes which instance is evicted.
+     */
+    final boolean[] referenced;
+
+    final int mask;
+    int tombstones;
+    int clockHand;
+
+    Table(int tableSize) {
+      this.entries = new AtomicReferenceArray<Object>(tableSize);
+      this.hashes = new int[tableSize];
+      this.referenced = new boolean[tableSize];
+      this.mask = tableSize - 1;
+    }
+  }
+
+  @SuppressWarnings("serial") // never serialized
+  private final class Segment extends ReentrantLock {
+    final int maxCount;
+    final int maxTableSize;
+
+    /** The current table; replaced, rather than modified, when it is rebuilt. */
+    volatile Table table;
+
+    /** The number of live instances; written only while holding the lock. */
+    volatile int count;
+
+    /** The number of times the table was rebuilt; written only while holding the lock. */
+    volatile int rebuilds;
+
+    Segment(int maxCount) {
+      this.maxCount = maxCount;
+      this.maxTableSize = tableSizeFor(maxCount);
+      this.table = new Table(MIN_TABLE_SIZE);
+    }
+
+    @Nullable E get(Object key, int offset, int length, int hash) {
+      Table table = this.table;
+      for (int i = hash & table.mask; ; i = (i + 1) & table.mask) {
+        Object entry = table.entries.get(i);
+        if (entry == null) {
+          return null;
+        } else if (entry != TOMBSTONE && table.hashes[i] == hash) {
+          @SuppressWarnings("unchecked") // only E's and the tombstone are stored
+          E canonical = (E) entry;
+          if (matches(canonical, key, offset, length)) {
+            if (!table.referenced[i]) {
+              table.referenced[i] = true;
+            }
+            return canonical;
+          }
+        }
+      }
+    }
+
+    /**
+     * Inserts {@code instance}, or a copy of the range of {@code key} if it is null, unless an
+     * equal instance was inserted since the key was looked up.
+     */
+    E intern(Object key, int offset, int length, int hash, @Nullable E instance) {
+      lock();
+      try {
+        E canonical = get(key, offset, length, hash);
+        if (canonical != null) {
+          return canonical;
+        }
+        canonical = (instance != null) ? instance : copyOf(key, offset, length);
+        Table table = this.table;
+        if (count == maxCount) {
+          evict(table);
+        }
+        if (count + table.tombstones >= maxLoad(table.mask + 1)) {
+          table = rebuild(table);
+        }
+        insert(table, canonical, hash, false);
+        count++;
+        return canonical;
+      } finally {
+        unlock();
+      }
+    }
+
+    /** Inserts a new instance into the first free slot of its probe sequence. */
+    void insert(Table table, Object canonical, int hash, boolean referenced) {
+      int i = hash & table.mask;
+      while (true) {
+        Object entry = table.entries.get(i);
+        if (entry == null) {
+          break;
+        } else if (entry == TOMBSTONE) {
+          table.tombstones--;
+          break;
+        }
+        i = (i + 1) & table.mask;
+      }
+      table.hashes[i] = hash;
+      table.referenced[i] = referenced;
+      table.entries.set(i, canonical);
+    }
+
+    /** Evicts one instance, chosen by the CLOCK algorithm. */
+    void evict(Table table) {
+      int hand = table.clockHand;
+      while (true) {
+        Object entry = table.entries.get(hand);
+        if (entry != null && entry != TOMBSTONE) {
+          if (table.referenced[hand]) {
+            table.referenced[hand] = false;
+          } else {
+            table.entries.set(hand, TOMBSTONE);
+            table.tombstones++;
+            count--;
+            table.clockHand = (hand + 1) & table.mask;
+            return;
+          }
+        }
+        hand = (hand + 1) & table.mask;
+      }
+    }
+
+    /**
+     * Copies the instances of {@code table} into a new table, twice as large unless it has reached
+     * its maximum size, and without tombstones.
+     */
+    Table rebuild(Table table) {
+      int tableSize = table.mask + 1;
+      Table newTable = new Table((tableSize < maxTableSize) ? tableSize * 2 : tableSize);
+      for (int i = 0; i <= table.mask; i++) {
+        Object entry = table.entries.get(i);
+        if (entry != null && entry != TOMBSTONE) {
+          insert(newTable, entry, table.hashes[i], table.referenced[i]);
+        }
+      }
+      this.table = newTable;
+      rebuilds++;
+      return newTable;
+    }
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+
+import java.util.Arrays;
+
+/**
+ * A thread-safe interner of byte arrays by their contents, which retains strong references to at
+ * most a maximum number of canonical arrays, and which can intern a range of any array, copying
+ * it only if there is no canonical array equal to it. Create instances with {@link
+ * Interners#newByteArrayInterner}.
+ *
+ * <p>When the interner is full, interning a new array evicts a canonical array which has not been
+ * interned recently; interning an equal array afterwards may then return a different instance.
+ * Canonical arrays are kept in striped open-addressed hash tables and found without locking.
+ *
+ * <p><b>Warning:</b> canonical arrays are shared, and must not be modified.
+ *
+ * @since 19.0
+ */
+@Beta
+@GwtIncompatible("java.util.concurrent.atomic")
+public final class ByteArrayInterner implements Interner<byte[]> {
+  private final BoundedInterner<byte[]> table;
+
+  ByteArrayInterner(int maximumSize) {
+    this.table = new BoundedInterner<byte[]>(maximumSize) {
+      @Override int hash(Object key, int offset, int length) {
+        byte[] bytes = (byte[]) key;
+        int hash = 1;
+        for (int i = offset; i < offset + length; i++) {
+          hash = 31 * hash + bytes[i];
+        }
+        return hash; // the same as Arrays.hashCode() of the range
+      }
+
+      @Override boolean matches(byte[] canonical, Object key, int offset, int length) {
+        if (canonical.length != length) {
+          return false;
+        }
+        byte[] bytes = (byte[]) key;
+        for (int i = 0; i < length; i++) {
+          if (canonical[i] != bytes[offset + i]) {
+            return false;
+          }
+        }
+        return true;
+      }
+
+      @Override byte[] copyOf(Object key, int offset, int length) {
+        return Arrays.copyOfRange((byte[]) key, offset, offset + length);
+      }
+    };
+  }
+
+  /**
+   * Returns the canonical array with the same contents as {@code sample}, making {@code sample}
+   * canonical if there is none.
+   */
+  @Override
+  public byte[] intern(byte[] sample) {
+    return table.internInstance(checkNotNull(sample), sample.length);
+  }
+
+  /**
+   * Returns the canonical array with the same contents as the range {@code [offset, offset +
+   * length)} of {@code bytes}, first copying the range into a new array if there is none.
+   *
+   * @throws IndexOutOfBoundsException if the range is not within the bounds of {@code bytes}
+   */
+  public byte[] intern(byte[] bytes, int offset, int length) {
+    checkPositionIndexes(offset, offset + length, bytes.length);
+    return table.intern(bytes, offset, length);
+  }
+
+  /**
+   * Returns the number of canonical arrays retained by this interner. This is approximate if
+   * other threads are interning arrays at the same time.
+   */
+  public int size() {
+    return table.size();
+  }
+}
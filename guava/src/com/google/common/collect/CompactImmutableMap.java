@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.base.Preconditions.checkPositionIndex;
+import static com.google.common.collect.CollectPreconditions.checkEntryNotNull;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.annotations.VisibleForTesting;
+
+import javax.annotation.Nullable;
+
+/**
+ * Implementation of {@link ImmutableMap} for large maps, which {@link ImmutableMap.Builder} and
+ * {@link ImmutableMap#copyOf(Iterable)} use instead of {@link RegularImmutableMap} for at least
+ * {@link #MIN_SIZE} entries.
+ *
+ * <p>The keys and values are stored alternately in a single array, in insertion order, and are
+ * located by an open-addressed hash table of indexes into that array, which is probed linearly.
+ * Compared with the chained entries of {@code RegularImmutableMap}, this avoids an object per
+ * entry, and a lookup reads one array of ints and then the key and value, which are adjacent,
+ * instead of following a pointer from entry to entry. Each slot of the table also holds the high
+ * bits of the hash of its key, so probing past a different key rarely reads that key.
+ */
+@GwtIncompatible("unnecessary")
+final class CompactImmutableMap<K, V> extends IndexedImmutableMap<K, V> {
+  /** The smallest number of entries for which builders create a {@code CompactImmutableMap}. */
+  static final int MIN_SIZE = 1 << 10;
+
+  // keys at even indexes, each followed by its value, in insertion order
+  private final transient Object[] alternatingKeysAndValues;
+  // in hashed positions, one more than the index of an entry, or'd with the high bits of its
+  // key's smeared hash; zero for an empty slot
+  @VisibleForTesting final transient int[] table;
+  // 'and' with an int to get a table index
+  private final transient int mask;
+  // 'and' with a slot to get one more than the index of its entry
+  private final transient int indexMask;
+
+  /**
+   * Creates a CompactImmutableMap from the first n entries in entryArray, which is not modified.
+   *
+   * @throws IllegalArgumentException if two entries have the same key
+   */
+  static <K, V> CompactImmutableMap<K, V> fromEntryArray(int n, Entry<K, V>[] entryArray) {
+    checkPositionIndex(n, entryArray.length);
+    Object[] alternatingKeysAndValues = new Object[2 * n];
+    int tableSize = ImmutableSet.chooseTableSize(n);
+    int[] table = new int[tableSize];
+    int mask = tableSize - 1;
+    int indexMask = (Integer.highestOneBit(n) << 1) - 1;
+    for (int entryIndex = 0; entryIndex < n; entryIndex++) {
+      Entry<K, V> entry = entryArray[entryIndex];
+      K key = entry.getKey();
+      V value = entry.getValue();
+      checkEntryNotNull(key, value);
+      int hash = Hashing.smear(key.hashCode());
+      int fingerprint = hash & ~indexMask;
+      for (int i = hash & mask; ; i = (i + 1) & mask) {
+        int slot = table[i];
+        if (slot == 0) {
+          table[i] = fingerprint | (entryIndex + 1);
+          break;
+        } else if ((slot & ~indexMask) == fingerprint) {
+          int index = 2 * ((slot & indexMask) - 1);
+          Object existingKey = alternatingKeysAndValues[index];
+          checkNoConflict(!key.equals(existingKey), "key", entry,
+              entryOf(existingKey, alternatingKeysAndValues[index + 1]));
+        }
+      }
+      alternatingKeysAndValues[2 * entryIndex] = key;
+      alternatingKeysAndValues[2 * entryIndex + 1] = value;
+    }
+    return new CompactImmutableMap<K, V>(alternatingKeysAndValues, table, mask, indexMask);
+  }
+
+  private CompactImmutableMap(
+      Object[] alternatingKeysAndValues, int[] table, int mask, int indexMask) {
+    this.alternatingKeysAndValues = alternatingKeysAndValues;
+    this.table = table;
+    this.mask = mask;
+    this.indexMask = indexMask;
+  }
+
+  @Override public V get(@Nullable Object key) {
+    if (key == null) {
+      return null;
+    }
+    int hash = Hashing.smear(key.hashCode());
+    int fingerprint = hash & ~indexMask;
+    for (int i = hash & mask; ; i = (i + 1) & mask) {
+      int slot = table[i];
+      if (slot == 0) {
+        return null;
+      } else if ((slot & ~indexMask) == fingerprint) {
+        int index = 2 * ((slot & indexMask) - 1);
+        if (key.equals(alternatingKeysAndValues[index])) {
+          @SuppressWarnings("unchecked") // all values at odd indexes are V's
+          V value = (V) alternatingKeysAndValues[index + 1];
+          return value;
+        }
+      }
+    }
+  }
+
+  @Override
+  public int size() {
+    return alternatingKeysAndValues.length / 2;
+  }
+
+  @SuppressWarnings("unchecked") // all keys are at even indexes
+  @Override
+  K keyAt(int index) {
+    return (K) alternatingKeysAndValues[2 * index];
+  }
+
+  @SuppressWarnings("unchecked") // all values are at odd indexes
+  @Override
+  V valueAt(int index) {
+    return (V) alternatingKeysAndValues[2 * index + 1];
+  }
+
+  // This class is never actually serialized directly, but we have to make the
+  // warning go away (and suppressing would suppress for all nested classes too)
+  private static final long serialVersionUID = 0;
+}
@@ -0,0 +1,861 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.annotations.VisibleForTesting;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+import javax.annotation.Nullable;
+
+/**
+ * An immutable sorted set of {@code long} values, which stores its elements compressed rather
+ * than as {@code Long} objects. Where a {@link ContiguousSet} can only hold every value of a
+ * range, this class holds any set of values, in a few bits per element when the values are
+ * close together, such as a sorted set of ids.
+ *
+ * <p>The elements are divided into blocks of {@value #BLOCK_SIZE} consecutive elements. Each
+ * block stores its first element, and the differences between its successive elements packed
+ * into as few bits as the largest difference in the block needs. A dense run of values therefore
+ * takes no bits beyond the first element of each block. The first elements of the blocks form a
+ * skip index, which is binary searched by {@link #contains}, {@link #floor}, {@link #ceiling},
+ * {@link #headSet}, {@link #tailSet} and {@link #subSet}, after which they decode at most one
+ * block. The subsets and the {@link #asList} view share the compressed elements of this set.
+ *
+ * <p>The {@link #intersection} and {@link #union} of two compressed sets are computed without
+ * boxing, by merging the two sets block by block and skipping the blocks of one set which fall
+ * between two elements of the other.
+ *
+ * <p>Iterating over the set, and the other methods of {@link java.util.NavigableSet}, box the
+ * elements which they return. Use {@link #toLongArray} to copy the elements without boxing.
+ *
+ * @since 19.0
+ */
+@Beta
+@GwtIncompatible("NavigableSet")
+@SuppressWarnings("serial") // uses writeReplace(), not default serialization
+public final class CompressedLongSortedSet extends ImmutableSortedSet<Long> {
+  /** The number of elements of each block, except perhaps the last. */
+  @VisibleForTesting static final int BLOCK_SIZE = 1 << 7;
+
+  private static final int BLOCK_SHIFT = 7;
+
+  private static final CompressedLongSortedSet EMPTY =
+      new CompressedLongSortedSet(new long[0], new int[0], new byte[0], new long[0], 0, 0, 0);
+
+  /**
+   * Returns an empty compressed set.
+   */
+  public static CompressedLongSortedSet empty() {
+    return EMPTY;
+  }
+
+  /**
+   * Returns a compressed set of the given elements, which may be in any order and may contain
+   * duplicates.
+   */
+  public static CompressedLongSortedSet copyOf(long[] elements) {
+    long[] sorted = elements.clone();
+    Arrays.sort(sorted);
+    Encoder encoder = new Encoder();
+    for (int i = 0; i < sorted.length; i++) {
+      if (i == 0 || sorted[i] != sorted[i - 1]) {
+        encoder.add(sorted[i]);
+      }
+    }
+    return encoder.build();
+  }
+
+  /**
+   * Returns a compressed set of the values in {@code range}, whose bounds are made canonical with
+   * {@link DiscreteDomain#longs}, as for {@link ContiguousSet#create}.
+   *
+   * @throws IllegalArgumentException if the range contains at least {@link Integer#MAX_VALUE}
+   *     values
+   */
+  public static CompressedLongSortedSet create(Range<Long> range) {
+    ContiguousSet<Long> values = ContiguousSet.create(range, DiscreteDomain.longs());
+    if (values.isEmpty()) {
+      return EMPTY;
+    }
+    long first = values.first();
+    long last = values.last();
+    checkArgument(values.size() < Integer.MAX_VALUE, "too many values in %s", range);
+    Encoder encoder = new Encoder();
+    for (long value = first; value != last; value++) {
+      encoder.add(value);
+    }
+    encoder.add(last);
+    return encoder.build();
+  }
+
+  // the first element of each block
+  private final transient long[] blockFirsts;
+  // the index in words of the packed differences of each block
+  private final transient int[] blockOffsets;
+  // the number of bits of each packed difference of each block
+  private final transient byte[] blockWidths;
+  // the differences minus one between successive elements of each block, packed into bits
+  private final transient long[] words;
+  // the number of compressed elements, and the range of them which are in this set
+  private final transient int compressedSize;
+  private final transient int fromIndex;
+  private final transient int toIndex;
+
+  private CompressedLongSortedSet(long[] blockFirsts, int[] blockOffsets, byte[] blockWidths,
+      long[] words, int compressedSize, int fromIndex, int toIndex) {
+    super(Ordering.<Long>natural());
+    this.blockFirsts = blockFirsts;
+    this.blockOffsets = blockOffsets;
+    this.blockWidths = blockWidths;
+    this.words = words;
+    this.compressedSize = compressedSize;
+    this.fromIndex = fromIndex;
+    this.toIndex = toIndex;
+  }
+
+  @Override
+  public int size() {
+    return toIndex - fromIndex;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return fromIndex == toIndex;
+  }
+
+  @Override
+  public boolean contains(@Nullable Object object) {
+    return (object instanceof Long) && contains(((Long) object).longValue());
+  }
+
+  /**
+   * Returns {@code true} if this set contains {@code element}.
+   */
+  public boolean contains(long element) {
+    int index = ceilingIndex(element);
+    return index < toIndex && elementAt(index) == element;
+  }
+
+  @Override
+  int indexOf(@Nullable Object target) {
+    if (target instanceof Long) {
+      long element = (Long) target;
+      int index = ceilingIndex(element);
+      if (index < toIndex && elementAt(index) == element) {
+        return index - fromIndex;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public Long first() {
+    if (isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    return elementAt(fromIndex);
+  }
+
+  @Override
+  public Long last() {
+    if (isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    return elementAt(toIndex - 1);
+  }
+
+  @Override
+  public Long lower(Long element) {
+    int index = ceilingIndex(element) - 1;
+    return (index >= fromIndex) ? elementAt(index) : null;
+  }
+
+  @Override
+  public Long floor(Long element) {
+    int index = higherIndex(element) - 1;
+    return (index >= fromIndex) ? elementAt(index) : null;
+  }
+
+  @Override
+  public Long ceiling(Long element) {
+    int index = ceilingIndex(element);
+    return (index < toIndex) ? elementAt(index) : null;
+  }
+
+  @Override
+  public Long higher(Long element) {
+    int index = higherIndex(element);
+    return (index < toIndex) ? elementAt(index) : null;
+  }
+
+  @Override
+  public CompressedLongSortedSet headSet(Long toElement) {
+    return headSetImpl(checkNotNull(toElement), false);
+  }
+
+  @Override
+  public CompressedLongSortedSet headSet(Long toElement, boolean inclusive) {
+    return headSetImpl(checkNotNull(toElement), inclusive);
+  }
+
+  @Override
+  public CompressedLongSortedSet subSet(Long fromElement, Long toElement) {
+    return subSet(fromElement, true, toElement, false);
+  }
+
+  @Override
+  public CompressedLongSortedSet subSet(
+      Long fromElement, boolean fromInclusive, Long toElement, boolean toInclusive) {
+    checkArgument(fromElement <= toElement);
+    return subSetImpl(fromElement, fromInclusive, toElement, toInclusive);
+  }
+
+  @Override
+  public CompressedLongSortedSet tailSet(Long fromElement) {
+    return tailSetImpl(checkNotNull(fromElement), true);
+  }
+
+  @Override
+  public CompressedLongSortedSet tailSet(Long fromElement, boolean inclusive) {
+    return tailSetImpl(checkNotNull(fromElement), inclusive);
+  }
+
+  @Override
+  CompressedLongSortedSet headSetImpl(Long toElement, boolean inclusive) {
+    return getSubSet(fromIndex, inclusive ? higherIndex(toElement) : ceilingIndex(toElement));
+  }
+
+  @Override
+  CompressedLongSortedSet subSetImpl(
+      Long fromElement, boolean fromInclusive, Long toElement, boolean toInclusive) {
+    return tailSetImpl(fromElement, fromInclusive).headSetImpl(toElement, toInclusive);
+  }
+
+  @Override
+  CompressedLongSortedSet tailSetImpl(Long fromElement, boolean inclusive) {
+    return getSubSet(inclusive ? ceilingIndex(fromElement) : higherIndex(fromElement), toIndex);
+  }
+
+  private CompressedLongSortedSet getSubSet(int newFromIndex, int newToIndex) {
+    if (newFromIndex == fromIndex && newToIndex == toIndex) {
+      return this;
+    }
+    return new CompressedLongSortedSet(blockFirsts, blockOffsets, blockWidths, words,
+        compressedSize, newFromIndex, Math.max(newFromIndex, newToIndex));
+  }
+
+  @Override
+  public UnmodifiableIterator<Long> iterator() {
+    final Cursor cursor = new Cursor();
+    return new UnmodifiableIterator<Long>() {
+      @Override
+      public boolean hasNext() {
+        return cursor.hasNext();
+      }
+
+      @Override
+      public Long next() {
+        if (!cursor.hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return cursor.next();
+      }
+    };
+  }
+
+  @Override
+  public UnmodifiableIterator<Long> descendingIterator() {
+    return new UnmodifiableIterator<Long>() {
+      final long[] buffer = new long[BLOCK_SIZE];
+      int loadedBlock = -1;
+      int index = toIndex;
+
+      @Override
+      public boolean hasNext() {
+        return index > fromIndex;
+      }
+
+      @Override
+      public Long next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        index--;
+        int block = index >>> BLOCK_SHIFT;
+        if (block != loadedBlock) {
+          decodeBlock(block, buffer);
+          loadedBlock = block;
+        }
+        return buffer[index & (BLOCK_SIZE - 1)];
+      }
+    };
+  }
+
+  @Override
+  ImmutableList<Long> createAsList() {
+    return new ImmutableAsList<Long>() {
+      @Override
+      public Long get(int index) {
+        checkElementIndex(index, size());
+        return elementAt(fromIndex + index);
+      }
+
+      @Override
+      public int indexOf(@Nullable Object target) {
+        return CompressedLongSortedSet.this.indexOf(target);
+      }
+
+      @Override
+      public int lastIndexOf(@Nullable Object target) {
+        return CompressedLongSortedSet.this.indexOf(target);
+      }
+
+      @Override
+      ImmutableCollection<Long> delegateCollection() {
+        return CompressedLongSortedSet.this;
+      }
+    };
+  }
+
+  @Override
+  boolean isPartialView() {
+    return fromIndex != 0 || toIndex != compressedSize;
+  }
+
+  /**
+   * Returns the elements of this set in ascending order.
+   */
+  public long[] toLongArray() {
+    long[] array = new long[size()];
+    Cursor cursor = new Cursor();
+    for (int i = 0; i < array.length; i++) {
+      array[i] = cursor.next();
+    }
+    return array;
+  }
+
+  /**
+   * Returns the elements which are in both this set and {@code other}.
+   */
+  public CompressedLongSortedSet intersection(CompressedLongSortedSet other) {
+    Cursor left = new Cursor();
+    Cursor right = other.new Cursor();
+    Encoder encoder = new Encoder();
+    while (left.hasNext() && right.hasNext()) {
+      long leftElement = left.peek();
+      long rightElement = right.peek();
+      if (leftElement == rightElement) {
+        encoder.add(leftElement);
+        left.next();
+        right.next();
+      } else if (leftElement < rightElement) {
+        left.skipTo(rightElement);
+      } else {
+        right.skipTo(leftElement);
+      }
+    }
+    return encoder.build();
+  }
+
+  /**
+   * Returns the elements which are in this set, {@code other}, or both.
+   */
+  public CompressedLongSortedSet union(CompressedLongSortedSet other) {
+    if (other.isEmpty()) {
+      return this;
+    } else if (isEmpty()) {
+      return other;
+    }
+    Cursor left = new Cursor();
+    Cursor right = other.new Cursor();
+    Encoder encoder = new Encoder();
+    while (left.hasNext() && right.hasNext()) {
+      long leftElement = left.peek();
+      long rightElement = right.peek();
+      if (leftElement <= rightElement) {
+        encoder.add(left.next());
+        if (leftElement == rightElement) {
+          right.next();
+        }
+      } else {
+        encoder.add(right.next());
+      }
+    }
+    Cursor rest = left.hasNext() ? left : right;
+    while (rest.hasNext()) {
+      encoder.add(rest.next());
+    }
+    return encoder.build();
+  }
+
+  @Override
+  public boolean equals(@Nullable Object object) {
+    if (object == this) {
+      return true;
+    } else if (object instanceof CompressedLongSortedSet) {
+      CompressedLongSortedSet that = (CompressedLongSortedSet) object;
+      if (size() != that.size()) {
+        return false;
+      }
+      Cursor left = new Cursor();
+      Cursor right = that.new Cursor();
+      while (left.hasNext()) {
+        if (left.next() != right.next()) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return super.equals(object);
+  }
+
+  @Override
+  public int hashCode() {
+    int hashCode = 0;
+    Cursor cursor = new Cursor();
+    while (cursor.hasNext()) {
+      long element = cursor.next();
+      hashCode += (int) (element ^ (element >>> 32));
+    }
+    return hashCode;
+  }
+
+  /**
+   * Returns the smallest index in this set of an element which is at least {@code element}, or
+   * {@code toIndex} if there is none.
+   */
+  private int ceilingIndex(long element) {
+    if (isEmpty()) {
+      return toIndex;
+    }
+    int block = floorBlock(fromIndex >>> BLOCK_SHIFT, (toIndex - 1) >>> BLOCK_SHIFT, element);
+    int blockStart = block << BLOCK_SHIFT;
+    int blockEnd = blockEnd(block, toIndex);
+    long value = blockFirsts[block];
+    int width = blockWidths[block];
+    long bitIndex = (long) blockOffsets[block] << 6;
+    for (int index = blockStart; index < blockEnd; index++) {
+      if (index > blockStart) {
+        value += readBits(words, bitIndex, width) + 1;
+        bitIndex += width;
+      }
+      if (index >= fromIndex && value >= element) {
+        return index;
+      }
+    }
+    return blockEnd;
+  }
+
+  /**
+   * Returns the smallest index in this set of an element which is greater than {@code element},
+   * or {@code toIndex} if there is none.
+   */
+  private int higherIndex(long element) {
+    return (element == Long.MAX_VALUE) ? toIndex : ceilingIndex(element + 1);
+  }
+
+  /**
+   * Returns the last block from {@code low} to {@code high} whose first element is at most
+   * {@code element}, or {@code low} if there is none.
+   */
+  private int floorBlock(int low, int high, long element) {
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (blockFirsts[mid] <= element) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+  /** Returns the end of the elements of {@code block} before {@code limit}. */
+  private static int blockEnd(int block, int limit) {
+    return (int) Math.min(limit, ((long) block + 1) << BLOCK_SHIFT);
+  }
+
+  private long elementAt(int index) {
+    int block = index >>> BLOCK_SHIFT;
+    int position = index & (BLOCK_SIZE - 1);
+    int width = blockWidths[block];
+    if (width == 0) {
+      return blockFirsts[block] + position;
+    }
+    long value = blockFirsts[block];
+    long bitIndex = (long) blockOffsets[block] << 6;
+    for (int i = 0; i < position; i++) {
+      value += readBits(words, bitIndex, width) + 1;
+      bitIndex += width;
+    }
+    return value;
+  }
+
+  /** Decodes the elements of {@code block} which are before {@code toIndex} into buffer. */
+  private void decodeBlock(int block, long[] buffer) {
+    int count = blockEnd(block, toIndex) - (block << BLOCK_SHIFT);
+    int width = blockWidths[block];
+    long value = blockFirsts[block];
+    long bitIndex = (long) blockOffsets[block] << 6;
+    buffer[0] = value;
+    for (int i = 1; i < count; i++) {
+      value += readBits(words, bitIndex, width) + 1;
+      bitIndex += width;
+      buffer[i] = value;
+    }
+  }
+
+  /** Returns the {@code width} bits of {@code words} starting at {@code bitIndex}. */
+  static long readBits(long[] words, long bitIndex, int width) {
+    if (width == 0) {
+      return 0;
+    }
+    int word = (int) (bitIndex >>> 6);
+    int shift = (int) bitIndex & 63;
+    long bits = words[word] >>> shift;
+    if (shift + width > 64) {
+      bits |= words[word + 1] << (64 - shift);
+    }
+    return (width == 64) ? bits : bits & ((1L << width) - 1);
+  }
+
+  /** Writes {@code value}, which fits in {@code width} bits, to {@code words} at bitIndex. */
+  static void writeBits(long[] words, long bitIndex, int width, long value) {
+    if (width == 0) {
+      return;
+    }
+    int word = (int) (bitIndex >>> 6);
+    int shift = (int) bitIndex & 63;
+    words[word] |= value << shift;
+    if (shift + width > 64) {
+      words[word + 1] |= value >>> (64 - shift);
+    }
+  }
+
+  /**
+   * Reads the elements of this set in ascending order, decoding a block at a time.
+   */
+  private final class Cursor {
+    final long[] buffer = new long[BLOCK_SIZE];
+    int loadedBlock = -1;
+    int index = fromIndex;
+
+    boolean hasNext() {
+      return index < toIndex;
+    }
+
+    long peek() {
+      int block = index >>> BLOCK_SHIFT;
+      if (block != loadedBlock) {
+        decodeBlock(block, buffer);
+        loadedBlock = block;
+      }
+      return buffer[index & (BLOCK_SIZE - 1)];
+    }
+
+    long next() {
+      long element = peek();
+      index++;
+      return element;
+    }
+
+    /**
+     * Advances past the elements which are less than {@code target}, skipping whole blocks
+     * with the skip index.
+     */
+    void skipTo(long target) {
+      while (index < toIndex) {
+        int block = index >>> BLOCK_SHIFT;
+        int blockEnd = blockEnd(block, toIndex);
+        peek();
+        if (buffer[blockEnd - 1 - (block << BLOCK_SHIFT)] >= target) {
+          while (buffer[index & (BLOCK_SIZE - 1)] < target) {
+            index++;
+          }
+          return;
+        }
+        int lastBlock = (toIndex - 1) >>> BLOCK_SHIFT;
+        index = (block == lastBlock)
+            ? toIndex
+            : floorBlock(block + 1, lastBlock, target) << BLOCK_SHIFT;
+      }
+    }
+  }
+
+  /**
+   * Compresses ascending elements into a new set.
+   */
+  static final class Encoder {
+    private final long[] block = new long[BLOCK_SIZE];
+    private int blockSize;
+    private long[] blockFirsts = new long[4];
+    private int[] blockOffsets = new int[4];
+    private byte[] blockWidths = new byte[4];
+    private int blockCount;
+    private long[] words = new long[16];
+    private int wordCount;
+
+    /** Adds an element, which must be greater than all the elements added before. */
+    void add(long element) {
+      checkArgument((long) blockCount * BLOCK_SIZE + blockSize < Integer.MAX_VALUE,
+          "too many elements");
+      block[blockSize++] = element;
+      if (blockSize == BLOCK_SIZE) {
+        flush();
+      }
+    }
+
+    private void flush() {
+      if (blockSize == 0) {
+        return;
+      }
+      // the differences minus one, as unsigned values, to allow any two longs
+      long allBits = 0;
+      for (int i = 1; i < blockSize; i++) {
+        allBits |= block[i] - block[i - 1] - 1;
+      }
+      int width = Long.SIZE - Long.numberOfLeadingZeros(allBits);
+      int blockWords = (int) (((long) (blockSize - 1) * width + 63) >>> 6);
+      if (blockCount == blockFirsts.length) {
+        int newLength = ImmutableCollection.Builder.expandedCapacity(blockCount, blockCount + 1);
+        blockFirsts = Arrays.copyOf(blockFirsts, newLength);
+        blockOffsets = Arrays.copyOf(blockOffsets, newLength);
+        blockWidths = Arrays.copyOf(blockWidths, newLength);
+      }
+      if (wordCount + blockWords > words.length) {
+        words = Arrays.copyOf(words,
+            ImmutableCollection.Builder.expandedCapacity(words.length, wordCount + blockWords));
+      }
+      blockFirsts[blockCount] = block[0];
+      blockOffsets[blockCount] = wordCount;
+      blockWidths[blockCount] = (byte) width;
+      long bitIndex = (long) wordCount << 6;
+      for (int i = 1; i < blockSize; i++) {
+        writeBits(words, bitIndex, width, block[i] - block[i - 1] - 1);
+        bitIndex += width;
+      }
+      wordCount += blockWords;
+      blockCount++;
+      blockSize = 0;
+    }
+
+    CompressedLongSortedSet build() {
+      int size = blockCount * BLOCK_SIZE + blockSize;
+      if (size == 0) {
+        return EMPTY;
+      }
+      flush();
+      return new CompressedLongSortedSet(
+          Arrays.copyOf(blockFirsts, blockCount),
+          Arrays.copyOf(blockOffsets, blockCount),
+          Arrays.copyOf(blockWidths, blockCount),
+          Arrays.copyOf(words, wordCount),
+          size,
+          0,
+          size);
+    }
+  }
+
+  /*
+   * Serializes the elements as an array of longs, and compresses them again on deserialization.
+   */
+  private static final class SerializedForm implements Serializable {
+    final long[] elements;
+
+    SerializedForm(long[] elements) {
+      this.elements = elements;
+    }
+
+    Object readResolve() {
+      return copyOf(elements);
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+
+  @Override
+  Object writeReplace() {
+    return new SerializedForm(toLongArray());
+  }
+
+  /**
+   * Not supported. Use {@link #empty}. This method exists only to hide {@link
+   * ImmutableSortedSet#of()}, which would return an uncompressed set.
+   *
+   * @throws UnsupportedOperationException always
+   * @deprecated Use {@link #empty}.
+   */
+  @Deprecated
+  public static <E> ImmutableSortedSet<E> of() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Not supported. Use {@link #copyOf(long[])}. This method exists only to hide {@link
+   * ImmutableSortedSet#of(Comparable)}, which would return an uncompressed set.
+   *
+   * @throws UnsupportedOperationException always
+   * @deprecated Use {@link #copyOf(long[])}.
+   */
+  @Deprecated
+  public static <E extends Comparable<? super E>> ImmutableSortedSet<E> of(E element) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Not supported. Use {@link #copyOf(long[])}. This method exists only to hide {@link
+   * ImmutableSortedSet#of(Comparable, Comparable)}, which would return an uncompressed set.
+   *
+   * @throws UnsupportedOperationException always
+   * @deprecated Use {@link #copyOf(long[])}.
+   */
+  @Deprecated
+  public static <E extends Comparable<? super E>> ImmutableSortedSet<E> of(E e1, E e2) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Not supported. Use {@link #copyOf(long[])}. This method exists only to hide {@link
+   * ImmutableSortedSet#of(Comparable, Comparable, Comparable)},
+   * which would return an uncompressed set.
+   *
+   * @throws UnsupportedOperationException always
+   * @deprecated Use {@link #copyOf(long[])}.
+   */
+  @Deprecated
+  public static <E extends Comparable<? super E>> ImmutableSortedSet<E> of(E e1, E e2, E e3) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Not supported. Use {@link #copyOf(long[])}. This method exists only to hide {@link
+   * ImmutableSortedSet#of(Comparable, Comparable, Comparable, Comparable)},
+   * which would return an uncompressed set.
+   *
+   * @throws UnsupportedOperationException always
+   * @deprecated Use {@link #copyOf(long[])}.
+   */
+  @Deprecated
+  public static <E extends Comparable<? super E>> ImmutableSortedSet<E> of(
+      E e1, E e2, E e3, E e4) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Not supported. Use {@link #copyOf(long[])}. This method exists only to hide {@link
+   * ImmutableSortedSet#of(Comparable, Comparable, Comparable, Comparable, Comparable)},
+   * which would return an uncompressed set.
+   *
+   * @throws UnsupportedOperationException always
+   * @deprecated Use {@link #copyOf(long[])}.
+   */
+  @Deprecated
+  public static <E extends Comparable<? super E>> ImmutableSortedSet<E> of(
+      E e1, E e2, E e3, E e4, E e5) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Not supported. Use {@link #copyOf(long[])}. This method exists only to hide {@link
+   * ImmutableSortedSet#of(Comparable, Comparable, Comparable, Comparable, Comparable,
+   * Comparable, Comparable...)}, which would return an uncompressed set.
+   *
+   * @throws UnsupportedOperationException always
+   * @deprecated Use {@link #copyOf(long[])}.
+   */
+  @Deprecated
+  public static <E extends Comparable<? super E>> ImmutableSortedSet<E> of(
+      E e1, E e2, E e3, E e4, E e5, E e6, E... remaining) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Not supported. Use {@link #copyOf(long[])}. This method exists only to hide {@link
+   * ImmutableSortedSet#copyOf(Comparable[])}, which would return an uncompressed set.
+   *
+   * @throws UnsupportedOperationException always
+   * @deprecated Use {@link #copyOf(long[])}.
+   */
+  @Deprecated
+  public static <E extends Comparable<? super E>> ImmutableSortedSet<E> copyOf(E[] elements) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Not supported. Use {@link #copyOf(long[])} with {@link
+   * com.google.common.primitives.Longs#toArray Longs.toArray}. This method exists only to hide
+   * {@link ImmutableSortedSet#copyOf(Iterable)}, which would return an uncompressed set.
+   *
+   * @throws UnsupportedOperationException always
+   * @deprecated Use {@link #copyOf(long[])}.
+   */
+  @Deprecated
+  public static <E> ImmutableSortedSet<E> copyOf(Iterable<? extends E> elements) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Not supported. Use {@link #copyOf(long[])} with {@link
+   * com.google.common.primitives.Longs#toArray Longs.toArray}. This method exists only to hide
+   * {@link ImmutableSortedSet#copyOf(Collection)}, which would return an uncompressed set.
+   *
+   * @throws UnsupportedOperationException always
+   * @deprecated Use {@link #copyOf(long[])}.
+   */
+  @Deprecated
+  public static <E> ImmutableSortedSet<E> copyOf(Collection<? extends E> elements) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Not supported. Use {@link #copyOf(long[])} with {@link
+   * com.google.common.primitives.Longs#toArray Longs.toArray}. This method exists only to hide
+   * {@link ImmutableSortedSet#copyOf(Iterator)}, which would return an uncompressed set.
+   *
+   * @throws UnsupportedOperationException always
+   * @deprecated Use {@link #copyOf(long[])}.
+   */
+  @Deprecated
+  public static <E> ImmutableSortedSet<E> copyOf(Iterator<? extends E> elements) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Not supported. Use {@link #copyOf(long[])} with {@link
+   * com.google.common.primitives.Longs#toArray Longs.toArray}. This method exists only to hide
+   * {@link ImmutableSortedSet#copyOfSorted}, which would return an uncompressed set.
+   *
+   * @throws UnsupportedOperationException always
+   * @deprecated Use {@link #copyOf(long[])}.
+   */
+  @Deprecated
+  public static <E> ImmutableSortedSet<E> copyOfSorted(SortedSet<E> sortedSet) {
+    throw new UnsupportedOperationException();
+  }
+}
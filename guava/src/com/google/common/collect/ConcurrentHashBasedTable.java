@@ -0,0 +1,874 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.CollectPreconditions.checkNonnegative;
+import static com.google.common.collect.CollectPreconditions.checkRemove;
+
+import com.google.common.annotations.Beta;
+import com.google.common.collect.Maps.IteratorBasedAbstractMap;
+import com.google.common.collect.Serialization.FieldSetter;
+import com.google.common.primitives.Ints;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+/**
+ * A {@link Table} that supports concurrent modifications, and that provides atomic versions of the
+ * {@link ConcurrentMap} operations on its cells, such as {@link #putIfAbsent} and {@link
+ * #replace(Object, Object, Object, Object)}. Like {@link HashBasedTable}, it is backed by a map
+ * from each row key to a map from column key to value, but these are {@link ConcurrentHashMap}s,
+ * so that threads which update different cells, even of the same row, seldom contend. A value may
+ * be updated atomically with a loop of {@link #get} and {@code replace}, as with a {@code
+ * ConcurrentMap}.
+ *
+ * <p>The table, and its views, are weakly consistent: their iterators never throw {@link
+ * java.util.ConcurrentModificationException}, and reflect the table at some point at or since
+ * their creation. Methods which visit every row, such as {@link #size}, {@link #containsColumn}
+ * and {@link #column}, are not atomic. The {@code remove} methods of the iterators of the views,
+ * and the {@code setValue} methods of their entries, modify the table.
+ *
+ * <p>Null row keys, column keys and values are not supported.
+ *
+ * @since 19.0
+ */
+@Beta
+public final class ConcurrentHashBasedTable<R, C, V> extends AbstractTable<R, C, V>
+    implements Serializable {
+
+  /*
+   * Each row keeps a count of its cells and of the insertions into it which are in progress. An
+   * insertion increments the count before it inserts a cell, and a removal decrements it after it
+   * removes one, so a count of zero means that the row is empty and that nothing is being inserted
+   * into it. The operation which decrements the count to zero then compareAndSets it to DEAD, and
+   * removes the row from the table. Nothing is inserted into a dead row, so an operation which
+   * finds one replaces it with a new row, as ConcurrentHashMultiset does with a zero count.
+   */
+
+  private static final int DEAD = -1;
+
+  private static final int DEFAULT_EXPECTED_CELLS_PER_ROW = 16;
+
+  private final transient ConcurrentMap<R, Row<C, V>> rows;
+  private final int expectedCellsPerRow;
+
+  // This constant allows the deserialization code to set a final field. This holder class
+  // makes sure it is not initialized unless an instance is deserialized.
+  private static class FieldSettersHolder {
+    @SuppressWarnings("rawtypes") // the type of a class literal is raw
+    static final FieldSetter<ConcurrentHashBasedTable> ROWS_FIELD_SETTER =
+        Serialization.getFieldSetter(ConcurrentHashBasedTable.class, "rows");
+  }
+
+  private static final class Row<C, V> {
+    final ConcurrentMap<C, V> cells;
+    final AtomicInteger count;
+
+    Row(int expectedCells, int count) {
+      this.cells = new ConcurrentHashMap<C, V>(expectedCells);
+      this.count = new AtomicInteger(count);
+    }
+
+    /** Reserves an insertion into this row, unless it is dead. */
+    boolean reserve() {
+      while (true) {
+        int current = count.get();
+        if (current == DEAD) {
+          return false;
+        } else if (count.compareAndSet(current, current + 1)) {
+          return true;
+        }
+      }
+    }
+  }
+
+  /**
+   * Creates an empty {@code ConcurrentHashBasedTable}.
+   */
+  public static <R, C, V> ConcurrentHashBasedTable<R, C, V> create() {
+    return new ConcurrentHashBasedTable<R, C, V>(
+        new ConcurrentHashMap<R, Row<C, V>>(), DEFAULT_EXPECTED_CELLS_PER_ROW);
+  }
+
+  /**
+   * Creates an empty {@code ConcurrentHashBasedTable} with the specified map sizes.
+   *
+   * @param expectedRows the expected number of distinct row keys
+   * @param expectedCellsPerRow the expected number of column key / value
+   *     mappings in each row
+   * @throws IllegalArgumentException if {@code expectedRows} or {@code
+   *     expectedCellsPerRow} is negative
+   */
+  public static <R, C, V> ConcurrentHashBasedTable<R, C, V> create(
+      int expectedRows, int expectedCellsPerRow) {
+    checkNonnegative(expectedRows, "expectedRows");
+    checkNonnegative(expectedCellsPerRow, "expectedCellsPerRow");
+    return new ConcurrentHashBasedTable<R, C, V>(
+        new ConcurrentHashMap<R, Row<C, V>>(expectedRows), expectedCellsPerRow);
+  }
+
+  /**
+   * Creates a {@code ConcurrentHashBasedTable} with the same mappings as the specified table.
+   *
+   * @param table the table to copy
+   * @throws NullPointerException if any of the row keys, column keys, or values
+   *     in {@code table} is null
+   */
+  public static <R, C, V> ConcurrentHashBasedTable<R, C, V> create(
+      Table<? extends R, ? extends C, ? extends V> table) {
+    ConcurrentHashBasedTable<R, C, V> result = create();
+    result.putAll(table);
+    return result;
+  }
+
+  private ConcurrentHashBasedTable(ConcurrentMap<R, Row<C, V>> rows, int expectedCellsPerRow) {
+    this.rows = rows;
+    this.expectedCellsPerRow = expectedCellsPerRow;
+  }
+
+  @Nullable
+  private Row<C, V> getRow(@Nullable Object rowKey) {
+    return (rowKey == null) ? null : rows.get(rowKey);
+  }
+
+  /**
+   * Returns the live row of {@code rowKey}, creating it if there is none, with an insertion
+   * reserved, which the caller must either use or {@linkplain #release release}.
+   */
+  private Row<C, V> reserveRow(R rowKey) {
+    while (true) {
+      Row<C, V> row = rows.get(rowKey);
+      if (row == null) {
+        Row<C, V> newRow = new Row<C, V>(expectedCellsPerRow, 1);
+        row = rows.putIfAbsent(rowKey, newRow);
+        if (row == null) {
+          return newRow;
+        }
+      }
+      if (row.reserve()) {
+        return row;
+      }
+      // The row is dead and about to be removed; replace it.
+      Row<C, V> newRow = new Row<C, V>(expectedCellsPerRow, 1);
+      if (rows.replace(rowKey, row, newRow)) {
+        return newRow;
+      }
+    }
+  }
+
+  /**
+   * Releases an unused insertion into {@code row}, or accounts for a cell removed from it, removing
+   * the row from the table if it is then empty.
+   */
+  private void release(Object rowKey, Row<C, V> row) {
+    if (row.count.decrementAndGet() == 0 && row.count.compareAndSet(0, DEAD)) {
+      rows.remove(rowKey, row);
+    }
+  }
+
+  // Query Operations
+
+  @Override
+  public boolean contains(@Nullable Object rowKey, @Nullable Object columnKey) {
+    return get(rowKey, columnKey) != null;
+  }
+
+  @Override
+  public boolean containsRow(@Nullable Object rowKey) {
+    Row<C, V> row = getRow(rowKey);
+    return row != null && !row.cells.isEmpty();
+  }
+
+  @Override
+  public boolean containsColumn(@Nullable Object columnKey) {
+    if (columnKey == null) {
+      return false;
+    }
+    for (Row<C, V> row : rows.values()) {
+      if (row.cells.containsKey(columnKey)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean containsValue(@Nullable Object value) {
+    if (value == null) {
+      return false;
+    }
+    for (Row<C, V> row : rows.values()) {
+      if (row.cells.containsValue(value)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public V get(@Nullable Object rowKey, @Nullable Object columnKey) {
+    Row<C, V> row = getRow(rowKey);
+    return (row == null || columnKey == null) ? null : row.cells.get(columnKey);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    for (Row<C, V> row : rows.values()) {
+      if (!row.cells.isEmpty()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>If the table is modified while this method runs, the result may not match any state of the
+   * table.
+   */
+  @Override
+  public int size() {
+    long size = 0;
+    for (Row<C, V> row : rows.values()) {
+      size += row.cells.size();
+    }
+    return Ints.saturatedCast(size);
+  }
+
+  // Modification Operations
+
+  @Override
+  public V put(R rowKey, C columnKey, V value) {
+    checkNotNull(rowKey);
+    checkNotNull(columnKey);
+    checkNotNull(value);
+    while (true) {
+      // Replacing an existing cell doesn't change the count of its row.
+      Row<C, V> row = rows.get(rowKey);
+      if (row != null) {
+        V oldValue = row.cells.replace(columnKey, value);
+        if (oldValue != null) {
+          return oldValue;
+        }
+      }
+      row = reserveRow(rowKey);
+      if (row.cells.putIfAbsent(columnKey, value) == null) {
+        return null;
+      }
+      // Someone else inserted the cell first; try to replace it.
+      release(rowKey, row);
+    }
+  }
+
+  /**
+   * If the specified row key and column key are not already associated with a value, associates
+   * them with the given value. This is equivalent to
+   * <pre>   {@code
+   *
+   *   if (!table.contains(rowKey, columnKey)) {
+   *     return table.put(rowKey, columnKey, value);
+   *   } else {
+   *     return table.get(rowKey, columnKey);
+   *   }}</pre>
+   *
+   * <p>except that the action is performed atomically.
+   *
+   * @return the value already associated with the keys, or {@code null} if there was none
+   */
+  public V putIfAbsent(R rowKey, C columnKey, V value) {
+    checkNotNull(rowKey);
+    checkNotNull(columnKey);
+    checkNotNull(value);
+    Row<C, V> row = rows.get(rowKey);
+    if (row != null) {
+      V existingValue = row.cells.get(columnKey);
+      if (existingValue != null) {
+        return existingValue;
+      }
+    }
+    row = reserveRow(rowKey);
+    V existingValue = row.cells.putIfAbsent(columnKey, value);
+    if (existingValue != null) {
+      release(rowKey, row);
+    }
+    return existingValue;
+  }
+
+  @Override
+  public V remove(@Nullable Object rowKey, @Nullable Object columnKey) {
+    Row<C, V> row = getRow(rowKey);
+    if (row == null || columnKey == null) {
+      return null;
+    }
+    V oldValue = row.cells.remove(columnKey);
+    if (oldValue != null) {
+      release(rowKey, row);
+    }
+    return oldValue;
+  }
+
+  /**
+   * Removes the cell with the specified row key and column key only if its value is {@code value},
+   * atomically.
+   *
+   * @return {@code true} if the cell was removed
+   */
+  public boolean remove(@Nullable Object rowKey, @Nullable Object columnKey,
+      @Nullable Object value) {
+    Row<C, V> row = getRow(rowKey);
+    if (row == null || columnKey == null || value == null) {
+      return false;
+    }
+    if (row.cells.remove(columnKey, value)) {
+      release(rowKey, row);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Replaces the value of the cell with the specified row key and column key only if there is such
+   * a cell, atomically.
+   *
+   * @return the previous value of the cell, or {@code null} if there was none
+   */
+  public V replace(R rowKey, C columnKey, V value) {
+    checkNotNull(rowKey);
+    checkNotNull(columnKey);
+    checkNotNull(value);
+    Row<C, V> row = rows.get(rowKey);
+    return (row == null) ? null : row.cells.replace(columnKey, value);
+  }
+
+  /**
+   * Replaces the value of the cell with the specified row key and column key only if its value is
+   * {@code oldValue}, atomically.
+   *
+   * @return {@code true} if the value was replaced
+   */
+  public boolean replace(R rowKey, C columnKey, V oldValue, V newValue) {
+    checkNotNull(rowKey);
+    checkNotNull(columnKey);
+    checkNotNull(oldValue);
+    checkNotNull(newValue);
+    Row<C, V> row = rows.get(rowKey);
+    return row != null && row.cells.replace(columnKey, oldValue, newValue);
+  }
+
+  @Override
+  public void clear() {
+    for (Entry<R, Row<C, V>> entry : rows.entrySet()) {
+      for (C columnKey : entry.getValue().cells.keySet()) {
+        remove(entry.getKey(), columnKey);
+      }
+    }
+  }
+
+  /** Removes the cells of a row, returning those which this call removed. */
+  private ImmutableMap<C, V> removeRow(Object rowKey) {
+    Row<C, V> row = getRow(rowKey);
+    if (row == null) {
+      return ImmutableMap.of();
+    }
+    ImmutableMap.Builder<C, V> removed = ImmutableMap.builder();
+    for (Entry<C, V> cell : row.cells.entrySet()) {
+      if (remove(rowKey, cell.getKey(), cell.getValue())) {
+        removed.put(cell);
+      }
+    }
+    return removed.build();
+  }
+
+  /** Removes the cells of a column, returning those which this call removed. */
+  private ImmutableMap<R, V> removeColumn(Object columnKey) {
+    ImmutableMap.Builder<R, V> removed = ImmutableMap.builder();
+    for (Entry<R, Row<C, V>> entry : rows.entrySet()) {
+      V value = entry.getValue().cells.get(columnKey);
+      if (value != null && remove(entry.getKey(), columnKey, value)) {
+        removed.put(entry.getKey(), value);
+      }
+    }
+    return removed.build();
+  }
+
+  // Views
+
+  @Override
+  Set<Cell<R, C, V>> createCellSet() {
+    return new CellSet() {
+      @Override
+      public boolean remove(@Nullable Object o) {
+        if (o instanceof Cell) {
+          Cell<?, ?, ?> cell = (Cell<?, ?, ?>) o;
+          return ConcurrentHashBasedTable.this.remove(
+              cell.getRowKey(), cell.getColumnKey(), cell.getValue());
+        }
+        return false;
+      }
+    };
+  }
+
+  @Override
+  Iterator<Cell<R, C, V>> cellIterator() {
+    final Iterator<Entry<R, Row<C, V>>> rowIterator = rows.entrySet().iterator();
+    return new RemovingIterator<Cell<R, C, V>>(new AbstractIterator<Cell<R, C, V>>() {
+      R rowKey;
+      Iterator<Entry<C, V>> cellIterator = ImmutableSet.<Entry<C, V>>of().iterator();
+
+      @Override
+      protected Cell<R, C, V> computeNext() {
+        while (!cellIterator.hasNext()) {
+          if (!rowIterator.hasNext()) {
+            return endOfData();
+          }
+          Entry<R, Row<C, V>> entry = rowIterator.next();
+          rowKey = entry.getKey();
+          cellIterator = entry.getValue().cells.entrySet().iterator();
+        }
+        Entry<C, V> cell = cellIterator.next();
+        return Tables.immutableCell(rowKey, cell.getKey(), cell.getValue());
+      }
+    }) {
+      @Override
+      void remove(Cell<R, C, V> cell) {
+        ConcurrentHashBasedTable.this.remove(cell.getRowKey(), cell.getColumnKey());
+      }
+    };
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The returned map is a view of the row, whether or not it has any cells when this method is
+   * called.
+   */
+  @Override
+  public Map<C, V> row(R rowKey) {
+    return new RowView(checkNotNull(rowKey));
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The returned map is a view of the column, whether or not it has any cells when this method
+   * is called. Its methods which visit every row, such as {@code size}, are not atomic.
+   */
+  @Override
+  public Map<R, V> column(C columnKey) {
+    return new ColumnView(checkNotNull(columnKey));
+  }
+
+  private transient Map<R, Map<C, V>> rowMap;
+
+  @Override
+  public Map<R, Map<C, V>> rowMap() {
+    Map<R, Map<C, V>> result = rowMap;
+    return (result == null) ? rowMap = new RowMap() : result;
+  }
+
+  private transient Map<C, Map<R, V>> columnMap;
+
+  @Override
+  public Map<C, Map<R, V>> columnMap() {
+    Map<C, Map<R, V>> result = columnMap;
+    return (result == null) ? columnMap = new ColumnMap() : result;
+  }
+
+  /**
+   * An entry of a row or a column, whose {@code setValue} puts its value into the table.
+   */
+  private abstract static class WriteThroughEntry<K, V> extends AbstractMapEntry<K, V> {
+    final K key;
+    V value;
+
+    WriteThroughEntry(K key, V value) {
+      this.key = key;
+      this.value = value;
+    }
+
+    @Override
+    public K getKey() {
+      return key;
+    }
+
+    @Override
+    public V getValue() {
+      return value;
+    }
+
+    @Override
+    public V setValue(V value) {
+      this.value = checkNotNull(value);
+      return put(key, value);
+    }
+
+    abstract V put(K key, V value);
+  }
+
+  private final class RowView extends IteratorBasedAbstractMap<C, V> {
+    final R rowKey;
+
+    RowView(R rowKey) {
+      this.rowKey = rowKey;
+    }
+
+    @Override
+    public boolean containsKey(@Nullable Object key) {
+      return contains(rowKey, key);
+    }
+
+    @Override
+    public V get(@Nullable Object key) {
+      return ConcurrentHashBasedTable.this.get(rowKey, key);
+    }
+
+    @Override
+    public V put(C key, V value) {
+      return ConcurrentHashBasedTable.this.put(rowKey, key, value);
+    }
+
+    @Override
+    public V remove(@Nullable Object key) {
+      return ConcurrentHashBasedTable.this.remove(rowKey, key);
+    }
+
+    @Override
+    public void clear() {
+      removeRow(rowKey);
+    }
+
+    @Override
+    public int size() {
+      Row<C, V> row = rows.get(rowKey);
+      return (row == null) ? 0 : row.cells.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return !containsRow(rowKey);
+    }
+
+    @Override
+    Iterator<Entry<C, V>> entryIterator() {
+      Row<C, V> row = rows.get(rowKey);
+      if (row == null) {
+        return ImmutableSet.<Entry<C, V>>of().iterator();
+      }
+      return new RemovingIterator<Entry<C, V>>(
+          new TransformedIterator<Entry<C, V>, Entry<C, V>>(row.cells.entrySet().iterator()) {
+            @Override
+            Entry<C, V> transform(Entry<C, V> cell) {
+              return new WriteThroughEntry<C, V>(cell.getKey(), cell.getValue()) {
+                @Override
+                V put(C key, V value) {
+                  return ConcurrentHashBasedTable.this.put(rowKey, key, value);
+                }
+              };
+            }
+          }) {
+        @Override
+        void remove(Entry<C, V> entry) {
+          ConcurrentHashBasedTable.this.remove(rowKey, entry.getKey());
+        }
+      };
+    }
+  }
+
+  private final class ColumnView extends IteratorBasedAbstractMap<R, V> {
+    final C columnKey;
+
+    ColumnView(C columnKey) {
+      this.columnKey = columnKey;
+    }
+
+    @Override
+    public boolean containsKey(@Nullable Object key) {
+      return contains(key, columnKey);
+    }
+
+    @Override
+    public V get(@Nullable Object key) {
+      return ConcurrentHashBasedTable.this.get(key, columnKey);
+    }
+
+    @Override
+    public V put(R key, V value) {
+      return ConcurrentHashBasedTable.this.put(key, columnKey, value);
+    }
+
+    @Override
+    public V remove(@Nullable Object key) {
+      return ConcurrentHashBasedTable.this.remove(key, columnKey);
+    }
+
+    @Override
+    public void clear() {
+      removeColumn(columnKey);
+    }
+
+    @Override
+    public int size() {
+      int size = 0;
+      for (Row<C, V> row : rows.values()) {
+        if (row.cells.containsKey(columnKey)) {
+          size++;
+        }
+      }
+      return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return !containsColumn(columnKey);
+    }
+
+    @Override
+    Iterator<Entry<R, V>> entryIterator() {
+      final Iterator<Entry<R, Row<C, V>>> rowIterator = rows.entrySet().iterator();
+      return new RemovingIterator<Entry<R, V>>(new AbstractIterator<Entry<R, V>>() {
+        @Override
+        protected Entry<R, V> computeNext() {
+          while (rowIterator.hasNext()) {
+            Entry<R, Row<C, V>> entry = rowIterator.next();
+            V value = entry.getValue().cells.get(columnKey);
+            if (value != null) {
+              return new WriteThroughEntry<R, V>(entry.getKey(), value) {
+                @Override
+                V put(R key, V value) {
+                  return ConcurrentHashBasedTable.this.put(key, columnKey, value);
+                }
+              };
+            }
+          }
+          return endOfData();
+        }
+      }) {
+        @Override
+        void remove(Entry<R, V> entry) {
+          ConcurrentHashBasedTable.this.remove(entry.getKey(), columnKey);
+        }
+      };
+    }
+  }
+
+  /**
+   * An iterator of a view whose {@code remove} removes the cells of the last element it returned
+   * from the table, rather than from the iterator it wraps.
+   */
+  private abstract static class RemovingIterator<T> implements Iterator<T> {
+    final Iterator<? extends T> iterator;
+    T last;
+
+    RemovingIterator(Iterator<? extends T> iterator) {
+      this.iterator = iterator;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return iterator.hasNext();
+    }
+
+    @Override
+    public T next() {
+      return last = iterator.next();
+    }
+
+    @Override
+    public void remove() {
+      checkRemove(last != null);
+      remove(last);
+      last = null;
+    }
+
+    abstract void remove(T last);
+  }
+
+  private final class RowMap extends IteratorBasedAbstractMap<R, Map<C, V>> {
+    @Override
+    public boolean containsKey(@Nullable Object key) {
+      return containsRow(key);
+    }
+
+    // performing cast only when key is in the table
+    @SuppressWarnings("unchecked")
+    @Override
+    public Map<C, V> get(@Nullable Object key) {
+      return containsRow(key) ? row((R) key) : null;
+    }
+
+    @Override
+    public Map<C, V> remove(@Nullable Object key) {
+      return containsRow(key) ? removeRow(key) : null;
+    }
+
+    @Override
+    public void clear() {
+      ConcurrentHashBasedTable.this.clear();
+    }
+
+    @Override
+    public int size() {
+      int size = 0;
+      for (Row<C, V> row : rows.values()) {
+        if (!row.cells.isEmpty()) {
+          size++;
+        }
+      }
+      return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return ConcurrentHashBasedTable.this.isEmpty();
+    }
+
+    @Override
+    Iterator<Entry<R, Map<C, V>>> entryIterator() {
+      final Iterator<Entry<R, Row<C, V>>> rowIterator = rows.entrySet().iterator();
+      return new RemovingIterator<Entry<R, Map<C, V>>>(
+          new AbstractIterator<Entry<R, Map<C, V>>>() {
+            @Override
+            protected Entry<R, Map<C, V>> computeNext() {
+              while (rowIterator.hasNext()) {
+                Entry<R, Row<C, V>> entry = rowIterator.next();
+                if (!entry.getValue().cells.isEmpty()) {
+                  R rowKey = entry.getKey();
+                  return Maps.immutableEntry(rowKey, row(rowKey));
+                }
+              }
+              return endOfData();
+            }
+          }) {
+        @Override
+        void remove(Entry<R, Map<C, V>> entry) {
+          removeRow(entry.getKey());
+        }
+      };
+    }
+  }
+
+  private final class ColumnMap extends IteratorBasedAbstractMap<C, Map<R, V>> {
+    @Override
+    public boolean containsKey(@Nullable Object key) {
+      return containsColumn(key);
+    }
+
+    // performing cast only when key is in the table
+    @SuppressWarnings("unchecked")
+    @Override
+    public Map<R, V> get(@Nullable Object key) {
+      return containsColumn(key) ? column((C) key) : null;
+    }
+
+    @Override
+    public Map<R, V> remove(@Nullable Object key) {
+      return containsColumn(key) ? removeColumn(key) : null;
+    }
+
+    @Override
+    public void clear() {
+      ConcurrentHashBasedTable.this.clear();
+    }
+
+    @Override
+    public int size() {
+      return Iterators.size(columnKeyIterator());
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return ConcurrentHashBasedTable.this.isEmpty();
+    }
+
+    @Override
+    Iterator<Entry<C, Map<R, V>>> entryIterator() {
+      return new RemovingIterator<Entry<C, Map<R, V>>>(
+          new TransformedIterator<C, Entry<C, Map<R, V>>>(columnKeyIterator()) {
+            @Override
+            Entry<C, Map<R, V>> transform(C columnKey) {
+              return Maps.immutableEntry(columnKey, column(columnKey));
+            }
+          }) {
+        @Override
+        void remove(Entry<C, Map<R, V>> entry) {
+          removeColumn(entry.getKey());
+        }
+      };
+    }
+  }
+
+  /**
+   * Returns an iterator over the column keys of the table, without duplicates.
+   */
+  private Iterator<C> columnKeyIterator() {
+    final Iterator<Row<C, V>> rowIterator = rows.values().iterator();
+    return new AbstractIterator<C>() {
+      final Set<C> seen = Sets.newHashSet();
+      Iterator<C> columnIterator = ImmutableSet.<C>of().iterator();
+
+      @Override
+      protected C computeNext() {
+        while (true) {
+          if (columnIterator.hasNext()) {
+            C columnKey = columnIterator.next();
+            if (seen.add(columnKey)) {
+              return columnKey;
+            }
+          } else if (rowIterator.hasNext()) {
+            columnIterator = rowIterator.next().cells.keySet().iterator();
+          } else {
+            return endOfData();
+          }
+        }
+      }
+    };
+  }
+
+  private void writeObject(ObjectOutputStream stream) throws IOException {
+    stream.defaultWriteObject();
+    for (Cell<R, C, V> cell : cellSet()) {
+      stream.writeObject(cell.getRowKey());
+      stream.writeObject(cell.getColumnKey());
+      stream.writeObject(cell.getValue());
+    }
+    stream.writeObject(null); // the cells may change while they are written
+  }
+
+  @SuppressWarnings("unchecked") // reading data stored by writeObject
+  private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+    stream.defaultReadObject();
+    FieldSettersHolder.ROWS_FIELD_SETTER.set(this, new ConcurrentHashMap<R, Row<C, V>>());
+    for (Object rowKey = stream.readObject(); rowKey != null; rowKey = stream.readObject()) {
+      put((R) rowKey, (C) stream.readObject(), (V) stream.readObject());
+    }
+  }
+
+  private static final long serialVersionUID = 0;
+}
@@ -0,0 +1,611 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.VisibleForTesting;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nullable;
+
+/**
+ * A thread-safe double-ended priority queue, like a {@link MinMaxPriorityQueue} which may be
+ * polled at both ends by many threads at once, and which may likewise be configured with a maximum
+ * size.
+ *
+ * <p>For throughput, the order in which elements are polled is <i>relaxed</i>: the elements are
+ * spread over a number of internal min-max priority queues, each with its own lock, and {@link
+ * #pollFirst} removes the least element of the better of two internal queues chosen at random,
+ * skipping any whose lock is held, rather than necessarily the least element of all. The elements
+ * it returns are nevertheless among the least few, in proportion to the number of internal
+ * queues, which is the {@linkplain Builder#concurrencyLevel concurrency level}; with a
+ * concurrency level of 1, the order is strict. {@link #pollLast} is relaxed likewise, as is the
+ * element evicted when the queue grows beyond its maximum size.
+ *
+ * <p>{@link #peekFirst} and {@link #peekLast} return the least and greatest of the first and last
+ * elements of the internal queues as of some recent time. The iterator of the queue is weakly
+ * consistent: it returns the elements of each internal queue as of when it reaches it, in no
+ * particular order, and never throws {@link java.util.ConcurrentModificationException}. {@link
+ * #size} may count elements which are being added.
+ *
+ * <p>This class does not accept null elements.
+ *
+ * @since 19.0
+ */
+@Beta
+public final class ConcurrentMinMaxPriorityQueue<E> extends AbstractQueue<E> {
+
+  /**
+   * Creates a new concurrent min-max priority queue with default settings: natural order, no
+   * maximum size, no initial contents, and the default concurrency level.
+   */
+  public static <E extends Comparable<E>> ConcurrentMinMaxPriorityQueue<E> create() {
+    return new Builder<Comparable>(Ordering.natural()).create();
+  }
+
+  /**
+   * Creates a new concurrent min-max priority queue using natural order, no maximum size, the
+   * default concurrency level, and initially containing the given elements.
+   */
+  public static <E extends Comparable<E>> ConcurrentMinMaxPriorityQueue<E> create(
+      Iterable<? extends E> initialContents) {
+    return new Builder<E>(Ordering.<E>natural()).create(initialContents);
+  }
+
+  /**
+   * Creates and returns a new builder, configured to build {@code ConcurrentMinMaxPriorityQueue}
+   * instances that use {@code comparator} to determine the least and greatest elements.
+   */
+  public static <B> Builder<B> orderedBy(Comparator<B> comparator) {
+    return new Builder<B>(comparator);
+  }
+
+  /**
+   * Creates and returns a new builder, configured to build {@code ConcurrentMinMaxPriorityQueue}
+   * instances that are limited to {@code maximumSize} elements. Each time a queue would grow beyond
+   * this bound, it removes one of its greatest elements (according to its comparator), which might
+   * be the element that was being added.
+   */
+  public static Builder<Comparable> maximumSize(int maximumSize) {
+    return new Builder<Comparable>(Ordering.natural()).maximumSize(maximumSize);
+  }
+
+  /**
+   * The builder class used in creation of concurrent min-max priority queues. Instead of
+   * constructing one directly, use {@link ConcurrentMinMaxPriorityQueue#orderedBy(Comparator)} or
+   * {@link ConcurrentMinMaxPriorityQueue#maximumSize(int)}.
+   *
+   * @param <B> the upper bound on the eventual type that can be produced by this builder (for
+   *     example, a {@code Builder<Number>} can produce a {@code Queue<Number>} or {@code
+   *     Queue<Integer>} but not a {@code Queue<Object>}).
+   * @since 19.0
+   */
+  @Beta
+  public static final class Builder<B> {
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 4;
+
+    private final Comparator<B> comparator;
+    private int expectedSize = 0;
+    private int maximumSize = Integer.MAX_VALUE;
+    private int concurrencyLevel = DEFAULT_CONCURRENCY_LEVEL;
+
+    private Builder(Comparator<B> comparator) {
+      this.comparator = checkNotNull(comparator);
+    }
+
+    /**
+     * Configures this builder to build queues with an initial expected size of {@code
+     * expectedSize}.
+     */
+    public Builder<B> expectedSize(int expectedSize) {
+      checkArgument(expectedSize >= 0);
+      this.expectedSize = expectedSize;
+      return this;
+    }
+
+    /**
+     * Configures this builder to build queues that are limited to {@code maximumSize} elements.
+     * Each time a queue would grow beyond this bound, it removes one of its greatest elements
+     * (according to its comparator), which might be the element that was being added.
+     */
+    public Builder<B> maximumSize(int maximumSize) {
+      checkArgument(maximumSize > 0);
+      this.maximumSize = maximumSize;
+      return this;
+    }
+
+    /**
+     * Configures this builder to build queues with {@code concurrencyLevel} internal queues. About
+     * twice the number of threads which use the queue at once gives good throughput; fewer
+     * internal queues make the order in which elements are polled less relaxed, and a concurrency
+     * level of 1 makes it strict. Defaults to 4.
+     */
+    public Builder<B> concurrencyLevel(int concurrencyLevel) {
+      checkArgument(concurrencyLevel > 0);
+      this.concurrencyLevel = concurrencyLevel;
+      return this;
+    }
+
+    /**
+     * Builds a new concurrent min-max priority queue using the previously specified options, and
+     * having no initial contents.
+     */
+    public <T extends B> ConcurrentMinMaxPriorityQueue<T> create() {
+      return create(Collections.<T>emptySet());
+    }
+
+    /**
+     * Builds a new concurrent min-max priority queue using the previously specified options, and
+     * having the given initial elements.
+     */
+    public <T extends B> ConcurrentMinMaxPriorityQueue<T> create(
+        Iterable<? extends T> initialContents) {
+      ConcurrentMinMaxPriorityQueue<T> queue = new ConcurrentMinMaxPriorityQueue<T>(this);
+      for (T element : initialContents) {
+        queue.offer(element);
+      }
+      return queue;
+    }
+
+    @SuppressWarnings("unchecked") // safe "contravariant cast"
+    private <T extends B> Ordering<T> ordering() {
+      return Ordering.from((Comparator<T>) comparator);
+    }
+  }
+
+  /**
+   * The number of times an operation tries to lock an internal queue without waiting, before it
+   * waits for one.
+   */
+  private static final int MAX_TRY_LOCKS = 4;
+
+  private final Ordering<E> ordering;
+  private final Shard<E>[] shards;
+  @VisibleForTesting final int maximumSize;
+
+  /**
+   * The number of elements of all shards, plus the number of elements being added; an element is
+   * counted before it is added to a shard and after it is removed from one.
+   */
+  private final AtomicInteger size = new AtomicInteger();
+
+  @SuppressWarnings("unchecked") // generic array creation
+  private ConcurrentMinMaxPriorityQueue(Builder<? super E> builder) {
+    this.ordering = builder.ordering();
+    this.maximumSize = builder.maximumSize;
+    int shardCount = builder.concurrencyLevel;
+    int expectedShardSize = Math.min(builder.expectedSize, builder.maximumSize) / shardCount;
+    this.shards = (Shard<E>[]) new Shard<?>[shardCount];
+    for (int i = 0; i < shardCount; i++) {
+      shards[i] = new Shard<E>(MinMaxPriorityQueue.orderedBy(ordering)
+          .expectedSize(expectedShardSize)
+          .<E>create());
+    }
+  }
+
+  /**
+   * An internal queue, with its lock, and its first and last elements as of its latest change,
+   * which may be read without the lock.
+   */
+  @SuppressWarnings("serial") // never serialized
+  private static final class Shard<E> extends ReentrantLock {
+    final MinMaxPriorityQueue<E> queue;
+    @Nullable volatile E first;
+    @Nullable volatile E last;
+
+    Shard(MinMaxPriorityQueue<E> queue) {
+      this.queue = queue;
+    }
+
+    /** Updates the cached first and last elements; called while holding the lock. */
+    void changed() {
+      first = queue.peekFirst();
+      last = queue.peekLast();
+    }
+  }
+
+  @Override public int size() {
+    return size.get();
+  }
+
+  /**
+   * Adds the given element to this queue. If this queue has a maximum size, the queue will
+   * automatically evict one of its greatest elements (according to its comparator), which may be
+   * {@code element} itself.
+   *
+   * @return {@code true} always
+   */
+  @Override public boolean add(E element) {
+    offer(element);
+    return true;
+  }
+
+  @Override public boolean addAll(Collection<? extends E> newElements) {
+    boolean modified = false;
+    for (E element : newElements) {
+      offer(element);
+      modified = true;
+    }
+    return modified;
+  }
+
+  /**
+   * Adds the given element to this queue. If this queue has a maximum size, the queue will
+   * automatically evict one of its greatest elements (according to its comparator), which may be
+   * {@code element} itself.
+   *
+   * @return {@code false} if {@code element} itself was evicted
+   */
+  @Override public boolean offer(E element) {
+    checkNotNull(element);
+    while (!reserve()) {
+      // The queue is full: evict the greatest element, unless element is no less.
+      Shard<E> shard = shardWithGreatestLast();
+      if (shard == null) {
+        // the elements which fill the queue are still being added; let their threads run
+        Thread.yield();
+        continue;
+      }
+      E last = shard.last;
+      if (last != null && ordering.compare(element, last) >= 0) {
+        return false;
+      }
+      shard.lock();
+      try {
+        last = shard.queue.peekLast();
+        if (last == null || ordering.compare(element, last) >= 0) {
+          continue;
+        }
+        shard.queue.pollLast();
+        shard.changed();
+      } finally {
+        shard.unlock();
+      }
+      size.decrementAndGet();
+    }
+    Shard<E> shard = lockShard(shards[nextShardIndex()]);
+    try {
+      shard.queue.offer(element);
+      shard.changed();
+    } finally {
+      shard.unlock();
+    }
+    return true;
+  }
+
+  /** Counts an element to be added, if the queue is not full. */
+  private boolean reserve() {
+    while (true) {
+      int current = size.get();
+      if (current >= maximumSize) {
+        return false;
+      } else if (size.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  @Override public E poll() {
+    return pollFirst();
+  }
+
+  @Override public E peek() {
+    return peekFirst();
+  }
+
+  /**
+   * Removes and returns one of the least elements of this queue, or returns {@code null} if the
+   * queue is empty.
+   */
+  public E pollFirst() {
+    return pollEnd(true);
+  }
+
+  /**
+   * Removes and returns one of the least elements of this queue.
+   *
+   * @throws NoSuchElementException if the queue is empty
+   */
+  public E removeFirst() {
+    return remove();
+  }
+
+  /**
+   * Retrieves, but does not remove, the least of the first elements of the internal queues, or
+   * returns {@code null} if the queue is empty.
+   */
+  public E peekFirst() {
+    E result = null;
+    for (Shard<E> shard : shards) {
+      E first = shard.first;
+      if (first != null && (result == null || ordering.compare(first, result) < 0)) {
+        result = first;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Removes and returns one of the greatest elements of this queue, or returns {@code null} if
+   * the queue is empty.
+   */
+  public E pollLast() {
+    return pollEnd(false);
+  }
+
+  /**
+   * Removes and returns one of the greatest elements of this queue.
+   *
+   * @throws NoSuchElementException if the queue is empty
+   */
+  public E removeLast() {
+    E element = pollLast();
+    if (element == null) {
+      throw new NoSuchElementException();
+    }
+    return element;
+  }
+
+  /**
+   * Retrieves, but does not remove, the greatest of the last elements of the internal queues, or
+   * returns {@code null} if the queue is empty.
+   */
+  public E peekLast() {
+    E result = null;
+    for (Shard<E> shard : shards) {
+      E last = shard.last;
+      if (last != null && (result == null || ordering.compare(last, result) > 0)) {
+        result = last;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Polls the first or last element of the better of two random shards, or of any nonempty shard
+   * if both are empty.
+   */
+  private E pollEnd(boolean first) {
+    for (int attempt = 0; ; attempt++) {
+      if (size.get() == 0) {
+        return null;
+      }
+      Shard<E> shard = betterShard(shards[nextShardIndex()], shards[nextShardIndex()], first);
+      if (shard == null) {
+        shard = anyNonemptyShard();
+        if (shard == null) {
+          return null; // the elements counted by size are still being added
+        }
+      }
+      if (attempt < MAX_TRY_LOCKS) {
+        if (!shard.tryLock()) {
+          continue;
+        }
+      } else {
+        shard.lock();
+      }
+      E element;
+      try {
+        element = first ? shard.queue.pollFirst() : shard.queue.pollLast();
+        if (element == null) {
+          continue;
+        }
+        shard.changed();
+      } finally {
+        shard.unlock();
+      }
+      size.decrementAndGet();
+      return element;
+    }
+  }
+
+  /**
+   * Returns the shard with the lesser first element, or the greater last element, of two shards,
+   * or null if both are empty.
+   */
+  @Nullable
+  private Shard<E> betterShard(Shard<E> a, Shard<E> b, boolean first) {
+    E aEnd = first ? a.first : a.last;
+    E bEnd = first ? b.first : b.last;
+    if (aEnd == null) {
+      return (bEnd == null) ? null : b;
+    } else if (bEnd == null) {
+      return a;
+    }
+    int comparison = ordering.compare(aEnd, bEnd);
+    return (first ? comparison <= 0 : comparison >= 0) ? a : b;
+  }
+
+  @Nullable
+  private Shard<E> anyNonemptyShard() {
+    int start = nextShardIndex();
+    for (int i = 0; i < shards.length; i++) {
+      Shard<E> shard = shards[(start + i) % shards.length];
+      if (shard.first != null) {
+        return shard;
+      }
+    }
+    return null;
+  }
+
+  @Nullable
+  private Shard<E> shardWithGreatestLast() {
+    Shard<E> result = null;
+    E greatest = null;
+    for (Shard<E> shard : shards) {
+      E last = shard.last;
+      if (last != null && (greatest == null || ordering.compare(last, greatest) > 0)) {
+        result = shard;
+        greatest = last;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Locks and returns {@code shard}, or another shard whose lock is free if its lock is held.
+   */
+  private Shard<E> lockShard(Shard<E> shard) {
+    for (int attempt = 0; attempt < MAX_TRY_LOCKS; attempt++) {
+      if (shard.tryLock()) {
+        return shard;
+      }
+      shard = shards[nextShardIndex()];
+    }
+    shard.lock();
+    return shard;
+  }
+
+  /**
+   * The state of a xorshift random number generator for each thread, which chooses shards without
+   * contending with other threads.
+   */
+  private static final ThreadLocal<int[]> threadRandom = new ThreadLocal<int[]>() {
+    @Override protected int[] initialValue() {
+      int seed = System.identityHashCode(Thread.currentThread());
+      return new int[] {(seed == 0) ? 1 : seed};
+    }
+  };
+
+  private int nextShardIndex() {
+    if (shards.length == 1) {
+      return 0;
+    }
+    int[] state = threadRandom.get();
+    int x = state[0];
+    x ^= x << 13;
+    x ^= x >>> 17;
+    x ^= x << 5;
+    state[0] = x;
+    return (x & Integer.MAX_VALUE) % shards.length;
+  }
+
+  @Override public boolean remove(@Nullable Object o) {
+    if (o == null) {
+      return false;
+    }
+    for (Shard<E> shard : shards) {
+      shard.lock();
+      try {
+        if (shard.queue.remove(o)) {
+          shard.changed();
+          size.decrementAndGet();
+          return true;
+        }
+      } finally {
+        shard.unlock();
+      }
+    }
+    return false;
+  }
+
+  @Override public boolean contains(@Nullable Object o) {
+    if (o == null) {
+      return false;
+    }
+    for (Shard<E> shard : shards) {
+      shard.lock();
+      try {
+        if (shard.queue.contains(o)) {
+          return true;
+        }
+      } finally {
+        shard.unlock();
+      }
+    }
+    return false;
+  }
+
+  @Override public void clear() {
+    for (Shard<E> shard : shards) {
+      shard.lock();
+      try {
+        int removed = shard.queue.size();
+        shard.queue.clear();
+        shard.changed();
+        size.addAndGet(-removed);
+      } finally {
+        shard.unlock();
+      }
+    }
+  }
+
+  /**
+   * Returns an iterator over the elements contained in this collection, <i>in no particular
+   * order</i>. It copies the elements of each internal queue when it reaches it, and its {@code
+   * remove} method removes an element equal to the last one it returned.
+   */
+  @Override public Iterator<E> iterator() {
+    final Iterator<E> elements = Iterators.concat(
+        new AbstractIterator<Iterator<E>>() {
+          int index = 0;
+
+          @Override protected Iterator<E> computeNext() {
+            if (index == shards.length) {
+              return endOfData();
+            }
+            Shard<E> shard = shards[index++];
+            List<E> copy;
+            shard.lock();
+            try {
+              copy = Lists.newArrayList(shard.queue);
+            } finally {
+              shard.unlock();
+            }
+            return copy.iterator();
+          }
+        });
+    return new Iterator<E>() {
+      E last;
+
+      @Override public boolean hasNext() {
+        return elements.hasNext();
+      }
+
+      @Override public E next() {
+        return last = elements.next();
+      }
+
+      @Override public void remove() {
+        CollectPreconditions.checkRemove(last != null);
+        ConcurrentMinMaxPriorityQueue.this.remove(last);
+        last = null;
+      }
+    };
+  }
+
+  /**
+   * Returns the comparator used to order the elements in this queue. Obeys the general contract of
+   * {@link java.util.PriorityQueue#comparator}, but returns {@link Ordering#natural} instead of
+   * {@code null} to indicate natural ordering.
+   */
+  public Comparator<? super E> comparator() {
+    return ordering;
+  }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtCompatible;
+
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+/**
+ * A fixed-size table of {@code double} values, like an {@link ArrayTable}, which keeps its values
+ * unboxed in one {@code double[]} array per column.
+ *
+ * <p>The allowed row and column keys must be supplied when the table is created. The table always
+ * contains a value for every pair of a row key and a column key, which is {@code 0.0} unless
+ * another value is provided. Its values are read and written with unboxed accessors, by keys or by
+ * the positions of the keys in {@link #rowKeyList} and {@link #columnKeyList}; the sum, minimum
+ * and maximum of a row or a column are computed without boxing, and fastest for a column. {@link
+ * #asTable} views the table as a {@link Table} of boxed values.
+ *
+ * <p>Null row keys or column keys are not permitted. The table is serializable if its keys are.
+ *
+ * <p>Note that this implementation is not synchronized. As with {@link ArrayTable}, access to the
+ * table must be synchronized if one thread writes to a cell which another thread reads.
+ *
+ * @since 19.0
+ */
+@Beta
+@GwtCompatible
+public final class DoubleArrayTable<R, C> extends PrimitiveArrayTable<R, C, Double> {
+
+  /**
+   * Creates a {@code DoubleArrayTable} whose values are all {@code 0.0}.
+   *
+   * @param rowKeys row keys that may be stored in the generated table
+   * @param columnKeys column keys that may be stored in the generated table
+   * @throws NullPointerException if any of the provided keys is null
+   * @throws IllegalArgumentException if {@code rowKeys} or {@code columnKeys} contains duplicates
+   *     or is empty
+   */
+  public static <R, C> DoubleArrayTable<R, C> create(
+      Iterable<? extends R> rowKeys, Iterable<? extends C> columnKeys) {
+    return new DoubleArrayTable<R, C>(rowKeys, columnKeys);
+  }
+
+  /**
+   * Creates a {@code DoubleArrayTable} with the same keys and values as {@code table}.
+   */
+  public static <R, C> DoubleArrayTable<R, C> create(DoubleArrayTable<R, C> table) {
+    return new DoubleArrayTable<R, C>(table);
+  }
+
+  /** The values, indexed by column and then by row. */
+  private final double[][] columns;
+
+  private DoubleArrayTable(Iterable<? extends R> rowKeys, Iterable<? extends C> columnKeys) {
+    super(rowKeys, columnKeys);
+    this.columns = new double[columnList.size()][rowList.size()];
+  }
+
+  private DoubleArrayTable(DoubleArrayTable<R, C> table) {
+    super(table);
+    this.columns = new double[columnList.size()][];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = table.columns[i].clone();
+    }
+  }
+
+  /**
+   * Returns the value at the specified row and column indices.
+   *
+   * @throws IndexOutOfBoundsException if {@code rowIndex} is not less than the number of row keys,
+   *     or {@code columnIndex} not less than the number of column keys, or either is negative
+   */
+  public double at(int rowIndex, int columnIndex) {
+    // In GWT array access never throws IndexOutOfBoundsException.
+    checkElementIndex(rowIndex, rowList.size());
+    checkElementIndex(columnIndex, columnList.size());
+    return columns[columnIndex][rowIndex];
+  }
+
+  /**
+   * Stores {@code value} at the specified row and column indices, and returns the previous value.
+   *
+   * @throws IndexOutOfBoundsException if {@code rowIndex} is not less than the number of row keys,
+   *     or {@code columnIndex} not less than the number of column keys, or either is negative
+   */
+  public double set(int rowIndex, int columnIndex, double value) {
+    checkElementIndex(rowIndex, rowList.size());
+    checkElementIndex(columnIndex, columnList.size());
+    double[] column = columns[columnIndex];
+    double oldValue = column[rowIndex];
+    column[rowIndex] = value;
+    return oldValue;
+  }
+
+  /**
+   * Returns the value with the specified row and column keys.
+   *
+   * @throws IllegalArgumentException if either key is not among the keys of this table
+   */
+  public double get(@Nullable Object rowKey, @Nullable Object columnKey) {
+    return columns[columnIndex(columnKey)][rowIndex(rowKey)];
+  }
+
+  /**
+   * Stores {@code value} with the specified row and column keys, and returns the previous value.
+   *
+   * @throws IllegalArgumentException if either key is not among the keys of this table
+   */
+  public double put(R rowKey, C columnKey, double value) {
+    checkNotNull(rowKey);
+    checkNotNull(columnKey);
+    double[] column = columns[columnIndex(columnKey)];
+    int rowIndex = rowIndex(rowKey);
+    double oldValue = column[rowIndex];
+    column[rowIndex] = value;
+    return oldValue;
+  }
+
+  /**
+   * Adds {@code delta} to the value with the specified row and column keys, and returns the new
+   * value.
+   *
+   * @throws IllegalArgumentException if either key is not among the keys of this table
+   */
+  public double add(R rowKey, C columnKey, double delta) {
+    checkNotNull(rowKey);
+    checkNotNull(columnKey);
+    double[] column = columns[columnIndex(columnKey)];
+    int rowIndex = rowIndex(rowKey);
+    return column[rowIndex] += delta;
+  }
+
+  /**
+   * Stores {@code value} with every pair of a row key and a column key.
+   */
+  public void fill(double value) {
+    for (double[] column : columns) {
+      Arrays.fill(column, value);
+    }
+  }
+
+  /**
+   * Returns the sum of the values with the specified row key.
+   *
+   * @throws IllegalArgumentException if {@code rowKey} is not among the row keys of this table
+   */
+  public double rowSum(@Nullable Object rowKey) {
+    int rowIndex = rowIndex(rowKey);
+    double sum = 0.0;
+    for (double[] column : columns) {
+      sum += column[rowIndex];
+    }
+    return sum;
+  }
+
+  /**
+   * Returns the least of the values with the specified row key, or {@code NaN} if any of them is
+   * {@code NaN}, as with {@link Math#min}.
+   *
+   * @throws IllegalArgumentException if {@code rowKey} is not among the row keys of this table
+   */
+  public double rowMin(@Nullable Object rowKey) {
+    int rowIndex = rowIndex(rowKey);
+    double min = columns[0][rowIndex];
+    for (int i = 1; i < columns.length; i++) {
+      min = Math.min(min, columns[i][rowIndex]);
+    }
+    return min;
+  }
+
+  /**
+   * Returns the greatest of the values with the specified row key, or {@code NaN} if any of them is
+   * {@code NaN}, as with {@link Math#max}.
+   *
+   * @throws IllegalArgumentException if {@code rowKey} is not among the row keys of this table
+   */
+  public double rowMax(@Nullable Object rowKey) {
+    int rowIndex = rowIndex(rowKey);
+    double max = columns[0][rowIndex];
+    for (int i = 1; i < columns.length; i++) {
+      max = Math.max(max, columns[i][rowIndex]);
+    }
+    return max;
+  }
+
+  /**
+   * Returns the sum of the values with the specified column key.
+   *
+   * @throws IllegalArgumentException if {@code columnKey} is not among the column keys of this
+   *     table
+   */
+  public double columnSum(@Nullable Object columnKey) {
+    double sum = 0.0;
+    for (double value : columns[columnIndex(columnKey)]) {
+      sum += value;
+    }
+    return sum;
+  }
+
+  /**
+   * Returns the least of the values with the specified column key, or {@code NaN} if any of them
+   * is {@code NaN}, as with {@link Math#min}.
+   *
+   * @throws IllegalArgumentException if {@code columnKey} is not among the column keys of this
+   *     table
+   */
+  public double columnMin(@Nullable Object columnKey) {
+    double[] column = columns[columnIndex(columnKey)];
+    double min = column[0];
+    for (int i = 1; i < column.length; i++) {
+      min = Math.min(min, column[i]);
+    }
+    return min;
+  }
+
+  /**
+   * Returns the greatest of the values with the specified column key, or {@code NaN} if any of them
+   * is {@code NaN}, as with {@link Math#max}.
+   *
+   * @throws IllegalArgumentException if {@code columnKey} is not among the column keys of this
+   *     table
+   */
+  public double columnMax(@Nullable Object columnKey) {
+    double[] column = columns[columnIndex(columnKey)];
+    double max = column[0];
+    for (int i = 1; i < column.length; i++) {
+      max = Math.max(max, column[i]);
+    }
+    return max;
+  }
+
+  @Override
+  Double getBoxed(int rowIndex, int columnIndex) {
+    return columns[columnIndex][rowIndex];
+  }
+
+  @Override
+  Double setBoxed(int rowIndex, int columnIndex, Double value) {
+    return set(rowIndex, columnIndex, value);
+  }
+
+  private static final long serialVersionUID = 0;
+}
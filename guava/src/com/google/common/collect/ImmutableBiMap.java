@@ -18,6 +18,7 @@ package com.google.common.collect;
 
 import com.google.common.annotations.Beta;
 import com.google.common.annotations.GwtCompatible;
+import com.google.common.annotations.GwtIncompatible;
 
 import java.util.Map;
 
@@ -195,6 +196,18 @@ public abstract class ImmutableBiMap<K, V> extends ImmutableMap<K, V>
           return RegularImmutableBiMap.fromEntryArray(size, entries);
       }
     }
+
+    /**
+     * Returns a newly-created immutable bimap, exactly as {@link #build} does; its keys are not
+     * located by a perfect hash function.
+     *
+     * @since 19.0
+     */
+    @Beta
+    @GwtIncompatible("PerfectHashImmutableMap")
+    @Override public ImmutableBiMap<K, V> buildPerfectHash() {
+      return build();
+    }
   }
 
   /**
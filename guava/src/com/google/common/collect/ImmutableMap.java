@@ -20,6 +20,7 @@ import static com.google.common.collect.CollectPreconditions.checkEntryNotNull;
 
 import com.google.common.annotations.Beta;
 import com.google.common.annotations.GwtCompatible;
+import com.google.common.annotations.GwtIncompatible;
 
 import java.io.Serializable;
 import java.util.Collections;
@@ -255,9 +256,39 @@ public abstract class ImmutableMap<K, V> implements Map<K, V>, Serializable {
            * affect the original array), and future build() calls will always copy any entry
            * objects that cannot be safely reused.
            */
-          return RegularImmutableMap.fromEntryArray(size, entries);
+          return (size >= CompactImmutableMap.MIN_SIZE)
+              ? CompactImmutableMap.fromEntryArray(size, entries)
+              : RegularImmutableMap.fromEntryArray(size, entries);
       }
     }
+
+    /**
+     * Returns a newly-created immutable map whose keys are located by a minimal perfect hash
+     * function, which is computed over the keys that have been added so far. Each {@link
+     * ImmutableMap#get get} then hashes the key once and compares it with a single candidate key,
+     * and the entries are stored compactly, with no empty table slots. In other respects,
+     * including iteration order, the map is an ordinary {@code ImmutableMap}.
+     *
+     * <p>Computing the hash function takes several times as long as {@link #build}, so this
+     * method is suited to maps which are built once, for example from configuration at startup,
+     * and then queried very often. The hash function is computed from the keys' {@link
+     * Object#hashCode hash codes}, so if any two keys have equal hash codes, or the function
+     * cannot be found for some other reason, the map is built as by {@link #build} instead.
+     *
+     * @throws IllegalArgumentException if duplicate keys were added
+     * @since 19.0
+     */
+    @Beta
+    @GwtIncompatible("PerfectHashImmutableMap")
+    public ImmutableMap<K, V> buildPerfectHash() {
+      if (size > 1) {
+        ImmutableMap<K, V> map = PerfectHashImmutableMap.tryCreate(size, entries);
+        if (map != null) {
+          return map;
+        }
+      }
+      return build();
+    }
   }
 
   /**
@@ -313,7 +344,9 @@ public abstract class ImmutableMap<K, V> implements Map<K, V>, Serializable {
          * The current implementation will end up using entryArray directly, though it will write
          * over the (arbitrary, potentially mutable) Entry objects actually stored in entryArray.
          */
-        return RegularImmutableMap.fromEntries(entryArray);
+        return (entryArray.length >= CompactImmutableMap.MIN_SIZE)
+            ? CompactImmutableMap.fromEntryArray(entryArray.length, entryArray)
+            : RegularImmutableMap.fromEntries(entryArray);
     }
   }
 
@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.Beta;
+
+import java.util.List;
+import java.util.Map.Entry;
+
+import javax.annotation.Nullable;
+
+/**
+ * An immutable collection of associations of ranges to values, in which, unlike in a {@link
+ * RangeMap}, the ranges may overlap, and which finds all of the ranges which overlap a range or
+ * contain a value.
+ *
+ * <p>The ranges are kept sorted by their lower bounds in an array, which is also laid out as an
+ * implicit balanced interval tree: the root of the subtree of the ranges in {@code [from, to)} is
+ * the range at their middle, and each range is stored with the greatest upper bound of its
+ * subtree. Finding the {@code k} ranges which overlap a query then takes time {@code O(k log n +
+ * log n)} at worst, and usually nearer {@code O(k + log n)}.
+ *
+ * <p>{@link #toRangeSet} coalesces the ranges into an {@link ImmutableRangeSet}.
+ *
+ * @since 19.0
+ */
+@Beta
+public final class ImmutableRangeIndex<K extends Comparable<?>, V> {
+
+  private static final ImmutableRangeIndex<Comparable<?>, Object> EMPTY =
+      new ImmutableRangeIndex<Comparable<?>, Object>(
+          ImmutableList.<Range<Comparable<?>>>of(), ImmutableList.of());
+
+  /**
+   * Returns an empty immutable range index.
+   */
+  @SuppressWarnings("unchecked")
+  public static <K extends Comparable<?>, V> ImmutableRangeIndex<K, V> of() {
+    return (ImmutableRangeIndex<K, V>) EMPTY;
+  }
+
+  /**
+   * Returns a new builder for an immutable range index.
+   */
+  public static <K extends Comparable<?>, V> Builder<K, V> builder() {
+    return new Builder<K, V>();
+  }
+
+  /**
+   * A builder for immutable range indexes. Unlike those of {@link ImmutableRangeMap}, overlapping
+   * and equal ranges are permitted.
+   */
+  public static final class Builder<K extends Comparable<?>, V> {
+    private final List<Entry<Range<K>, V>> entries = Lists.newArrayList();
+
+    public Builder() {}
+
+    /**
+     * Associates the specified range with the specified value.
+     *
+     * @throws IllegalArgumentException if {@code range} is empty
+     */
+    public Builder<K, V> put(Range<K> range, V value) {
+      checkNotNull(range);
+      checkNotNull(value);
+      checkArgument(!range.isEmpty(), "Range must not be empty, but was %s", range);
+      entries.add(Maps.immutableEntry(range, value));
+      return this;
+    }
+
+    /**
+     * Copies all associations from the specified range map into this builder.
+     */
+    public Builder<K, V> putAll(RangeMap<K, ? extends V> rangeMap) {
+      for (Entry<Range<K>, ? extends V> entry : rangeMap.asMapOfRanges().entrySet()) {
+        put(entry.getKey(), entry.getValue());
+      }
+      return this;
+    }
+
+    /**
+     * Returns an {@code ImmutableRangeIndex} containing the associations previously added to this
+     * builder. Associations with equal ranges are kept in the order they were added.
+     */
+    public ImmutableRangeIndex<K, V> build() {
+      if (entries.isEmpty()) {
+        return of();
+      }
+      List<Entry<Range<K>, V>> sorted = Range.RANGE_LEX_ORDERING
+          .onResultOf(Maps.<Range<K>>keyFunction())
+          .sortedCopy(entries);
+      ImmutableList.Builder<Range<K>> ranges = new ImmutableList.Builder<Range<K>>(sorted.size());
+      ImmutableList.Builder<V> values = new ImmutableList.Builder<V>(sorted.size());
+      for (Entry<Range<K>, V> entry : sorted) {
+        ranges.add(entry.getKey());
+        values.add(entry.getValue());
+      }
+      return new ImmutableRangeIndex<K, V>(ranges.build(), values.build());
+    }
+  }
+
+  private final ImmutableList<Range<K>> ranges;
+  private final ImmutableList<V> values;
+
+  /**
+   * The greatest upper bound of the ranges of the subtree whose root is at each index.
+   */
+  private final Cut<K>[] maxUpperBounds;
+
+  private ImmutableRangeIndex(ImmutableList<Range<K>> ranges, ImmutableList<V> values) {
+    this.ranges = ranges;
+    this.values = values;
+    @SuppressWarnings("unchecked") // contains only Cut<K>s
+    Cut<K>[] maxUpperBounds = (Cut<K>[]) new Cut<?>[ranges.size()];
+    this.maxUpperBounds = maxUpperBounds;
+    fillMaxUpperBounds(0, ranges.size());
+  }
+
+  @Nullable
+  private Cut<K> fillMaxUpperBounds(int from, int to) {
+    if (from >= to) {
+      return null;
+    }
+    int mid = (from + to) >>> 1;
+    Cut<K> max = ranges.get(mid).upperBound;
+    Cut<K> left = fillMaxUpperBounds(from, mid);
+    Cut<K> right = fillMaxUpperBounds(mid + 1, to);
+    if (left != null && left.compareTo(max) > 0) {
+      max = left;
+    }
+    if (right != null && right.compareTo(max) > 0) {
+      max = right;
+    }
+    maxUpperBounds[mid] = max;
+    return max;
+  }
+
+  /**
+   * Returns the number of associations in this index.
+   */
+  public int size() {
+    return ranges.size();
+  }
+
+  /**
+   * Returns whether this index contains no associations.
+   */
+  public boolean isEmpty() {
+    return ranges.isEmpty();
+  }
+
+  /**
+   * Returns the associations of this index, in ascending order of their lower bounds, and then of
+   * their upper bounds.
+   */
+  public ImmutableList<Entry<Range<K>, V>> entries() {
+    ImmutableList.Builder<Entry<Range<K>, V>> result =
+        new ImmutableList.Builder<Entry<Range<K>, V>>(ranges.size());
+    for (int i = 0; i < ranges.size(); i++) {
+      result.add(entry(i));
+    }
+    return result.build();
+  }
+
+  /**
+   * Returns the associations of the ranges which have a nonempty intersection with {@code range},
+   * in the order of {@link #entries}.
+   */
+  public ImmutableList<Entry<Range<K>, V>> getOverlapping(Range<K> range) {
+    checkNotNull(range);
+    if (range.isEmpty()) {
+      return ImmutableList.of();
+    }
+    ImmutableList.Builder<Entry<Range<K>, V>> result = ImmutableList.builder();
+    collectOverlapping(0, ranges.size(), range, result);
+    return result.build();
+  }
+
+  /**
+   * Returns the associations of the ranges which contain {@code key}, in the order of {@link
+   * #entries}.
+   */
+  public ImmutableList<Entry<Range<K>, V>> getContaining(K key) {
+    return getOverlapping(Range.singleton(key));
+  }
+
+  /**
+   * Adds the associations of the ranges in {@code [from, to)} which overlap the nonempty {@code
+   * query}, that is, whose lower bound is below the upper bound of the query and whose upper bound
+   * is above its lower bound.
+   */
+  private void collectOverlapping(int from, int to, Range<K> query,
+      ImmutableList.Builder<Entry<Range<K>, V>> result) {
+    while (from < to) {
+      int mid = (from + to) >>> 1;
+      if (maxUpperBounds[mid].compareTo(query.lowerBound) <= 0) {
+        return; // no range of the subtree ends above the query
+      }
+      collectOverlapping(from, mid, query, result);
+      Range<K> range = ranges.get(mid);
+      if (range.lowerBound.compareTo(query.upperBound) >= 0) {
+        return; // this range and those after it start above the query
+      }
+      if (range.upperBound.compareTo(query.lowerBound) > 0) {
+        result.add(entry(mid));
+      }
+      from = mid + 1;
+    }
+  }
+
+  /**
+   * Returns the union of the ranges of this index, in which connected ranges are coalesced, as in
+   * {@link TreeRangeSet}.
+   */
+  public ImmutableRangeSet<K> toRangeSet() {
+    if (ranges.isEmpty()) {
+      return ImmutableRangeSet.of();
+    }
+    ImmutableList.Builder<Range<K>> coalesced = ImmutableList.builder();
+    Range<K> current = ranges.get(0);
+    for (int i = 1; i < ranges.size(); i++) {
+      Range<K> range = ranges.get(i);
+      if (current.isConnected(range)) {
+        current = current.span(range);
+      } else {
+        coalesced.add(current);
+        current = range;
+      }
+    }
+    ImmutableList<Range<K>> result = coalesced.add(current).build();
+    return (result.size() == 1)
+        ? ImmutableRangeSet.of(current)
+        : new ImmutableRangeSet<K>(result);
+  }
+
+  private Entry<Range<K>, V> entry(int index) {
+    return Maps.immutableEntry(ranges.get(index), values.get(index));
+  }
+
+  @Override
+  public boolean equals(@Nullable Object o) {
+    if (o instanceof ImmutableRangeIndex) {
+      ImmutableRangeIndex<?, ?> other = (ImmutableRangeIndex<?, ?>) o;
+      return ranges.equals(other.ranges) && values.equals(other.values);
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    return entries().hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return entries().toString();
+  }
+}
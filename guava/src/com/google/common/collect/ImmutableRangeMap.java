@@ -185,6 +185,41 @@ public class ImmutableRangeMap<K extends Comparable<?>, V> implements RangeMap<K
     }
   }
 
+  /**
+   * Returns a map from each of {@code keys} which this range map contains to its value. {@code
+   * keys} must be in ascending order; keys which no range contains are omitted, and repeated keys
+   * are included once.
+   *
+   * <p>Each range is found by a galloping search from the range of the previous key, so this takes
+   * time {@code O(m log(n / m))} for {@code m} keys and {@code n} ranges, rather than the {@code
+   * O(m log n)} time of calling {@link #get} for each key.
+   *
+   * @throws IllegalArgumentException if {@code keys} is not in ascending order
+   * @since 19.0
+   */
+  public ImmutableMap<K, V> getAll(Iterable<? extends K> keys) {
+    ImmutableMap.Builder<K, V> result = ImmutableMap.builder();
+    int lowerBoundsAtMost = 0;
+    K previous = null;
+    for (K key : keys) {
+      checkNotNull(key);
+      if (previous != null) {
+        int comparison = Range.compareOrThrow(previous, key);
+        checkArgument(comparison <= 0, "keys not in ascending order: %s > %s", previous, key);
+        if (comparison == 0) {
+          continue;
+        }
+      }
+      previous = key;
+      lowerBoundsAtMost = ImmutableRangeSet.countLowerBoundsAtMost(
+          ranges, lowerBoundsAtMost, Cut.belowValue(key));
+      if (lowerBoundsAtMost > 0 && ranges.get(lowerBoundsAtMost - 1).contains(key)) {
+        result.put(key, values.get(lowerBoundsAtMost - 1));
+      }
+    }
+    return result.build();
+  }
+
   @Override
   public Range<K> span() {
     if (ranges.isEmpty()) {
@@ -28,6 +28,7 @@ import com.google.common.primitives.Ints;
 import java.io.Serializable;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Set;
 
@@ -138,6 +139,54 @@ public final class ImmutableRangeSet<C extends Comparable> extends AbstractRange
     return null;
   }
 
+  /**
+   * Returns a map from each of {@code values} which this range set contains to the range which
+   * contains it. {@code values} must be in ascending order; values which no range contains are
+   * omitted, and repeated values are included once.
+   *
+   * <p>Each range is found by a galloping search from the range of the previous value, so this
+   * takes time {@code O(m log(n / m))} for {@code m} values and {@code n} ranges, rather than the
+   * {@code O(m log n)} time of calling {@link #rangeContaining} for each value.
+   *
+   * @throws IllegalArgumentException if {@code values} is not in ascending order
+   * @since 19.0
+   */
+  public ImmutableMap<C, Range<C>> rangesContaining(Iterable<? extends C> values) {
+    ImmutableMap.Builder<C, Range<C>> result = ImmutableMap.builder();
+    int lowerBoundsAtMost = 0;
+    C previous = null;
+    for (C value : values) {
+      checkNotNull(value);
+      if (previous != null) {
+        int comparison = Range.compareOrThrow(previous, value);
+        checkArgument(comparison <= 0, "values not in ascending order: %s > %s", previous, value);
+        if (comparison == 0) {
+          continue;
+        }
+      }
+      previous = value;
+      lowerBoundsAtMost = countLowerBoundsAtMost(ranges, lowerBoundsAtMost, Cut.belowValue(value));
+      if (lowerBoundsAtMost > 0) {
+        Range<C> range = ranges.get(lowerBoundsAtMost - 1);
+        if (range.contains(value)) {
+          result.put(value, range);
+        }
+      }
+    }
+    return result.build();
+  }
+
+  /**
+   * Returns the number of ranges of {@code ranges}, which are disjoint and sorted, whose lower bound
+   * is at most {@code cut}, given that it is at least {@code fromIndex}. Takes time logarithmic in
+   * the difference.
+   */
+  static <C extends Comparable<?>> int countLowerBoundsAtMost(
+      List<Range<C>> ranges, int fromIndex, Cut<C> cut) {
+    return SortedLists.gallop(Lists.transform(ranges, Range.<C>lowerBoundFn()),
+        fromIndex, cut, Ordering.<Cut<C>>natural(), false);
+  }
+
   @Override
   public Range<C> span() {
     if (ranges.isEmpty()) {
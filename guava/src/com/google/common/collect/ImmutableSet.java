@@ -133,7 +133,7 @@ public abstract class ImmutableSet<E> extends ImmutableCollection<E>
    * @throws NullPointerException if any of the first {@code n} elements of {@code elements} is
    *          null
    */
-  private static <E> ImmutableSet<E> construct(int n, Object... elements) {
+  static <E> ImmutableSet<E> construct(int n, Object... elements) {
     switch (n) {
       case 0:
         return of();
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.annotations.VisibleForTesting;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+
+/**
+ * Computes immutable copies of the intersection and difference of two sets, for
+ * {@link Sets.SetView#immutableCopy}, in a single pass which depends on the representations of
+ * the sets:
+ *
+ * <ul>
+ * <li>Two sets sorted by the same comparator are merged, and the result is an
+ *     {@link ImmutableSortedSet}. When one of them is an {@code ImmutableSortedSet} more than
+ *     {@link #GALLOP_RATIO} times larger than the other, each element of the smaller set is
+ *     instead found in the larger one by galloping, that is, by an exponential and then a binary
+ *     search from the position of the previous element. A {@link ContiguousSet} is probed with
+ *     {@code contains}, which takes constant time.
+ * <li>Otherwise, {@code set1} is iterated over, and {@code set2} is probed.
+ * </ul>
+ *
+ * <p>In every case the copy contains the instances of {@code set1}, in the order of
+ * {@code set1}, as the view does; when the elements of the smaller {@code set2} are looked up in
+ * {@code set1}, the equal element of {@code set1} is the one added.
+ *
+ * <p>Unlike {@code ImmutableSet.copyOf(view)}, none of these calls {@code size()} on the view,
+ * which would iterate over it a second time.
+ */
+@GwtIncompatible("unnecessary")
+final class ImmutableSetAlgebra {
+  private ImmutableSetAlgebra() {}
+
+  /**
+   * The ratio of the sizes of two sorted sets above which the elements of the smaller set are
+   * found in the larger set by galloping, rather than by merging the sets.
+   */
+  @VisibleForTesting static final int GALLOP_RATIO = 8;
+
+  /**
+   * Returns an immutable set of the elements of {@code set1} which are also in {@code set2}.
+   */
+  static <E> ImmutableSet<E> intersection(Set<E> set1, Set<?> set2) {
+    if (set1 instanceof SortedSet) {
+      SortedSet<E> sortedSet1 = (SortedSet<E>) set1;
+      Comparator<? super E> comparator = SortedIterables.comparator(sortedSet1);
+      if (SortedIterables.hasSameComparator(comparator, set2)) {
+        return sortedIntersection(sortedSet1, (SortedSet<?>) set2, comparator);
+      }
+    }
+    Accumulator result = new Accumulator(Math.min(set1.size(), set2.size()));
+    for (E element : set1) {
+      if (set2.contains(element)) {
+        result.add(element);
+      }
+    }
+    return result.toSet();
+  }
+
+  /**
+   * Returns an immutable set of the elements of {@code set1} which are not in {@code set2}.
+   */
+  static <E> ImmutableSet<E> difference(Set<E> set1, Set<?> set2) {
+    if (set1 instanceof SortedSet) {
+      SortedSet<E> sortedSet1 = (SortedSet<E>) set1;
+      Comparator<? super E> comparator = SortedIterables.comparator(sortedSet1);
+      if (SortedIterables.hasSameComparator(comparator, set2)) {
+        return sortedDifference(sortedSet1, (SortedSet<?>) set2, comparator);
+      }
+    }
+    Accumulator result = new Accumulator(set1.size());
+    for (E element : set1) {
+      if (!set2.contains(element)) {
+        result.add(element);
+      }
+    }
+    return result.toSet();
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"}) // the sets have the same comparator
+  private static <E> ImmutableSortedSet<E> sortedIntersection(
+      SortedSet<E> set1, SortedSet<?> set2, Comparator<? super E> comparator) {
+    Comparator<Object> unsafeComparator = (Comparator<Object>) comparator;
+    if (set1 instanceof ContiguousSet && set2 instanceof ContiguousSet) {
+      ContiguousSet<Comparable> contiguousSet1 = (ContiguousSet<Comparable>) set1;
+      ContiguousSet<Comparable> contiguousSet2 = (ContiguousSet<Comparable>) set2;
+      if (contiguousSet1.domain.equals(contiguousSet2.domain)) {
+        return (ImmutableSortedSet<E>) contiguousSet1.intersection(contiguousSet2);
+      }
+    }
+    int size1 = set1.size();
+    int size2 = set2.size();
+    Set<?> smaller = (size1 <= size2) ? set1 : set2;
+    Set<?> larger = (size1 <= size2) ? set2 : set1;
+    Accumulator result = new Accumulator(Math.min(size1, size2));
+    if (larger instanceof ContiguousSet) {
+      for (Object element : smaller) {
+        if (larger.contains(element)) {
+          result.add((smaller == set1)
+              ? element
+              : ((ImmutableSortedSet<Object>) larger).ceiling(element));
+        }
+      }
+    } else if (larger instanceof ImmutableSortedSet
+        && larger.size() / GALLOP_RATIO > smaller.size()) {
+      List<?> largerList = ((ImmutableSortedSet<?>) larger).asList();
+      int index = 0;
+      for (Object element : smaller) {
+        index = SortedLists.gallop(largerList, index, element, unsafeComparator, true);
+        if (index == largerList.size()) {
+          break;
+        } else if (unsafeComparator.compare(largerList.get(index), element) == 0) {
+          result.add((smaller == set1) ? element : largerList.get(index));
+          index++;
+        }
+      }
+    } else {
+      Iterator<E> iterator1 = set1.iterator();
+      Iterator<?> iterator2 = set2.iterator();
+      if (iterator1.hasNext() && iterator2.hasNext()) {
+        E element1 = iterator1.next();
+        Object element2 = iterator2.next();
+        while (true) {
+          int comparison = unsafeComparator.compare(element1, element2);
+          if (comparison == 0) {
+            result.add(element1);
+          }
+          if (comparison <= 0) {
+            if (!iterator1.hasNext()) {
+              break;
+            }
+            element1 = iterator1.next();
+          }
+          if (comparison >= 0) {
+            if (!iterator2.hasNext()) {
+              break;
+            }
+            element2 = iterator2.next();
+          }
+        }
+      }
+    }
+    return result.toSortedSet(comparator);
+  }
+
+  @SuppressWarnings("unchecked") // the sets have the same comparator
+  private static <E> ImmutableSortedSet<E> sortedDifference(
+      SortedSet<E> set1, SortedSet<?> set2, Comparator<? super E> comparator) {
+    Comparator<Object> unsafeComparator = (Comparator<Object>) comparator;
+    int size1 = set1.size();
+    int size2 = set2.size();
+    Accumulator result = new Accumulator(size1);
+    if (set2 instanceof ContiguousSet) {
+      for (E element : set1) {
+        if (!set2.contains(element)) {
+          result.add(element);
+        }
+      }
+    } else if (set2 instanceof ImmutableSortedSet && size2 / GALLOP_RATIO > size1) {
+      List<?> list2 = ((ImmutableSortedSet<?>) set2).asList();
+      int index = 0;
+      for (E element : set1) {
+        index = SortedLists.gallop(list2, index, element, unsafeComparator, true);
+        if (index == list2.size() || unsafeComparator.compare(list2.get(index), element) != 0) {
+          result.add(element);
+        }
+      }
+    } else {
+      Iterator<?> iterator2 = set2.iterator();
+      boolean exhausted2 = !iterator2.hasNext();
+      Object element2 = exhausted2 ? null : iterator2.next();
+      for (E element1 : set1) {
+        int comparison = -1;
+        while (!exhausted2 && (comparison = unsafeComparator.compare(element1, element2)) > 0) {
+          if (iterator2.hasNext()) {
+            element2 = iterator2.next();
+          } else {
+            exhausted2 = true;
+            comparison = -1;
+          }
+        }
+        if (exhausted2 || comparison != 0) {
+          result.add(element1);
+        }
+      }
+    }
+    return result.toSortedSet(comparator);
+  }
+
+  /**
+   * An array of the distinct elements of a result, in order.
+   */
+  private static final class Accumulator {
+    Object[] elements;
+    int size;
+
+    Accumulator(int expectedSize) {
+      this.elements = new Object[Math.max(expectedSize, 4)];
+    }
+
+    void add(Object element) {
+      if (size == elements.length) {
+        elements = Arrays.copyOf(elements,
+            ImmutableCollection.Builder.expandedCapacity(size, size + 1));
+      }
+      elements[size++] = element;
+    }
+
+    <E> ImmutableSet<E> toSet() {
+      return ImmutableSet.construct(size, elements);
+    }
+
+    <E> ImmutableSortedSet<E> toSortedSet(Comparator<? super E> comparator) {
+      if (size == 0) {
+        return ImmutableSortedSet.emptySet(comparator);
+      }
+      for (int i = 0; i < size; i++) {
+        ObjectArrays.checkElementNotNull(elements[i], i);
+      }
+      return new RegularImmutableSortedSet<E>(
+          ImmutableList.<E>asImmutableList(elements, size), comparator);
+    }
+  }
+}
@@ -23,6 +23,7 @@ import static com.google.common.collect.Maps.keyOrNull;
 
 import com.google.common.annotations.Beta;
 import com.google.common.annotations.GwtCompatible;
+import com.google.common.annotations.GwtIncompatible;
 
 import java.util.Arrays;
 import java.util.Comparator;
@@ -480,6 +481,18 @@ public final class ImmutableSortedMap<K, V>
           return fromEntries(comparator, false, entries, size);
       }
     }
+
+    /**
+     * Returns a newly-created immutable sorted map, exactly as {@link #build} does; its keys are not
+     * located by a perfect hash function.
+     *
+     * @since 19.0
+     */
+    @Beta
+    @GwtIncompatible("PerfectHashImmutableMap")
+    @Override public ImmutableSortedMap<K, V> buildPerfectHash() {
+      return build();
+    }
   }
   
   private final transient RegularImmutableSortedSet<K> keySet;
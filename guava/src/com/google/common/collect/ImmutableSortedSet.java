@@ -20,6 +20,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.ObjectArrays.checkElementsNotNull;
 
+import com.google.common.annotations.Beta;
 import com.google.common.annotations.GwtCompatible;
 import com.google.common.annotations.GwtIncompatible;
 
@@ -32,6 +33,7 @@ import java.util.Comparator;
 import java.util.Iterator;
 import java.util.NavigableSet;
 import java.util.SortedSet;
+import java.util.concurrent.Executor;
 
 import javax.annotation.Nullable;
 
@@ -341,6 +343,42 @@ public abstract class ImmutableSortedSet<E> extends ImmutableSortedSetFauxveride
     return copyOf(comparator, (Iterable<? extends E>) elements);
   }
 
+  /**
+   * Returns an immutable sorted set containing the given elements sorted by
+   * the given {@code Comparator}, like {@link #copyOf(Comparator, Iterable)},
+   * but sorts large inputs on several threads of {@code executor} by a parallel
+   * merge sort, which also discards duplicates in parallel. When multiple
+   * elements are equivalent according to {@code compare()}, only the first one
+   * specified is included. The calling thread takes part in the sort, running
+   * any of its tasks which no thread of {@code executor} has started. So
+   * {@code executor} may run tasks on the calling thread or reject them, and
+   * this method may be called from a task of {@code executor} without the risk
+   * of a deadlock.
+   *
+   * <p>{@code comparator} must be safe to use concurrently from several
+   * threads.
+   *
+   * @throws NullPointerException if {@code comparator}, {@code executor} or
+   *         any of {@code elements} is null
+   * @since 19.0
+   */
+  @Beta
+  @GwtIncompatible("java.util.concurrent")
+  public static <E> ImmutableSortedSet<E> parallelCopyOf(Comparator<? super E> comparator,
+      Iterable<? extends E> elements, Executor executor) {
+    checkNotNull(comparator);
+    checkNotNull(executor);
+    @SuppressWarnings("unchecked") // elements only contains E's; it's safe.
+    E[] array = (E[]) Iterables.toArray(elements);
+    checkElementsNotNull(array);
+    int size = ParallelMergeSort.sort(array, comparator, true, executor);
+    if (size == 0) {
+      return emptySet(comparator);
+    }
+    return new RegularImmutableSortedSet<E>(
+        ImmutableList.<E>asImmutableList(array, size), comparator);
+  }
+
   /**
    * Returns an immutable sorted set containing the elements of a sorted set,
    * sorted by the same {@code Comparator}. That behavior differs from {@link
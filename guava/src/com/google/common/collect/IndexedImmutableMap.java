@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import com.google.common.annotations.GwtIncompatible;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Skeletal implementation of {@link ImmutableMap} for maps which store their keys and values
+ * directly, rather than in entry objects, and can return the key and value at each position of
+ * their iteration order. Entries are created as they are requested, so iterating over the entry
+ * set or the values allocates, whereas iterating over the keys does not.
+ */
+@GwtIncompatible("unnecessary")
+abstract class IndexedImmutableMap<K, V> extends ImmutableMap<K, V> {
+  /** Returns the key at {@code index} in iteration order. */
+  abstract K keyAt(int index);
+
+  /** Returns the value at {@code index} in iteration order. */
+  abstract V valueAt(int index);
+
+  @Override boolean isPartialView() {
+    return false;
+  }
+
+  @Override
+  UnmodifiableIterator<K> keyIterator() {
+    return new UnmodifiableIterator<K>() {
+      int index = 0;
+
+      @Override public boolean hasNext() {
+        return index < size();
+      }
+
+      @Override public K next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return keyAt(index++);
+      }
+    };
+  }
+
+  @Override
+  @SuppressWarnings("serial") // uses writeReplace(), not default serialization
+  ImmutableSet<Entry<K, V>> createEntrySet() {
+    return new ImmutableMapEntrySet<K, V>() {
+      @Override
+      ImmutableMap<K, V> map() {
+        return IndexedImmutableMap.this;
+      }
+
+      @Override
+      public UnmodifiableIterator<Entry<K, V>> iterator() {
+        return asList().iterator();
+      }
+
+      @Override
+      ImmutableList<Entry<K, V>> createAsList() {
+        return new ImmutableAsList<Entry<K, V>>() {
+          @Override
+          public Entry<K, V> get(int index) {
+            return entryOf(keyAt(index), valueAt(index));
+          }
+
+          @Override
+          ImmutableCollection<Entry<K, V>> delegateCollection() {
+            return entrySet();
+          }
+        };
+      }
+    };
+  }
+
+  // This class is never actually serialized directly, but we have to make the
+  // warning go away (and suppressing would suppress for all nested classes too)
+  private static final long serialVersionUID = 0;
+}
@@ -0,0 +1,414 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.CollectPreconditions.checkNonnegative;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtCompatible;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.base.Objects;
+import com.google.common.primitives.Ints;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * A multimap from {@code int} keys to lists of values, which does not box its keys. It stores its
+ * keys, and the array of values of each key, in parallel arrays which form an open-addressed hash
+ * table, so it needs no entry or collection object per key, unlike an {@link ArrayListMultimap
+ * ArrayListMultimap<Integer, V>}. The values of a key are kept in the order in which they were
+ * added, and may include duplicates and nulls.
+ *
+ * <p>{@link #get} returns an unmodifiable snapshot of the values of a key, which is not copied:
+ * the values of each key are copied when one of them is removed, rather than when they are read.
+ *
+ * <p>This class is not thread-safe, and the order in which its keys are reported is unspecified.
+ *
+ * @see LongListMultimap
+ * @since 19.0
+ */
+@Beta
+@GwtCompatible
+public final class IntListMultimap<V> implements Serializable {
+  private static final int DEFAULT_EXPECTED_KEYS = 16;
+  private static final int DEFAULT_VALUES_PER_KEY = 2;
+  private static final double MAX_LOAD_FACTOR = 0.7;
+  private static final int MAX_TABLE_SIZE = Ints.MAX_POWER_OF_TWO;
+
+  /** The value count of a slot which has never been used. */
+  private static final int EMPTY = 0;
+
+  /** The value count of a slot whose key was removed, which lookups must probe past. */
+  private static final int REMOVED = -1;
+
+  // the keys in hashed positions
+  private transient int[] keys;
+  // the values of the key in each slot, in an array which may have room for more
+  private transient Object[][] values;
+  // the number of values of the key in each slot, or EMPTY or REMOVED
+  private transient int[] valueCounts;
+  // the number of slots whose value count is positive
+  private transient int keyCount;
+  // the number of slots which are not EMPTY
+  private transient int usedSlots;
+  private transient int size;
+
+  /** Creates a new, empty {@code IntListMultimap}. */
+  public static <V> IntListMultimap<V> create() {
+    return new IntListMultimap<V>(DEFAULT_EXPECTED_KEYS);
+  }
+
+  /**
+   * Creates a new, empty {@code IntListMultimap} with enough capacity to hold the specified
+   * number of keys without rehashing.
+   *
+   * @throws IllegalArgumentException if {@code expectedKeys} is negative
+   */
+  public static <V> IntListMultimap<V> create(int expectedKeys) {
+    return new IntListMultimap<V>(expectedKeys);
+  }
+
+  private IntListMultimap(int expectedKeys) {
+    checkNonnegative(expectedKeys, "expectedKeys");
+    allocate(tableSize(expectedKeys));
+  }
+
+  private void allocate(int tableSize) {
+    keys = new int[tableSize];
+    values = new Object[tableSize][];
+    valueCounts = new int[tableSize];
+    usedSlots = keyCount;
+  }
+
+  /** Returns the size of a table which can hold {@code expectedKeys} keys. */
+  private static int tableSize(int expectedKeys) {
+    int tableSize = 8;
+    while (tableSize * MAX_LOAD_FACTOR < expectedKeys) {
+      checkArgument(tableSize < MAX_TABLE_SIZE, "multimap too large");
+      tableSize <<= 1;
+    }
+    return tableSize;
+  }
+
+  private static int hash(int key) {
+    return Hashing.smear(key);
+  }
+
+  /** Returns the slot holding {@code key}, or -1 if it is absent. */
+  private int find(int key) {
+    int mask = valueCounts.length - 1;
+    for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+      int valueCount = valueCounts[i];
+      if (valueCount == EMPTY) {
+        return -1;
+      } else if (valueCount != REMOVED && keys[i] == key) {
+        return i;
+      }
+    }
+  }
+
+  /** Inserts a key known to be absent with at least one value, without checking capacity. */
+  private void insert(int key, Object[] keyValues, int valueCount) {
+    int mask = valueCounts.length - 1;
+    for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+      if (valueCounts[i] <= 0) {
+        if (valueCounts[i] == EMPTY) {
+          usedSlots++;
+        }
+        keys[i] = key;
+        values[i] = keyValues;
+        valueCounts[i] = valueCount;
+        keyCount++;
+        size += valueCount;
+        return;
+      }
+    }
+  }
+
+  /** Rehashes the table if inserting one more key would exceed its load factor. */
+  private void ensureCapacity() {
+    if (usedSlots + 1 > valueCounts.length * MAX_LOAD_FACTOR) {
+      int[] oldKeys = keys;
+      Object[][] oldValues = values;
+      int[] oldValueCounts = valueCounts;
+      // leave room to grow, even if discarding the removed slots would be enough
+      int tableSize = tableSize(2 * (keyCount + 1));
+      keyCount = 0;
+      size = 0;
+      allocate(tableSize);
+      for (int i = 0; i < oldValueCounts.length; i++) {
+        if (oldValueCounts[i] > 0) {
+          insert(oldKeys[i], oldValues[i], oldValueCounts[i]);
+        }
+      }
+    }
+  }
+
+  private void removeSlot(int slot) {
+    size -= valueCounts[slot];
+    values[slot] = null;
+    valueCounts[slot] = REMOVED;
+    keyCount--;
+  }
+
+  @SuppressWarnings("unchecked") // the arrays only hold V's
+  private List<V> valuesOf(int slot) {
+    List<Object> keyValues = Arrays.asList(values[slot]).subList(0, valueCounts[slot]);
+    return (List<V>) Collections.unmodifiableList(keyValues);
+  }
+
+  /** Returns the number of key-value pairs in this multimap. */
+  public int size() {
+    return size;
+  }
+
+  /** Returns the number of distinct keys in this multimap. */
+  public int keyCount() {
+    return keyCount;
+  }
+
+  /** Returns {@code true} if this multimap contains no key-value pairs. */
+  public boolean isEmpty() {
+    return keyCount == 0;
+  }
+
+  /** Returns {@code true} if this multimap contains at least one value for {@code key}. */
+  public boolean containsKey(int key) {
+    return find(key) >= 0;
+  }
+
+  /**
+   * Returns an unmodifiable list of the values of {@code key}, in the order in which they were
+   * added, or an empty list if there are none. The list is a snapshot, which does not reflect
+   * later changes to the multimap.
+   */
+  public List<V> get(int key) {
+    int slot = find(key);
+    return (slot < 0) ? Collections.<V>emptyList() : valuesOf(slot);
+  }
+
+  /**
+   * Adds {@code value} to the end of the values of {@code key}.
+   *
+   * @return {@code true}, since the multimap always changes
+   */
+  public boolean put(int key, @Nullable V value) {
+    checkArgument(size < Integer.MAX_VALUE, "multimap too large");
+    int slot = find(key);
+    if (slot < 0) {
+      ensureCapacity();
+      Object[] keyValues = new Object[DEFAULT_VALUES_PER_KEY];
+      keyValues[0] = value;
+      insert(key, keyValues, 1);
+      return true;
+    }
+    Object[] keyValues = values[slot];
+    int valueCount = valueCounts[slot];
+    if (valueCount == keyValues.length) {
+      // grow by half; valueCount + 1 can't overflow, since it is at most size
+      int newLength = valueCount + (valueCount >> 1) + 1;
+      keyValues = values[slot] = ObjectArrays.arraysCopyOf(keyValues,
+          (newLength < 0) ? Integer.MAX_VALUE : newLength);
+    }
+    // earlier snapshots of the values end before this index, so they are not affected
+    keyValues[valueCount] = value;
+    valueCounts[slot] = valueCount + 1;
+    size++;
+    return true;
+  }
+
+  /**
+   * Adds each of {@code values}, in order, to the end of the values of {@code key}.
+   *
+   * @return {@code true} if the multimap changed
+   */
+  public boolean putAll(int key, Iterable<? extends V> values) {
+    boolean changed = false;
+    for (V value : values) {
+      changed |= put(key, value);
+    }
+    return changed;
+  }
+
+  /**
+   * Removes the first occurrence of {@code value} from the values of {@code key}.
+   *
+   * @return {@code true} if the multimap changed
+   */
+  public boolean remove(int key, @Nullable Object value) {
+    int slot = find(key);
+    if (slot < 0) {
+      return false;
+    }
+    Object[] keyValues = values[slot];
+    int valueCount = valueCounts[slot];
+    for (int i = 0; i < valueCount; i++) {
+      if (Objects.equal(keyValues[i], value)) {
+        if (valueCount == 1) {
+          removeSlot(slot);
+        } else {
+          // copy, rather than shift, so that earlier snapshots of the values are not affected
+          Object[] remaining = new Object[keyValues.length];
+          System.arraycopy(keyValues, 0, remaining, 0, i);
+          System.arraycopy(keyValues, i + 1, remaining, i, valueCount - i - 1);
+          values[slot] = remaining;
+          valueCounts[slot] = valueCount - 1;
+          size--;
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Removes all values of {@code key}.
+   *
+   * @return the values which were removed, as an unmodifiable list, which is empty if there were
+   *     none
+   */
+  public List<V> removeAll(int key) {
+    int slot = find(key);
+    if (slot < 0) {
+      return Collections.emptyList();
+    }
+    List<V> removed = valuesOf(slot);
+    removeSlot(slot);
+    return removed;
+  }
+
+  /** Removes all key-value pairs from this multimap. */
+  public void clear() {
+    keyCount = 0;
+    size = 0;
+    allocate(tableSize(DEFAULT_EXPECTED_KEYS));
+  }
+
+  /** Returns the distinct keys of this multimap, in an unspecified order. */
+  public int[] toKeyArray() {
+    int[] result = new int[keyCount];
+    int index = 0;
+    for (int i = 0; i < valueCounts.length; i++) {
+      if (valueCounts[i] > 0) {
+        result[index++] = keys[i];
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns {@code true} if {@code object} is an {@code IntListMultimap} whose keys have the same
+   * values, in the same order, as in this multimap.
+   */
+  @Override public boolean equals(@Nullable Object object) {
+    if (object == this) {
+      return true;
+    } else if (object instanceof IntListMultimap) {
+      IntListMultimap<?> that = (IntListMultimap<?>) object;
+      if (size != that.size || keyCount != that.keyCount) {
+        return false;
+      }
+      for (int i = 0; i < valueCounts.length; i++) {
+        if (valueCounts[i] > 0 && !valuesOf(i).equals(that.get(keys[i]))) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns the hash code of this multimap, which is the same as that of a {@link ListMultimap
+   * ListMultimap<Integer, V>} with the same keys and values.
+   */
+  @Override public int hashCode() {
+    int hashCode = 0;
+    for (int i = 0; i < valueCounts.length; i++) {
+      if (valueCounts[i] > 0) {
+        hashCode += keys[i] ^ valuesOf(i).hashCode();
+      }
+    }
+    return hashCode;
+  }
+
+  /**
+   * Returns a string representation of this multimap, in the format of a {@link ListMultimap}.
+   */
+  @Override public String toString() {
+    StringBuilder builder = new StringBuilder().append('{');
+    boolean first = true;
+    for (int i = 0; i < valueCounts.length; i++) {
+      if (valueCounts[i] > 0) {
+        if (!first) {
+          builder.append(", ");
+        }
+        first = false;
+        builder.append(keys[i]).append('=').append(valuesOf(i));
+      }
+    }
+    return builder.append('}').toString();
+  }
+
+  /**
+   * @serialData the number of distinct keys, followed by each key, the number of its values, and
+   *     its values in order
+   */
+  @GwtIncompatible("java.io.ObjectOutputStream")
+  private void writeObject(ObjectOutputStream stream) throws IOException {
+    stream.defaultWriteObject();
+    stream.writeInt(keyCount);
+    for (int i = 0; i < valueCounts.length; i++) {
+      if (valueCounts[i] > 0) {
+        stream.writeInt(keys[i]);
+        stream.writeInt(valueCounts[i]);
+        for (int j = 0; j < valueCounts[i]; j++) {
+          stream.writeObject(values[i][j]);
+        }
+      }
+    }
+  }
+
+  @GwtIncompatible("java.io.ObjectInputStream")
+  private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+    stream.defaultReadObject();
+    int distinctKeys = Serialization.readCount(stream);
+    allocate(tableSize(distinctKeys));
+    for (int i = 0; i < distinctKeys; i++) {
+      int key = stream.readInt();
+      int valueCount = Serialization.readCount(stream);
+      Object[] keyValues = new Object[valueCount];
+      for (int j = 0; j < valueCount; j++) {
+        keyValues[j] = stream.readObject();
+      }
+      if (valueCount > 0) {
+        insert(key, keyValues, valueCount);
+      }
+    }
+  }
+
+  private static final long serialVersionUID = 0;
+}
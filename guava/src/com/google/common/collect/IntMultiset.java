@@ -0,0 +1,468 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.CollectPreconditions.checkNonnegative;
+import static com.google.common.collect.CollectPreconditions.checkRemove;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtCompatible;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.primitives.Ints;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.annotation.Nullable;
+
+/**
+ * A multiset of {@code int} values, which counts its elements without boxing them. It stores its
+ * elements and their counts in two parallel arrays, which form an open-addressed hash table, so
+ * it uses a fraction of the memory of a {@link HashMultiset HashMultiset<Integer>}, which holds a
+ * boxed element, a map entry and a count object for each distinct element.
+ *
+ * <p>Where a {@link Multiset} is needed, {@link #asMultiset} views this multiset as a {@code
+ * Multiset<Integer>}, boxing elements as they pass through the view.
+ *
+ * <p>Like {@link HashMultiset}, this class is not thread-safe, and the order in which its elements
+ * are reported is unspecified.
+ *
+ * @see LongMultiset
+ * @since 19.0
+ */
+@Beta
+@GwtCompatible
+public final class IntMultiset implements Serializable {
+  private static final int DEFAULT_EXPECTED_ELEMENTS = 16;
+  private static final double MAX_LOAD_FACTOR = 0.7;
+  private static final int MAX_TABLE_SIZE = Ints.MAX_POWER_OF_TWO;
+
+  /** The count of a slot which has never been used. */
+  private static final int EMPTY = 0;
+
+  /** The count of a slot whose element was removed, which lookups must probe past. */
+  private static final int REMOVED = -1;
+
+  // the elements in hashed positions
+  private transient int[] elements;
+  // the count of the element in each slot, or EMPTY or REMOVED
+  private transient int[] counts;
+  // the number of slots whose count is positive
+  private transient int distinctElements;
+  // the number of slots which are not EMPTY
+  private transient int usedSlots;
+  private transient long size;
+
+  /** Creates a new, empty {@code IntMultiset}. */
+  public static IntMultiset create() {
+    return new IntMultiset(DEFAULT_EXPECTED_ELEMENTS);
+  }
+
+  /**
+   * Creates a new, empty {@code IntMultiset} with enough capacity to hold the specified number of
+   * distinct elements without rehashing.
+   *
+   * @throws IllegalArgumentException if {@code expectedDistinctElements} is negative
+   */
+  public static IntMultiset create(int expectedDistinctElements) {
+    return new IntMultiset(expectedDistinctElements);
+  }
+
+  private IntMultiset(int expectedDistinctElements) {
+    checkNonnegative(expectedDistinctElements, "expectedDistinctElements");
+    allocate(tableSize(expectedDistinctElements));
+  }
+
+  private void allocate(int tableSize) {
+    elements = new int[tableSize];
+    counts = new int[tableSize];
+    usedSlots = distinctElements;
+  }
+
+  /** Returns the size of a table which can hold {@code expectedElements} elements. */
+  private static int tableSize(int expectedElements) {
+    int tableSize = 8;
+    while (tableSize * MAX_LOAD_FACTOR < expectedElements) {
+      checkArgument(tableSize < MAX_TABLE_SIZE, "collection too large");
+      tableSize <<= 1;
+    }
+    return tableSize;
+  }
+
+  private static int hash(int element) {
+    return Hashing.smear(element);
+  }
+
+  /** Returns the slot holding {@code element}, or -1 if it is absent. */
+  private int find(int element) {
+    int mask = counts.length - 1;
+    for (int i = hash(element) & mask; ; i = (i + 1) & mask) {
+      int count = counts[i];
+      if (count == EMPTY) {
+        return -1;
+      } else if (count != REMOVED && elements[i] == element) {
+        return i;
+      }
+    }
+  }
+
+  /** Inserts an element known to be absent with a positive count, without checking capacity. */
+  private void insert(int element, int count) {
+    int mask = counts.length - 1;
+    for (int i = hash(element) & mask; ; i = (i + 1) & mask) {
+      if (counts[i] <= 0) {
+        if (counts[i] == EMPTY) {
+          usedSlots++;
+        }
+        elements[i] = element;
+        counts[i] = count;
+        distinctElements++;
+        size += count;
+        return;
+      }
+    }
+  }
+
+  /** Rehashes the table if inserting one more element would exceed its load factor. */
+  private void ensureCapacity() {
+    if (usedSlots + 1 > counts.length * MAX_LOAD_FACTOR) {
+      int[] oldElements = elements;
+      int[] oldCounts = counts;
+      // leave room to grow, even if discarding the removed slots would be enough
+      int tableSize = tableSize(2 * (distinctElements + 1));
+      distinctElements = 0;
+      size = 0;
+      allocate(tableSize);
+      for (int i = 0; i < oldCounts.length; i++) {
+        if (oldCounts[i] > 0) {
+          insert(oldElements[i], oldCounts[i]);
+        }
+      }
+    }
+  }
+
+  private void removeSlot(int slot) {
+    size -= counts[slot];
+    counts[slot] = REMOVED;
+    distinctElements--;
+  }
+
+  /**
+   * Returns the total number of occurrences of all elements in this multiset, or {@link
+   * Integer#MAX_VALUE} if there are more.
+   */
+  public int size() {
+    return Ints.saturatedCast(size);
+  }
+
+  /** Returns the number of distinct elements in this multiset. */
+  public int distinctElements() {
+    return distinctElements;
+  }
+
+  /** Returns {@code true} if this multiset contains no elements. */
+  public boolean isEmpty() {
+    return distinctElements == 0;
+  }
+
+  /** Returns {@code true} if this multiset contains at least one occurrence of {@code element}. */
+  public boolean contains(int element) {
+    return find(element) >= 0;
+  }
+
+  /** Returns the number of occurrences of {@code element} in this multiset. */
+  public int count(int element) {
+    int slot = find(element);
+    return (slot < 0) ? 0 : counts[slot];
+  }
+
+  /**
+   * Adds a single occurrence of {@code element} to this multiset.
+   *
+   * @return the count of the element before the operation
+   * @throws IllegalArgumentException if the count of the element would exceed {@link
+   *     Integer#MAX_VALUE}
+   */
+  public int add(int element) {
+    return add(element, 1);
+  }
+
+  /**
+   * Adds a number of occurrences of {@code element} to this multiset.
+   *
+   * @return the count of the element before the operation; possibly zero
+   * @throws IllegalArgumentException if {@code occurrences} is negative, or if the count of the
+   *     element would exceed {@link Integer#MAX_VALUE}
+   */
+  public int add(int element, int occurrences) {
+    checkNonnegative(occurrences, "occurrences");
+    int slot = find(element);
+    if (slot >= 0) {
+      int oldCount = counts[slot];
+      long newCount = (long) oldCount + occurrences;
+      checkArgument(newCount <= Integer.MAX_VALUE, "too many occurrences: %s", newCount);
+      counts[slot] = (int) newCount;
+      size += occurrences;
+      return oldCount;
+    } else if (occurrences > 0) {
+      ensureCapacity();
+      insert(element, occurrences);
+    }
+    return 0;
+  }
+
+  /**
+   * Removes a number of occurrences of {@code element} from this multiset. If the multiset
+   * contains fewer than this number of occurrences, all of them are removed.
+   *
+   * @return the count of the element before the operation; possibly zero
+   * @throws IllegalArgumentException if {@code occurrences} is negative
+   */
+  public int remove(int element, int occurrences) {
+    checkNonnegative(occurrences, "occurrences");
+    int slot = find(element);
+    if (slot < 0) {
+      return 0;
+    }
+    int oldCount = counts[slot];
+    if (occurrences >= oldCount) {
+      removeSlot(slot);
+    } else {
+      counts[slot] = oldCount - occurrences;
+      size -= occurrences;
+    }
+    return oldCount;
+  }
+
+  /**
+   * Adds or removes the necessary occurrences of {@code element} so that it has the desired
+   * count.
+   *
+   * @return the count of the element before the operation; possibly zero
+   * @throws IllegalArgumentException if {@code count} is negative
+   */
+  public int setCount(int element, int count) {
+    checkNonnegative(count, "count");
+    int slot = find(element);
+    if (slot < 0) {
+      if (count > 0) {
+        ensureCapacity();
+        insert(element, count);
+      }
+      return 0;
+    }
+    int oldCount = counts[slot];
+    if (count == 0) {
+      removeSlot(slot);
+    } else {
+      counts[slot] = count;
+      size += count - oldCount;
+    }
+    return oldCount;
+  }
+
+  /** Removes all elements from this multiset. */
+  public void clear() {
+    distinctElements = 0;
+    size = 0;
+    allocate(tableSize(DEFAULT_EXPECTED_ELEMENTS));
+  }
+
+  /** Returns the distinct elements of this multiset, in an unspecified order. */
+  public int[] toElementArray() {
+    int[] result = new int[distinctElements];
+    int index = 0;
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] > 0) {
+        result[index++] = elements[i];
+      }
+    }
+    return result;
+  }
+
+  private transient Multiset<Integer> multisetView;
+
+  /**
+   * Returns a view of this multiset as a {@code Multiset<Integer>}. Changes to either are
+   * reflected in the other. The view supports all optional operations, including removal through
+   * its iterators, but like this multiset it does not permit null elements.
+   */
+  public Multiset<Integer> asMultiset() {
+    Multiset<Integer> result = multisetView;
+    return (result == null) ? multisetView = new MultisetView() : result;
+  }
+
+  private final class MultisetView extends AbstractMultiset<Integer> {
+    @Override public int size() {
+      return IntMultiset.this.size();
+    }
+
+    @Override public int count(@Nullable Object element) {
+      return (element instanceof Integer) ? IntMultiset.this.count((Integer) element) : 0;
+    }
+
+    @Override public int add(@Nullable Integer element, int occurrences) {
+      return IntMultiset.this.add(checkNotNull(element), occurrences);
+    }
+
+    @Override public int remove(@Nullable Object element, int occurrences) {
+      checkNonnegative(occurrences, "occurrences");
+      return (element instanceof Integer)
+          ? IntMultiset.this.remove((Integer) element, occurrences)
+          : 0;
+    }
+
+    @Override public int setCount(@Nullable Integer element, int count) {
+      return IntMultiset.this.setCount(checkNotNull(element), count);
+    }
+
+    @Override public void clear() {
+      IntMultiset.this.clear();
+    }
+
+    @Override int distinctElements() {
+      return distinctElements;
+    }
+
+    @Override Iterator<Entry<Integer>> entryIterator() {
+      return new Iterator<Entry<Integer>>() {
+        // removals leave REMOVED slots behind, so they do not move the remaining elements
+        final int[] iteratedCounts = counts;
+        int next = advance(0);
+        int last = -1;
+
+        int advance(int slot) {
+          while (slot < iteratedCounts.length && iteratedCounts[slot] <= 0) {
+            slot++;
+          }
+          return slot;
+        }
+
+        @Override public boolean hasNext() {
+          return next < iteratedCounts.length;
+        }
+
+        @Override public Entry<Integer> next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          if (iteratedCounts != counts) {
+            throw new ConcurrentModificationException();
+          }
+          last = next;
+          next = advance(next + 1);
+          final int element = elements[last];
+          return new Multisets.AbstractEntry<Integer>() {
+            @Override public Integer getElement() {
+              return element;
+            }
+
+            @Override public int getCount() {
+              return IntMultiset.this.count(element);
+            }
+          };
+        }
+
+        @Override public void remove() {
+          checkRemove(last >= 0);
+          if (iteratedCounts != counts) {
+            throw new ConcurrentModificationException();
+          }
+          if (counts[last] > 0) {
+            removeSlot(last);
+          }
+          last = -1;
+        }
+      };
+    }
+  }
+
+  /**
+   * Returns {@code true} if {@code object} is an {@code IntMultiset} with the same elements and
+   * counts as this one.
+   */
+  @Override public boolean equals(@Nullable Object object) {
+    if (object == this) {
+      return true;
+    } else if (object instanceof IntMultiset) {
+      IntMultiset that = (IntMultiset) object;
+      if (size != that.size || distinctElements != that.distinctElements) {
+        return false;
+      }
+      for (int i = 0; i < counts.length; i++) {
+        if (counts[i] > 0 && that.count(elements[i]) != counts[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns the hash code of this multiset, which is the same as that of {@link #asMultiset}.
+   */
+  @Override public int hashCode() {
+    int hashCode = 0;
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] > 0) {
+        hashCode += elements[i] ^ counts[i];
+      }
+    }
+    return hashCode;
+  }
+
+  /** Returns a string representation of this multiset, in the format of {@link #asMultiset}. */
+  @Override public String toString() {
+    return asMultiset().toString();
+  }
+
+  /**
+   * @serialData the number of distinct elements, followed by each element and its count
+   */
+  @GwtIncompatible("java.io.ObjectOutputStream")
+  private void writeObject(ObjectOutputStream stream) throws IOException {
+    stream.defaultWriteObject();
+    stream.writeInt(distinctElements);
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] > 0) {
+        stream.writeInt(elements[i]);
+        stream.writeInt(counts[i]);
+      }
+    }
+  }
+
+  @GwtIncompatible("java.io.ObjectInputStream")
+  private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+    stream.defaultReadObject();
+    int distinctElements = Serialization.readCount(stream);
+    allocate(tableSize(distinctElements));
+    for (int i = 0; i < distinctElements; i++) {
+      int element = stream.readInt();
+      setCount(element, stream.readInt());
+    }
+  }
+
+  private static final long serialVersionUID = 0;
+}
@@ -63,6 +63,35 @@ public final class Interners {
     return new WeakInterner<E>();
   }
 
+  /**
+   * Returns a new thread-safe interner of strings which retains a strong reference to at most
+   * {@code maximumSize} canonical strings, evicting one which has not been interned recently when
+   * it is full. Unlike {@link #newWeakInterner}, it needs no reference object per string, and it
+   * can intern the characters of a {@link CharSequence} without creating a string when it finds a
+   * canonical one.
+   *
+   * @throws IllegalArgumentException if {@code maximumSize} is not positive
+   * @since 19.0
+   */
+  @GwtIncompatible("java.util.concurrent.atomic")
+  public static StringInterner newStringInterner(int maximumSize) {
+    return new StringInterner(maximumSize);
+  }
+
+  /**
+   * Returns a new thread-safe interner of byte arrays, by their contents, which retains a strong
+   * reference to at most {@code maximumSize} canonical arrays, evicting one which has not been
+   * interned recently when it is full. It can intern a range of an array without copying it when
+   * it finds a canonical array.
+   *
+   * @throws IllegalArgumentException if {@code maximumSize} is not positive
+   * @since 19.0
+   */
+  @GwtIncompatible("java.util.concurrent.atomic")
+  public static ByteArrayInterner newByteArrayInterner(int maximumSize) {
+    return new ByteArrayInterner(maximumSize);
+  }
+
   private static class WeakInterner<E> implements Interner<E> {
     // MapMaker is our friend, we know about this type
     private final MapMakerInternalMap<E, Dummy> map = new MapMaker()
@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtCompatible;
+
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+/**
+ * A fixed-size table of {@code long} values, like an {@link ArrayTable}, which keeps its values
+ * unboxed in one {@code long[]} array per column.
+ *
+ * <p>The allowed row and column keys must be supplied when the table is created. The table always
+ * contains a value for every pair of a row key and a column key, which is {@code 0} unless
+ * another value is provided. Its values are read and written with unboxed accessors, by keys or by
+ * the positions of the keys in {@link #rowKeyList} and {@link #columnKeyList}; the sum, minimum
+ * and maximum of a row or a column are computed without boxing, and fastest for a column. {@link
+ * #asTable} views the table as a {@link Table} of boxed values.
+ *
+ * <p>Null row keys or column keys are not permitted. The table is serializable if its keys are.
+ *
+ * <p>Note that this implementation is not synchronized. As with {@link ArrayTable}, access to the
+ * table must be synchronized if one thread writes to a cell which another thread reads.
+ *
+ * @since 19.0
+ */
+@Beta
+@GwtCompatible
+public final class LongArrayTable<R, C> extends PrimitiveArrayTable<R, C, Long> {
+
+  /**
+   * Creates a {@code LongArrayTable} whose values are all {@code 0}.
+   *
+   * @param rowKeys row keys that may be stored in the generated table
+   * @param columnKeys column keys that may be stored in the generated table
+   * @throws NullPointerException if any of the provided keys is null
+   * @throws IllegalArgumentException if {@code rowKeys} or {@code columnKeys} contains duplicates
+   *     or is empty
+   */
+  public static <R, C> LongArrayTable<R, C> create(
+      Iterable<? extends R> rowKeys, Iterable<? extends C> columnKeys) {
+    return new LongArrayTable<R, C>(rowKeys, columnKeys);
+  }
+
+  /**
+   * Creates a {@code LongArrayTable} with the same keys and values as {@code table}.
+   */
+  public static <R, C> LongArrayTable<R, C> create(LongArrayTable<R, C> table) {
+    return new LongArrayTable<R, C>(table);
+  }
+
+  /** The values, indexed by column and then by row. */
+  private final long[][] columns;
+
+  private LongArrayTable(Iterable<? extends R> rowKeys, Iterable<? extends C> columnKeys) {
+    super(rowKeys, columnKeys);
+    this.columns = new long[columnList.size()][rowList.size()];
+  }
+
+  private LongArrayTable(LongArrayTable<R, C> table) {
+    super(table);
+    this.columns = new long[columnList.size()][];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = table.columns[i].clone();
+    }
+  }
+
+  /**
+   * Returns the value at the specified row and column indices.
+   *
+   * @throws IndexOutOfBoundsException if {@code rowIndex} is not less than the number of row keys,
+   *     or {@code columnIndex} not less than the number of column keys, or either is negative
+   */
+  public long at(int rowIndex, int columnIndex) {
+    // In GWT array access never throws IndexOutOfBoundsException.
+    checkElementIndex(rowIndex, rowList.size());
+    checkElementIndex(columnIndex, columnList.size());
+    return columns[columnIndex][rowIndex];
+  }
+
+  /**
+   * Stores {@code value} at the specified row and column indices, and returns the previous value.
+   *
+   * @throws IndexOutOfBoundsException if {@code rowIndex} is not less than the number of row keys,
+   *     or {@code columnIndex} not less than the number of column keys, or either is negative
+   */
+  public long set(int rowIndex, int columnIndex, long value) {
+    checkElementIndex(rowIndex, rowList.size());
+    checkElementIndex(columnIndex, columnList.size());
+    long[] column = columns[columnIndex];
+    long oldValue = column[rowIndex];
+    column[rowIndex] = value;
+    return oldValue;
+  }
+
+  /**
+   * Returns the value with the specified row and column keys.
+   *
+   * @throws IllegalArgumentException if either key is not among the keys of this table
+   */
+  public long get(@Nullable Object rowKey, @Nullable Object columnKey) {
+    return columns[columnIndex(columnKey)][rowIndex(rowKey)];
+  }
+
+  /**
+   * Stores {@code value} with the specified row and column keys, and returns the previous value.
+   *
+   * @throws IllegalArgumentException if either key is not among the keys of this table
+   */
+  public long put(R rowKey, C columnKey, long value) {
+    checkNotNull(rowKey);
+    checkNotNull(columnKey);
+    long[] column = columns[columnIndex(columnKey)];
+    int rowIndex = rowIndex(rowKey);
+    long oldValue = column[rowIndex];
+    column[rowIndex] = value;
+    return oldValue;
+  }
+
+  /**
+   * Adds {@code delta} to the value with the specified row and column keys, and returns the new
+   * value.
+   *
+   * @throws IllegalArgumentException if either key is not among the keys of this table
+   */
+  public long add(R rowKey, C columnKey, long delta) {
+    checkNotNull(rowKey);
+    checkNotNull(columnKey);
+    long[] column = columns[columnIndex(columnKey)];
+    int rowIndex = rowIndex(rowKey);
+    return column[rowIndex] += delta;
+  }
+
+  /**
+   * Stores {@code value} with every pair of a row key and a column key.
+   */
+  public void fill(long value) {
+    for (long[] column : columns) {
+      Arrays.fill(column, value);
+    }
+  }
+
+  /**
+   * Returns the sum of the values with the specified row key.
+   *
+   * @throws IllegalArgumentException if {@code rowKey} is not among the row keys of this table
+   */
+  public long rowSum(@Nullable Object rowKey) {
+    int rowIndex = rowIndex(rowKey);
+    long sum = 0;
+    for (long[] column : columns) {
+      sum += column[rowIndex];
+    }
+    return sum;
+  }
+
+  /**
+   * Returns the least of the values with the specified row key.
+   *
+   * @throws IllegalArgumentException if {@code rowKey} is not among the row keys of this table
+   */
+  public long rowMin(@Nullable Object rowKey) {
+    int rowIndex = rowIndex(rowKey);
+    long min = columns[0][rowIndex];
+    for (int i = 1; i < columns.length; i++) {
+      min = Math.min(min, columns[i][rowIndex]);
+    }
+    return min;
+  }
+
+  /**
+   * Returns the greatest of the values with the specified row key.
+   *
+   * @throws IllegalArgumentException if {@code rowKey} is not among the row keys of this table
+   */
+  public long rowMax(@Nullable Object rowKey) {
+    int rowIndex = rowIndex(rowKey);
+    long max = columns[0][rowIndex];
+    for (int i = 1; i < columns.length; i++) {
+      max = Math.max(max, columns[i][rowIndex]);
+    }
+    return max;
+  }
+
+  /**
+   * Returns the sum of the values with the specified column key.
+   *
+   * @throws IllegalArgumentException if {@code columnKey} is not among the column keys of this
+   *     table
+   */
+  public long columnSum(@Nullable Object columnKey) {
+    long sum = 0;
+    for (long value : columns[columnIndex(columnKey)]) {
+      sum += value;
+    }
+    return sum;
+  }
+
+  /**
+   * Returns the least of the values with the specified column key.
+   *
+   * @throws IllegalArgumentException if {@code columnKey} is not among the column keys of this
+   *     table
+   */
+  public long columnMin(@Nullable Object columnKey) {
+    long[] column = columns[columnIndex(columnKey)];
+    long min = column[0];
+    for (int i = 1; i < column.length; i++) {
+      min = Math.min(min, column[i]);
+    }
+    return min;
+  }
+
+  /**
+   * Returns the greatest of the values with the specified column key.
+   *
+   * @throws IllegalArgumentException if {@code columnKey} is not among the column keys of this
+   *     table
+   */
+  public long columnMax(@Nullable Object columnKey) {
+    long[] column = columns[columnIndex(columnKey)];
+    long max = column[0];
+    for (int i = 1; i < column.length; i++) {
+      max = Math.max(max, column[i]);
+    }
+    return max;
+  }
+
+  @Override
+  Long getBoxed(int rowIndex, int columnIndex) {
+    return columns[columnIndex][rowIndex];
+  }
+
+  @Override
+  Long setBoxed(int rowIndex, int columnIndex, Long value) {
+    return set(rowIndex, columnIndex, value);
+  }
+
+  private static final long serialVersionUID = 0;
+}
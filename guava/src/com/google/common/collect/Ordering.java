@@ -19,7 +19,9 @@ package com.google.common.collect;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.CollectPreconditions.checkNonnegative;
 
+import com.google.common.annotations.Beta;
 import com.google.common.annotations.GwtCompatible;
+import com.google.common.annotations.GwtIncompatible;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 
@@ -36,6 +38,7 @@ import java.util.NoSuchElementException;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nullable;
@@ -664,95 +667,18 @@ public abstract class Ordering<T> implements Comparator<T> {
 
     /*
      * Our goal is an O(n) algorithm using only one pass and O(k) additional
-     * memory.
-     *
-     * We use the following algorithm: maintain a buffer of size 2*k. Every time
-     * the buffer gets full, find the median and partition around it, keeping
-     * only the lowest k elements.  This requires n/k find-median-and-partition
-     * steps, each of which take O(k) time with a traditional quickselect.
+     * memory. TopKSelector keeps a buffer of size 2*k, and every time the
+     * buffer gets full, partitions it around its median with a quickselect and
+     * keeps only the lowest k elements.
      *
      * After sorting the output, the whole algorithm is O(n + k log k). It
      * degrades gracefully for worst-case input (descending order), performs
      * competitively or wins outright for randomly ordered input, and doesn't
      * require the whole collection to fit into memory.
      */
-    int bufferCap = k * 2;
-    @SuppressWarnings("unchecked") // we'll only put E's in
-    E[] buffer = (E[]) new Object[bufferCap];
-    E threshold = elements.next();
-    buffer[0] = threshold;
-    int bufferSize = 1;
-    // threshold is the kth smallest element seen so far.  Once bufferSize >= k,
-    // anything larger than threshold can be ignored immediately.
-
-    while (bufferSize < k && elements.hasNext()) {
-      E e = elements.next();
-      buffer[bufferSize++] = e;
-      threshold = max(threshold, e);
-    }
-
-    while (elements.hasNext()) {
-      E e = elements.next();
-      if (compare(e, threshold) >= 0) {
-        continue;
-      }
-
-      buffer[bufferSize++] = e;
-      if (bufferSize == bufferCap) {
-        // We apply the quickselect algorithm to partition about the median,
-        // and then ignore the last k elements.
-        int left = 0;
-        int right = bufferCap - 1;
-
-        int minThresholdPosition = 0;
-        // The leftmost position at which the greatest of the k lower elements
-        // -- the new value of threshold -- might be found.
-
-        while (left < right) {
-          int pivotIndex = (left + right + 1) >>> 1;
-          int pivotNewIndex = partition(buffer, left, right, pivotIndex);
-          if (pivotNewIndex > k) {
-            right = pivotNewIndex - 1;
-          } else if (pivotNewIndex < k) {
-            left = Math.max(pivotNewIndex, left + 1);
-            minThresholdPosition = pivotNewIndex;
-          } else {
-            break;
-          }
-        }
-        bufferSize = k;
-
-        threshold = buffer[minThresholdPosition];
-        for (int i = minThresholdPosition + 1; i < bufferSize; i++) {
-          threshold = max(threshold, buffer[i]);
-        }
-      }
-    }
-
-    Arrays.sort(buffer, 0, bufferSize, this);
-
-    bufferSize = Math.min(bufferSize, k);
-    return Collections.unmodifiableList(
-        Arrays.asList(ObjectArrays.arraysCopyOf(buffer, bufferSize)));
-    // We can't use ImmutableList; we have to be null-friendly!
-  }
-
-  private <E extends T> int partition(
-      E[] values, int left, int right, int pivotIndex) {
-    E pivotValue = values[pivotIndex];
-
-    values[pivotIndex] = values[right];
-    values[right] = pivotValue;
-
-    int storeIndex = left;
-    for (int i = left; i < right; i++) {
-      if (compare(values[i], pivotValue) < 0) {
-        ObjectArrays.swap(values, storeIndex, i);
-        storeIndex++;
-      }
-    }
-    ObjectArrays.swap(values, right, storeIndex);
-    return storeIndex;
+    TopKSelector<E> selector = TopKSelector.least(k, this);
+    selector.offerAll(elements);
+    return selector.topK();
   }
 
   /**
@@ -847,6 +773,57 @@ public abstract class Ordering<T> implements Comparator<T> {
     return ImmutableList.asImmutableList(array);
   }
 
+  /**
+   * Returns a <b>mutable</b> list containing {@code elements} sorted by this
+   * ordering, like {@link #sortedCopy}, but sorts large inputs on several
+   * threads of {@code executor} by a parallel merge sort. The sort is
+   * <i>stable</i>, and the calling thread takes part in it, running any of its
+   * tasks which no thread of {@code executor} has started. So {@code executor}
+   * may run tasks on the calling thread or reject them, and this method may be
+   * called from a task of {@code executor} without the risk of a deadlock.
+   *
+   * <p>This ordering must be safe to use concurrently from several threads.
+   *
+   * @since 19.0
+   */
+  @Beta
+  @GwtIncompatible("java.util.concurrent")
+  public <E extends T> List<E> parallelSortedCopy(
+      Iterable<E> elements, Executor executor) {
+    @SuppressWarnings("unchecked") // does not escape, and contains only E's
+    E[] array = (E[]) Iterables.toArray(elements);
+    ParallelMergeSort.sort(array, this, false, executor);
+    return Lists.newArrayList(Arrays.asList(array));
+  }
+
+  /**
+   * Returns an <b>immutable</b> list containing {@code elements} sorted by this
+   * ordering, like {@link #immutableSortedCopy}, but sorts large inputs on
+   * several threads of {@code executor} by a parallel merge sort. The sort is
+   * <i>stable</i>, and the calling thread takes part in it, running any of its
+   * tasks which no thread of {@code executor} has started. So {@code executor}
+   * may run tasks on the calling thread or reject them, and this method may be
+   * called from a task of {@code executor} without the risk of a deadlock.
+   *
+   * <p>This ordering must be safe to use concurrently from several threads.
+   *
+   * @throws NullPointerException if any of {@code elements} (or {@code
+   *     elements} itself) is null
+   * @since 19.0
+   */
+  @Beta
+  @GwtIncompatible("java.util.concurrent")
+  public <E extends T> ImmutableList<E> parallelImmutableSortedCopy(
+      Iterable<E> elements, Executor executor) {
+    @SuppressWarnings("unchecked") // we'll only ever have E's in here
+    E[] array = (E[]) Iterables.toArray(elements);
+    for (E e : array) {
+      checkNotNull(e);
+    }
+    ParallelMergeSort.sort(array, this, false, executor);
+    return ImmutableList.asImmutableList(array);
+  }
+
   /**
    * Returns {@code true} if each element in {@code iterable} after the first is
    * greater than or equal to the element that preceded it, according to this
@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A stable merge sort of an array, which sorts equal slices of the array on the threads of an
+ * {@link Executor} and then merges adjacent pairs of sorted runs in parallel, halving the number
+ * of runs in each round. The calling thread takes part in every step, and runs each task which no
+ * thread of the executor has started, so an executor which runs tasks on the calling thread, whose
+ * threads are all busy, or which rejects tasks is allowed. In particular, the sort may be called
+ * from a task of the executor that it uses.
+ *
+ * <p>The sort may also remove duplicates, keeping the first of each group of elements which are
+ * equal according to the comparator. Each slice is then deduplicated after it is sorted, and each
+ * merge skips the elements of its right run which are equal to those of its left run.
+ */
+@GwtIncompatible("java.util.concurrent")
+final class ParallelMergeSort {
+  private ParallelMergeSort() {}
+
+  /**
+   * The minimum number of elements of each slice sorted by a single task. Smaller arrays are
+   * sorted on the calling thread alone.
+   */
+  @VisibleForTesting static final int MIN_SLICE_SIZE = 1 << 12;
+
+  /**
+   * Sorts {@code array} with as many slices as the machine has processors.
+   *
+   * @see #sort(Object[], Comparator, boolean, Executor, int)
+   */
+  static <E> int sort(
+      E[] array, Comparator<? super E> comparator, boolean dedup, Executor executor) {
+    return sort(array, comparator, dedup, executor, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Sorts {@code array} by {@code comparator}, using at most {@code parallelism} tasks at a time,
+   * and returns the number of elements in the result. If {@code dedup} is true, only the first of
+   * each group of equal elements is kept; the {@code k} elements of the result are then in the
+   * first {@code k} positions of {@code array}, and the other positions are null.
+   */
+  static <E> int sort(E[] array, Comparator<? super E> comparator, boolean dedup,
+      Executor executor, int parallelism) {
+    checkNotNull(comparator);
+    checkNotNull(executor);
+    checkArgument(parallelism > 0, "parallelism (%s) must be positive", parallelism);
+    int n = array.length;
+    int runCount = Math.min(parallelism, n / MIN_SLICE_SIZE);
+    if (runCount <= 1) {
+      Arrays.sort(array, comparator);
+      return dedup ? clearTail(array, dedup(array, 0, n, comparator)) : n;
+    }
+
+    // run i is in [starts[i], ends[i]), and may be merged into [starts[i], starts[i + 1])
+    int[] starts = new int[runCount + 1];
+    int[] ends = new int[runCount];
+    for (int i = 0; i <= runCount; i++) {
+      starts[i] = (int) ((long) n * i / runCount);
+    }
+    Runnable[] tasks = new Runnable[runCount];
+    for (int i = 0; i < runCount; i++) {
+      tasks[i] = new SortTask<E>(array, starts, ends, i, comparator, dedup);
+    }
+    invokeAll(executor, tasks);
+
+    Object[] source = array;
+    Object[] target = new Object[n];
+    while (runCount > 1) {
+      int pairCount = runCount / 2;
+      tasks = new Runnable[pairCount];
+      for (int i = 0; i < pairCount; i++) {
+        tasks[i] = new MergeTask(source, target, starts, ends, 2 * i, comparator, dedup);
+      }
+      if (runCount % 2 == 1) {
+        int last = runCount - 1;
+        System.arraycopy(source, starts[last], target, starts[last], ends[last] - starts[last]);
+      }
+      invokeAll(executor, tasks);
+
+      int newRunCount = (runCount + 1) / 2;
+      for (int i = 0; i < newRunCount; i++) {
+        starts[i] = starts[2 * i];
+        ends[i] = ends[2 * i];
+      }
+      starts[newRunCount] = n;
+      runCount = newRunCount;
+      Object[] swap = source;
+      source = target;
+      target = swap;
+    }
+
+    int size = ends[0];
+    if (source != array) {
+      System.arraycopy(source, 0, array, 0, size);
+    }
+    return clearTail(array, size);
+  }
+
+  private static final class SortTask<E> implements Runnable {
+    final E[] array;
+    final int[] starts;
+    final int[] ends;
+    final int run;
+    final Comparator<? super E> comparator;
+    final boolean dedup;
+
+    SortTask(E[] array, int[] starts, int[] ends, int run, Comparator<? super E> comparator,
+        boolean dedup) {
+      this.array = array;
+      this.starts = starts;
+      this.ends = ends;
+      this.run = run;
+      this.comparator = comparator;
+      this.dedup = dedup;
+    }
+
+    @Override
+    public void run() {
+      int from = starts[run];
+      int to = starts[run + 1];
+      Arrays.sort(array, from, to, comparator);
+      ends[run] = dedup ? dedup(array, from, to, comparator) : to;
+    }
+  }
+
+  private static final class MergeTask implements Runnable {
+    final Object[] source;
+    final Object[] target;
+    final int[] starts;
+    final int[] ends;
+    final int leftRun;
+    final Comparator<Object> comparator;
+    final boolean dedup;
+
+    @SuppressWarnings("unchecked") // the arrays contain only elements of the comparator's type
+    MergeTask(Object[] source, Object[] target, int[] starts, int[] ends, int leftRun,
+        Comparator<?> comparator, boolean dedup) {
+      this.source = source;
+      this.target = target;
+      this.starts = starts;
+      this.ends = ends;
+      this.leftRun = leftRun;
+      this.comparator = (Comparator<Object>) comparator;
+      this.dedup = dedup;
+    }
+
+    @Override
+    public void run() {
+      int left = starts[leftRun];
+      int leftEnd = ends[leftRun];
+      int right = starts[leftRun + 1];
+      int rightEnd = ends[leftRun + 1];
+      int out = left;
+      while (left < leftEnd && right < rightEnd) {
+        int comparison = comparator.compare(source[left], source[right]);
+        if (comparison <= 0) {
+          // ties go to the left run, which keeps the sort stable
+          target[out++] = source[left++];
+          if (comparison == 0 && dedup) {
+            right++;
+          }
+        } else {
+          target[out++] = source[right++];
+        }
+      }
+      System.arraycopy(source, left, target, out, leftEnd - left);
+      out += leftEnd - left;
+      System.arraycopy(source, right, target, out, rightEnd - right);
+      out += rightEnd - right;
+      ends[leftRun] = out;
+    }
+  }
+
+  /**
+   * Moves the distinct elements of the sorted range {@code [from, to)} of {@code array} to its
+   * beginning, and returns the end of the distinct elements.
+   */
+  private static <E> int dedup(E[] array, int from, int to, Comparator<? super E> comparator) {
+    if (from == to) {
+      return to;
+    }
+    int end = from + 1;
+    for (int i = from + 1; i < to; i++) {
+      if (comparator.compare(array[i], array[end - 1]) != 0) {
+        array[end++] = array[i];
+      }
+    }
+    return end;
+  }
+
+  private static int clearTail(Object[] array, int size) {
+    Arrays.fill(array, size, array.length, null);
+    return size;
+  }
+
+  /**
+   * Runs all of {@code tasks} and returns when they have all completed, rethrowing the first
+   * exception thrown by any of them. Each task is run by the first thread to claim it, either the
+   * calling thread or one of {@code executor}, so the calling thread only waits for tasks which
+   * other threads are already running. Waiting is uninterruptible, because the tasks write to
+   * arrays owned by the caller.
+   */
+  private static void invokeAll(Executor executor, Runnable[] tasks) {
+    TaskGroup group = new TaskGroup(tasks);
+    for (int i = 1; i < tasks.length; i++) {
+      try {
+        executor.execute(group);
+      } catch (RejectedExecutionException e) {
+        break; // the calling thread runs the tasks which weren't claimed
+      }
+    }
+    group.run();
+
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          group.done.await();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    Throwable t = group.failure.get();
+    if (t != null) {
+      throw Throwables.propagate(t);
+    }
+  }
+
+  /**
+   * Tasks which are claimed in order by the threads which run the group. A thread of the executor
+   * which only starts after the tasks have all been claimed returns at once.
+   */
+  private static final class TaskGroup implements Runnable {
+    final Runnable[] tasks;
+    final AtomicInteger next = new AtomicInteger();
+    final CountDownLatch done;
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+    TaskGroup(Runnable[] tasks) {
+      this.tasks = tasks;
+      this.done = new CountDownLatch(tasks.length);
+    }
+
+    @Override
+    public void run() {
+      for (int i = next.getAndIncrement(); i < tasks.length; i = next.getAndIncrement()) {
+        try {
+          tasks[i].run();
+        } catch (Throwable t) {
+          failure.compareAndSet(null, t);
+        } finally {
+          done.countDown();
+        }
+      }
+    }
+  }
+}
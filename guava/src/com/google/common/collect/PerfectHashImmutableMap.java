@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.base.Preconditions.checkPositionIndex;
+import static com.google.common.collect.CollectPreconditions.checkEntryNotNull;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.annotations.VisibleForTesting;
+
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+/**
+ * Implementation of {@link ImmutableMap} whose keys are located by a minimal perfect hash
+ * function, as built by {@link ImmutableMap.Builder#buildPerfectHash}.
+ *
+ * <p>The perfect hash function is computed with the "hash, displace and compress" (CHD) algorithm
+ * of Belazzougui, Botelho and Dietzfelbinger, over the smeared hash codes of the keys. The keys
+ * are first hashed to buckets of about {@link #KEYS_PER_BUCKET} keys each. Then, from the largest
+ * bucket to the smallest, a displacement is found for each bucket which sends all of its keys to
+ * slots which are still free, by trying successive seeds of a second hash function. Buckets of a
+ * single key are simply given the remaining free slots. There are exactly as many slots as keys,
+ * so the keys and values are stored in slot order with no empty slots, and a lookup reads one
+ * displacement and then compares a single key.
+ *
+ * <p>Since the hash function is computed from {@link Object#hashCode}, it cannot separate keys
+ * whose hash codes are equal, in which case {@link #tryCreate} fails.
+ */
+@GwtIncompatible("unnecessary")
+final class PerfectHashImmutableMap<K, V> extends IndexedImmutableMap<K, V> {
+  /** The average number of keys hashed to each bucket. */
+  static final int KEYS_PER_BUCKET = 2;
+
+  /** The number of seeds which are tried for each bucket before giving up. */
+  @VisibleForTesting static final int MAX_SEEDS = 1 << 16;
+
+  // keys at even indexes, each followed by its value, in slot order
+  private final transient Object[] alternatingKeysAndValues;
+  // for each bucket, the seed of the slot hash function, or -1 - slot for a single key
+  private final transient int[] displacements;
+  // the slot of each entry, in insertion order
+  private final transient int[] slots;
+
+  /**
+   * Creates a PerfectHashImmutableMap from the first n entries in entryArray, which is not
+   * modified, or returns null if there is no perfect hash function over their keys because some
+   * of them have equal hash codes.
+   *
+   * @throws IllegalArgumentException if two entries have the same key
+   */
+  @Nullable
+  static <K, V> PerfectHashImmutableMap<K, V> tryCreate(int n, Entry<K, V>[] entryArray) {
+    checkPositionIndex(n, entryArray.length);
+    int bucketCount = Math.max(1, n / KEYS_PER_BUCKET);
+    int[] hashes = new int[n];
+    int[] bucketStarts = new int[bucketCount + 1];
+    for (int entryIndex = 0; entryIndex < n; entryIndex++) {
+      Entry<K, V> entry = entryArray[entryIndex];
+      checkEntryNotNull(entry.getKey(), entry.getValue());
+      hashes[entryIndex] = Hashing.smear(entry.getKey().hashCode());
+      bucketStarts[bucket(hashes[entryIndex], bucketCount) + 1]++;
+    }
+
+    // group the entries by bucket, and order the buckets from the largest to the smallest
+    long[] sizesAndBuckets = new long[bucketCount];
+    for (int bucket = 0; bucket < bucketCount; bucket++) {
+      sizesAndBuckets[bucket] = ((long) -bucketStarts[bucket + 1] << 32) | bucket;
+      bucketStarts[bucket + 1] += bucketStarts[bucket];
+    }
+    Arrays.sort(sizesAndBuckets);
+    int[] entriesByBucket = new int[n];
+    int[] nextInBucket = Arrays.copyOf(bucketStarts, bucketCount);
+    for (int entryIndex = 0; entryIndex < n; entryIndex++) {
+      entriesByBucket[nextInBucket[bucket(hashes[entryIndex], bucketCount)]++] = entryIndex;
+    }
+
+    int[] displacements = new int[bucketCount];
+    int[] slots = new int[n];
+    boolean[] occupied = new boolean[n];
+    int[] trialSlots = new int[bucketCount == 0 ? 0 : (int) -(sizesAndBuckets[0] >> 32)];
+    int nextFreeSlot = 0;
+    for (long sizeAndBucket : sizesAndBuckets) {
+      int size = (int) -(sizeAndBucket >> 32);
+      int bucket = (int) sizeAndBucket;
+      int start = bucketStarts[bucket];
+      if (size == 0) {
+        break;
+      } else if (size == 1) {
+        while (occupied[nextFreeSlot]) {
+          nextFreeSlot++;
+        }
+        occupied[nextFreeSlot] = true;
+        slots[entriesByBucket[start]] = nextFreeSlot;
+        displacements[bucket] = -1 - nextFreeSlot;
+        continue;
+      }
+
+      // keys with equal hashes are in the same bucket, and no seed can separate them
+      for (int i = start; i < start + size; i++) {
+        for (int j = start; j < i; j++) {
+          int entryIndex = entriesByBucket[i];
+          int otherIndex = entriesByBucket[j];
+          if (hashes[entryIndex] == hashes[otherIndex]) {
+            Entry<K, V> entry = entryArray[Math.max(entryIndex, otherIndex)];
+            Entry<K, V> other = entryArray[Math.min(entryIndex, otherIndex)];
+            checkNoConflict(!entry.getKey().equals(other.getKey()), "key", entry, other);
+            return null;
+          }
+        }
+      }
+
+      int seed = findSeed(hashes, entriesByBucket, start, size, occupied, trialSlots);
+      if (seed < 0) {
+        return null;
+      }
+      displacements[bucket] = seed;
+      for (int i = 0; i < size; i++) {
+        occupied[trialSlots[i]] = true;
+        slots[entriesByBucket[start + i]] = trialSlots[i];
+      }
+    }
+
+    Object[] alternatingKeysAndValues = new Object[2 * n];
+    for (int entryIndex = 0; entryIndex < n; entryIndex++) {
+      alternatingKeysAndValues[2 * slots[entryIndex]] = entryArray[entryIndex].getKey();
+      alternatingKeysAndValues[2 * slots[entryIndex] + 1] = entryArray[entryIndex].getValue();
+    }
+    return new PerfectHashImmutableMap<K, V>(alternatingKeysAndValues, displacements, slots);
+  }
+
+  /**
+   * Returns the first seed which sends the keys of a bucket to distinct free slots, which are
+   * stored in {@code trialSlots}, or -1 if none of the {@link #MAX_SEEDS} seeds does.
+   */
+  private static int findSeed(int[] hashes, int[] entriesByBucket, int start, int size,
+      boolean[] occupied, int[] trialSlots) {
+    int n = occupied.length;
+    seeds:
+    for (int seed = 0; seed < MAX_SEEDS; seed++) {
+      for (int i = 0; i < size; i++) {
+        int slot = slot(hashes[entriesByBucket[start + i]], seed, n);
+        if (occupied[slot]) {
+          continue seeds;
+        }
+        for (int j = 0; j < i; j++) {
+          if (trialSlots[j] == slot) {
+            continue seeds;
+          }
+        }
+        trialSlots[i] = slot;
+      }
+      return seed;
+    }
+    return -1;
+  }
+
+  /** Maps a smeared hash to one of {@code buckets} buckets, using its high bits. */
+  static int bucket(int hash, int buckets) {
+    return (int) (((hash & 0xFFFFFFFFL) * buckets) >>> 32);
+  }
+
+  /** Maps a smeared hash to one of {@code size} slots, with the hash function chosen by seed. */
+  static int slot(int hash, int seed, int size) {
+    // the finalization step of MurmurHash3, which is a bijection
+    int h = hash ^ (seed * 0x9E3779B9);
+    h ^= h >>> 16;
+    h *= 0x85EBCA6B;
+    h ^= h >>> 13;
+    h *= 0xC2B2AE35;
+    h ^= h >>> 16;
+    return (int) (((h & 0xFFFFFFFFL) * size) >>> 32);
+  }
+
+  private PerfectHashImmutableMap(
+      Object[] alternatingKeysAndValues, int[] displacements, int[] slots) {
+    this.alternatingKeysAndValues = alternatingKeysAndValues;
+    this.displacements = displacements;
+    this.slots = slots;
+  }
+
+  @Override public V get(@Nullable Object key) {
+    if (key == null) {
+      return null;
+    }
+    int hash = Hashing.smear(key.hashCode());
+    int displacement = displacements[bucket(hash, displacements.length)];
+    int slot = (displacement < 0) ? -1 - displacement : slot(hash, displacement, slots.length);
+    if (key.equals(alternatingKeysAndValues[2 * slot])) {
+      @SuppressWarnings("unchecked") // all values at odd indexes are V's
+      V value = (V) alternatingKeysAndValues[2 * slot + 1];
+      return value;
+    }
+    return null;
+  }
+
+  @Override
+  public int size() {
+    return slots.length;
+  }
+
+  @SuppressWarnings("unchecked") // all keys are at even indexes
+  @Override
+  K keyAt(int index) {
+    return (K) alternatingKeysAndValues[2 * slots[index]];
+  }
+
+  @SuppressWarnings("unchecked") // all values are at odd indexes
+  @Override
+  V valueAt(int index) {
+    return (V) alternatingKeysAndValues[2 * slots[index] + 1];
+  }
+
+  // This class is never actually serialized directly, but we have to make the
+  // warning go away (and suppressing would suppress for all nested classes too)
+  private static final long serialVersionUID = 0;
+}
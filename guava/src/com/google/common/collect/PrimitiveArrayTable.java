@@ -0,0 +1,368 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.GwtCompatible;
+import com.google.common.collect.Maps.IteratorBasedAbstractMap;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * The row and column keys of {@link DoubleArrayTable}, {@link LongArrayTable} and {@link
+ * IntArrayTable}, whose values are kept in one primitive array per column, and the {@link Table}
+ * view of their boxed values. Like {@link ArrayTable}, the tables are serializable if their keys
+ * are.
+ */
+@GwtCompatible
+abstract class PrimitiveArrayTable<R, C, V> implements Serializable {
+  final ImmutableList<R> rowList;
+  final ImmutableList<C> columnList;
+  final ImmutableMap<R, Integer> rowKeyToIndex;
+  final ImmutableMap<C, Integer> columnKeyToIndex;
+
+  PrimitiveArrayTable(Iterable<? extends R> rowKeys, Iterable<? extends C> columnKeys) {
+    this.rowList = ImmutableList.copyOf(rowKeys);
+    this.columnList = ImmutableList.copyOf(columnKeys);
+    checkArgument(!rowList.isEmpty());
+    checkArgument(!columnList.isEmpty());
+    this.rowKeyToIndex = Maps.indexMap(rowList);
+    this.columnKeyToIndex = Maps.indexMap(columnList);
+  }
+
+  PrimitiveArrayTable(PrimitiveArrayTable<R, C, ?> table) {
+    this.rowList = table.rowList;
+    this.columnList = table.columnList;
+    this.rowKeyToIndex = table.rowKeyToIndex;
+    this.columnKeyToIndex = table.columnKeyToIndex;
+  }
+
+  /**
+   * Returns, as an immutable list, the row keys provided when the table was constructed.
+   */
+  public ImmutableList<R> rowKeyList() {
+    return rowList;
+  }
+
+  /**
+   * Returns, as an immutable list, the column keys provided when the table was constructed.
+   */
+  public ImmutableList<C> columnKeyList() {
+    return columnList;
+  }
+
+  /**
+   * Returns the number of cells of the table: the product of the number of row keys and the number
+   * of column keys.
+   */
+  public int size() {
+    return rowList.size() * columnList.size();
+  }
+
+  final int rowIndex(@Nullable Object rowKey) {
+    Integer rowIndex = rowKeyToIndex.get(rowKey);
+    checkArgument(rowIndex != null, "Row %s not in %s", rowKey, rowList);
+    return rowIndex;
+  }
+
+  final int columnIndex(@Nullable Object columnKey) {
+    Integer columnIndex = columnKeyToIndex.get(columnKey);
+    checkArgument(columnIndex != null, "Column %s not in %s", columnKey, columnList);
+    return columnIndex;
+  }
+
+  /** Returns the boxed value at the specified indices, which must be valid. */
+  abstract V getBoxed(int rowIndex, int columnIndex);
+
+  /**
+   * Stores the unboxed {@code value} at the specified indices, which must be valid, and returns
+   * the boxed previous value.
+   */
+  abstract V setBoxed(int rowIndex, int columnIndex, V value);
+
+  private transient Table<R, C, V> asTable;
+
+  /**
+   * Returns a view of this table as a {@link Table} of boxed values, which contains a cell for
+   * every pair of a row key and a column key, and is modified by changes to this table and vice
+   * versa. Its {@code put} methods, and those of its row and column views, reject null values and
+   * keys which are not in this table; its {@code remove} and {@code clear} methods are not
+   * supported.
+   */
+  public Table<R, C, V> asTable() {
+    Table<R, C, V> result = asTable;
+    return (result == null) ? asTable = new AsTable() : result;
+  }
+
+  @Override
+  public String toString() {
+    return asTable().toString();
+  }
+
+  private final class AsTable extends AbstractTable<R, C, V> {
+    @Override
+    public boolean containsRow(@Nullable Object rowKey) {
+      return rowKeyToIndex.containsKey(rowKey);
+    }
+
+    @Override
+    public boolean containsColumn(@Nullable Object columnKey) {
+      return columnKeyToIndex.containsKey(columnKey);
+    }
+
+    @Override
+    public boolean contains(@Nullable Object rowKey, @Nullable Object columnKey) {
+      return containsRow(rowKey) && containsColumn(columnKey);
+    }
+
+    @Override
+    public ImmutableSet<R> rowKeySet() {
+      return rowKeyToIndex.keySet();
+    }
+
+    @Override
+    public ImmutableSet<C> columnKeySet() {
+      return columnKeyToIndex.keySet();
+    }
+
+    @Override
+    public V get(@Nullable Object rowKey, @Nullable Object columnKey) {
+      Integer rowIndex = rowKeyToIndex.get(rowKey);
+      Integer columnIndex = columnKeyToIndex.get(columnKey);
+      return (rowIndex == null || columnIndex == null) ? null : getBoxed(rowIndex, columnIndex);
+    }
+
+    @Override
+    public V put(R rowKey, C columnKey, V value) {
+      checkNotNull(value);
+      return setBoxed(rowIndex(checkNotNull(rowKey)), columnIndex(checkNotNull(columnKey)), value);
+    }
+
+    @Override
+    public V remove(@Nullable Object rowKey, @Nullable Object columnKey) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int size() {
+      return PrimitiveArrayTable.this.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return false;
+    }
+
+    @Override
+    Iterator<Cell<R, C, V>> cellIterator() {
+      return new AbstractIndexedListIterator<Cell<R, C, V>>(size()) {
+        @Override
+        protected Cell<R, C, V> get(int index) {
+          final int rowIndex = index / columnList.size();
+          final int columnIndex = index % columnList.size();
+          return new Tables.AbstractCell<R, C, V>() {
+            @Override
+            public R getRowKey() {
+              return rowList.get(rowIndex);
+            }
+
+            @Override
+            public C getColumnKey() {
+              return columnList.get(columnIndex);
+            }
+
+            @Override
+            public V getValue() {
+              return getBoxed(rowIndex, columnIndex);
+            }
+          };
+        }
+      };
+    }
+
+    @Override
+    public Map<C, V> row(R rowKey) {
+      Integer rowIndex = rowKeyToIndex.get(checkNotNull(rowKey));
+      return (rowIndex == null) ? ImmutableMap.<C, V>of() : new Row(rowIndex);
+    }
+
+    @Override
+    public Map<R, V> column(C columnKey) {
+      Integer columnIndex = columnKeyToIndex.get(checkNotNull(columnKey));
+      return (columnIndex == null) ? ImmutableMap.<R, V>of() : new Column(columnIndex);
+    }
+
+    @Override
+    public Map<R, Map<C, V>> rowMap() {
+      return new IndexedMap<R, Map<C, V>>(rowKeyToIndex) {
+        @Override
+        Map<C, V> getValue(int index) {
+          return new Row(index);
+        }
+      };
+    }
+
+    @Override
+    public Map<C, Map<R, V>> columnMap() {
+      return new IndexedMap<C, Map<R, V>>(columnKeyToIndex) {
+        @Override
+        Map<R, V> getValue(int index) {
+          return new Column(index);
+        }
+      };
+    }
+  }
+
+  private final class Row extends IndexedMap<C, V> {
+    final int rowIndex;
+
+    Row(int rowIndex) {
+      super(columnKeyToIndex);
+      this.rowIndex = rowIndex;
+    }
+
+    @Override
+    V getValue(int index) {
+      return getBoxed(rowIndex, index);
+    }
+
+    @Override
+    V setValue(int index, V value) {
+      return setBoxed(rowIndex, index, checkNotNull(value));
+    }
+  }
+
+  private final class Column extends IndexedMap<R, V> {
+    final int columnIndex;
+
+    Column(int columnIndex) {
+      super(rowKeyToIndex);
+      this.columnIndex = columnIndex;
+    }
+
+    @Override
+    V getValue(int index) {
+      return getBoxed(index, columnIndex);
+    }
+
+    @Override
+    V setValue(int index, V value) {
+      return setBoxed(index, columnIndex, checkNotNull(value));
+    }
+  }
+
+  /**
+   * A map with a fixed set of keys, whose values are found by the indices of their keys.
+   */
+  private abstract static class IndexedMap<K, V> extends IteratorBasedAbstractMap<K, V> {
+    private final ImmutableMap<K, Integer> keyIndex;
+
+    IndexedMap(ImmutableMap<K, Integer> keyIndex) {
+      this.keyIndex = keyIndex;
+    }
+
+    abstract V getValue(int index);
+
+    V setValue(int index, V value) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Set<K> keySet() {
+      return keyIndex.keySet();
+    }
+
+    @Override
+    public int size() {
+      return keyIndex.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return false;
+    }
+
+    @Override
+    public boolean containsKey(@Nullable Object key) {
+      return keyIndex.containsKey(key);
+    }
+
+    @Override
+    public V get(@Nullable Object key) {
+      Integer index = keyIndex.get(key);
+      return (index == null) ? null : getValue(index);
+    }
+
+    @Override
+    public V put(K key, V value) {
+      Integer index = keyIndex.get(key);
+      checkArgument(index != null, "%s not in %s", key, keyIndex.keySet());
+      return setValue(index, value);
+    }
+
+    @Override
+    public V remove(@Nullable Object key) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    Iterator<Entry<K, V>> entryIterator() {
+      final ImmutableList<K> keys = keyIndex.keySet().asList();
+      return new AbstractIndexedListIterator<Entry<K, V>>(size()) {
+        @Override
+        protected Entry<K, V> get(final int index) {
+          return new AbstractMapEntry<K, V>() {
+            @Override
+            public K getKey() {
+              return keys.get(index);
+            }
+
+            @Override
+            public V getValue() {
+              return IndexedMap.this.getValue(index);
+            }
+
+            @Override
+            public V setValue(V value) {
+              return IndexedMap.this.setValue(index, value);
+            }
+          };
+        }
+      };
+    }
+  }
+
+  private static final long serialVersionUID = 0;
+}
@@ -659,6 +659,10 @@ public final class Sets {
         return set1.containsAll(collection)
             && set2.containsAll(collection);
       }
+      @GwtIncompatible("unnecessary")
+      @Override public ImmutableSet<E> immutableCopy() {
+        return ImmutableSetAlgebra.intersection(set1, set2);
+      }
     };
   }
 
@@ -692,6 +696,10 @@ public final class Sets {
       @Override public boolean contains(Object element) {
         return set1.contains(element) && !set2.contains(element);
       }
+      @GwtIncompatible("unnecessary")
+      @Override public ImmutableSet<E> immutableCopy() {
+        return ImmutableSetAlgebra.difference(set1, set2);
+      }
     };
   }
 
@@ -280,4 +280,41 @@ import javax.annotation.Nullable;
     }
     return absentBehavior.resultIndex(lower);
   }
+
+  /**
+   * Returns the smallest index, at least {@code fromIndex}, of an element of {@code list} which is
+   * greater than {@code key}, or which is not less than {@code key} if {@code inclusive}; or the
+   * size of the list if there is none. The list must be sorted by {@code comparator} and random
+   * access.
+   *
+   * <p>This method gallops: it searches exponentially growing distances from {@code fromIndex},
+   * and then binary searches the last of them, so it takes time logarithmic in the distance from
+   * {@code fromIndex} to the result rather than in the size of the list. Searching for ascending
+   * keys from the previous result thus takes time {@code O(m log(n / m))} for {@code m} keys in a
+   * list of size {@code n}.
+   */
+  static <E> int gallop(List<? extends E> list, int fromIndex, @Nullable E key,
+      Comparator<? super E> comparator, boolean inclusive) {
+    // the result is the first index whose element compares at least this with the key
+    int threshold = inclusive ? 0 : 1;
+    int size = list.size();
+    int low = fromIndex;
+    int high = fromIndex;
+    int step = 1;
+    while (high < size && comparator.compare(list.get(high), key) < threshold) {
+      low = high + 1;
+      high = (int) Math.min(size, (long) high + step);
+      step <<= 1;
+    }
+    // the result is in [low, high]
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (comparator.compare(list.get(mid), key) < threshold) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+
+/**
+ * A thread-safe interner of strings, which retains strong references to at most a maximum number
+ * of canonical strings, and which can intern the characters of any {@link CharSequence}, creating
+ * a string only if there is no canonical string equal to them. Create instances with {@link
+ * Interners#newStringInterner}.
+ *
+ * <p>When the interner is full, interning a new string evicts a canonical string which has not been
+ * interned recently; interning an equal string afterwards may then return a different instance.
+ * Canonical strings are kept in striped open-addressed hash tables and found without locking,
+ * which makes this interner suited to interning very many short strings, such as parsed tokens.
+ *
+ * @since 19.0
+ */
+@Beta
+@GwtIncompatible("java.util.concurrent.atomic")
+public final class StringInterner implements Interner<String> {
+  private final BoundedInterner<String> table;
+
+  StringInterner(int maximumSize) {
+    this.table = new BoundedInterner<String>(maximumSize) {
+      @Override int hash(Object key, int offset, int length) {
+        if (key instanceof String) {
+          return key.hashCode(); // cached
+        }
+        CharSequence chars = (CharSequence) key;
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+          hash = 31 * hash + chars.charAt(i);
+        }
+        return hash; // the same as String.hashCode()
+      }
+
+      @Override boolean matches(String canonical, Object key, int offset, int length) {
+        if (canonical == key) {
+          return true;
+        } else if (key instanceof String) {
+          return canonical.equals(key);
+        }
+        CharSequence chars = (CharSequence) key;
+        if (canonical.length() != length) {
+          return false;
+        }
+        for (int i = 0; i < length; i++) {
+          if (canonical.charAt(i) != chars.charAt(i)) {
+            return false;
+          }
+        }
+        return true;
+      }
+
+      @Override String copyOf(Object key, int offset, int length) {
+        return key.toString();
+      }
+    };
+  }
+
+  /**
+   * Returns the canonical string equal to {@code sample}, making {@code sample} canonical if there
+   * is none.
+   */
+  @Override
+  public String intern(String sample) {
+    return table.intern(checkNotNull(sample), 0, sample.length());
+  }
+
+  /**
+   * Returns the canonical string with the same characters as {@code chars}, first creating it with
+   * {@code chars.toString()} if there is none.
+   */
+  public String intern(CharSequence chars) {
+    return table.intern(checkNotNull(chars), 0, chars.length());
+  }
+
+  /**
+   * Returns the number of canonical strings retained by this interner. This is approximate if
+   * other threads are interning strings at the same time.
+   */
+  public int size() {
+    return table.size();
+  }
+}
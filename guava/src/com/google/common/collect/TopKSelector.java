@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.CollectPreconditions.checkNonnegative;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtCompatible;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * An accumulator of the {@code k} least elements, according to a comparator, of the elements
+ * offered to it one at a time or in batches. It uses {@code O(k)} memory and, for {@code n}
+ * elements, {@code O(n + k log k)} time; this is the algorithm behind {@link
+ * Ordering#leastOf(Iterator, int)}.
+ *
+ * <p>{@link #topK} may be called at any time, and further elements offered afterwards. Only the
+ * elements offered since the previous call to {@code topK} are then sorted. The partial results of
+ * several selectors, for example one per thread, may be merged with {@link #combine}.
+ *
+ * <p>Instances are not thread-safe. Null elements are permitted only if the comparator supports
+ * them.
+ *
+ * @param <T> the type of the elements
+ * @since 19.0
+ */
+@Beta
+@GwtCompatible
+public final class TopKSelector<T> {
+
+  /**
+   * Returns a selector of the {@code k} least elements according to their natural ordering, which
+   * {@link #topK} returns in ascending order.
+   *
+   * @throws IllegalArgumentException if {@code k < 0} or {@code k > Integer.MAX_VALUE / 2}
+   */
+  public static <T extends Comparable<? super T>> TopKSelector<T> least(int k) {
+    return least(k, Ordering.natural());
+  }
+
+  /**
+   * Returns a selector of the {@code k} least elements according to {@code comparator}, which
+   * {@link #topK} returns in ascending order.
+   *
+   * @throws IllegalArgumentException if {@code k < 0} or {@code k > Integer.MAX_VALUE / 2}
+   */
+  public static <T> TopKSelector<T> least(int k, Comparator<? super T> comparator) {
+    return new TopKSelector<T>(comparator, k);
+  }
+
+  /**
+   * Returns a selector of the {@code k} greatest elements according to their natural ordering,
+   * which {@link #topK} returns in descending order.
+   *
+   * @throws IllegalArgumentException if {@code k < 0} or {@code k > Integer.MAX_VALUE / 2}
+   */
+  public static <T extends Comparable<? super T>> TopKSelector<T> greatest(int k) {
+    return greatest(k, Ordering.natural());
+  }
+
+  /**
+   * Returns a selector of the {@code k} greatest elements according to {@code comparator}, which
+   * {@link #topK} returns in descending order.
+   *
+   * @throws IllegalArgumentException if {@code k < 0} or {@code k > Integer.MAX_VALUE / 2}
+   */
+  public static <T> TopKSelector<T> greatest(int k, Comparator<? super T> comparator) {
+    return new TopKSelector<T>(Ordering.from(comparator).reverse(), k);
+  }
+
+  private final int k;
+  private final Comparator<? super T> comparator;
+
+  /*
+   * We maintain a buffer of size 2k. Every time the buffer gets full, we find the median and
+   * partition around it, keeping only the lowest k elements. This requires n/k
+   * find-median-and-partition steps, each of which take O(k) time with a traditional quickselect.
+   */
+  private final T[] buffer;
+  private int bufferSize;
+
+  /**
+   * The number of elements at the beginning of the buffer which are known to be sorted. Elements
+   * are only appended to the buffer between partitions, so this remains valid until the next one.
+   */
+  private int sortedCount;
+
+  /**
+   * The greatest of the k least elements offered so far, or of all of them if there are fewer
+   * than k. Once {@code bufferSize >= k}, anything greater than it can be ignored immediately.
+   */
+  private T threshold;
+
+  private TopKSelector(Comparator<? super T> comparator, int k) {
+    checkNonnegative(k, "k");
+    checkArgument(k <= Integer.MAX_VALUE / 2, "k (%s) must be <= Integer.MAX_VALUE / 2", k);
+    this.comparator = checkNotNull(comparator, "comparator");
+    this.k = k;
+    @SuppressWarnings("unchecked") // we'll only put T's in
+    T[] buffer = (T[]) new Object[k * 2];
+    this.buffer = buffer;
+  }
+
+  /**
+   * Adds {@code elem} as a candidate for the top {@code k} elements. This operation takes amortized
+   * constant time.
+   */
+  public void offer(@Nullable T elem) {
+    if (k == 0) {
+      return;
+    } else if (bufferSize == 0) {
+      buffer[0] = elem;
+      threshold = elem;
+      bufferSize = 1;
+    } else if (bufferSize < k) {
+      buffer[bufferSize++] = elem;
+      if (comparator.compare(elem, threshold) > 0) {
+        threshold = elem;
+      }
+    } else if (comparator.compare(elem, threshold) < 0) {
+      buffer[bufferSize++] = elem;
+      if (bufferSize == 2 * k) {
+        trim();
+      }
+    }
+  }
+
+  /**
+   * Adds each member of {@code elements} as a candidate for the top {@code k} elements.
+   */
+  public void offerAll(Iterable<? extends T> elements) {
+    offerAll(elements.iterator());
+  }
+
+  /**
+   * Adds each member of {@code elements} as a candidate for the top {@code k} elements.
+   */
+  public void offerAll(Iterator<? extends T> elements) {
+    while (elements.hasNext()) {
+      offer(elements.next());
+    }
+  }
+
+  /**
+   * Adds the candidates retained by {@code other}, which must use the same comparator as this
+   * selector, as candidates for the top {@code k} elements of this selector. Afterwards, this
+   * selector retains the top {@code k} elements offered to either; {@code other} is unchanged.
+   *
+   * @return this selector
+   * @throws IllegalArgumentException if {@code other} is this selector
+   */
+  public TopKSelector<T> combine(TopKSelector<T> other) {
+    checkArgument(checkNotNull(other) != this, "a selector can't be combined with itself");
+    for (int i = 0; i < other.bufferSize; i++) {
+      offer(other.buffer[i]);
+    }
+    return this;
+  }
+
+  /**
+   * Returns the top {@code k} elements offered to this selector, or all of them if there are fewer
+   * than {@code k}, in order from first to last according to the selector. The returned list is an
+   * unmodifiable snapshot, which does not change when further elements are offered.
+   *
+   * <p>The implementation does not necessarily use a <i>stable</i> sorting algorithm; when multiple
+   * elements are equivalent, it is undefined which will come first.
+   *
+   * @return an unmodifiable {@code RandomAccess} list of the top {@code k} elements
+   */
+  public List<T> topK() {
+    if (sortedCount == 0) {
+      Arrays.sort(buffer, 0, bufferSize, comparator);
+    } else if (sortedCount < bufferSize) {
+      Arrays.sort(buffer, sortedCount, bufferSize, comparator);
+      mergeSortedTail();
+    }
+    if (bufferSize > k) {
+      Arrays.fill(buffer, k, bufferSize, null);
+      bufferSize = k;
+    }
+    sortedCount = bufferSize;
+    if (bufferSize > 0) {
+      threshold = buffer[bufferSize - 1];
+    }
+    // We can't use ImmutableList; we have to be null-friendly!
+    return Collections.unmodifiableList(
+        Arrays.asList(ObjectArrays.arraysCopyOf(buffer, bufferSize)));
+  }
+
+  /**
+   * Merges the sorted ranges {@code [0, sortedCount)} and {@code [sortedCount, bufferSize)} of the
+   * buffer, keeping only as many elements as are needed.
+   */
+  private void mergeSortedTail() {
+    T[] sorted = ObjectArrays.arraysCopyOf(buffer, sortedCount);
+    int size = Math.min(bufferSize, k);
+    int left = 0;
+    int right = sortedCount;
+    for (int out = 0; out < size; out++) {
+      // the right range is merged into the buffer from its beginning, so it is never overwritten
+      if (right == bufferSize
+          || (left < sorted.length && comparator.compare(sorted[left], buffer[right]) <= 0)) {
+        buffer[out] = sorted[left++];
+      } else {
+        buffer[out] = buffer[right++];
+      }
+    }
+    Arrays.fill(buffer, size, bufferSize, null);
+    bufferSize = size;
+  }
+
+  /**
+   * Quickselects the top k elements from the 2k elements in the buffer. O(k) expected time.
+   */
+  private void trim() {
+    int left = 0;
+    int right = 2 * k - 1;
+
+    int minThresholdPosition = 0;
+    // The leftmost position at which the greatest of the k lower elements
+    // -- the new value of threshold -- might be found.
+
+    while (left < right) {
+      int pivotIndex = (left + right + 1) >>> 1;
+      int pivotNewIndex = partition(left, right, pivotIndex);
+      if (pivotNewIndex > k) {
+        right = pivotNewIndex - 1;
+      } else if (pivotNewIndex < k) {
+        left = Math.max(pivotNewIndex, left + 1);
+        minThresholdPosition = pivotNewIndex;
+      } else {
+        break;
+      }
+    }
+    Arrays.fill(buffer, k, bufferSize, null);
+    bufferSize = k;
+    sortedCount = 0;
+
+    threshold = buffer[minThresholdPosition];
+    for (int i = minThresholdPosition + 1; i < k; i++) {
+      if (comparator.compare(buffer[i], threshold) > 0) {
+        threshold = buffer[i];
+      }
+    }
+  }
+
+  /**
+   * Partitions the contents of buffer in the range [left, right] around the pivot element
+   * previously stored in buffer[pivotIndex]. Returns the new index of the pivot element,
+   * pivotNewIndex, so that everything in [left, pivotNewIndex] is less than or equal to pivot.
+   */
+  private int partition(int left, int right, int pivotIndex) {
+    T pivotValue = buffer[pivotIndex];
+    buffer[pivotIndex] = buffer[right];
+
+    int pivotNewIndex = left;
+    for (int i = left; i < right; i++) {
+      if (comparator.compare(buffer[i], pivotValue) < 0) {
+        ObjectArrays.swap(buffer, pivotNewIndex, i);
+        pivotNewIndex++;
+      }
+    }
+    buffer[right] = buffer[pivotNewIndex];
+    buffer[pivotNewIndex] = pivotValue;
+    return pivotNewIndex;
+  }
+}
@@ -0,0 +1,626 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.util.concurrent;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A map from {@code long} keys to {@code long} values that can be atomically updated, like an
+ * {@link AtomicLongMap AtomicLongMap<Long>} whose keys and values are not boxed. If a key has not
+ * yet been associated with a value, its implicit value is zero.
+ *
+ * <p>The keys and values are stored in open-addressed hash tables of primitive arrays, divided
+ * into segments which are resized independently. Updating the value of a key which is already in
+ * the map, and reading any value, neither locks nor allocates: it is a single atomic addition to
+ * the value's slot. Adding a key, or removing one, locks the segment of the key, which is also
+ * locked while that segment is resized. This makes this class suitable for counting a very large
+ * number of distinct keys from many threads, where an {@code AtomicLongMap} would allocate a
+ * boxed key, an {@code AtomicLong} and a hash table entry per key.
+ *
+ * <p>Most methods in this class treat absent values and zero values identically, as individually
+ * documented. Exceptions to this are {@link #containsKey}, {@link #size}, {@link #isEmpty},
+ * {@link #snapshot}, and {@link #toString}.
+ *
+ * <p>Instances of this class may be used by multiple threads concurrently. All operations are
+ * atomic unless otherwise noted.
+ *
+ * <b>Warning:</b> Entries whose values are zero are not automatically removed from the map.
+ * Instead they must be removed manually with {@link #removeAllZeros}.
+ *
+ * @since 19.0
+ */
+@Beta
+@GwtIncompatible("java.util.concurrent.atomic")
+public final class AtomicLongLongMap {
+  /*
+   * Each slot of a table has a state, which is only changed while holding the lock of its
+   * segment. An EMPTY slot is made LIVE by writing its key and value and then its state. A LIVE
+   * slot is never reused: when its key is removed it becomes REMOVED, and when its segment is
+   * resized it becomes MOVED and its key and value are copied to the new table.
+   *
+   * Threads updating a value without the lock may add to a slot just after it stopped being LIVE.
+   * So whoever changes the state of a LIVE slot first writes the new state and then takes the
+   * value with getAndSet(0), all while holding the lock, and an updater first adds to the value
+   * and then reads the state. If the slot is no longer LIVE, the updater acquires the lock, so
+   * that the value has been taken by then, and takes whatever is left in the slot with
+   * getAndSet(0) and adds it to the map again. Each addition is thus taken from the slot exactly
+   * once: by the thread which changed the state, if it was made before the value was taken, and
+   * otherwise by an updater. A removed value is never added back to the map.
+   */
+  private static final int EMPTY = 0;
+  private static final int LIVE = 1;
+  private static final int REMOVED = 2;
+  private static final int MOVED = 3;
+
+  // returned by find
+  private static final int ABSENT = -1;
+  private static final int RESIZING = -2;
+
+  static final int MIN_TABLE_SIZE = 8;
+  private static final int MAX_TABLE_SIZE = 1 << 30;
+  static final double MAX_LOAD = 0.7;
+  static final int MAX_SEGMENTS = 1 << 16;
+
+  /**
+   * The default number of segments, which is enough to make contention for the lock of a segment
+   * rare even when every processor is adding keys.
+   */
+  static final int DEFAULT_SEGMENTS =
+      ceilingPowerOfTwo(4 * Runtime.getRuntime().availableProcessors());
+
+  private final Segment[] segments;
+  private final int segmentShift;
+  private final int segmentMask;
+
+  private AtomicLongLongMap(int expectedKeys, int segmentCount) {
+    this.segments = new Segment[segmentCount];
+    this.segmentShift = Integer.SIZE - Integer.numberOfTrailingZeros(segmentCount);
+    this.segmentMask = segmentCount - 1;
+    int tableSize = tableSizeFor(expectedKeys / segmentCount + 1);
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment(tableSize);
+    }
+  }
+
+  /**
+   * Creates an {@code AtomicLongLongMap}.
+   */
+  public static AtomicLongLongMap create() {
+    return new AtomicLongLongMap(0, DEFAULT_SEGMENTS);
+  }
+
+  /**
+   * Creates an {@code AtomicLongLongMap} with enough capacity to hold {@code expectedKeys} keys
+   * without resizing.
+   *
+   * @throws IllegalArgumentException if {@code expectedKeys} is negative
+   */
+  public static AtomicLongLongMap create(int expectedKeys) {
+    checkArgument(expectedKeys >= 0, "expectedKeys (%s) must be >= 0", expectedKeys);
+    return new AtomicLongLongMap(expectedKeys, DEFAULT_SEGMENTS);
+  }
+
+  /**
+   * Creates an {@code AtomicLongLongMap} with the same mappings as the specified {@code Map}.
+   */
+  public static AtomicLongLongMap create(Map<Long, Long> m) {
+    AtomicLongLongMap result = create(m.size());
+    result.putAll(m);
+    return result;
+  }
+
+  @VisibleForTesting
+  static AtomicLongLongMap createWithSegments(int segmentCount) {
+    checkArgument(segmentCount > 0 && segmentCount <= MAX_SEGMENTS
+        && Integer.bitCount(segmentCount) == 1);
+    return new AtomicLongLongMap(0, segmentCount);
+  }
+
+  /**
+   * Returns the value associated with {@code key}, or zero if there is no value associated with
+   * {@code key}.
+   */
+  public long get(long key) {
+    int hash = hash(key);
+    Segment segment = segmentFor(hash);
+    Table table = segment.table;
+    int index = table.find(key, hash);
+    if (index >= 0) {
+      long value = table.values.get(index);
+      if (table.states.get(index) == LIVE) {
+        return value;
+      }
+    } else if (index == ABSENT) {
+      return 0L;
+    }
+    return segment.get(key, hash);
+  }
+
+  /**
+   * Increments by one the value currently associated with {@code key}, and returns the new value.
+   */
+  public long incrementAndGet(long key) {
+    return addAndGet(key, 1);
+  }
+
+  /**
+   * Decrements by one the value currently associated with {@code key}, and returns the new value.
+   */
+  public long decrementAndGet(long key) {
+    return addAndGet(key, -1);
+  }
+
+  /**
+   * Adds {@code delta} to the value currently associated with {@code key}, and returns the new
+   * value.
+   */
+  public long addAndGet(long key, long delta) {
+    int hash = hash(key);
+    Segment segment = segmentFor(hash);
+    Table table = segment.table;
+    int index = table.find(key, hash);
+    if (index < 0) {
+      return segment.addAndGet(key, hash, delta);
+    }
+    long newValue = table.values.addAndGet(index, delta);
+    if (table.states.get(index) != LIVE) {
+      // the slot was removed or moved, perhaps before our addition was taken from it
+      return segment.addStranded(table, index, key, hash, newValue);
+    }
+    return newValue;
+  }
+
+  /**
+   * Increments by one the value currently associated with {@code key}, and returns the old value.
+   */
+  public long getAndIncrement(long key) {
+    return getAndAdd(key, 1);
+  }
+
+  /**
+   * Decrements by one the value currently associated with {@code key}, and returns the old value.
+   */
+  public long getAndDecrement(long key) {
+    return getAndAdd(key, -1);
+  }
+
+  /**
+   * Adds {@code delta} to the value currently associated with {@code key}, and returns the old
+   * value.
+   */
+  public long getAndAdd(long key, long delta) {
+    return addAndGet(key, delta) - delta;
+  }
+
+  /**
+   * Associates {@code newValue} with {@code key} in this map, and returns the value previously
+   * associated with {@code key}, or zero if there was no such value.
+   */
+  public long put(long key, long newValue) {
+    int hash = hash(key);
+    return segmentFor(hash).put(key, hash, newValue);
+  }
+
+  /**
+   * Copies all of the mappings from the specified map to this map. The effect of this call is
+   * equivalent to that of calling {@code put(k, v)} on this map once for each mapping from key
+   * {@code k} to value {@code v} in the specified map. The behavior of this operation is undefined
+   * if the specified map is modified while the operation is in progress.
+   */
+  public void putAll(Map<Long, Long> m) {
+    for (Map.Entry<Long, Long> entry : m.entrySet()) {
+      put(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * Removes and returns the value associated with {@code key}. If {@code key} is not
+   * in the map, this method has no effect and returns zero.
+   */
+  public long remove(long key) {
+    int hash = hash(key);
+    return segmentFor(hash).remove(key, hash);
+  }
+
+  /**
+   * Removes all mappings from this map whose values are zero.
+   *
+   * <p>This method is not atomic: the map may be visible in intermediate states, where some
+   * of the zero values have been removed and others have not.
+   */
+  public void removeAllZeros() {
+    for (Segment segment : segments) {
+      segment.removeAllZeros();
+    }
+  }
+
+  /**
+   * Returns the sum of all values in this map.
+   *
+   * <p>This method is not atomic: the sum may or may not include other concurrent operations.
+   */
+  public long sum() {
+    long sum = 0L;
+    for (Segment segment : segments) {
+      sum += segment.sum();
+    }
+    return sum;
+  }
+
+  /**
+   * Returns an immutable snapshot of the mappings in this map.
+   *
+   * <p>This method is not atomic: the snapshot of each segment of the map is consistent, but it
+   * may or may not include concurrent operations on other segments.
+   */
+  public ImmutableMap<Long, Long> snapshot() {
+    ImmutableMap.Builder<Long, Long> builder = ImmutableMap.builder();
+    for (Segment segment : segments) {
+      segment.copyTo(builder);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns true if this map contains a mapping for the specified key.
+   */
+  public boolean containsKey(long key) {
+    int hash = hash(key);
+    Segment segment = segmentFor(hash);
+    int index = segment.table.find(key, hash);
+    return (index == RESIZING) ? segment.containsKey(key, hash) : index >= 0;
+  }
+
+  /**
+   * Returns the number of key-value mappings in this map.
+   */
+  public int size() {
+    long size = 0;
+    for (Segment segment : segments) {
+      size += segment.count;
+    }
+    return (int) Math.min(size, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns {@code true} if this map contains no key-value mappings.
+   */
+  public boolean isEmpty() {
+    for (Segment segment : segments) {
+      if (segment.count != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Removes all of the mappings from this map. The map will be empty after this call returns.
+   *
+   * <p>This method is not atomic: the map may not be empty after returning if there were concurrent
+   * writes.
+   */
+  public void clear() {
+    for (Segment segment : segments) {
+      segment.clear();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return snapshot().toString();
+  }
+
+  private Segment segmentFor(int hash) {
+    return segments[(hash >>> segmentShift) & segmentMask];
+  }
+
+  /**
+   * Returns the hash of a key, whose high bits choose its segment and whose low bits choose its
+   * slot within the segment.
+   */
+  static int hash(long key) {
+    // the finalization step of MurmurHash3, which is a bijection
+    long h = key;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return (int) h;
+  }
+
+  /**
+   * Returns the smallest power of two table size which holds {@code keys} keys without exceeding
+   * the maximum load factor.
+   */
+  static int tableSizeFor(int keys) {
+    int tableSize = MIN_TABLE_SIZE;
+    while (tableSize < MAX_TABLE_SIZE && tableSize * MAX_LOAD < keys) {
+      tableSize <<= 1;
+    }
+    return tableSize;
+  }
+
+  private static int ceilingPowerOfTwo(int n) {
+    return Math.min(MAX_SEGMENTS, Integer.highestOneBit(Math.max(1, n - 1)) << 1);
+  }
+
+  /**
+   * An open-addressed hash table with linear probing, in which each slot has a key, a value and
+   * a state.
+   */
+  private static final class Table {
+    // written before the state of the slot becomes LIVE, and never changed afterwards
+    final long[] keys;
+    final AtomicLongArray values;
+    final AtomicIntegerArray states;
+    final int mask;
+    // the number of non-EMPTY slots above which the table must be resized
+    final int threshold;
+
+    Table(int tableSize) {
+      this.keys = new long[tableSize];
+      this.values = new AtomicLongArray(tableSize);
+      this.states = new AtomicIntegerArray(tableSize);
+      this.mask = tableSize - 1;
+      this.threshold = Math.min((int) (tableSize * MAX_LOAD), tableSize - 1);
+    }
+
+    /**
+     * Returns the index of the LIVE slot of {@code key}, or {@link #RESIZING} if its slot has been
+     * moved to a new table, or else {@link #ABSENT}.
+     */
+    int find(long key, int hash) {
+      for (int i = hash & mask; ; i = (i + 1) & mask) {
+        int state = states.get(i);
+        if (state == EMPTY) {
+          return ABSENT;
+        } else if (keys[i] == key) {
+          if (state == LIVE) {
+            return i;
+          } else if (state == MOVED) {
+            return RESIZING;
+          }
+          // a REMOVED slot; the key may have been added again in a later slot
+        }
+      }
+    }
+
+    /**
+     * Makes the first EMPTY slot for {@code key} LIVE, with the given value.
+     */
+    void insert(long key, int hash, long value) {
+      int i = hash & mask;
+      while (states.get(i) != EMPTY) {
+        i = (i + 1) & mask;
+      }
+      keys[i] = key;
+      values.set(i, value);
+      states.set(i, LIVE);
+    }
+  }
+
+  /**
+   * A segment of the map, whose lock guards the addition and removal of keys and the replacement
+   * of its table.
+   */
+  @SuppressWarnings("serial") // This class is never serialized.
+  private static final class Segment extends ReentrantLock {
+    volatile Table table;
+    // the number of LIVE slots; only written while holding the lock
+    volatile int count;
+    // the number of non-EMPTY slots of table; guarded by this
+    int used;
+
+    Segment(int tableSize) {
+      this.table = new Table(tableSize);
+    }
+
+    long get(long key, int hash) {
+      lock();
+      try {
+        Table table = this.table;
+        int index = table.find(key, hash);
+        return (index < 0) ? 0L : table.values.get(index);
+      } finally {
+        unlock();
+      }
+    }
+
+    boolean containsKey(long key, int hash) {
+      lock();
+      try {
+        return table.find(key, hash) >= 0;
+      } finally {
+        unlock();
+      }
+    }
+
+    long addAndGet(long key, int hash, long delta) {
+      lock();
+      try {
+        Table table = this.table;
+        int index = table.find(key, hash);
+        if (index >= 0) {
+          // no LIVE slot changes state while we hold the lock
+          return table.values.addAndGet(index, delta);
+        }
+        insert(key, hash, delta);
+        return delta;
+      } finally {
+        unlock();
+      }
+    }
+
+    /**
+     * Adds to the map again whatever was added to a slot of {@code table} after it stopped being
+     * LIVE, returning {@code newValue} if there is nothing left. Holding the lock ensures that the
+     * thread which changed the state of the slot has already taken the value that it owns.
+     */
+    long addStranded(Table table, int index, long key, int hash, long newValue) {
+      lock();
+      try {
+        long stranded = table.values.getAndSet(index, 0L);
+        return (stranded == 0L) ? newValue : addAndGet(key, hash, stranded);
+      } finally {
+        unlock();
+      }
+    }
+
+    long put(long key, int hash, long newValue) {
+      lock();
+      try {
+        Table table = this.table;
+        int index = table.find(key, hash);
+        if (index >= 0) {
+          return table.values.getAndSet(index, newValue);
+        }
+        insert(key, hash, newValue);
+        return 0L;
+      } finally {
+        unlock();
+      }
+    }
+
+    long remove(long key, int hash) {
+      lock();
+      try {
+        Table table = this.table;
+        int index = table.find(key, hash);
+        if (index < 0) {
+          return 0L;
+        }
+        table.states.set(index, REMOVED);
+        count--;
+        return table.values.getAndSet(index, 0L);
+      } finally {
+        unlock();
+      }
+    }
+
+    void removeAllZeros() {
+      lock();
+      try {
+        Table table = this.table;
+        for (int i = 0; i <= table.mask; i++) {
+          if (table.states.get(i) == LIVE && table.values.get(i) == 0L) {
+            table.states.set(i, REMOVED);
+            count--;
+            long stranded = table.values.getAndSet(i, 0L);
+            if (stranded != 0L) {
+              // the value was updated after all, so the key stays in the map
+              insert(table.keys[i], hash(table.keys[i]), stranded);
+            }
+          }
+        }
+      } finally {
+        unlock();
+      }
+    }
+
+    long sum() {
+      lock();
+      try {
+        Table table = this.table;
+        long sum = 0L;
+        for (int i = 0; i <= table.mask; i++) {
+          if (table.states.get(i) == LIVE) {
+            sum += table.values.get(i);
+          }
+        }
+        return sum;
+      } finally {
+        unlock();
+      }
+    }
+
+    void copyTo(ImmutableMap.Builder<Long, Long> builder) {
+      lock();
+      try {
+        Table table = this.table;
+        for (int i = 0; i <= table.mask; i++) {
+          if (table.states.get(i) == LIVE) {
+            builder.put(table.keys[i], table.values.get(i));
+          }
+        }
+      } finally {
+        unlock();
+      }
+    }
+
+    void clear() {
+      lock();
+      try {
+        Table table = this.table;
+        for (int i = 0; i <= table.mask; i++) {
+          if (table.states.get(i) == LIVE) {
+            table.states.set(i, REMOVED);
+            table.values.set(i, 0L);
+          }
+        }
+        this.table = new Table(MIN_TABLE_SIZE);
+        count = 0;
+        used = 0;
+      } finally {
+        unlock();
+      }
+    }
+
+    /**
+     * Adds a key which is not in the map, resizing the table first if it is full.
+     */
+    void insert(long key, int hash, long value) {
+      Table table = this.table;
+      if (used >= table.threshold) {
+        table = resize();
+      }
+      table.insert(key, hash, value);
+      count++;
+      used++;
+    }
+
+    /**
+     * Moves the LIVE slots of the table to a new table, which has room for at least as many keys
+     * again, and drops the REMOVED slots.
+     */
+    Table resize() {
+      Table oldTable = this.table;
+      Table newTable = new Table(tableSizeFor(2 * count + 1));
+      for (int i = 0; i <= oldTable.mask; i++) {
+        if (oldTable.states.get(i) == LIVE) {
+          oldTable.states.set(i, MOVED);
+          long key = oldTable.keys[i];
+          newTable.insert(key, hash(key), oldTable.values.getAndSet(i, 0L));
+        }
+      }
+      this.table = newTable;
+      used = count;
+      return newTable;
+    }
+  }
+}
@@ -0,0 +1,596 @@
+/*
+ * Copyright (C) 2015 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.util.concurrent;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A map containing {@code long} values that can be atomically updated, with the same operations
+ * as {@link AtomicLongMap} but without an {@code AtomicLong} or a hash table entry per key. If a
+ * key has not yet been associated with a value, its implicit value is zero.
+ *
+ * <p>The keys and values are stored in open-addressed hash tables of arrays, divided into
+ * segments which are resized independently, in the same way as in {@link AtomicLongLongMap}.
+ * Updating the value of a key which is already in the map, and reading any value, neither locks
+ * nor allocates: it is a single atomic addition to the value's slot. Adding a key, or removing
+ * one, locks the segment of the key, which is also locked while that segment is resized.
+ *
+ * <p>Most methods in this class treat absent values and zero values identically, as individually
+ * documented. Exceptions to this are {@link #containsKey}, {@link #size}, {@link #isEmpty},
+ * {@link #snapshot}, and {@link #toString}.
+ *
+ * <p>Instances of this class may be used by multiple threads concurrently. All operations are
+ * atomic unless otherwise noted.
+ *
+ * <b>Warning:</b> Entries whose values are zero are not automatically removed from the map.
+ * Instead they must be removed manually with {@link #removeAllZeros}.
+ *
+ * @since 19.0
+ */
+@Beta
+@GwtIncompatible("java.util.concurrent.atomic")
+public final class CompactAtomicLongMap<K> {
+  // See AtomicLongLongMap for how the states of the slots keep concurrent additions from being
+  // lost while keys are removed and segments are resized.
+  private static final int EMPTY = 0;
+  private static final int LIVE = 1;
+  private static final int REMOVED = 2;
+  private static final int MOVED = 3;
+
+  // returned by find
+  private static final int ABSENT = -1;
+  private static final int RESIZING = -2;
+
+  private static final int MIN_TABLE_SIZE = AtomicLongLongMap.MIN_TABLE_SIZE;
+  private static final double MAX_LOAD = AtomicLongLongMap.MAX_LOAD;
+  private static final int MAX_SEGMENTS = AtomicLongLongMap.MAX_SEGMENTS;
+  private static final int DEFAULT_SEGMENTS = AtomicLongLongMap.DEFAULT_SEGMENTS;
+
+  private final Segment<K>[] segments;
+  private final int segmentShift;
+  private final int segmentMask;
+
+  private CompactAtomicLongMap(int expectedKeys, int segmentCount) {
+    @SuppressWarnings("unchecked") // generic array creation
+    Segment<K>[] segments = (Segment<K>[]) new Segment<?>[segmentCount];
+    this.segments = segments;
+    this.segmentShift = Integer.SIZE - Integer.numberOfTrailingZeros(segmentCount);
+    this.segmentMask = segmentCount - 1;
+    int tableSize = AtomicLongLongMap.tableSizeFor(expectedKeys / segmentCount + 1);
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment<K>(tableSize);
+    }
+  }
+
+  /**
+   * Creates a {@code CompactAtomicLongMap}.
+   */
+  public static <K> CompactAtomicLongMap<K> create() {
+    return new CompactAtomicLongMap<K>(0, DEFAULT_SEGMENTS);
+  }
+
+  /**
+   * Creates a {@code CompactAtomicLongMap} with enough capacity to hold {@code expectedKeys} keys
+   * without resizing.
+   *
+   * @throws IllegalArgumentException if {@code expectedKeys} is negative
+   */
+  public static <K> CompactAtomicLongMap<K> create(int expectedKeys) {
+    checkArgument(expectedKeys >= 0, "expectedKeys (%s) must be >= 0", expectedKeys);
+    return new CompactAtomicLongMap<K>(expectedKeys, DEFAULT_SEGMENTS);
+  }
+
+  /**
+   * Creates a {@code CompactAtomicLongMap} with the same mappings as the specified {@code Map}.
+   */
+  public static <K> CompactAtomicLongMap<K> create(Map<? extends K, ? extends Long> m) {
+    CompactAtomicLongMap<K> result = create(m.size());
+    result.putAll(m);
+    return result;
+  }
+
+  @VisibleForTesting
+  static <K> CompactAtomicLongMap<K> createWithSegments(int segmentCount) {
+    checkArgument(segmentCount > 0 && segmentCount <= MAX_SEGMENTS
+        && Integer.bitCount(segmentCount) == 1);
+    return new CompactAtomicLongMap<K>(0, segmentCount);
+  }
+
+  /**
+   * Returns the value associated with {@code key}, or zero if there is no value associated with
+   * {@code key}.
+   */
+  public long get(K key) {
+    int hash = hash(key);
+    Segment<K> segment = segmentFor(hash);
+    Table table = segment.table;
+    int index = table.find(key, hash);
+    if (index >= 0) {
+      long value = table.values.get(index);
+      if (table.states.get(index) == LIVE) {
+        return value;
+      }
+    } else if (index == ABSENT) {
+      return 0L;
+    }
+    return segment.get(key, hash);
+  }
+
+  /**
+   * Increments by one the value currently associated with {@code key}, and returns the new value.
+   */
+  public long incrementAndGet(K key) {
+    return addAndGet(key, 1);
+  }
+
+  /**
+   * Decrements by one the value currently associated with {@code key}, and returns the new value.
+   */
+  public long decrementAndGet(K key) {
+    return addAndGet(key, -1);
+  }
+
+  /**
+   * Adds {@code delta} to the value currently associated with {@code key}, and returns the new
+   * value.
+   */
+  public long addAndGet(K key, long delta) {
+    int hash = hash(key);
+    Segment<K> segment = segmentFor(hash);
+    Table table = segment.table;
+    int index = table.find(key, hash);
+    if (index < 0) {
+      return segment.addAndGet(key, hash, delta);
+    }
+    long newValue = table.values.addAndGet(index, delta);
+    if (table.states.get(index) != LIVE) {
+      // the slot was removed or moved, perhaps before our addition was taken from it
+      return segment.addStranded(table, index, key, hash, newValue);
+    }
+    return newValue;
+  }
+
+  /**
+   * Increments by one the value currently associated with {@code key}, and returns the old value.
+   */
+  public long getAndIncrement(K key) {
+    return getAndAdd(key, 1);
+  }
+
+  /**
+   * Decrements by one the value currently associated with {@code key}, and returns the old value.
+   */
+  public long getAndDecrement(K key) {
+    return getAndAdd(key, -1);
+  }
+
+  /**
+   * Adds {@code delta} to the value currently associated with {@code key}, and returns the old
+   * value.
+   */
+  public long getAndAdd(K key, long delta) {
+    return addAndGet(key, delta) - delta;
+  }
+
+  /**
+   * Associates {@code newValue} with {@code key} in this map, and returns the value previously
+   * associated with {@code key}, or zero if there was no such value.
+   */
+  public long put(K key, long newValue) {
+    int hash = hash(key);
+    return segmentFor(hash).put(key, hash, newValue);
+  }
+
+  /**
+   * Copies all of the mappings from the specified map to this map. The effect of this call is
+   * equivalent to that of calling {@code put(k, v)} on this map once for each mapping from key
+   * {@code k} to value {@code v} in the specified map. The behavior of this operation is undefined
+   * if the specified map is modified while the operation is in progress.
+   */
+  public void putAll(Map<? extends K, ? extends Long> m) {
+    for (Map.Entry<? extends K, ? extends Long> entry : m.entrySet()) {
+      put(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * Removes and returns the value associated with {@code key}. If {@code key} is not
+   * in the map, this method has no effect and returns zero.
+   */
+  public long remove(K key) {
+    int hash = hash(key);
+    return segmentFor(hash).remove(key, hash);
+  }
+
+  /**
+   * Removes all mappings from this map whose values are zero.
+   *
+   * <p>This method is not atomic: the map may be visible in intermediate states, where some
+   * of the zero values have been removed and others have not.
+   */
+  public void removeAllZeros() {
+    for (Segment<K> segment : segments) {
+      segment.removeAllZeros();
+    }
+  }
+
+  /**
+   * Returns the sum of all values in this map.
+   *
+   * <p>This method is not atomic: the sum may or may not include other concurrent operations.
+   */
+  public long sum() {
+    long sum = 0L;
+    for (Segment<K> segment : segments) {
+      sum += segment.sum();
+    }
+    return sum;
+  }
+
+  /**
+   * Returns an immutable snapshot of the mappings in this map.
+   *
+   * <p>This method is not atomic: the snapshot of each segment of the map is consistent, but it
+   * may or may not include concurrent operations on other segments.
+   */
+  public ImmutableMap<K, Long> snapshot() {
+    ImmutableMap.Builder<K, Long> builder = ImmutableMap.builder();
+    for (Segment<K> segment : segments) {
+      segment.copyTo(builder);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns true if this map contains a mapping for the specified key.
+   */
+  public boolean containsKey(Object key) {
+    int hash = hash(key);
+    Segment<K> segment = segmentFor(hash);
+    int index = segment.table.find(key, hash);
+    return (index == RESIZING) ? segment.containsKey(key, hash) : index >= 0;
+  }
+
+  /**
+   * Returns the number of key-value mappings in this map.
+   */
+  public int size() {
+    long size = 0;
+    for (Segment<K> segment : segments) {
+      size += segment.count;
+    }
+    return (int) Math.min(size, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns {@code true} if this map contains no key-value mappings.
+   */
+  public boolean isEmpty() {
+    for (Segment<K> segment : segments) {
+      if (segment.count != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Removes all of the mappings from this map. The map will be empty after this call returns.
+   *
+   * <p>This method is not atomic: the map may not be empty after returning if there were concurrent
+   * writes.
+   */
+  public void clear() {
+    for (Segment<K> segment : segments) {
+      segment.clear();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return snapshot().toString();
+  }
+
+  private Segment<K> segmentFor(int hash) {
+    return segments[(hash >>> segmentShift) & segmentMask];
+  }
+
+  /**
+   * Returns the hash of a key, whose high bits choose its segment and whose low bits choose its
+   * slot within the segment.
+   */
+  private static int hash(Object key) {
+    // the same spreading of the hash code as in the immutable collections
+    return 0x1b873593 * Integer.rotateLeft(key.hashCode() * 0xcc9e2d51, 15);
+  }
+
+  /**
+   * An open-addressed hash table with linear probing, in which each slot has a key, its hash, a
+   * value and a state.
+   */
+  private static final class Table {
+    // written before the state of the slot becomes LIVE; a key is cleared once its slot is
+    // REMOVED, so that it can be garbage-collected before the next resize
+    final Object[] keys;
+    // written before the state of the slot becomes LIVE, and never changed afterwards
+    final int[] hashes;
+    final AtomicLongArray values;
+    final AtomicIntegerArray states;
+    final int mask;
+    // the number of non-EMPTY slots above which the table must be resized
+    final int threshold;
+
+    Table(int tableSize) {
+      this.keys = new Object[tableSize];
+      this.hashes = new int[tableSize];
+      this.values = new AtomicLongArray(tableSize);
+      this.states = new AtomicIntegerArray(tableSize);
+      this.mask = tableSize - 1;
+      this.threshold = Math.min((int) (tableSize * MAX_LOAD), tableSize - 1);
+    }
+
+    /**
+     * Returns the index of the LIVE slot of {@code key}, or {@link #RESIZING} if its slot has been
+     * moved to a new table, or else {@link #ABSENT}.
+     */
+    int find(Object key, int hash) {
+      for (int i = hash & mask; ; i = (i + 1) & mask) {
+        int state = states.get(i);
+        if (state == EMPTY) {
+          return ABSENT;
+        } else if (state != REMOVED && hashes[i] == hash && key.equals(keys[i])) {
+          // the key of a slot removed since we read its state is null, and doesn't match
+          return (state == LIVE) ? i : RESIZING;
+        }
+        // a REMOVED slot may have had the key, which may have been added again in a later slot
+      }
+    }
+
+    /**
+     * Makes the first EMPTY slot for {@code key} LIVE, with the given value.
+     */
+    void insert(Object key, int hash, long value) {
+      int i = hash & mask;
+      while (states.get(i) != EMPTY) {
+        i = (i + 1) & mask;
+      }
+      keys[i] = key;
+      hashes[i] = hash;
+      values.set(i, value);
+      states.set(i, LIVE);
+    }
+
+    /**
+     * Makes the LIVE slot at {@code index} REMOVED, and clears its key.
+     */
+    void remove(int index) {
+      states.set(index, REMOVED);
+      keys[index] = null;
+    }
+  }
+
+  /**
+   * A segment of the map, whose lock guards the addition and removal of keys and the replacement
+   * of its table.
+   */
+  @SuppressWarnings("serial") // This class is never serialized.
+  private static final class Segment<K> extends ReentrantLock {
+    volatile Table table;
+    // the number of LIVE slots; only written while holding the lock
+    volatile int count;
+    // the number of non-EMPTY slots of table; guarded by this
+    int used;
+
+    Segment(int tableSize) {
+      this.table = new Table(tableSize);
+    }
+
+    long get(Object key, int hash) {
+      lock();
+      try {
+        Table table = this.table;
+        int index = table.find(key, hash);
+        return (index < 0) ? 0L : table.values.get(index);
+      } finally {
+        unlock();
+      }
+    }
+
+    boolean containsKey(Object key, int hash) {
+      lock();
+      try {
+        return table.find(key, hash) >= 0;
+      } finally {
+        unlock();
+      }
+    }
+
+    long addAndGet(K key, int hash, long delta) {
+      lock();
+      try {
+        Table table = this.table;
+        int index = table.find(key, hash);
+        if (index >= 0) {
+          // no LIVE slot changes state while we hold the lock
+          return table.values.addAndGet(index, delta);
+        }
+        insert(key, hash, delta);
+        return delta;
+      } finally {
+        unlock();
+      }
+    }
+
+    /**
+     * Adds to the map again whatever was added to a slot of {@code table} after it stopped being
+     * LIVE, returning {@code newValue} if there is nothing left. Holding the lock ensures that the
+     * thread which changed the state of the slot has already taken the value that it owns.
+     */
+    long addStranded(Table table, int index, K key, int hash, long newValue) {
+      lock();
+      try {
+        long stranded = table.values.getAndSet(index, 0L);
+        return (stranded == 0L) ? newValue : addAndGet(key, hash, stranded);
+      } finally {
+        unlock();
+      }
+    }
+
+    long put(K key, int hash, long newValue) {
+      lock();
+      try {
+        Table table = this.table;
+        int index = table.find(key, hash);
+        if (index >= 0) {
+          return table.values.getAndSet(index, newValue);
+        }
+        insert(key, hash, newValue);
+        return 0L;
+      } finally {
+        unlock();
+      }
+    }
+
+    long remove(Object key, int hash) {
+      lock();
+      try {
+        Table table = this.table;
+        int index = table.find(key, hash);
+        if (index < 0) {
+          return 0L;
+        }
+        table.remove(index);
+        count--;
+        return table.values.getAndSet(index, 0L);
+      } finally {
+        unlock();
+      }
+    }
+
+    void removeAllZeros() {
+      lock();
+      try {
+        Table table = this.table;
+        for (int i = 0; i <= table.mask; i++) {
+          if (table.states.get(i) == LIVE && table.values.get(i) == 0L) {
+            Object key = table.keys[i];
+            table.remove(i);
+            count--;
+            long stranded = table.values.getAndSet(i, 0L);
+            if (stranded != 0L) {
+              // the value was updated after all, so the key stays in the map
+              insert(key, table.hashes[i], stranded);
+            }
+          }
+        }
+      } finally {
+        unlock();
+      }
+    }
+
+    long sum() {
+      lock();
+      try {
+        Table table = this.table;
+        long sum = 0L;
+        for (int i = 0; i <= table.mask; i++) {
+          if (table.states.get(i) == LIVE) {
+            sum += table.values.get(i);
+          }
+        }
+        return sum;
+      } finally {
+        unlock();
+      }
+    }
+
+    void copyTo(ImmutableMap.Builder<K, Long> builder) {
+      lock();
+      try {
+        Table table = this.table;
+        for (int i = 0; i <= table.mask; i++) {
+          if (table.states.get(i) == LIVE) {
+            @SuppressWarnings("unchecked") // only K's are inserted
+            K key = (K) table.keys[i];
+            builder.put(key, table.values.get(i));
+          }
+        }
+      } finally {
+        unlock();
+      }
+    }
+
+    void clear() {
+      lock();
+      try {
+        Table table = this.table;
+        for (int i = 0; i <= table.mask; i++) {
+          if (table.states.get(i) == LIVE) {
+            table.remove(i);
+            table.values.set(i, 0L);
+          }
+        }
+        this.table = new Table(MIN_TABLE_SIZE);
+        count = 0;
+        used = 0;
+      } finally {
+        unlock();
+      }
+    }
+
+    /**
+     * Adds a key which is not in the map, resizing the table first if it is full.
+     */
+    void insert(Object key, int hash, long value) {
+      Table table = this.table;
+      if (used >= table.threshold) {
+        table = resize();
+      }
+      table.insert(key, hash, value);
+      count++;
+      used++;
+    }
+
+    /**
+     * Moves the LIVE slots of the table to a new table, which has room for at least as many keys
+     * again, and drops the REMOVED slots.
+     */
+    Table resize() {
+      Table oldTable = this.table;
+      Table newTable = new Table(AtomicLongLongMap.tableSizeFor(2 * count + 1));
+      for (int i = 0; i <= oldTable.mask; i++) {
+        if (oldTable.states.get(i) == LIVE) {
+          oldTable.states.set(i, MOVED);
+          newTable.insert(oldTable.keys[i], oldTable.hashes[i], oldTable.values.getAndSet(i, 0L));
+        }
+      }
+      this.table = newTable;
+      used = count;
+      return newTable;
+    }
+  }
+}